@@ -0,0 +1,311 @@
+package com.kirisamemarisa.blog.cache;
+
+import com.kirisamemarisa.blog.repository.BlockedUserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 拉黑关系索引：
+ * - 全局布隆过滤器，记录 (拉黑者, 被拉黑者) 以及“拉黑者拉黑过人”，启动时从 blocked_user 全量构建；
+ *   绝大多数“没有拉黑”的判断在这里直接返回，不查库也不加载任何集合；
+ * - 每个拉黑者一个被拉黑者 ID 集合，布隆过滤器命中后才按需加载，给出精确结果。
+ * <p>
+ * 拉黑在提交前后各写一次布隆过滤器（重建期间同时写入新过滤器），取消拉黑只更新已加载的集合；
+ * 布隆过滤器不支持删除，取消拉黑累计到阈值或元素数超过容量时后台重建。
+ * 一致性模型：本节点上的拉黑 / 取消拉黑提交后立即可见；其他节点上的变化不会通知到这里，
+ * 过滤器每 rebuild-interval-seconds 全量重建一次，已加载的集合最多使用 max-age-seconds（从加载时刻算），
+ * 因此跨节点的拉黑与取消拉黑都在 max(rebuild-interval, max-age) 内生效，两个方向都有同样的上限。
+ * 列表过滤与私信权限（BlockServiceImpl.isBlocked）都直接使用这里的结果，不再查库。
+ * 列表过滤（评论、回复、文章）按整页一次取当前用户的集合后在内存中过滤，不做逐条查询。
+ */
+@Component
+public class BlockIndex {
+    private static final Logger logger = LoggerFactory.getLogger(BlockIndex.class);
+    private static final int STRIPES = 64;
+    private static final String SCAN_SQL = "select blocker_id, blocked_id from blocked_user";
+
+    private final BlockedUserRepository blockedUserRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, Node> nodes = new ConcurrentHashMap<>();
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+    private final long minCapacity;
+    private final double fpp;
+    private final long rebuildAfterRemovals;
+    private final long idleExpireMs;
+    private final long maxAgeMs;
+    private final long rebuildIntervalMs;
+    private volatile long builtAt;
+
+    // 过滤器的替换与写入由 bloomLock 保护；读不加锁
+    private final Object bloomLock = new Object();
+    private volatile BloomFilter bloom;
+    private BloomFilter building;
+    private long capacity;
+    // 布隆过滤器构建完成前按“可能存在”处理，走精确集合
+    private volatile boolean ready;
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong removals = new AtomicLong();
+
+    private final LongAdder bloomNegatives = new LongAdder();
+    private final LongAdder exactChecks = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    public BlockIndex(BlockedUserRepository blockedUserRepository, JdbcTemplate jdbcTemplate,
+                      @Value("${blog.cache.block-index.expected-pairs:100000}") long expectedPairs,
+                      @Value("${blog.cache.block-index.false-positive-rate:0.01}") double fpp,
+                      @Value("${blog.cache.block-index.rebuild-after-removals:10000}") long rebuildAfterRemovals,
+                      @Value("${blog.cache.block-index.idle-expire-seconds:1800}") long idleExpireSeconds,
+                      @Value("${blog.cache.block-index.max-age-seconds:300}") long maxAgeSeconds,
+                      @Value("${blog.cache.block-index.rebuild-interval-seconds:300}") long rebuildIntervalSeconds) {
+        this.blockedUserRepository = blockedUserRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.minCapacity = Math.max(1000, expectedPairs);
+        this.fpp = fpp;
+        this.rebuildAfterRemovals = Math.max(1, rebuildAfterRemovals);
+        this.idleExpireMs = Math.max(1, idleExpireSeconds) * 1000L;
+        this.maxAgeMs = Math.max(1, maxAgeSeconds) * 1000L;
+        this.rebuildIntervalMs = Math.max(1, rebuildIntervalSeconds) * 1000L;
+        this.capacity = minCapacity;
+        this.bloom = new BloomFilter(capacity * 2, fpp);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.currentTimeMillis();
+        try {
+            rebuild();
+            ready = true;
+            logger.info("拉黑索引构建完成：{} 条拉黑关系，耗时 {} ms", entries.get(), System.currentTimeMillis() - start);
+        } catch (Exception ex) {
+            logger.warn("拉黑索引构建失败，拉黑判断将直接查询拉黑列表: {}", ex.toString());
+        }
+    }
+
+    /**
+     * blockerId 是否拉黑了 targetId
+     */
+    public boolean isBlocked(Long blockerId, Long targetId) {
+        if (blockerId == null || targetId == null || blockerId.equals(targetId)) return false;
+        if (ready && !bloom.mightContain(pairKey(blockerId, targetId))) {
+            bloomNegatives.increment();
+            return false;
+        }
+        exactChecks.increment();
+        return node(blockerId).contains(targetId);
+    }
+
+    /**
+     * 过滤掉 viewerId 拉黑的用户产生的条目；未登录或没有拉黑任何人时原样返回
+     */
+    public <T> List<T> filter(Long viewerId, List<T> items, Function<T, Long> authorOf) {
+        if (viewerId == null || items == null || items.isEmpty()) return items;
+        if (ready && !bloom.mightContain(ownerKey(viewerId))) {
+            bloomNegatives.increment();
+            return items;
+        }
+        exactChecks.increment();
+        Node n = node(viewerId);
+        if (n.isEmpty()) return items;
+        List<T> kept = new ArrayList<>(items.size());
+        for (T item : items) {
+            Long author = authorOf.apply(item);
+            if (author == null || !n.contains(author)) kept.add(item);
+        }
+        return kept;
+    }
+
+    public void onBlocked(Long blockerId, Long targetId) {
+        if (blockerId == null || targetId == null) return;
+        addToBloom(blockerId, targetId);
+        bump(blockerId);
+        afterCommit(() -> {
+            // 提交后再写一次：提交前开始的重建扫描可能看不到这一行
+            addToBloom(blockerId, targetId);
+            entries.incrementAndGet();
+            bump(blockerId);
+            Node n = nodes.get(blockerId);
+            if (n != null) n.add(targetId);
+        });
+    }
+
+    public void onUnblocked(Long blockerId, Long targetId) {
+        if (blockerId == null || targetId == null) return;
+        bump(blockerId);
+        afterCommit(() -> {
+            removals.incrementAndGet();
+            entries.updateAndGet(v -> Math.max(0, v - 1));
+            bump(blockerId);
+            Node n = nodes.get(blockerId);
+            if (n != null) n.remove(targetId);
+        });
+    }
+
+    /**
+     * 回收空闲或过期的集合；到了重建周期（补上其他节点的拉黑）、取消拉黑累计过多（过滤器里残留的位增加误判）
+     * 或元素数超过容量时重建过滤器
+     */
+    @Scheduled(fixedDelayString = "${blog.sse.sweep-interval-ms:60000}")
+    public void maintain() {
+        long now = System.currentTimeMillis();
+        nodes.entrySet().removeIf(e -> now - e.getValue().lastAccess > idleExpireMs
+                || now - e.getValue().loadedAt > maxAgeMs);
+        if (!ready) return;
+        if (now - builtAt < rebuildIntervalMs
+                && removals.get() < rebuildAfterRemovals && entries.get() <= capacity) return;
+        try {
+            rebuild();
+        } catch (Exception ex) {
+            logger.warn("拉黑索引重建失败: {}", ex.toString());
+        }
+    }
+
+    private void rebuild() {
+        long startedAt = System.currentTimeMillis();
+        long removedBefore = removals.get();
+        long size = Math.max(minCapacity, entries.get() * 2);
+        BloomFilter fresh = new BloomFilter(size, fpp);
+        synchronized (bloomLock) {
+            building = fresh;
+        }
+        long[] count = new long[1];
+        try {
+            jdbcTemplate.query(SCAN_SQL, rs -> {
+                long blocker = rs.getLong(1);
+                long blocked = rs.getLong(2);
+                fresh.add(pairKey(blocker, blocked));
+                fresh.add(ownerKey(blocker));
+                count[0]++;
+            });
+        } catch (RuntimeException ex) {
+            synchronized (bloomLock) {
+                building = null;
+            }
+            throw ex;
+        }
+        synchronized (bloomLock) {
+            bloom = fresh;
+            building = null;
+            capacity = size;
+        }
+        entries.set(count[0]);
+        removals.addAndGet(-removedBefore);
+        builtAt = startedAt;
+        rebuilds.increment();
+    }
+
+    private void addToBloom(long blockerId, long targetId) {
+        synchronized (bloomLock) {
+            bloom.add(pairKey(blockerId, targetId));
+            bloom.add(ownerKey(blockerId));
+            if (building != null) {
+                building.add(pairKey(blockerId, targetId));
+                building.add(ownerKey(blockerId));
+            }
+        }
+    }
+
+    private Node node(Long blockerId) {
+        Node n = nodes.get(blockerId);
+        if (n != null) {
+            long now = System.currentTimeMillis();
+            if (now - n.loadedAt <= maxAgeMs) {
+                n.lastAccess = now;
+                return n;
+            }
+            // 超过最长使用时间：可能缺少其他节点上的变化，重新加载
+            nodes.remove(blockerId, n);
+        }
+        long stamp = versions.get(stripe(blockerId));
+        loads.increment();
+        Node loaded = new Node(blockedUserRepository.findBlockedIds(blockerId));
+        if (versions.get(stripe(blockerId)) != stamp) return loaded;
+        Node existing = nodes.putIfAbsent(blockerId, loaded);
+        if (existing != null) return existing;
+        // 检查与放入之间提交的变化找不到该节点，放入后再核对一次
+        if (versions.get(stripe(blockerId)) != stamp) nodes.remove(blockerId, loaded);
+        return loaded;
+    }
+
+    private void bump(Long blockerId) {
+        versions.incrementAndGet(stripe(blockerId));
+    }
+
+    private static int stripe(Long userId) {
+        return (int) (userId ^ (userId >>> 32)) & (STRIPES - 1);
+    }
+
+    // 用户 ID 不超过 32 位时 (blocker, blocked) 与 (blocker, 0) 互不冲突
+    private static long pairKey(long blockerId, long targetId) {
+        return (blockerId << 32) ^ targetId;
+    }
+
+    private static long ownerKey(long blockerId) {
+        return blockerId << 32;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        BloomFilter b = bloom;
+        m.put("ready", ready);
+        m.put("pairs", entries.get());
+        m.put("removalsSinceBuild", removals.get());
+        m.put("bloomBytes", b.sizeInBytes());
+        m.put("bloomHashes", b.hashCount());
+        m.put("loadedUsers", nodes.size());
+        m.put("bloomNegatives", bloomNegatives.sum());
+        m.put("exactChecks", exactChecks.sum());
+        m.put("loads", loads.sum());
+        m.put("rebuilds", rebuilds.sum());
+        m.put("builtAt", builtAt);
+        return m;
+    }
+
+    private static final class Node {
+        private final LongHashSet blocked;
+        // 从数据库加载的时刻；本节点的增量更新不刷新它
+        final long loadedAt = System.currentTimeMillis();
+        volatile long lastAccess = loadedAt;
+
+        Node(List<Long> ids) {
+            this.blocked = new LongHashSet(ids.size());
+            for (Long id : ids) blocked.add(id);
+        }
+
+        synchronized boolean contains(long id) { return blocked.contains(id); }
+        synchronized boolean isEmpty() { return blocked.size() == 0; }
+        synchronized void add(long id) { blocked.add(id); }
+        synchronized void remove(long id) { blocked.remove(id); }
+    }
+}
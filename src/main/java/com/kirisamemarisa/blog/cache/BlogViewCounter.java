@@ -0,0 +1,236 @@
+package com.kirisamemarisa.blog.cache;
+
+import com.kirisamemarisa.blog.common.HyperLogLog;
+import com.kirisamemarisa.blog.model.BlogViewStats;
+import com.kirisamemarisa.blog.repository.BlogPostRepository;
+import com.kirisamemarisa.blog.repository.BlogViewStatsRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 浏览量写回缓冲（write-behind）。
+ * 每次浏览只在内存中按文章累加（LongAdder 分段计数，无锁竞争），
+ * 由定时任务把累计的增量以 UPDATE ... SET view_count = view_count + ? 一次性写回 blog_view_stats，
+ * 应用关闭时也会再写回一次。
+ * 去重访客同样先记入内存中的 HyperLogLog 草图，写回时与库中草图合并并刷新 unique_visitors，
+ * 读取去重数只需读一个数值列。
+ * <p>
+ * 库中的浏览量 / 去重访客数按文章缓存在 persisted 中（同时充当文章存在性缓存：文章不存在时缓存 null），
+ * totals 返回“缓存值 + 未写回增量”，浏览请求不再逐次查库。本节点写回后失效对应条目，
+ * 其他节点写回的增量在 totals-ttl-seconds 内反映出来。
+ */
+@Component
+public class BlogViewCounter {
+    private static final Logger logger = LoggerFactory.getLogger(BlogViewCounter.class);
+
+    // blogPostId -> 尚未写回数据库的增量
+    private final Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+    // blogPostId -> 尚未合并进数据库的访客草图（只在 compute 内修改，保证与 flush 的 remove 互斥）
+    private final Map<Long, HyperLogLog> pendingSketches = new ConcurrentHashMap<>();
+
+    // blogPostId -> 库中的统计值；值为 null 表示文章不存在
+    private final BoundedCache<Long, Totals> persisted;
+
+    private final BlogViewStatsRepository blogViewStatsRepository;
+    private final BlogPostRepository blogPostRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public BlogViewCounter(BlogViewStatsRepository blogViewStatsRepository,
+                           BlogPostRepository blogPostRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${blog.view.totals-max-size:50000}") int totalsMaxSize,
+                           @Value("${blog.view.totals-ttl-seconds:60}") long totalsTtlSeconds) {
+        this.blogViewStatsRepository = blogViewStatsRepository;
+        this.blogPostRepository = blogPostRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.persisted = new BoundedCache<>(totalsMaxSize, totalsTtlSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 浏览量与去重访客数
+     */
+    public record Totals(long viewCount, long uniqueVisitors) {
+    }
+
+    /**
+     * 当前统计 = 库中值（缓存）+ 本节点未写回的浏览增量；文章不存在时返回 null。
+     * 去重访客数取写回时估算好的值，最多滞后一个写回周期
+     */
+    public Totals totals(Long blogPostId) {
+        if (blogPostId == null) return null;
+        BoundedCache.Cached<Totals> hit = persisted.lookup(blogPostId);
+        Totals base;
+        if (hit != null) {
+            base = hit.value();
+        } else {
+            long stamp = persisted.loadStamp(blogPostId);
+            base = loadPersisted(blogPostId);
+            persisted.put(blogPostId, base, stamp);
+        }
+        if (base == null) return null;
+        return new Totals(base.viewCount() + pending(blogPostId), base.uniqueVisitors());
+    }
+
+    // 还没有统计行时按 0 计，但要确认文章存在
+    private Totals loadPersisted(Long blogPostId) {
+        BlogViewStatsRepository.ViewCounts counts = blogViewStatsRepository.findCountsByBlogPostId(blogPostId).orElse(null);
+        if (counts == null) {
+            return blogPostRepository.existsById(blogPostId) ? new Totals(0L, 0L) : null;
+        }
+        return new Totals(counts.getViewCount() == null ? 0L : counts.getViewCount(),
+                counts.getUniqueVisitors() == null ? 0L : counts.getUniqueVisitors());
+    }
+
+    public Map<String, Object> stats() {
+        return persisted.stats();
+    }
+
+    /**
+     * 记录一次浏览（仅内存累加）
+     */
+    public void increment(Long blogPostId) {
+        increment(blogPostId, null);
+    }
+
+    /**
+     * 记录一次浏览，并把访客标识（用户 ID 或匿名指纹）记入去重草图
+     */
+    public void increment(Long blogPostId, String visitorKey) {
+        if (blogPostId == null) return;
+        while (true) {
+            LongAdder adder = pending.computeIfAbsent(blogPostId, k -> new LongAdder());
+            adder.increment();
+            // flush 可能刚好把归零的计数器移出，这次浏览记在了被移出的计数器上，重新记一次
+            if (pending.get(blogPostId) == adder) break;
+        }
+        if (visitorKey != null && !visitorKey.isEmpty()) {
+            pendingSketches.compute(blogPostId, (k, sketch) -> {
+                HyperLogLog target = sketch == null ? new HyperLogLog() : sketch;
+                target.offer(visitorKey);
+                return target;
+            });
+        }
+    }
+
+    /**
+     * 某篇文章尚未写回的浏览增量
+     */
+    public long pending(Long blogPostId) {
+        if (blogPostId == null) return 0L;
+        LongAdder adder = pending.get(blogPostId);
+        return adder == null ? 0L : adder.sum();
+    }
+
+    /**
+     * 文章被删除时丢弃其未写回的增量，避免写回时再插入统计行；
+     * 缓存的统计立即失效一次，删除提交后再失效一次，防止提交前的读取把“存在”放回缓存
+     */
+    public void discard(Long blogPostId) {
+        if (blogPostId == null) return;
+        pending.remove(blogPostId);
+        pendingSketches.remove(blogPostId);
+        persisted.invalidate(blogPostId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    persisted.invalidate(blogPostId);
+                }
+            });
+        }
+    }
+
+    /**
+     * 把所有增量写回数据库。先读出当前增量，写库成功后再从计数器中扣减，
+     * 写库期间新增的浏览不会丢失；写库失败则增量保留到下一轮。
+     */
+    @Scheduled(fixedDelayString = "${blog.view.flush-interval-ms:5000}")
+    public void flush() {
+        Set<Long> ids = new HashSet<>(pending.keySet());
+        ids.addAll(pendingSketches.keySet());
+        for (Long blogPostId : ids) {
+            LongAdder adder = pending.get(blogPostId);
+            long delta = adder == null ? 0L : adder.sum();
+            // 草图整体取走，之后的新访客会落到新草图里
+            HyperLogLog sketch = pendingSketches.remove(blogPostId);
+            if (delta <= 0 && sketch == null) continue;
+            try {
+                transactionTemplate.executeWithoutResult(status -> writeDelta(blogPostId, delta, sketch));
+                // 先失效缓存的库中值再扣减增量：期间读到的统计最多多算一次 delta，不会少算
+                persisted.invalidate(blogPostId);
+                if (adder != null && delta > 0) {
+                    adder.add(-delta);
+                    // 已全部写回的文章移出，避免 pending 为每篇浏览过的文章常驻一个计数器
+                    pending.computeIfPresent(blogPostId, (k, current) ->
+                            current == adder && current.sum() == 0 ? null : current);
+                }
+            } catch (Exception ex) {
+                if (sketch != null) {
+                    // 放回未写入的草图，下一轮一起合并
+                    pendingSketches.merge(blogPostId, sketch, (current, old) -> {
+                        current.merge(old);
+                        return current;
+                    });
+                }
+                logger.warn("写回博客 {} 的浏览增量 {} 失败，将在下一轮重试: {}", blogPostId, delta, ex.toString());
+            }
+        }
+    }
+
+    private void writeDelta(Long blogPostId, long delta, HyperLogLog sketch) {
+        if (sketch == null) {
+            int updated = blogViewStatsRepository.incrementViewCount(blogPostId, delta);
+            if (updated > 0) return;
+        } else {
+            // 合并草图需要读-改-写，对统计行加锁
+            BlogViewStats locked = blogViewStatsRepository.findForUpdateByBlogPostId(blogPostId).orElse(null);
+            if (locked != null) {
+                locked.setViewCount(locked.getViewCount() + delta);
+                applySketch(locked, sketch);
+                blogViewStatsRepository.save(locked);
+                return;
+            }
+        }
+        // 第一次写回时还没有统计行
+        if (!blogPostRepository.existsById(blogPostId)) {
+            pending.remove(blogPostId);
+            pendingSketches.remove(blogPostId);
+            return;
+        }
+        BlogViewStats stats = new BlogViewStats();
+        stats.setBlogPost(blogPostRepository.getReferenceById(blogPostId));
+        stats.setViewCount(delta);
+        if (sketch != null) {
+            applySketch(stats, sketch);
+        }
+        blogViewStatsRepository.save(stats);
+    }
+
+    private void applySketch(BlogViewStats stats, HyperLogLog sketch) {
+        HyperLogLog stored = HyperLogLog.fromBytes(stats.getVisitorSketch());
+        stored.merge(sketch);
+        stats.setVisitorSketch(stored.toBytes());
+        stats.setUniqueVisitors(stored.estimate());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("应用关闭，写回剩余浏览增量");
+        flush();
+    }
+}
@@ -0,0 +1,254 @@
+package com.kirisamemarisa.blog.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 容量 + TTL 受限的进程内缓存，淘汰策略仿 W-TinyLFU：
+ * 新条目先进入约占 1% 的窗口 LRU；被挤出窗口时与主区（SLRU：试用区 + 保护区）的淘汰候选比较
+ * TinyLFU 频率，频率更高者留下。这样偶发的一次性访问不会冲掉热点数据。
+ * <p>
+ * 读操作无锁（ConcurrentHashMap），访问记录用 tryLock，竞争激烈时直接丢弃该次记录；
+ * 写入与淘汰在同一把锁内完成。value 可以为 null，表示"确认不存在"（负缓存）。
+ * 加载期间若同一 key 发生失效（invalidate），该次加载结果不会写入缓存，避免把旧数据放回去；
+ * 版本号按 key 的哈希分段，其他 key 的失效只在落入同一分段时（约 1/64）才会丢弃这次写入。
+ */
+public class BoundedCache<K, V> {
+
+    private enum Segment { WINDOW, PROBATION, PROTECTED }
+
+    private static final int STRIPES = 64;
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final long expireAt;
+        Segment segment = Segment.WINDOW;
+
+        Node(K key, V value, long expireAt) {
+            this.key = key;
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+
+    private final Map<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    // 以下三个 LinkedHashMap 按插入顺序维护 LRU（最旧的在头部），只在 lock 内访问
+    private final LinkedHashMap<K, Node<K, V>> window = new LinkedHashMap<>();
+    private final LinkedHashMap<K, Node<K, V>> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<K, Node<K, V>> protectedSegment = new LinkedHashMap<>();
+    private final FrequencySketch sketch;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final int windowMax;
+    private final int mainMax;
+    private final int protectedMax;
+    private final long ttlNanos;
+
+    // 按 key 分段的失效版本号，加载前后比较以丢弃过期的加载结果
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public BoundedCache(int maximumSize, long ttl, TimeUnit unit) {
+        int max = Math.max(2, maximumSize);
+        this.windowMax = Math.max(1, max / 100);
+        this.mainMax = max - windowMax;
+        this.protectedMax = Math.max(1, mainMax * 80 / 100);
+        this.ttlNanos = unit.toNanos(Math.max(1, ttl));
+        this.sketch = new FrequencySketch(max);
+    }
+
+    /**
+     * 缓存命中的结果；value 为 null 表示负缓存（确认不存在）
+     */
+    public record Cached<V>(V value) {
+    }
+
+    /**
+     * 查询缓存，未命中（或已过期）返回 null
+     */
+    public Cached<V> lookup(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        if (node.expireAt - System.nanoTime() <= 0) {
+            expirations.increment();
+            misses.increment();
+            remove(node);
+            return null;
+        }
+        hits.increment();
+        if (lock.tryLock()) {
+            try {
+                onAccess(node);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return new Cached<>(node.value);
+    }
+
+    /**
+     * 加载 key 前取它所在分段的版本号，写入时传回；期间该分段发生过失效则放弃写入
+     */
+    public long loadStamp(K key) {
+        return versions.get(stripe(key));
+    }
+
+    /**
+     * 批量加载前逐个取版本号
+     */
+    public Map<K, Long> loadStamps(Collection<? extends K> keys) {
+        Map<K, Long> stamps = new HashMap<>(Math.max(16, keys.size() * 2));
+        for (K key : keys) {
+            stamps.put(key, versions.get(stripe(key)));
+        }
+        return stamps;
+    }
+
+    public void put(K key, V value, long stamp) {
+        lock.lock();
+        try {
+            if (versions.get(stripe(key)) != stamp) return;
+            sketch.increment(key);
+            Node<K, V> old = data.get(key);
+            if (old != null) {
+                segmentOf(old).remove(key);
+            }
+            Node<K, V> node = new Node<>(key, value, System.nanoTime() + ttlNanos);
+            data.put(key, node);
+            window.put(key, node);
+            evictIfNeeded();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(K key) {
+        versions.incrementAndGet(stripe(key));
+        invalidations.increment();
+        Node<K, V> node = data.get(key);
+        if (node != null) {
+            remove(node);
+        }
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public Map<String, Object> stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", data.size());
+        map.put("hits", h);
+        map.put("misses", m);
+        map.put("hitRate", h + m == 0 ? 0d : (double) h / (h + m));
+        map.put("evictions", evictions.sum());
+        map.put("expirations", expirations.sum());
+        map.put("invalidations", invalidations.sum());
+        return map;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    private static int stripe(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    private void remove(Node<K, V> node) {
+        lock.lock();
+        try {
+            if (data.remove(node.key, node)) {
+                segmentOf(node).remove(node.key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onAccess(Node<K, V> node) {
+        if (data.get(node.key) != node) return;
+        sketch.increment(node.key);
+        switch (node.segment) {
+            case WINDOW -> touch(window, node);
+            case PROTECTED -> touch(protectedSegment, node);
+            case PROBATION -> {
+                // 试用区再次命中，晋升到保护区；保护区超限则把最旧的降回试用区
+                probation.remove(node.key);
+                node.segment = Segment.PROTECTED;
+                protectedSegment.put(node.key, node);
+                if (protectedSegment.size() > protectedMax) {
+                    Node<K, V> demoted = pollEldest(protectedSegment);
+                    demoted.segment = Segment.PROBATION;
+                    probation.put(demoted.key, demoted);
+                }
+            }
+        }
+    }
+
+    private void evictIfNeeded() {
+        while (window.size() > windowMax) {
+            Node<K, V> candidate = pollEldest(window);
+            candidate.segment = Segment.PROBATION;
+            if (probation.size() + protectedSegment.size() < mainMax) {
+                probation.put(candidate.key, candidate);
+                continue;
+            }
+            LinkedHashMap<K, Node<K, V>> victimSegment = probation.isEmpty() ? protectedSegment : probation;
+            Node<K, V> victim = victimSegment.values().iterator().next();
+            // TinyLFU 准入：候选者频率更高才替换主区的淘汰候选
+            if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                victimSegment.remove(victim.key);
+                data.remove(victim.key, victim);
+                probation.put(candidate.key, candidate);
+            } else {
+                data.remove(candidate.key, candidate);
+            }
+            evictions.increment();
+        }
+    }
+
+    private LinkedHashMap<K, Node<K, V>> segmentOf(Node<K, V> node) {
+        return switch (node.segment) {
+            case WINDOW -> window;
+            case PROBATION -> probation;
+            case PROTECTED -> protectedSegment;
+        };
+    }
+
+    private static <K, V> void touch(LinkedHashMap<K, Node<K, V>> segment, Node<K, V> node) {
+        segment.remove(node.key);
+        segment.put(node.key, node);
+    }
+
+    private static <K, V> Node<K, V> pollEldest(LinkedHashMap<K, Node<K, V>> segment) {
+        Iterator<Node<K, V>> it = segment.values().iterator();
+        Node<K, V> eldest = it.next();
+        it.remove();
+        return eldest;
+    }
+}
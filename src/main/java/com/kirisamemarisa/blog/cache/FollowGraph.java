@@ -0,0 +1,291 @@
+package com.kirisamemarisa.blog.cache;
+
+import com.kirisamemarisa.blog.repository.FollowRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * 进程内关注图：每个用户一对邻接集合（关注的人 / 粉丝），用基本类型 long 哈希集合存储。
+ * 第一次访问某用户时用两条只取 ID 的查询加载该用户的出边与入边，之后 isFollowing / areFriends /
+ * 好友列表 / 共同好友 / 关注数都只读内存（areFriends 只需加载一方：出边含对方且入边含对方）。
+ * <p>
+ * 关注 / 取关在事务提交后更新两端已加载的集合（未加载的一端之后加载时数据库已包含该变化）。
+ * 按用户分段的版本号在变化时自增，加载前后比较：加载期间发生过变化则本次结果只用于这一次调用，不写入图中。
+ * 长时间未访问的用户会被回收，下次访问重新加载。
+ * 其他节点上的关注变化不会通知到这里：已加载的集合最多使用 max-age-seconds，过期后下次访问重新加载，
+ * 跨节点的陈旧窗口以此为上限。
+ * 关系变化提交后回调变化监听器 (followerId, followeeId)，供推荐等派生数据增量更新。
+ */
+@Component
+public class FollowGraph {
+    private static final int STRIPES = 64;
+
+    private final FollowRepository followRepository;
+    private final Map<Long, Node> nodes = new ConcurrentHashMap<>();
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+    private final List<BiConsumer<Long, Long>> changeListeners = new CopyOnWriteArrayList<>();
+    private final long idleExpireMs;
+    private final long maxAgeMs;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder staleLoads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public FollowGraph(FollowRepository followRepository,
+                       @Value("${blog.cache.follow-graph.idle-expire-seconds:1800}") long idleExpireSeconds,
+                       @Value("${blog.cache.follow-graph.max-age-seconds:300}") long maxAgeSeconds) {
+        this.followRepository = followRepository;
+        this.idleExpireMs = Math.max(1, idleExpireSeconds) * 1000L;
+        this.maxAgeMs = Math.max(1, maxAgeSeconds) * 1000L;
+    }
+
+    public void addChangeListener(BiConsumer<Long, Long> listener) {
+        changeListeners.add(listener);
+    }
+
+    public boolean isFollowing(Long followerId, Long followeeId) {
+        if (followerId == null || followeeId == null) return false;
+        return node(followerId).following(followeeId);
+    }
+
+    /**
+     * 互相关注
+     */
+    public boolean areFriends(Long aId, Long bId) {
+        if (aId == null || bId == null) return false;
+        Node a = node(aId);
+        return a.following(bId) && a.followedBy(bId);
+    }
+
+    public int followingCount(Long userId) {
+        return userId == null ? 0 : node(userId).followingCount();
+    }
+
+    public int followerCount(Long userId) {
+        return userId == null ? 0 : node(userId).followerCount();
+    }
+
+    public long[] followingIds(Long userId) {
+        return userId == null ? new long[0] : node(userId).followingIds();
+    }
+
+    public long[] followerIds(Long userId) {
+        return userId == null ? new long[0] : node(userId).followerIds();
+    }
+
+    /**
+     * 好友（互相关注）ID，升序
+     */
+    public long[] friendIds(Long userId) {
+        if (userId == null) return new long[0];
+        long[] ids = node(userId).friendIds();
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * 两人的共同好友 ID，升序
+     */
+    public long[] mutualFriendIds(Long aId, Long bId) {
+        if (aId == null || bId == null) return new long[0];
+        long[] a = friendIds(aId);
+        long[] b = friendIds(bId);
+        long[] out = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * followerId 关注了 followeeId（事务提交后生效）
+     */
+    public void onFollowed(Long followerId, Long followeeId) {
+        if (followerId == null || followeeId == null) return;
+        bump(followerId, followeeId);
+        afterCommit(() -> {
+            bump(followerId, followeeId);
+            Node a = nodes.get(followerId);
+            if (a != null) a.addFollowing(followeeId);
+            Node b = nodes.get(followeeId);
+            if (b != null) b.addFollower(followerId);
+            fireChanged(followerId, followeeId);
+        });
+    }
+
+    /**
+     * followerId 取关了 followeeId（事务提交后生效）
+     */
+    public void onUnfollowed(Long followerId, Long followeeId) {
+        if (followerId == null || followeeId == null) return;
+        bump(followerId, followeeId);
+        afterCommit(() -> {
+            bump(followerId, followeeId);
+            Node a = nodes.get(followerId);
+            if (a != null) a.removeFollowing(followeeId);
+            Node b = nodes.get(followeeId);
+            if (b != null) b.removeFollower(followerId);
+            fireChanged(followerId, followeeId);
+        });
+    }
+
+    private void fireChanged(Long followerId, Long followeeId) {
+        for (BiConsumer<Long, Long> l : changeListeners) {
+            try {
+                l.accept(followerId, followeeId);
+            } catch (Exception ignored) {
+                // 监听器失败不影响关注图本身
+            }
+        }
+    }
+
+    private Node node(Long userId) {
+        Node n = nodes.get(userId);
+        if (n != null) {
+            long now = System.currentTimeMillis();
+            if (now - n.loadedAt <= maxAgeMs) {
+                hits.increment();
+                n.lastAccess = now;
+                return n;
+            }
+            // 超过最长使用时间：可能缺少其他节点上的变化，重新加载
+            if (nodes.remove(userId, n)) expirations.increment();
+        }
+        long stamp = versions.get(stripe(userId));
+        loads.increment();
+        Node loaded = new Node(followRepository.findFolloweeIds(userId), followRepository.findFollowerIds(userId));
+        if (versions.get(stripe(userId)) != stamp) {
+            // 加载期间该用户的关注关系有变化，结果可能是旧的：只用这一次
+            staleLoads.increment();
+            return loaded;
+        }
+        Node existing = nodes.putIfAbsent(userId, loaded);
+        if (existing != null) return existing;
+        // 检查与放入之间提交的变化找不到该节点，放入后再核对一次
+        if (versions.get(stripe(userId)) != stamp) {
+            nodes.remove(userId, loaded);
+            staleLoads.increment();
+        }
+        return loaded;
+    }
+
+    private void bump(Long a, Long b) {
+        versions.incrementAndGet(stripe(a));
+        versions.incrementAndGet(stripe(b));
+    }
+
+    private static int stripe(Long userId) {
+        return (int) (userId ^ (userId >>> 32)) & (STRIPES - 1);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 回收长时间未访问或超过最长使用时间的用户邻接集合
+     */
+    @Scheduled(fixedDelayString = "${blog.sse.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        nodes.entrySet().removeIf(e -> {
+            Node n = e.getValue();
+            if (now - n.loadedAt > maxAgeMs) {
+                expirations.increment();
+                return true;
+            }
+            if (now - n.lastAccess <= idleExpireMs) return false;
+            evictions.increment();
+            return true;
+        });
+    }
+
+    public Map<String, Object> stats() {
+        long edges = 0;
+        long bytes = 0;
+        for (Node n : nodes.values()) {
+            synchronized (n) {
+                edges += n.following.size() + n.followers.size();
+                bytes += n.following.footprintBytes() + n.followers.footprintBytes();
+            }
+        }
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("loadedUsers", nodes.size());
+        m.put("adjacencyEntries", edges);
+        m.put("adjacencyBytes", bytes);
+        m.put("hits", hits.sum());
+        m.put("loads", loads.sum());
+        m.put("staleLoads", staleLoads.sum());
+        m.put("evictions", evictions.sum());
+        m.put("expirations", expirations.sum());
+        return m;
+    }
+
+    private static final class Node {
+        final LongHashSet following;
+        final LongHashSet followers;
+        // 从数据库加载的时刻；本节点的增量更新不刷新它
+        final long loadedAt = System.currentTimeMillis();
+        volatile long lastAccess = loadedAt;
+
+        Node(List<Long> followingIds, List<Long> followerIds) {
+            this.following = new LongHashSet(followingIds.size());
+            for (Long id : followingIds) following.add(id);
+            this.followers = new LongHashSet(followerIds.size());
+            for (Long id : followerIds) followers.add(id);
+        }
+
+        synchronized boolean following(long id) { return following.contains(id); }
+        synchronized boolean followedBy(long id) { return followers.contains(id); }
+        synchronized int followingCount() { return following.size(); }
+        synchronized int followerCount() { return followers.size(); }
+        synchronized long[] followingIds() { return following.toArray(); }
+        synchronized long[] followerIds() { return followers.toArray(); }
+        synchronized void addFollowing(long id) { following.add(id); }
+        synchronized void removeFollowing(long id) { following.remove(id); }
+        synchronized void addFollower(long id) { followers.add(id); }
+        synchronized void removeFollower(long id) { followers.remove(id); }
+
+        synchronized long[] friendIds() {
+            LongHashSet small = following.size() <= followers.size() ? following : followers;
+            LongHashSet large = small == following ? followers : following;
+            long[] candidates = small.toArray();
+            int n = 0;
+            for (long id : candidates) {
+                if (large.contains(id)) candidates[n++] = id;
+            }
+            return Arrays.copyOf(candidates, n);
+        }
+    }
+}
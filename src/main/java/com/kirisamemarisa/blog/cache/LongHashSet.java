@@ -0,0 +1,122 @@
+package com.kirisamemarisa.blog.cache;
+
+/**
+ * 基本类型 long 的开放寻址哈希集合（线性探测，删除时回移），每个元素只占 8 字节，不装箱。
+ * 0 作为空槽标记，0 本身用单独的标志位记录。非线程安全，由调用方加锁。
+ */
+final class LongHashSet {
+    private static final int MIN_CAPACITY = 4;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] slots;
+    private int size;
+    private boolean hasZero;
+
+    LongHashSet(int expected) {
+        this.slots = new long[capacityFor(expected)];
+    }
+
+    private static int capacityFor(int expected) {
+        int needed = (int) Math.ceil(Math.max(expected, 1) / LOAD_FACTOR);
+        int cap = MIN_CAPACITY;
+        while (cap < needed) cap <<= 1;
+        return cap;
+    }
+
+    private static int mix(long v) {
+        long h = v * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    boolean contains(long v) {
+        if (v == 0) return hasZero;
+        int mask = slots.length - 1;
+        for (int i = mix(v) & mask; ; i = (i + 1) & mask) {
+            long s = slots[i];
+            if (s == 0) return false;
+            if (s == v) return true;
+        }
+    }
+
+    boolean add(long v) {
+        if (v == 0) {
+            if (hasZero) return false;
+            hasZero = true;
+            size++;
+            return true;
+        }
+        if ((size + 1) > slots.length * LOAD_FACTOR) resize(slots.length << 1);
+        int mask = slots.length - 1;
+        for (int i = mix(v) & mask; ; i = (i + 1) & mask) {
+            long s = slots[i];
+            if (s == v) return false;
+            if (s == 0) {
+                slots[i] = v;
+                size++;
+                return true;
+            }
+        }
+    }
+
+    boolean remove(long v) {
+        if (v == 0) {
+            if (!hasZero) return false;
+            hasZero = false;
+            size--;
+            return true;
+        }
+        int mask = slots.length - 1;
+        int i = mix(v) & mask;
+        while (true) {
+            long s = slots[i];
+            if (s == 0) return false;
+            if (s == v) break;
+            i = (i + 1) & mask;
+        }
+        // 回移后续同簇元素，保持探测链连续
+        int gap = i;
+        for (int j = (gap + 1) & mask; slots[j] != 0; j = (j + 1) & mask) {
+            int home = mix(slots[j]) & mask;
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                slots[gap] = slots[j];
+                gap = j;
+            }
+        }
+        slots[gap] = 0;
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long[] toArray() {
+        long[] out = new long[size];
+        int n = 0;
+        if (hasZero) out[n++] = 0;
+        for (long s : slots) {
+            if (s != 0) out[n++] = s;
+        }
+        return out;
+    }
+
+    /**
+     * 底层数组占用的字节数（不含对象头），用于内存指标
+     */
+    long footprintBytes() {
+        return (long) slots.length * Long.BYTES;
+    }
+
+    private void resize(int capacity) {
+        long[] old = slots;
+        slots = new long[capacity];
+        int mask = capacity - 1;
+        for (long s : old) {
+            if (s == 0) continue;
+            int i = mix(s) & mask;
+            while (slots[i] != 0) i = (i + 1) & mask;
+            slots[i] = s;
+        }
+    }
+}
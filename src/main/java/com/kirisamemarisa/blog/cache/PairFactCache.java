@@ -0,0 +1,83 @@
+package com.kirisamemarisa.blog.cache;
+
+import com.kirisamemarisa.blog.repository.PrivateMessageRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 私信权限判断用到的用户对事实缓存（有向）：
+ * - messaged(from, to)：from 是否给 to 发过私信（hasReplied 即反方向是否发过）；
+ * - following(follower, followee)：是否关注（areFriends 即双向关注），直接读 FollowGraph。
+ * messaged 未命中时用 exists 探针查库（命中索引，只找一行）。
+ * 新私信时立即失效一次，事务提交后再失效一次，防止提交前的读把旧值放回缓存。
+ */
+@Component
+public class PairFactCache {
+
+    private final PrivateMessageRepository privateMessageRepository;
+    private final FollowGraph followGraph;
+    private final BoundedCache<Pair, Boolean> messaged;
+
+    public PairFactCache(PrivateMessageRepository privateMessageRepository,
+                         FollowGraph followGraph,
+                         @Value("${blog.cache.pair-facts.max-size:50000}") int maxSize,
+                         @Value("${blog.cache.pair-facts.ttl-seconds:600}") long ttlSeconds) {
+        this.privateMessageRepository = privateMessageRepository;
+        this.followGraph = followGraph;
+        this.messaged = new BoundedCache<>(maxSize, ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * fromId 是否给 toId 发过至少一条私信
+     */
+    public boolean hasMessaged(Long fromId, Long toId) {
+        if (fromId == null || toId == null) return false;
+        Pair key = new Pair(fromId, toId);
+        BoundedCache.Cached<Boolean> hit = messaged.lookup(key);
+        if (hit != null) return Boolean.TRUE.equals(hit.value());
+        long stamp = messaged.loadStamp(key);
+        boolean exists = privateMessageRepository.existsBySender_IdAndReceiver_Id(fromId, toId);
+        messaged.put(key, exists, stamp);
+        return exists;
+    }
+
+    public boolean isFollowing(Long followerId, Long followeeId) {
+        return followGraph.isFollowing(followerId, followeeId);
+    }
+
+    public boolean areFriends(Long aId, Long bId) {
+        return followGraph.areFriends(aId, bId);
+    }
+
+    /**
+     * fromId 给 toId 发送了新私信后调用
+     */
+    public void onMessageSent(Long fromId, Long toId) {
+        if (fromId == null || toId == null) return;
+        invalidate(messaged, new Pair(fromId, toId));
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of("messaged", messaged.stats());
+    }
+
+    private void invalidate(BoundedCache<Pair, Boolean> cache, Pair key) {
+        cache.invalidate(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(key);
+                }
+            });
+        }
+    }
+
+    private record Pair(long from, long to) {
+    }
+}
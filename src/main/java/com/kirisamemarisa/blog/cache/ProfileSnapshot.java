@@ -0,0 +1,44 @@
+package com.kirisamemarisa.blog.cache;
+
+import com.kirisamemarisa.blog.model.UserProfile;
+
+/**
+ * 用户资料的只读快照（昵称、头像、背景），供 UserProfileCache 缓存。
+ * 不持有 JPA 实体，跨线程、跨事务共享是安全的。
+ */
+public final class ProfileSnapshot {
+
+    private final Long userId;
+    private final String nickname;
+    private final String avatarUrl;
+    private final String backgroundUrl;
+
+    public ProfileSnapshot(Long userId, String nickname, String avatarUrl, String backgroundUrl) {
+        this.userId = userId;
+        this.nickname = nickname;
+        this.avatarUrl = avatarUrl;
+        this.backgroundUrl = backgroundUrl;
+    }
+
+    public static ProfileSnapshot of(UserProfile profile) {
+        if (profile == null) return null;
+        return new ProfileSnapshot(profile.getId(), profile.getNickname(),
+                profile.getAvatarUrl(), profile.getBackgroundUrl());
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getNickname() {
+        return nickname;
+    }
+
+    public String getAvatarUrl() {
+        return avatarUrl;
+    }
+
+    public String getBackgroundUrl() {
+        return backgroundUrl;
+    }
+}
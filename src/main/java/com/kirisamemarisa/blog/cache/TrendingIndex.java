@@ -0,0 +1,262 @@
+package com.kirisamemarisa.blog.cache;
+
+import com.kirisamemarisa.blog.repository.BlogPostRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 热门文章索引（按时间指数衰减的热度分排序）。
+ * 热度 = Σ 权重 × 2^(-(now - 事件时间) / 半衰期)。
+ * 实现上采用"前向衰减"：每个事件按 2^((事件时间 - 基准时间) / 半衰期) 放大后累加，
+ * 所有文章的分数随时间按同一比例衰减，相对顺序不变，因此跳表无需随时间重排，
+ * 只在有新事件时对单篇文章做一次删除 + 插入（O(log n)）。
+ * 放大系数过大时整体重设基准时间，防止 double 溢出。
+ * <p>
+ * 点赞部分另记一份（放大后的分数与赞数）：取消点赞时扣回平均每个赞当初的贡献，
+ * 扣减总量不会超过点赞本身累计的分数，不会吃掉浏览、评论带来的热度。
+ * 转发暂无写入入口，转发数只在启动重建时计入。
+ */
+@Component
+public class TrendingIndex {
+    private static final Logger logger = LoggerFactory.getLogger(TrendingIndex.class);
+
+    public static final double VIEW_WEIGHT = 1.0;
+    public static final double LIKE_WEIGHT = 3.0;
+    public static final double COMMENT_WEIGHT = 5.0;
+    public static final double REPOST_WEIGHT = 8.0;
+
+    // 放大后的指数超过该值（约 2^500）时重设基准时间
+    private static final double REBASE_EXPONENT = 500.0;
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingDouble(Entry::score).reversed()
+            .thenComparing(Entry::blogPostId, Comparator.reverseOrder());
+
+    private final BlogPostRepository blogPostRepository;
+    private final double halfLifeMillis;
+
+    // blogPostId -> 放大后的分数
+    private final Map<Long, Double> scores = new ConcurrentHashMap<>();
+    // 按分数降序排列的跳表
+    private final NavigableSet<Entry> ranking = new ConcurrentSkipListSet<>(ORDER);
+    // blogPostId -> 点赞部分（放大后的分数与赞数）
+    private final Map<Long, LikeTally> likes = new ConcurrentHashMap<>();
+    // 普通更新持读锁（彼此并发），重设基准时间持写锁
+    private final ReadWriteLock rebaseLock = new ReentrantReadWriteLock();
+
+    private volatile long epochMillis = System.currentTimeMillis();
+
+    public TrendingIndex(BlogPostRepository blogPostRepository,
+                         @Value("${blog.trending.half-life-hours:24}") double halfLifeHours) {
+        this.blogPostRepository = blogPostRepository;
+        this.halfLifeMillis = Math.max(0.1, halfLifeHours) * 3600_000d;
+    }
+
+    /**
+     * 启动时根据浏览量、点赞数、评论数、转发数重建索引（按文章发布时间衰减）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        try {
+            List<BlogPostRepository.TrendingSeed> seeds = blogPostRepository.findTrendingSeeds();
+            for (BlogPostRepository.TrendingSeed s : seeds) {
+                double weight = safe(s.getViewCount()) * VIEW_WEIGHT
+                        + safe(s.getLikeCount()) * LIKE_WEIGHT
+                        + safe(s.getCommentCount()) * COMMENT_WEIGHT
+                        + safe(s.getRepostCount()) * REPOST_WEIGHT;
+                if (weight <= 0) continue;
+                long createdMillis = toMillis(s.getCreatedAt());
+                add(s.getId(), weight, createdMillis);
+                seedLikes(s.getId(), (long) safe(s.getLikeCount()), createdMillis);
+            }
+            logger.info("热门文章索引重建完成：{} 篇，耗时 {} ms", scores.size(), System.currentTimeMillis() - start);
+        } catch (Exception ex) {
+            logger.warn("热门文章索引重建失败，将只统计启动后的新事件: {}", ex.toString());
+        }
+    }
+
+    public void onView(Long blogPostId) {
+        add(blogPostId, VIEW_WEIGHT, System.currentTimeMillis());
+    }
+
+    /**
+     * 点赞 / 取消点赞。取消时扣回平均每个赞的贡献（按点赞当时衰减后的权重），而不是按当前时刻的全额权重
+     */
+    public void onLike(Long blogPostId, boolean liked) {
+        if (blogPostId == null) return;
+        long now = System.currentTimeMillis();
+        rebaseIfNeeded(now);
+        rebaseLock.readLock().lock();
+        try {
+            if (liked) {
+                double delta = LIKE_WEIGHT * scale(now);
+                likes.merge(blogPostId, new LikeTally(delta, 1), LikeTally::plus);
+                apply(blogPostId, delta);
+                return;
+            }
+            double[] share = new double[1];
+            likes.computeIfPresent(blogPostId, (id, t) -> {
+                share[0] = t.scaled() / t.count();
+                return t.count() <= 1 ? null : new LikeTally(t.scaled() - share[0], t.count() - 1);
+            });
+            apply(blogPostId, -share[0]);
+        } finally {
+            rebaseLock.readLock().unlock();
+        }
+    }
+
+    public void onComment(Long blogPostId) {
+        add(blogPostId, COMMENT_WEIGHT, System.currentTimeMillis());
+    }
+
+    /**
+     * 文章被删除时移出索引
+     */
+    public void remove(Long blogPostId) {
+        if (blogPostId == null) return;
+        rebaseLock.readLock().lock();
+        try {
+            scores.computeIfPresent(blogPostId, (id, old) -> {
+                ranking.remove(new Entry(old, id));
+                return null;
+            });
+            likes.remove(blogPostId);
+        } finally {
+            rebaseLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按热度降序取一页文章 ID
+     */
+    public List<Long> page(int page, int size) {
+        List<Long> ids = new ArrayList<>(Math.max(0, size));
+        if (page < 0 || size <= 0) return ids;
+        long skip = (long) page * size;
+        Iterator<Entry> it = ranking.iterator();
+        while (skip > 0 && it.hasNext()) {
+            it.next();
+            skip--;
+        }
+        while (ids.size() < size && it.hasNext()) {
+            ids.add(it.next().blogPostId());
+        }
+        return ids;
+    }
+
+    public int size() {
+        return ranking.size();
+    }
+
+    /**
+     * 某篇文章当前（衰减到此刻）的热度
+     */
+    public double score(Long blogPostId) {
+        Double raw = blogPostId == null ? null : scores.get(blogPostId);
+        if (raw == null) return 0d;
+        return raw * Math.pow(2, -(System.currentTimeMillis() - epochMillis) / halfLifeMillis);
+    }
+
+    private void add(Long blogPostId, double weight, long eventMillis) {
+        if (blogPostId == null || weight == 0) return;
+        rebaseIfNeeded(eventMillis);
+        rebaseLock.readLock().lock();
+        try {
+            apply(blogPostId, weight * scale(eventMillis));
+        } finally {
+            rebaseLock.readLock().unlock();
+        }
+    }
+
+    // 启动重建时按发布时间记入点赞部分，与 add 使用同一放大系数
+    private void seedLikes(Long blogPostId, long likeCount, long eventMillis) {
+        if (blogPostId == null || likeCount <= 0) return;
+        rebaseLock.readLock().lock();
+        try {
+            likes.merge(blogPostId, new LikeTally(likeCount * LIKE_WEIGHT * scale(eventMillis), likeCount),
+                    LikeTally::plus);
+        } finally {
+            rebaseLock.readLock().unlock();
+        }
+    }
+
+    // 调用方持读锁：持锁后再读基准时间，保证放大系数与 scores 中的分数基于同一基准
+    private double scale(long eventMillis) {
+        return Math.pow(2, (eventMillis - epochMillis) / halfLifeMillis);
+    }
+
+    // 调用方持读锁：delta 为放大后的增量
+    private void apply(Long blogPostId, double delta) {
+        if (delta == 0) return;
+        scores.compute(blogPostId, (id, old) -> {
+            // 不在榜单上的文章不因扣分而加入
+            if (old == null && delta <= 0) return null;
+            if (old != null) ranking.remove(new Entry(old, id));
+            // 扣减不超过点赞部分，这里只兜住浮点误差
+            double next = Math.max(0d, (old == null ? 0d : old) + delta);
+            ranking.add(new Entry(next, id));
+            return next;
+        });
+    }
+
+    private void rebaseIfNeeded(long eventMillis) {
+        if ((eventMillis - epochMillis) / halfLifeMillis > REBASE_EXPONENT) {
+            rebase(eventMillis);
+        }
+    }
+
+    /**
+     * 把基准时间挪到 newEpoch，所有分数按同一比例缩小（顺序不变）
+     */
+    private void rebase(long newEpoch) {
+        rebaseLock.writeLock().lock();
+        try {
+            if ((newEpoch - epochMillis) / halfLifeMillis <= REBASE_EXPONENT) return;
+            double factor = Math.pow(2, -(newEpoch - epochMillis) / halfLifeMillis);
+            ranking.clear();
+            scores.replaceAll((id, v) -> v * factor);
+            likes.replaceAll((id, t) -> new LikeTally(t.scaled() * factor, t.count()));
+            scores.forEach((id, v) -> ranking.add(new Entry(v, id)));
+            epochMillis = newEpoch;
+            logger.info("热门文章索引已重设基准时间，共 {} 篇", scores.size());
+        } finally {
+            rebaseLock.writeLock().unlock();
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        if (time == null) return System.currentTimeMillis();
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static double safe(Number n) {
+        return n == null ? 0d : n.doubleValue();
+    }
+
+    private record Entry(double score, Long blogPostId) {
+    }
+
+    private record LikeTally(double scaled, long count) {
+        LikeTally plus(LikeTally other) {
+            return new LikeTally(scaled + other.scaled, count + other.count);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.kirisamemarisa.blog.cache;
+
+import com.kirisamemarisa.blog.model.UserProfile;
+import com.kirisamemarisa.blog.repository.UserProfileRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户资料（昵称 / 头像 / 背景）读穿透缓存，按用户 ID 缓存 ProfileSnapshot。
+ * 没有资料的用户也会被缓存（负缓存），避免反复查库。
+ * 资料修改后由 UserServiceImpl 调用 invalidate：立即失效一次，事务提交后再失效一次，
+ * 防止提交前有请求把旧数据重新加载进缓存。
+ */
+@Component
+public class UserProfileCache {
+
+    private final UserProfileRepository userProfileRepository;
+    private final BoundedCache<Long, ProfileSnapshot> cache;
+
+    public UserProfileCache(UserProfileRepository userProfileRepository,
+                            @Value("${blog.cache.user-profile.max-size:10000}") int maxSize,
+                            @Value("${blog.cache.user-profile.ttl-seconds:600}") long ttlSeconds) {
+        this.userProfileRepository = userProfileRepository;
+        this.cache = new BoundedCache<>(maxSize, ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 获取单个用户资料，不存在返回 null
+     */
+    public ProfileSnapshot get(Long userId) {
+        if (userId == null) return null;
+        BoundedCache.Cached<ProfileSnapshot> hit = cache.lookup(userId);
+        if (hit != null) return hit.value();
+        long stamp = cache.loadStamp(userId);
+        ProfileSnapshot snapshot = ProfileSnapshot.of(userProfileRepository.findById(userId).orElse(null));
+        cache.put(userId, snapshot, stamp);
+        return snapshot;
+    }
+
+    /**
+     * 批量获取：未命中的部分一次 findAllById 查回；结果中只包含有资料的用户
+     */
+    public Map<Long, ProfileSnapshot> getAll(Collection<Long> userIds) {
+        Map<Long, ProfileSnapshot> result = new HashMap<>();
+        if (userIds == null || userIds.isEmpty()) return result;
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long id : userIds) {
+            if (id == null || result.containsKey(id) || missing.contains(id)) continue;
+            BoundedCache.Cached<ProfileSnapshot> hit = cache.lookup(id);
+            if (hit == null) {
+                missing.add(id);
+            } else if (hit.value() != null) {
+                result.put(id, hit.value());
+            }
+        }
+        if (missing.isEmpty()) return result;
+        Map<Long, Long> stamps = cache.loadStamps(missing);
+        for (UserProfile profile : userProfileRepository.findAllById(missing)) {
+            ProfileSnapshot snapshot = ProfileSnapshot.of(profile);
+            result.put(snapshot.getUserId(), snapshot);
+        }
+        for (Long id : missing) {
+            cache.put(id, result.get(id), stamps.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * 用户资料变更后调用
+     */
+    public void invalidate(Long userId) {
+        if (userId == null) return;
+        cache.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(userId);
+                }
+            });
+        }
+    }
+
+    public Map<String, Object> stats() {
+        return cache.stats();
+    }
+}
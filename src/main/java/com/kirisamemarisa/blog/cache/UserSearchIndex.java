@@ -0,0 +1,444 @@
+package com.kirisamemarisa.blog.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 用户名 / 昵称的进程内子串搜索索引（二元组倒排）。
+ * <p>
+ * 文本先做 NFKC 归一化并转小写（全角字母数字与半角等价，和数据库 LIKE 的大小写不敏感一致），
+ * 每相邻两个字符组成一个二元组，倒排表记录包含该二元组的用户序号（升序 int 数组）。
+ * 中文昵称按字切分同样适用，不需要分词。
+ * 查询时对查询词的所有二元组求交集，再用 contains 校验真实子串关系，得到精确命中数；
+ * 单字查询没有二元组，直接顺序扫描全部文本。
+ * 排序：完全相等 → 前缀 → 包含，同级按文本长度短的在前，再按注册先后。
+ * 为了给出精确总数，每个命中都要校验并参与排序：命中少的查询在毫秒以内，命中数十万的宽泛查询在数十毫秒量级
+ * （100 万用户的实测见测试目录下的 UserSearchIndexBenchmark）。
+ * <p>
+ * 启动时一次流式查询全量构建；本节点上的注册、修改资料在事务提交后更新。构建期间的更新同时记入待重放列表，
+ * 新索引扫描完成后重放再替换，避免丢失扫描开始后提交的变更。构建完成前 search 返回 null，由调用方回退到数据库查询。
+ * <p>
+ * 其他节点上的变更不会通知到这里：每 catch-up-interval-ms 按 ID 增量扫描一次新注册的用户，
+ * 每 rebuild-interval-ms 全量重建一次（补上其他节点修改的用户名 / 昵称），重建期间旧索引照常提供查询。
+ */
+@Component
+public class UserSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchIndex.class);
+    private static final String SCAN_SQL =
+            "select u.id, u.username, p.nickname from `user` u left join user_profile p on p.user_id = u.id";
+    private static final String CATCH_UP_SQL = SCAN_SQL + " where u.id > ? order by u.id";
+
+    public enum Field { USERNAME, NICKNAME }
+
+    /**
+     * 一页命中的用户 ID（已排序）以及精确总数
+     */
+    public record Hits(List<Long> userIds, long total) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private State state = new State();
+    // 构建期间收到的更新，新索引替换前重放；不在构建时为 null
+    private List<Object[]> pending;
+    private volatile boolean ready;
+    // 增量扫描的水位：扫描（而不是本节点的 put）见过的最大用户 ID
+    private volatile long scannedUpTo;
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder caughtUp = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    public UserSearchIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (!building.compareAndSet(false, true)) return;
+        try {
+            rebuild();
+        } finally {
+            building.set(false);
+        }
+    }
+
+    /**
+     * 定期全量重建，补上其他节点修改的用户名 / 昵称；首次构建失败时也在这里重试
+     */
+    @Scheduled(fixedDelayString = "${blog.cache.user-search.rebuild-interval-ms:1800000}",
+            initialDelayString = "${blog.cache.user-search.rebuild-interval-ms:1800000}")
+    public void scheduledRebuild() {
+        build();
+    }
+
+    /**
+     * 增量收录水位之后注册的用户（包括在其他节点注册的）
+     */
+    @Scheduled(fixedDelayString = "${blog.cache.user-search.catch-up-interval-ms:30000}")
+    public void catchUp() {
+        if (!ready || building.get()) return;
+        long[] max = {scannedUpTo};
+        int[] count = new int[1];
+        try {
+            jdbcTemplate.query(CATCH_UP_SQL, rs -> {
+                long id = rs.getLong(1);
+                apply(id, rs.getString(2), rs.getString(3));
+                max[0] = Math.max(max[0], id);
+                count[0]++;
+            }, scannedUpTo);
+        } catch (RuntimeException ex) {
+            logger.warn("用户搜索索引增量扫描失败: {}", ex.toString());
+        }
+        scannedUpTo = Math.max(scannedUpTo, max[0]);
+        caughtUp.add(count[0]);
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        State fresh = new State();
+        long[] max = new long[1];
+        try {
+            jdbcTemplate.query(SCAN_SQL, rs -> {
+                long id = rs.getLong(1);
+                fresh.put(id, rs.getString(2), rs.getString(3));
+                max[0] = Math.max(max[0], id);
+            });
+        } catch (RuntimeException ex) {
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.warn(ready ? "用户搜索索引重建失败，继续使用旧索引: {}" : "用户搜索索引构建失败，搜索将继续使用数据库查询: {}",
+                    ex.toString());
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Object[] u : pending) {
+                fresh.put((Long) u[0], (String) u[1], (String) u[2]);
+            }
+            pending = null;
+            state = fresh;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scannedUpTo = Math.max(scannedUpTo, max[0]);
+        rebuilds.increment();
+        logger.info("用户搜索索引构建完成：{} 个用户，耗时 {} ms", fresh.docCount, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 新增或更新一个用户的用户名与昵称（事务提交后生效）
+     */
+    public void put(Long userId, String username, String nickname) {
+        if (userId == null) return;
+        afterCommit(() -> {
+            apply(userId, username, nickname);
+            updates.increment();
+        });
+    }
+
+    private void apply(Long userId, String username, String nickname) {
+        lock.writeLock().lock();
+        try {
+            state.put(userId, username, nickname);
+            if (pending != null) pending.add(new Object[]{userId, username, nickname});
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按字段做子串搜索，返回 [offset, offset + limit) 范围内的用户 ID 与命中总数；索引未就绪时返回 null
+     */
+    public Hits search(Field field, String term, int offset, int limit) {
+        if (!ready) return null;
+        searches.increment();
+        String q = normalize(term);
+        if (q == null || limit <= 0) return new Hits(List.of(), 0);
+        lock.readLock().lock();
+        try {
+            return state.search(field, q, Math.max(0, offset), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            m.put("ready", ready);
+            m.put("users", state.docCount);
+            m.put("usernameGrams", state.usernameGrams.size());
+            m.put("nicknameGrams", state.nicknameGrams.size());
+            m.put("postingBytes", state.postingBytes());
+        } finally {
+            lock.readLock().unlock();
+        }
+        m.put("searches", searches.sum());
+        m.put("updates", updates.sum());
+        m.put("caughtUp", caughtUp.sum());
+        m.put("rebuilds", rebuilds.sum());
+        m.put("scannedUpTo", scannedUpTo);
+        return m;
+    }
+
+    private static String normalize(String s) {
+        if (s == null) return null;
+        String n = Normalizer.normalize(s.trim(), Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        return n.isEmpty() ? null : n;
+    }
+
+    private static int gram(char a, char b) {
+        return (a << 16) | b;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 索引数据本身，读写由外层读写锁保护
+     */
+    private static final class State {
+        // 用户序号按加入顺序分配，倒排表里存序号而不是 Long ID，每项只占 4 字节
+        private final Map<Long, Integer> ordinals = new HashMap<>();
+        private long[] userIds = new long[1024];
+        private String[] usernames = new String[1024];
+        private String[] nicknames = new String[1024];
+        private int docCount;
+        private final Map<Integer, Postings> usernameGrams = new HashMap<>();
+        private final Map<Integer, Postings> nicknameGrams = new HashMap<>();
+
+        void put(long userId, String username, String nickname) {
+            String u = normalize(username);
+            String n = normalize(nickname);
+            Integer ord = ordinals.get(userId);
+            if (ord == null) {
+                ord = docCount++;
+                if (ord == userIds.length) {
+                    int cap = userIds.length << 1;
+                    userIds = Arrays.copyOf(userIds, cap);
+                    usernames = Arrays.copyOf(usernames, cap);
+                    nicknames = Arrays.copyOf(nicknames, cap);
+                }
+                userIds[ord] = userId;
+                ordinals.put(userId, ord);
+            }
+            usernames[ord] = reindex(usernameGrams, ord, usernames[ord], u);
+            nicknames[ord] = reindex(nicknameGrams, ord, nicknames[ord], n);
+        }
+
+        private static String reindex(Map<Integer, Postings> grams, int ord, String oldText, String newText) {
+            if (oldText != null && oldText.equals(newText)) return newText;
+            if (oldText != null) {
+                for (int i = 0; i + 1 < oldText.length(); i++) {
+                    int g = gram(oldText.charAt(i), oldText.charAt(i + 1));
+                    Postings p = grams.get(g);
+                    if (p != null && p.remove(ord) && p.size == 0) grams.remove(g);
+                }
+            }
+            if (newText != null) {
+                for (int i = 0; i + 1 < newText.length(); i++) {
+                    grams.computeIfAbsent(gram(newText.charAt(i), newText.charAt(i + 1)), k -> new Postings())
+                            .add(ord);
+                }
+            }
+            return newText;
+        }
+
+        Hits search(Field field, String q, int offset, int limit) {
+            String[] texts = field == Field.USERNAME ? usernames : nicknames;
+            Map<Integer, Postings> grams = field == Field.USERNAME ? usernameGrams : nicknameGrams;
+            TopK top = new TopK((int) Math.min((long) offset + limit, Integer.MAX_VALUE - 8));
+            long total = 0;
+            if (q.length() == 1) {
+                char c = q.charAt(0);
+                for (int ord = 0; ord < docCount; ord++) {
+                    String t = texts[ord];
+                    if (t != null && t.indexOf(c) >= 0) {
+                        total++;
+                        top.offer(rankKey(t, q, ord));
+                    }
+                }
+            } else {
+                int[] candidates = candidates(grams, q);
+                for (int ord : candidates) {
+                    String t = texts[ord];
+                    // 两个字的查询词交集即精确结果，更长的需要确认二元组连续出现
+                    if (t != null && (q.length() == 2 || t.contains(q))) {
+                        total++;
+                        top.offer(rankKey(t, q, ord));
+                    }
+                }
+            }
+            long[] keys = top.sorted();
+            List<Long> ids = new ArrayList<>(Math.max(0, Math.min(limit, keys.length - offset)));
+            for (int i = offset; i < keys.length; i++) {
+                ids.add(userIds[(int) keys[i]]);
+            }
+            return new Hits(ids, total);
+        }
+
+        /**
+         * 查询词全部二元组倒排表的交集，从最短的表开始逐个过滤
+         */
+        private static int[] candidates(Map<Integer, Postings> grams, String q) {
+            List<Postings> lists = new ArrayList<>();
+            for (int i = 0; i + 1 < q.length(); i++) {
+                Postings p = grams.get(gram(q.charAt(i), q.charAt(i + 1)));
+                if (p == null) return new int[0];
+                if (!lists.contains(p)) lists.add(p);
+            }
+            lists.sort((a, b) -> Integer.compare(a.size, b.size));
+            Postings first = lists.get(0);
+            int[] result = Arrays.copyOf(first.ids, first.size);
+            int n = result.length;
+            for (int li = 1; li < lists.size() && n > 0; li++) {
+                Postings p = lists.get(li);
+                int kept = 0;
+                int from = 0;
+                for (int i = 0; i < n; i++) {
+                    int pos = Arrays.binarySearch(p.ids, from, p.size, result[i]);
+                    if (pos >= 0) {
+                        result[kept++] = result[i];
+                        from = pos + 1;
+                    } else {
+                        from = -pos - 1;
+                    }
+                }
+                n = kept;
+            }
+            return Arrays.copyOf(result, n);
+        }
+
+        // 排序键：高位为匹配级别（0 完全相等 / 1 前缀 / 2 包含），中间为文本长度，低 32 位为序号
+        private static long rankKey(String text, String q, int ord) {
+            long tier = text.equals(q) ? 0 : text.startsWith(q) ? 1 : 2;
+            long len = Math.min(text.length(), 0x0FFF_FFFF);
+            return (tier << 60) | (len << 32) | ord;
+        }
+
+        long postingBytes() {
+            long bytes = 0;
+            for (Postings p : usernameGrams.values()) bytes += (long) p.ids.length * Integer.BYTES;
+            for (Postings p : nicknameGrams.values()) bytes += (long) p.ids.length * Integer.BYTES;
+            return bytes;
+        }
+    }
+
+    /**
+     * 升序 int 倒排表；新用户序号总是最大的，add 基本都是追加
+     */
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int ord) {
+            int pos = size == 0 || ids[size - 1] < ord ? -size - 1 : Arrays.binarySearch(ids, 0, size, ord);
+            if (pos >= 0) return;
+            pos = -pos - 1;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size << 1);
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = ord;
+            size++;
+        }
+
+        boolean remove(int ord) {
+            int pos = Arrays.binarySearch(ids, 0, size, ord);
+            if (pos < 0) return false;
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            size--;
+            return true;
+        }
+    }
+
+    /**
+     * 保留最小的 k 个排序键（大顶堆），避免对全部命中排序；k 最多 65536，更深的分页只返回总数
+     */
+    private static final class TopK {
+        private final long[] heap;
+        private int size;
+
+        TopK(int k) {
+            this.heap = new long[Math.max(0, Math.min(k, 1 << 16))];
+        }
+
+        void offer(long key) {
+            if (heap.length == 0) return;
+            if (size < heap.length) {
+                int i = size++;
+                heap[i] = key;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (heap[parent] >= heap[i]) break;
+                    swap(i, parent);
+                    i = parent;
+                }
+            } else if (key < heap[0]) {
+                heap[0] = key;
+                int i = 0;
+                while (true) {
+                    int l = 2 * i + 1, r = l + 1, largest = i;
+                    if (l < size && heap[l] > heap[largest]) largest = l;
+                    if (r < size && heap[r] > heap[largest]) largest = r;
+                    if (largest == i) break;
+                    swap(i, largest);
+                    i = largest;
+                }
+            }
+        }
+
+        long[] sorted() {
+            long[] out = Arrays.copyOf(heap, size);
+            Arrays.sort(out);
+            return out;
+        }
+
+        private void swap(int a, int b) {
+            long t = heap[a];
+            heap[a] = heap[b];
+            heap[b] = t;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.kirisamemarisa.blog.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 简单的 HyperLogLog 基数估计（去重计数）。
+ * 精度 p=12，共 4096 个寄存器，每个 1 字节，序列化后固定 4KB，标准误差约 1.6%。
+ * 非线程安全，调用方需自行同步。
+ */
+public final class HyperLogLog {
+
+    public static final int PRECISION = 12;
+    public static final int REGISTER_COUNT = 1 << PRECISION;
+
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[REGISTER_COUNT];
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    /**
+     * 从序列化字节恢复；为空或长度不符时返回空草图
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != REGISTER_COUNT) {
+            return new HyperLogLog();
+        }
+        return new HyperLogLog(Arrays.copyOf(bytes, REGISTER_COUNT));
+    }
+
+    public byte[] toBytes() {
+        return Arrays.copyOf(registers, REGISTER_COUNT);
+    }
+
+    public void offer(String value) {
+        if (value == null) return;
+        offerHash(hash64(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public void offerHash(long hash) {
+        int index = (int) (hash >>> (64 - PRECISION));
+        // 低位补一个 1，保证 rank 不超过 64 - p + 1
+        long w = (hash << PRECISION) | (1L << (PRECISION - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(w) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * 合并另一个草图（逐寄存器取最大值）
+     */
+    public void merge(HyperLogLog other) {
+        if (other == null) return;
+        for (int i = 0; i < REGISTER_COUNT; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) zeros++;
+        }
+        double raw = ALPHA * REGISTER_COUNT * REGISTER_COUNT / sum;
+        // 小基数时改用线性计数
+        if (raw <= 2.5 * REGISTER_COUNT && zeros > 0) {
+            raw = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeros);
+        }
+        return Math.round(raw);
+    }
+
+    // FNV-1a 64 位后再做一次 MurmurHash3 fmix64 混淆，让高位分布足够均匀
+    private static long hash64(byte[] data) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : data) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,46 @@
+package com.kirisamemarisa.blog.common;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 游标分页（keyset）的续页令牌：记录上一页最后一条的 (createdAt, id)。
+ * 对外是不透明的 Base64URL 字符串，前端原样回传即可。
+ */
+public record PageCursor(LocalDateTime createdAt, Long id) {
+
+    /**
+     * Instant 类型的时间列（如私信）按 UTC 存进游标
+     */
+    public static PageCursor of(Instant createdAt, Long id) {
+        return new PageCursor(LocalDateTime.ofInstant(createdAt, ZoneOffset.UTC), id);
+    }
+
+    public Instant createdAtInstant() {
+        return createdAt.toInstant(ZoneOffset.UTC);
+    }
+
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析续页令牌；为空表示第一页，返回 null；格式不对抛 BusinessException
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            if (sep <= 0) throw new BusinessException("cursor 无效");
+            return new PageCursor(LocalDateTime.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            throw new BusinessException("cursor 无效");
+        }
+    }
+}
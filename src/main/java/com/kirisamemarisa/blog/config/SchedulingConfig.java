@@ -0,0 +1,12 @@
+package com.kirisamemarisa.blog.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 开启 @Scheduled 定时任务（浏览量回写等后台任务）。
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -44,14 +44,36 @@ public class BlogPostController {
         return new ApiResponse<>(200, "获取成功", dto);
     }
 
+    /**
+     * 文章列表。默认按页码分页；传 mode=cursor（或带上 cursor）时改用游标分页：
+     * 返回 nextCursor，下一页原样回传 cursor 即可，withTotal=true 时才计算总数
+     */
     @GetMapping
-    public ApiResponse<PageResult<BlogPostDTO>> list(@RequestParam(defaultValue = "0") int page,
-                                                     @RequestParam(defaultValue = "10") int size,
-                                                     @RequestParam(required = false) Long currentUserId) {
+    public ApiResponse<?> list(@RequestParam(defaultValue = "0") int page,
+                               @RequestParam(defaultValue = "10") int size,
+                               @RequestParam(required = false) Long currentUserId,
+                               @RequestParam(required = false) String mode,
+                               @RequestParam(required = false) String cursor,
+                               @RequestParam(defaultValue = "false") boolean withTotal) {
+        if (cursor != null || "cursor".equalsIgnoreCase(mode)) {
+            CursorPageResult<BlogPostDTO> result = blogPostService.cursorList(cursor, size, withTotal, currentUserId);
+            return new ApiResponse<>(200, "获取成功", result);
+        }
         PageResult<BlogPostDTO> result = blogPostService.pageList(page, size, currentUserId);
         return new ApiResponse<>(200, "获取成功", result);
     }
 
+    /**
+     * 热门文章：按浏览、点赞、评论、转发的时间衰减热度排序
+     */
+    @GetMapping("/trending")
+    public ApiResponse<PageResult<BlogPostDTO>> trending(@RequestParam(defaultValue = "0") int page,
+                                                         @RequestParam(defaultValue = "10") int size,
+                                                         @RequestParam(required = false) Long currentUserId) {
+        PageResult<BlogPostDTO> result = blogPostService.pageTrending(page, size, currentUserId);
+        return new ApiResponse<>(200, "获取成功", result);
+    }
+
     @PostMapping("/{id}/like")
     public ApiResponse<Boolean> toggleLike(@PathVariable Long id,
                                            @RequestParam Long userId) {
@@ -63,11 +85,22 @@ public class BlogPostController {
         return blogPostService.addComment(dto);
     }
 
+    /**
+     * 文章评论。分页方式同文章列表：mode=cursor 或带 cursor 时走游标分页
+     */
     @GetMapping("/{id}/comments")
-    public ApiResponse<PageResult<CommentDTO>> comments(@PathVariable Long id,
-                                                        @RequestParam(defaultValue = "0") int page,
-                                                        @RequestParam(defaultValue = "10") int size,
-                                                        @RequestParam(required = false) Long currentUserId) {
+    public ApiResponse<?> comments(@PathVariable Long id,
+                                   @RequestParam(defaultValue = "0") int page,
+                                   @RequestParam(defaultValue = "10") int size,
+                                   @RequestParam(required = false) Long currentUserId,
+                                   @RequestParam(required = false) String mode,
+                                   @RequestParam(required = false) String cursor,
+                                   @RequestParam(defaultValue = "false") boolean withTotal) {
+        if (cursor != null || "cursor".equalsIgnoreCase(mode)) {
+            CursorPageResult<CommentDTO> result =
+                    blogPostService.cursorComments(id, cursor, size, withTotal, currentUserId);
+            return new ApiResponse<>(200, "获取成功", result);
+        }
         PageResult<CommentDTO> result = blogPostService.pageComments(id, page, size, currentUserId);
         return new ApiResponse<>(200, "获取成功", result);
     }
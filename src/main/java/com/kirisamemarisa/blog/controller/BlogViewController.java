@@ -2,10 +2,18 @@ package com.kirisamemarisa.blog.controller;
 
 import com.kirisamemarisa.blog.common.ApiResponse;
 import com.kirisamemarisa.blog.dto.BlogViewRecordCreateDTO;
+import com.kirisamemarisa.blog.dto.BlogViewSeriesPointDTO;
 import com.kirisamemarisa.blog.dto.BlogViewStatsDTO;
 import com.kirisamemarisa.blog.service.BlogViewService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/blogview")
 public class BlogViewController {
@@ -17,18 +25,49 @@ public class BlogViewController {
     }
 
     /**
-     * 记录一次浏览：前端在用户进入博客详情页时调用
+     * 记录一次浏览：前端在用户进入博客详情页时调用。
+     * 未登录且前端没有传 visitorId 时，用 IP + User-Agent 的摘要作为匿名访客指纹参与去重。
      */
     @PostMapping("/record")
-    public ApiResponse<BlogViewStatsDTO> recordView(@RequestBody BlogViewRecordCreateDTO dto) {
+    public ApiResponse<BlogViewStatsDTO> recordView(@RequestBody BlogViewRecordCreateDTO dto,
+                                                    HttpServletRequest request) {
+        if (dto != null && dto.getUserId() == null
+                && (dto.getVisitorId() == null || dto.getVisitorId().isBlank())) {
+            dto.setVisitorId(fingerprint(request));
+        }
         return blogViewService.recordView(dto);
     }
 
+    private String fingerprint(HttpServletRequest request) {
+        String ip = request.getHeader("X-Forwarded-For");
+        if (ip == null || ip.isBlank()) {
+            ip = request.getRemoteAddr();
+        } else {
+            ip = ip.split(",")[0].trim();
+        }
+        String ua = request.getHeader("User-Agent");
+        String raw = ip + "|" + (ua == null ? "" : ua);
+        return DigestUtils.md5DigestAsHex(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
     /**
-     * 获取某篇博客当前浏览量
+     * 获取某篇博客当前浏览量与去重访客数
      */
     @GetMapping("/{blogPostId}")
     public ApiResponse<BlogViewStatsDTO> getStats(@PathVariable Long blogPostId) {
         return blogViewService.getStats(blogPostId);
     }
+
+    /**
+     * 获取某篇博客的浏览量时间序列（来自小时/天汇总表，不扫描浏览明细，当前小时尚未汇总）。
+     * 例：GET /api/blogview/1/series?granularity=day&from=2025-01-01T00:00:00&to=2025-01-31T00:00:00
+     */
+    @GetMapping("/{blogPostId}/series")
+    public ApiResponse<List<BlogViewSeriesPointDTO>> getSeries(
+            @PathVariable Long blogPostId,
+            @RequestParam(defaultValue = "hour") String granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return blogViewService.getSeries(blogPostId, granularity, from, to);
+    }
 }
@@ -0,0 +1,133 @@
+package com.kirisamemarisa.blog.controller;
+
+import com.kirisamemarisa.blog.common.ApiResponse;
+import com.kirisamemarisa.blog.common.JwtUtil;
+import com.kirisamemarisa.blog.dto.EventStreamStateDTO;
+import com.kirisamemarisa.blog.dto.TopicUpdateDTO;
+import com.kirisamemarisa.blog.events.MessageEventPublisher;
+import com.kirisamemarisa.blog.events.UserEventStream;
+import com.kirisamemarisa.blog.model.User;
+import com.kirisamemarisa.blog.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 用户级多路复用事件流：一个连接接收通知、未读数、已订阅会话的私信事件与输入中提示。
+ * 前端：GET /api/events/stream?topics=notifications,conversation:12
+ * 连接建立后先收到 ready 事件（含 streamId），之后用 PUT /api/events/stream/{streamId}/topics 增删会话主题。
+ */
+@RestController
+@RequestMapping("/api/events")
+public class EventStreamController {
+    private static final Logger logger = LoggerFactory.getLogger(EventStreamController.class);
+
+    private final UserRepository userRepository;
+    private final UserEventStream userEventStream;
+    private final MessageEventPublisher messageEventPublisher;
+
+    public EventStreamController(UserRepository userRepository, UserEventStream userEventStream,
+                                 MessageEventPublisher messageEventPublisher) {
+        this.userRepository = userRepository;
+        this.userEventStream = userEventStream;
+        this.messageEventPublisher = messageEventPublisher;
+    }
+
+    private User resolveCurrentUser(UserDetails principal, Long headerUserId, String authorizationHeader, String token) {
+        if (principal != null)
+            return userRepository.findByUsername(principal.getUsername());
+        if (headerUserId != null)
+            return userRepository.findById(headerUserId).orElse(null);
+        if ((token == null || token.isEmpty()) && authorizationHeader != null && authorizationHeader.startsWith("Bearer "))
+            token = authorizationHeader.substring("Bearer ".length()).trim();
+        if (token != null && !token.isEmpty()) {
+            Long uid = JwtUtil.getUserIdFromToken(token);
+            if (uid != null)
+                return userRepository.findById(uid).orElse(null);
+        }
+        return null;
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(name = "topics", required = false) String topics,
+                             @RequestHeader(name = "X-User-Id", required = false) Long headerUserId,
+                             @RequestHeader(name = "Authorization", required = false) String authorization,
+                             @RequestParam(name = "token", required = false) String token,
+                             @RequestParam(name = "lastEventId", required = false) String lastEventIdParam,
+                             @RequestHeader(name = "Last-Event-ID", required = false) String lastEventIdHeader,
+                             @AuthenticationPrincipal UserDetails principal) {
+        User me = resolveCurrentUser(principal, headerUserId, authorization, token);
+        if (me == null) {
+            logger.info("Unauthenticated event stream subscribe attempt");
+            return failed(new ApiResponse<>(401, "未认证", null));
+        }
+        Set<String> initial = new LinkedHashSet<>();
+        if (topics == null || topics.isBlank()) {
+            initial.add(UserEventStream.TOPIC_NOTIFICATIONS);
+        } else {
+            for (String t : topics.split(",")) {
+                String topic = t.trim();
+                if (topic.isEmpty()) continue;
+                if (!UserEventStream.isValidTopic(topic))
+                    return failed(new ApiResponse<>(400, "无效的订阅主题: " + topic, null));
+                initial.add(topic);
+            }
+        }
+        String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+        return userEventStream.subscribe(me.getId(), lastEventId, initial);
+    }
+
+    @PutMapping("/stream/{streamId}/topics")
+    public ApiResponse<EventStreamStateDTO> updateTopics(@PathVariable String streamId,
+                                                         @RequestBody TopicUpdateDTO body,
+                                                         @RequestHeader(name = "X-User-Id", required = false) Long headerUserId,
+                                                         @RequestHeader(name = "Authorization", required = false) String authorization,
+                                                         @AuthenticationPrincipal UserDetails principal) {
+        User me = resolveCurrentUser(principal, headerUserId, authorization, null);
+        if (me == null) return new ApiResponse<>(401, "未认证", null);
+        List<String> add = body != null && body.getAdd() != null ? body.getAdd() : new ArrayList<>();
+        List<String> remove = body != null && body.getRemove() != null ? body.getRemove() : new ArrayList<>();
+        for (String topic : add) {
+            if (!UserEventStream.isValidTopic(topic))
+                return new ApiResponse<>(400, "无效的订阅主题: " + topic, null);
+        }
+        EventStreamStateDTO state = userEventStream.updateTopics(me.getId(), streamId, add, remove);
+        if (state == null) return new ApiResponse<>(404, "事件流不存在或已断开", null);
+        return new ApiResponse<>(200, "已更新", state);
+    }
+
+    /**
+     * 通知对方“正在输入”，对方订阅了与我的会话时才会收到
+     */
+    @PostMapping("/typing/{otherId}")
+    public ApiResponse<Void> typing(@PathVariable Long otherId,
+                                    @RequestHeader(name = "X-User-Id", required = false) Long headerUserId,
+                                    @RequestHeader(name = "Authorization", required = false) String authorization,
+                                    @AuthenticationPrincipal UserDetails principal) {
+        User me = resolveCurrentUser(principal, headerUserId, authorization, null);
+        if (me == null) return new ApiResponse<>(401, "未认证", null);
+        if (me.getId().equals(otherId)) return new ApiResponse<>(400, "不能给自己发送输入提示", null);
+        messageEventPublisher.publishTyping(me.getId(), otherId);
+        return new ApiResponse<>(200, "OK", null);
+    }
+
+    // 返回一个立即结束的 emitter（前端识别失败回退轮询）
+    private SseEmitter failed(ApiResponse<?> error) {
+        SseEmitter failed = new SseEmitter();
+        try {
+            failed.send(SseEmitter.event().name("error").data(error));
+        } catch (Exception ignored) {
+        }
+        failed.complete();
+        return failed;
+    }
+}
@@ -2,15 +2,18 @@ package com.kirisamemarisa.blog.controller;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.kirisamemarisa.blog.cache.ProfileSnapshot;
+import com.kirisamemarisa.blog.cache.UserProfileCache;
 import com.kirisamemarisa.blog.common.ApiResponse;
+import com.kirisamemarisa.blog.dto.FriendRecommendationDTO;
 import com.kirisamemarisa.blog.dto.UserSimpleDTO;
 import com.kirisamemarisa.blog.dto.PageResult;
 import com.kirisamemarisa.blog.mapper.UserSimpleMapper;
-import com.kirisamemarisa.blog.repository.UserProfileRepository;
 import com.kirisamemarisa.blog.model.User;
 import com.kirisamemarisa.blog.model.UserProfile;
 import com.kirisamemarisa.blog.repository.UserRepository;
 import com.kirisamemarisa.blog.service.FollowService;
+import com.kirisamemarisa.blog.service.FriendRecommendationService;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -28,13 +31,15 @@ public class FollowController {
 
     private final UserRepository userRepository;
     private final FollowService followService;
-    private final UserProfileRepository userProfileRepository;
+    private final UserProfileCache userProfileCache;
+    private final FriendRecommendationService recommendationService;
 
     public FollowController(UserRepository userRepository, FollowService followService,
-            UserProfileRepository userProfileRepository) {
+            UserProfileCache userProfileCache, FriendRecommendationService recommendationService) {
         this.userRepository = userRepository;
         this.followService = followService;
-        this.userProfileRepository = userProfileRepository;
+        this.userProfileCache = userProfileCache;
+        this.recommendationService = recommendationService;
     }
 
     private User resolveCurrentUser(UserDetails principal, Long headerUserId) {
@@ -148,17 +153,46 @@ public class FollowController {
         if (me == null) {
             return new ApiResponse<>(401, "未认证", null);
         }
-        List<User> followers = followService.listFollowers(me);
-        List<User> following = followService.listFollowing(me);
-        // compute mutuals by id
-        java.util.Set<Long> followingIds = following.stream().map(User::getId).collect(java.util.stream.Collectors.toSet());
-        List<UserSimpleDTO> dtoList = followers.stream()
-                .filter(u -> followingIds.contains(u.getId()))
-                .map(u -> {
-                    com.kirisamemarisa.blog.model.UserProfile profile = userProfileRepository.findById(u.getId()).orElse(null);
-                    return UserSimpleMapper.INSTANCE.toDTO(u, profile);
-                })
+        List<User> friends = followService.listFriends(me);
+        java.util.Map<Long, ProfileSnapshot> profiles = userProfileCache.getAll(friends.stream().map(User::getId).toList());
+        List<UserSimpleDTO> dtoList = friends.stream()
+                .map(u -> UserSimpleMapper.INSTANCE.toDTO(u, profiles.get(u.getId())))
                 .toList();
         return new ApiResponse<>(200, "获取成功", dtoList);
     }
+
+    @GetMapping("/friends/mutual/{otherId}")
+    public ApiResponse<List<UserSimpleDTO>> mutualFriends(@PathVariable Long otherId,
+            @RequestHeader(name = "X-User-Id", required = false) Long headerUserId,
+            @AuthenticationPrincipal UserDetails principal) {
+        User me = resolveCurrentUser(principal, headerUserId);
+        if (me == null) {
+            return new ApiResponse<>(401, "未认证", null);
+        }
+        User other = userRepository.findById(otherId).orElse(null);
+        if (other == null) {
+            return new ApiResponse<>(404, "用户不存在", null);
+        }
+        List<User> mutuals = followService.listMutualFriends(me, other);
+        java.util.Map<Long, ProfileSnapshot> profiles = userProfileCache.getAll(mutuals.stream().map(User::getId).toList());
+        List<UserSimpleDTO> dtoList = mutuals.stream()
+                .map(u -> UserSimpleMapper.INSTANCE.toDTO(u, profiles.get(u.getId())))
+                .toList();
+        return new ApiResponse<>(200, "获取成功", dtoList);
+    }
+
+    /**
+     * 可能认识的人：读取后台预先算好的推荐，按共同关注数排序
+     */
+    @GetMapping("/recommendations")
+    public ApiResponse<List<FriendRecommendationDTO>> recommendations(
+            @RequestParam(defaultValue = "10") int size,
+            @RequestHeader(name = "X-User-Id", required = false) Long headerUserId,
+            @AuthenticationPrincipal UserDetails principal) {
+        User me = resolveCurrentUser(principal, headerUserId);
+        if (me == null) {
+            return new ApiResponse<>(401, "未认证", null);
+        }
+        return new ApiResponse<>(200, "获取成功", recommendationService.recommend(me.getId(), size));
+    }
 }
@@ -14,6 +14,7 @@ import com.kirisamemarisa.blog.repository.UserRepository;
 import com.kirisamemarisa.blog.service.FriendRequestService;
 import com.kirisamemarisa.blog.service.NotificationService;
 
+import java.time.Instant;
 import java.util.List;
 
 @RestController
@@ -105,6 +106,9 @@ public class FriendRequestController {
     public SseEmitter subscribe(@RequestHeader(name = "X-User-Id", required = false) Long headerUserId,
             @RequestParam(name = "token", required = false) String token,
             @RequestHeader(name = "Authorization", required = false) String authorization,
+            @RequestParam(name = "lastEventId", required = false) String lastEventIdParam,
+            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(name = "notificationsSince", required = false) Long notificationsSince,
             @AuthenticationPrincipal UserDetails principal) {
         User me = resolveCurrentUser(principal, headerUserId, authorization);
         if (me == null && token != null && !token.isEmpty()) {
@@ -117,8 +121,14 @@ public class FriendRequestController {
             return null;
         }
         logger.info("User {} subscribed to friend request SSE", me.getId());
-        // 首次订阅时推送历史 pending 好友请求，让前端无需刷新即可显示完整卡片
-        List<FriendRequestDTO> initialPending = friendRequestService.pendingFor(me);
-        return notificationService.subscribe(me.getId(), initialPending);
+        // 首次订阅时推送历史 pending 好友请求，让前端无需刷新即可显示完整卡片；
+        // 带 notificationsSince（客户端已见过的最新通知时间，毫秒）时，再以 catchup 事件
+        // 只向这个连接补推之后的未读通知（在 init 之后送达）；
+        // 带 Last-Event-ID 重连且缓冲能接上时只补发断线期间的通知，不再查库
+        User subscriber = me;
+        String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+        Instant since = notificationsSince != null ? Instant.ofEpochMilli(notificationsSince) : null;
+        return notificationService.subscribe(me.getId(), lastEventId,
+                () -> friendRequestService.pendingFor(subscriber), since);
     }
 }
\ No newline at end of file
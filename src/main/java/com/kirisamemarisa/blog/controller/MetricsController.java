@@ -0,0 +1,64 @@
+package com.kirisamemarisa.blog.controller;
+
+import com.kirisamemarisa.blog.cache.BlockIndex;
+import com.kirisamemarisa.blog.cache.BlogViewCounter;
+import com.kirisamemarisa.blog.cache.FollowGraph;
+import com.kirisamemarisa.blog.cache.UserSearchIndex;
+import com.kirisamemarisa.blog.cache.PairFactCache;
+import com.kirisamemarisa.blog.cache.UserProfileCache;
+import com.kirisamemarisa.blog.common.ApiResponse;
+import com.kirisamemarisa.blog.events.RabbitNotificationBridge;
+import com.kirisamemarisa.blog.events.SseDispatcher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 进程内缓存 / 索引的运行指标（命中率、容量等），便于排查性能问题。
+ */
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    private final UserProfileCache userProfileCache;
+    private final PairFactCache pairFactCache;
+    private final SseDispatcher sseDispatcher;
+    private final FollowGraph followGraph;
+    private final BlockIndex blockIndex;
+    private final UserSearchIndex userSearchIndex;
+    private final BlogViewCounter blogViewCounter;
+    private final ObjectProvider<RabbitNotificationBridge> rabbitBridge;
+
+    public MetricsController(UserProfileCache userProfileCache, PairFactCache pairFactCache,
+                             SseDispatcher sseDispatcher, FollowGraph followGraph, BlockIndex blockIndex,
+                             UserSearchIndex userSearchIndex, BlogViewCounter blogViewCounter,
+                             ObjectProvider<RabbitNotificationBridge> rabbitBridge) {
+        this.userProfileCache = userProfileCache;
+        this.pairFactCache = pairFactCache;
+        this.sseDispatcher = sseDispatcher;
+        this.followGraph = followGraph;
+        this.blockIndex = blockIndex;
+        this.userSearchIndex = userSearchIndex;
+        this.blogViewCounter = blogViewCounter;
+        this.rabbitBridge = rabbitBridge;
+    }
+
+    @GetMapping
+    public ApiResponse<Map<String, Object>> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("userProfileCache", userProfileCache.stats());
+        metrics.put("pairFactCache", pairFactCache.stats());
+        metrics.put("sseDelivery", sseDispatcher.stats());
+        metrics.put("followGraph", followGraph.stats());
+        metrics.put("blockIndex", blockIndex.stats());
+        metrics.put("userSearchIndex", userSearchIndex.stats());
+        metrics.put("blogViewTotals", blogViewCounter.stats());
+        RabbitNotificationBridge bridge = rabbitBridge.getIfAvailable();
+        if (bridge != null) metrics.put("rabbitNotificationPublisher", bridge.stats());
+        return new ApiResponse<>(200, "获取成功", metrics);
+    }
+}
@@ -0,0 +1,85 @@
+package com.kirisamemarisa.blog.controller;
+
+import com.kirisamemarisa.blog.common.ApiResponse;
+import com.kirisamemarisa.blog.common.JwtUtil;
+import com.kirisamemarisa.blog.dto.NotificationDTO;
+import com.kirisamemarisa.blog.dto.PageResult;
+import com.kirisamemarisa.blog.model.User;
+import com.kirisamemarisa.blog.repository.UserRepository;
+import com.kirisamemarisa.blog.service.NotificationService;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 通知收件箱：离线期间的通知持久化后在这里分页查看（未读在前），并标记已读。
+ */
+@RestController
+@RequestMapping("/api/notifications")
+public class NotificationController {
+
+    private final UserRepository userRepository;
+    private final NotificationService notificationService;
+
+    public NotificationController(UserRepository userRepository, NotificationService notificationService) {
+        this.userRepository = userRepository;
+        this.notificationService = notificationService;
+    }
+
+    private User resolveCurrentUser(UserDetails principal, Long headerUserId, String authorizationHeader) {
+        if (principal != null)
+            return userRepository.findByUsername(principal.getUsername());
+        if (headerUserId != null)
+            return userRepository.findById(headerUserId).orElse(null);
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
+            String token = authorizationHeader.substring("Bearer ".length()).trim();
+            Long uid = JwtUtil.getUserIdFromToken(token);
+            if (uid != null)
+                return userRepository.findById(uid).orElse(null);
+        }
+        return null;
+    }
+
+    @GetMapping
+    public ApiResponse<PageResult<NotificationDTO>> inbox(@RequestParam(defaultValue = "0") int page,
+                                                          @RequestParam(defaultValue = "20") int size,
+                                                          @RequestHeader(name = "X-User-Id", required = false) Long headerUserId,
+                                                          @RequestHeader(name = "Authorization", required = false) String authorization,
+                                                          @AuthenticationPrincipal UserDetails principal) {
+        User me = resolveCurrentUser(principal, headerUserId, authorization);
+        if (me == null) return new ApiResponse<>(401, "未认证", null);
+        int p = Math.max(0, page);
+        int s = Math.min(Math.max(1, size), 100);
+        return new ApiResponse<>(200, "获取成功", notificationService.inbox(me.getId(), p, s));
+    }
+
+    @GetMapping("/unread-count")
+    public ApiResponse<Long> unreadCount(@RequestHeader(name = "X-User-Id", required = false) Long headerUserId,
+                                         @RequestHeader(name = "Authorization", required = false) String authorization,
+                                         @AuthenticationPrincipal UserDetails principal) {
+        User me = resolveCurrentUser(principal, headerUserId, authorization);
+        if (me == null) return new ApiResponse<>(401, "未认证", null);
+        return new ApiResponse<>(200, "获取成功", notificationService.unreadCount(me.getId()));
+    }
+
+    @PostMapping("/read")
+    public ApiResponse<Integer> markRead(@RequestBody List<Long> ids,
+                                         @RequestHeader(name = "X-User-Id", required = false) Long headerUserId,
+                                         @RequestHeader(name = "Authorization", required = false) String authorization,
+                                         @AuthenticationPrincipal UserDetails principal) {
+        User me = resolveCurrentUser(principal, headerUserId, authorization);
+        if (me == null) return new ApiResponse<>(401, "未认证", null);
+        return new ApiResponse<>(200, "已标记", notificationService.markRead(me.getId(), ids));
+    }
+
+    @PostMapping("/read-all")
+    public ApiResponse<Integer> markAllRead(@RequestHeader(name = "X-User-Id", required = false) Long headerUserId,
+                                            @RequestHeader(name = "Authorization", required = false) String authorization,
+                                            @AuthenticationPrincipal UserDetails principal) {
+        User me = resolveCurrentUser(principal, headerUserId, authorization);
+        if (me == null) return new ApiResponse<>(401, "未认证", null);
+        return new ApiResponse<>(200, "已标记", notificationService.markAllRead(me.getId()));
+    }
+}
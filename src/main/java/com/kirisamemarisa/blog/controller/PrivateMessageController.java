@@ -1,20 +1,23 @@
 package com.kirisamemarisa.blog.controller;
 
+import com.kirisamemarisa.blog.cache.ProfileSnapshot;
+import com.kirisamemarisa.blog.cache.UserProfileCache;
 import com.kirisamemarisa.blog.common.ApiResponse;
+import com.kirisamemarisa.blog.dto.BlogPreviewDTO;
 import com.kirisamemarisa.blog.dto.PageResult;
 import com.kirisamemarisa.blog.dto.PrivateMessageDTO;
 import com.kirisamemarisa.blog.events.MessageEventPublisher;
 import com.kirisamemarisa.blog.model.PrivateMessage;
 import com.kirisamemarisa.blog.model.User;
-import com.kirisamemarisa.blog.model.UserProfile;
 import com.kirisamemarisa.blog.repository.UserRepository;
 import com.kirisamemarisa.blog.service.PrivateMessageService;
 import com.kirisamemarisa.blog.repository.PrivateMessageRepository;
 import com.kirisamemarisa.blog.dto.ConversationSummaryDTO;
-import com.kirisamemarisa.blog.repository.UserProfileRepository;
 import com.kirisamemarisa.blog.service.NotificationService;
 import com.kirisamemarisa.blog.dto.NotificationDTO;
 import com.kirisamemarisa.blog.service.BlogUrlPreviewService;
+import com.kirisamemarisa.blog.service.ConversationSummaryService;
+import com.kirisamemarisa.blog.service.UnreadCountService;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -40,9 +43,11 @@ public class PrivateMessageController {
     private final PrivateMessageService privateMessageService;
     private final PrivateMessageRepository privateMessageRepository;
     private final MessageEventPublisher publisher;
-    private final UserProfileRepository userProfileRepository;
+    private final UserProfileCache userProfileCache;
     private final NotificationService notificationService;
     private final BlogUrlPreviewService blogUrlPreviewService;
+    private final ConversationSummaryService conversationSummaryService;
+    private final UnreadCountService unreadCountService;
 
     @Value("${resource.message-media-location:uploads/messages}")
     private String messageMediaLocation;
@@ -50,20 +55,27 @@ public class PrivateMessageController {
     @Value("${resource.message-media-access-prefix:/files/messages}")
     private String messageMediaAccessPrefix;
 
+    @Value("${blog.sse.message.snapshot-size:20}")
+    private int snapshotSize;
+
     public PrivateMessageController(UserRepository userRepository,
                                     PrivateMessageService privateMessageService,
                                     PrivateMessageRepository privateMessageRepository,
                                     MessageEventPublisher publisher,
-                                    UserProfileRepository userProfileRepository,
+                                    UserProfileCache userProfileCache,
                                     NotificationService notificationService,
-                                    BlogUrlPreviewService blogUrlPreviewService) {
+                                    BlogUrlPreviewService blogUrlPreviewService,
+                                    ConversationSummaryService conversationSummaryService,
+                                    UnreadCountService unreadCountService) {
         this.userRepository = userRepository;
         this.privateMessageService = privateMessageService;
         this.privateMessageRepository = privateMessageRepository;
         this.publisher = publisher;
-        this.userProfileRepository = userProfileRepository;
+        this.userProfileCache = userProfileCache;
         this.notificationService = notificationService;
         this.blogUrlPreviewService = blogUrlPreviewService;
+        this.conversationSummaryService = conversationSummaryService;
+        this.unreadCountService = unreadCountService;
     }
 
     private User resolveCurrent(UserDetails principal, Long headerUserId) {
@@ -75,7 +87,7 @@ public class PrivateMessageController {
     }
 
     // 优化后的转换方法，支持传入预查询好的 Profile Map
-    private PrivateMessageDTO toDTO(PrivateMessage msg, Map<Long, UserProfile> profileMap) {
+    private PrivateMessageDTO toDTO(PrivateMessage msg, Map<Long, ProfileSnapshot> profileMap) {
         PrivateMessageDTO dto = new PrivateMessageDTO();
         dto.setId(msg.getId());
         dto.setSenderId(msg.getSender().getId());
@@ -89,7 +101,7 @@ public class PrivateMessageController {
         Long rid = msg.getReceiver() != null ? msg.getReceiver().getId() : null;
 
         if (sid != null) {
-            UserProfile sp = profileMap != null ? profileMap.get(sid) : null;
+            ProfileSnapshot sp = profileMap != null ? profileMap.get(sid) : null;
             if (sp != null) {
                 dto.setSenderNickname(sp.getNickname());
                 dto.setSenderAvatarUrl(sp.getAvatarUrl());
@@ -99,7 +111,7 @@ public class PrivateMessageController {
             }
         }
         if (rid != null) {
-            UserProfile rp = profileMap != null ? profileMap.get(rid) : null;
+            ProfileSnapshot rp = profileMap != null ? profileMap.get(rid) : null;
             if (rp != null) {
                 dto.setReceiverNickname(rp.getNickname());
                 dto.setReceiverAvatarUrl(rp.getAvatarUrl());
@@ -109,29 +121,52 @@ public class PrivateMessageController {
             }
         }
 
-        // 如果包含站内博客链接，生成预览
-        dto.setBlogPreview(blogUrlPreviewService.extractPreviewFromText(dto.getText()));
-
         return dto;
     }
 
-    // 辅助方法：单条消息转换（会单独查询 Profile，仅用于发送消息返回值）
+    // 整页转换：Profile 与博客链接预览各批量解析一次
+    private List<PrivateMessageDTO> toDTOs(List<PrivateMessage> messages) {
+        Set<Long> userIds = new HashSet<>();
+        messages.forEach(m -> {
+            if (m.getSender() != null) userIds.add(m.getSender().getId());
+            if (m.getReceiver() != null) userIds.add(m.getReceiver().getId());
+        });
+
+        Map<Long, ProfileSnapshot> profileMap = userProfileCache.getAll(userIds);
+
+        List<PrivateMessageDTO> dtoList = messages.stream()
+                .map(msg -> toDTO(msg, profileMap))
+                .collect(Collectors.toList());
+
+        // 如果包含站内博客链接，生成预览
+        List<BlogPreviewDTO> previews = blogUrlPreviewService.extractPreviews(
+                dtoList.stream().map(PrivateMessageDTO::getText).collect(Collectors.toList()));
+        for (int i = 0; i < dtoList.size(); i++) {
+            dtoList.get(i).setBlogPreview(previews.get(i));
+        }
+        return dtoList;
+    }
+
+    // 辅助方法：单条消息转换（从资料缓存取双方 Profile，仅用于发送消息返回值）
     private PrivateMessageDTO toDTOSingle(PrivateMessage msg) {
-        Map<Long, UserProfile> map = new HashMap<>();
-        if (msg.getSender() != null)
-            userProfileRepository.findById(msg.getSender().getId()).ifPresent(p -> map.put(p.getId(), p));
-        if (msg.getReceiver() != null)
-            userProfileRepository.findById(msg.getReceiver().getId()).ifPresent(p -> map.put(p.getId(), p));
-        return toDTO(msg, map);
+        List<Long> ids = new ArrayList<>();
+        if (msg.getSender() != null) ids.add(msg.getSender().getId());
+        if (msg.getReceiver() != null) ids.add(msg.getReceiver().getId());
+        PrivateMessageDTO dto = toDTO(msg, userProfileCache.getAll(ids));
+        dto.setBlogPreview(blogUrlPreviewService.extractPreviewFromText(dto.getText()));
+        return dto;
     }
 
     /**
      * SSE 订阅接口
      * 前端：/api/messages/subscribe/{otherId}?userId={当前用户ID}&_={timestamp}
+     * 断线重连时浏览器会自动带 Last-Event-ID 头（也可用 lastEventId 参数），服务端只补发缺失事件。
      */
     @GetMapping(value = "/subscribe/{otherId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public SseEmitter subscribeConversation(@PathVariable Long otherId,
                                             @RequestParam("userId") Long userId,
+                                            @RequestParam(name = "lastEventId", required = false) String lastEventIdParam,
+                                            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventIdHeader,
                                             @RequestHeader(name = "X-User-Id", required = false) Long headerUserId,
                                             @AuthenticationPrincipal UserDetails principal) {
         // 简单鉴权：userId 必须等于当前登录的用户
@@ -149,27 +184,18 @@ public class PrivateMessageController {
             return emitter;
         }
 
-        Pageable pageable = PageRequest.of(0, 20);
-        Page<PrivateMessage> pmPage = privateMessageService.conversationPage(me, other, pageable);
-
-        Set<Long> userIds = new HashSet<>();
-        pmPage.getContent().forEach(m -> {
-            if (m.getSender() != null) userIds.add(m.getSender().getId());
-            if (m.getReceiver() != null) userIds.add(m.getReceiver().getId());
-        });
+        String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+        return publisher.subscribe(me.getId(), other.getId(), lastEventId, () -> latestPage(me, other));
+    }
 
-        Map<Long, UserProfile> profileMap = new HashMap<>();
-        if (!userIds.isEmpty()) {
-            List<UserProfile> profiles = userProfileRepository.findAllById(userIds);
-            profiles.forEach(p -> profileMap.put(p.getId(), p));
-        }
+    // 最近一页消息（时间正序），作为 SSE 的 init 快照
+    private List<PrivateMessageDTO> latestPage(User me, User other) {
+        Pageable pageable = PageRequest.of(0, snapshotSize);
+        Page<PrivateMessage> pmPage = privateMessageService.conversationPage(me, other, pageable);
 
-        List<PrivateMessageDTO> dtoList = pmPage.getContent().stream()
-                .map(msg -> toDTO(msg, profileMap))
-                .collect(Collectors.toList());
+        List<PrivateMessageDTO> dtoList = toDTOs(pmPage.getContent());
         Collections.reverse(dtoList);
-
-        return publisher.subscribe(me.getId(), other.getId(), dtoList);
+        return dtoList;
     }
 
     @GetMapping("/conversation/{otherId}")
@@ -186,78 +212,28 @@ public class PrivateMessageController {
         Pageable pageable = PageRequest.of(page, size);
         Page<PrivateMessage> pmPage = privateMessageService.conversationPage(me, other, pageable);
 
-        Set<Long> userIds = new HashSet<>();
-        pmPage.getContent().forEach(m -> {
-            if (m.getSender() != null) userIds.add(m.getSender().getId());
-            if (m.getReceiver() != null) userIds.add(m.getReceiver().getId());
-        });
-
-        Map<Long, UserProfile> profileMap = new HashMap<>();
-        if (!userIds.isEmpty()) {
-            List<UserProfile> profiles = userProfileRepository.findAllById(userIds);
-            profiles.forEach(p -> profileMap.put(p.getId(), p));
-        }
-
-        List<PrivateMessageDTO> dtoList = pmPage.getContent().stream()
-                .map(msg -> toDTO(msg, profileMap))
-                .collect(Collectors.toList());
+        List<PrivateMessageDTO> dtoList = toDTOs(pmPage.getContent());
 
         Collections.reverse(dtoList);
 
         return new ApiResponse<>(200, "OK", new PageResult<>(dtoList, pmPage.getTotalElements(), page, size));
     }
 
+    /**
+     * 收件箱：直接分页读取会话摘要表（conversation_summary），不再扫描全部私信
+     */
     @GetMapping("/conversation/list")
     public ApiResponse<PageResult<ConversationSummaryDTO>> listConversations(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size,
             @RequestHeader(name = "X-User-Id", required = false) Long headerUserId,
             @AuthenticationPrincipal org.springframework.security.core.userdetails.UserDetails principal) {
         User me = resolveCurrent(principal, headerUserId);
         if (me == null) return new ApiResponse<>(401, "未认证", null);
 
-        Map<Long, ConversationSummaryDTO> map = new LinkedHashMap<>();
-
-        privateMessageRepository.findBySenderWithReceiverOrderByCreatedAtDesc(me).forEach(m -> {
-            User receiver = m.getReceiver();
-            Long otherId = receiver != null ? receiver.getId() : null;
-            if (otherId == null) return;
-            ConversationSummaryDTO cur = map.get(otherId);
-            if (cur == null || m.getCreatedAt().isAfter(cur.getLastAt())) {
-                ConversationSummaryDTO s = new ConversationSummaryDTO();
-                s.setOtherId(otherId);
-                UserProfile prof = userProfileRepository.findById(otherId).orElse(null);
-                if (prof != null) { s.setNickname(prof.getNickname()); s.setAvatarUrl(prof.getAvatarUrl()); }
-                else { s.setNickname(receiver.getUsername()); s.setAvatarUrl(""); }
-                s.setLastMessage(choosePreview(m));
-                s.setLastAt(m.getCreatedAt());
-                map.put(otherId, s);
-            }
-        });
-
-        privateMessageRepository.findByReceiverWithSenderOrderByCreatedAtDesc(me).forEach(m -> {
-            User sender = m.getSender();
-            Long otherId = sender != null ? sender.getId() : null;
-            if (otherId == null) return;
-            ConversationSummaryDTO cur = map.get(otherId);
-            if (cur == null || m.getCreatedAt().isAfter(cur.getLastAt())) {
-                ConversationSummaryDTO s = new ConversationSummaryDTO();
-                UserProfile prof2 = userProfileRepository.findById(otherId).orElse(null);
-                s.setOtherId(otherId);
-                if (prof2 != null) { s.setNickname(prof2.getNickname()); s.setAvatarUrl(prof2.getAvatarUrl()); }
-                else { s.setNickname(sender.getUsername()); s.setAvatarUrl(""); }
-                s.setLastMessage(choosePreview(m));
-                s.setLastAt(m.getCreatedAt());
-                map.put(otherId, s);
-            }
-        });
-
-        List<ConversationSummaryDTO> list = new ArrayList<>(map.values());
-        list.forEach(s -> {
-            long unread = privateMessageRepository.countUnreadBetween(me.getId(), s.getOtherId());
-            s.setUnreadCount(unread);
-        });
-        Collections.sort(list, Comparator.comparing(ConversationSummaryDTO::getLastAt).reversed());
-        PageResult<ConversationSummaryDTO> page = new PageResult<>(list, list.size(), 0, list.size());
-        return new ApiResponse<>(200, "OK", page);
+        int safePage = Math.max(0, page);
+        int safeSize = Math.min(Math.max(1, size), 100);
+        return new ApiResponse<>(200, "OK", conversationSummaryService.inbox(me.getId(), safePage, safeSize));
     }
 
     @GetMapping("/unread/total")
@@ -266,7 +242,8 @@ public class PrivateMessageController {
             @AuthenticationPrincipal UserDetails principal) {
         User me = resolveCurrent(principal, headerUserId);
         if (me == null) return new ApiResponse<>(401, "未认证", null);
-        long total = privateMessageRepository.countUnreadTotal(me.getId());
+        // 内存计数，首次访问才查库；变化会以 unread 事件推送到 /api/friends/subscribe
+        long total = unreadCountService.total(me.getId());
         return new ApiResponse<>(200, "OK", total);
     }
 
@@ -277,23 +254,16 @@ public class PrivateMessageController {
                                          @AuthenticationPrincipal UserDetails principal) {
         User me = resolveCurrent(principal, headerUserId);
         if (me == null) return new ApiResponse<>(401, "未认证", null);
+        // 已本地删除的未读消息不计入未读数，扣减时排除
+        long deletedUnread = privateMessageRepository.countDeletedUnreadBetween(me.getId(), otherId);
         int updated = privateMessageRepository.markConversationRead(otherId, me.getId());
+        conversationSummaryService.onConversationRead(me.getId(), otherId);
+        unreadCountService.onConversationRead(me.getId(), otherId, (int) Math.max(0L, updated - deletedUnread));
         return new ApiResponse<>(200, "OK", updated);
     }
 
     private String choosePreview(PrivateMessage m) {
-        if (m.getType() != null && m.getType() != PrivateMessage.MessageType.TEXT) {
-            String base = m.getType().name();
-            String t = m.getText();
-            if (t != null && !t.isEmpty()) {
-                String cut = t.length() > 20 ? t.substring(0, 20) + "..." : t;
-                return base + ":" + cut;
-            }
-            return base;
-        }
-        String t = m.getText();
-        if (t == null) return "";
-        return t.length() > 40 ? t.substring(0, 40) + "..." : t;
+        return conversationSummaryService.preview(m);
     }
 
     private void sendPmNotification(PrivateMessage msg) {
@@ -332,26 +302,8 @@ public class PrivateMessageController {
             // 系统级通知
             sendPmNotification(msg);
 
-            // 最新一页，用于 SSE 广播
-            Pageable pageable = PageRequest.of(0, 20);
-            Page<PrivateMessage> pmPage = privateMessageService.conversationPage(me, other, pageable);
-
-            Set<Long> userIds = new HashSet<>();
-            pmPage.getContent().forEach(m -> {
-                if (m.getSender() != null) userIds.add(m.getSender().getId());
-                if (m.getReceiver() != null) userIds.add(m.getReceiver().getId());
-            });
-            Map<Long, UserProfile> profileMap = new HashMap<>();
-            if (!userIds.isEmpty()) {
-                List<UserProfile> profiles = userProfileRepository.findAllById(userIds);
-                profiles.forEach(p -> profileMap.put(p.getId(), p));
-            }
-            List<PrivateMessageDTO> dtoList = pmPage.getContent().stream()
-                    .map(m -> toDTO(m, profileMap))
-                    .collect(Collectors.toList());
-            Collections.reverse(dtoList);
-
-            publisher.broadcast(me.getId(), other.getId(), dtoList);
+            // SSE 只推送这一条新消息
+            publisher.publishMessage(me.getId(), other.getId(), dto);
 
             return new ApiResponse<>(200, "发送成功", dto);
         } catch (IllegalStateException ex) {
@@ -375,25 +327,7 @@ public class PrivateMessageController {
 
             sendPmNotification(msg);
 
-            Pageable pageable = PageRequest.of(0, 20);
-            Page<PrivateMessage> pmPage = privateMessageService.conversationPage(me, other, pageable);
-
-            Set<Long> userIds = new HashSet<>();
-            pmPage.getContent().forEach(m -> {
-                if (m.getSender() != null) userIds.add(m.getSender().getId());
-                if (m.getReceiver() != null) userIds.add(m.getReceiver().getId());
-            });
-            Map<Long, UserProfile> profileMap = new HashMap<>();
-            if (!userIds.isEmpty()) {
-                List<UserProfile> profiles = userProfileRepository.findAllById(userIds);
-                profiles.forEach(p -> profileMap.put(p.getId(), p));
-            }
-            List<PrivateMessageDTO> dtoList = pmPage.getContent().stream()
-                    .map(m -> toDTO(m, profileMap))
-                    .collect(Collectors.toList());
-            Collections.reverse(dtoList);
-
-            publisher.broadcast(me.getId(), other.getId(), dtoList);
+            publisher.publishMessage(me.getId(), other.getId(), dto);
 
             return new ApiResponse<>(200, "发送成功", dto);
         } catch (IllegalStateException ex) {
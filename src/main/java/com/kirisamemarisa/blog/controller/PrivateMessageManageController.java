@@ -3,6 +3,7 @@
 package com.kirisamemarisa.blog.controller;
 
 import com.kirisamemarisa.blog.common.ApiResponse;
+import com.kirisamemarisa.blog.dto.CursorPageResult;
 import com.kirisamemarisa.blog.dto.PageResult;
 import com.kirisamemarisa.blog.dto.PrivateMessageOperationDTO;
 import com.kirisamemarisa.blog.dto.PrivateMessageViewDTO;
@@ -13,8 +14,6 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/messages")
 public class PrivateMessageManageController {
@@ -79,12 +78,18 @@ public class PrivateMessageManageController {
         }
     }
 
-    // 可选：基于撤回/删除视角的会话列表
+    /**
+     * 基于撤回/删除视角的会话列表。默认按页码分页（时间正序）；
+     * 传 mode=cursor（或带上 cursor）时改用游标分页，最新的在前，下一页原样回传 nextCursor，withTotal=true 时才计算总数
+     */
     @GetMapping("/conversation/view/{otherId}")
-    public ApiResponse<PageResult<PrivateMessageViewDTO>> conversationView(
+    public ApiResponse<?> conversationView(
             @PathVariable Long otherId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String mode,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean withTotal,
             @RequestHeader(name = "X-User-Id", required = false) Long headerUserId,
             @AuthenticationPrincipal UserDetails principal) {
 
@@ -97,12 +102,12 @@ public class PrivateMessageManageController {
             return new ApiResponse<>(404, "用户不存在", null);
         }
 
-        List<PrivateMessageViewDTO> all = manageService.getConversationView(me, other);
-        int from = Math.min(page * size, all.size());
-        int to = Math.min(from + size, all.size());
-        List<PrivateMessageViewDTO> pageList = all.subList(from, to);
-        PageResult<PrivateMessageViewDTO> result =
-                new PageResult<>(pageList, all.size(), page, size);
+        if (cursor != null || "cursor".equalsIgnoreCase(mode)) {
+            CursorPageResult<PrivateMessageViewDTO> result =
+                    manageService.cursorConversationView(me, other, cursor, size, withTotal);
+            return new ApiResponse<>(200, "OK", result);
+        }
+        PageResult<PrivateMessageViewDTO> result = manageService.getConversationView(me, other, page, size);
         return new ApiResponse<>(200, "OK", result);
     }
 }
@@ -2,20 +2,25 @@ package com.kirisamemarisa.blog.controller;
 
 // removed unused logger imports
 import com.kirisamemarisa.blog.common.ApiResponse;
+import com.kirisamemarisa.blog.dto.BlogPreviewDTO;
 import com.kirisamemarisa.blog.dto.PrivateMessageDTO;
 import com.kirisamemarisa.blog.events.MessageEventPublisher;
 import com.kirisamemarisa.blog.model.PrivateMessage;
 import com.kirisamemarisa.blog.model.User;
 import com.kirisamemarisa.blog.repository.UserRepository;
 import com.kirisamemarisa.blog.common.JwtUtil;
-import com.kirisamemarisa.blog.repository.UserProfileRepository;
+import com.kirisamemarisa.blog.cache.ProfileSnapshot;
+import com.kirisamemarisa.blog.cache.UserProfileCache;
 import com.kirisamemarisa.blog.service.PrivateMessageService;
 import com.kirisamemarisa.blog.service.BlogUrlPreviewService; // NEW
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -28,18 +33,21 @@ public class PrivateMessageStreamController {
     private final UserRepository userRepository;
     private final PrivateMessageService privateMessageService;
     private final MessageEventPublisher publisher;
-    private final UserProfileRepository userProfileRepository;
+    private final UserProfileCache userProfileCache;
     private final BlogUrlPreviewService blogUrlPreviewService; // NEW
 
+    @Value("${blog.sse.message.snapshot-size:20}")
+    private int snapshotSize;
+
     public PrivateMessageStreamController(UserRepository userRepository,
                                           PrivateMessageService privateMessageService,
                                           MessageEventPublisher publisher,
-                                          UserProfileRepository userProfileRepository,
+                                          UserProfileCache userProfileCache,
                                           BlogUrlPreviewService blogUrlPreviewService) { // CHANGED
         this.userRepository = userRepository;
         this.privateMessageService = privateMessageService;
         this.publisher = publisher;
-        this.userProfileRepository = userProfileRepository;
+        this.userProfileCache = userProfileCache;
         this.blogUrlPreviewService = blogUrlPreviewService; // NEW
     }
 
@@ -69,7 +77,7 @@ public class PrivateMessageStreamController {
         Long sid = msg.getSender() != null ? msg.getSender().getId() : null;
         Long rid = msg.getReceiver() != null ? msg.getReceiver().getId() : null;
         if (sid != null) {
-            com.kirisamemarisa.blog.model.UserProfile sp = userProfileRepository.findById(sid).orElse(null);
+            ProfileSnapshot sp = userProfileCache.get(sid);
             if (sp != null) {
                 dto.setSenderNickname(sp.getNickname());
                 dto.setSenderAvatarUrl(sp.getAvatarUrl());
@@ -79,7 +87,7 @@ public class PrivateMessageStreamController {
             }
         }
         if (rid != null) {
-            com.kirisamemarisa.blog.model.UserProfile rp = userProfileRepository.findById(rid).orElse(null);
+            ProfileSnapshot rp = userProfileCache.get(rid);
             if (rp != null) {
                 dto.setReceiverNickname(rp.getNickname());
                 dto.setReceiverAvatarUrl(rp.getAvatarUrl());
@@ -89,9 +97,6 @@ public class PrivateMessageStreamController {
             }
         }
 
-        // NEW: 填充博客预览
-        dto.setBlogPreview(blogUrlPreviewService.extractPreviewFromText(dto.getText()));
-
         return dto;
     }
 
@@ -99,6 +104,8 @@ public class PrivateMessageStreamController {
     public SseEmitter stream(@PathVariable Long otherId,
                              @RequestHeader(name = "X-User-Id", required = false) Long headerUserId,
                              @RequestParam(name = "token", required = false) String token,
+                             @RequestParam(name = "lastEventId", required = false) String lastEventIdParam,
+                             @RequestHeader(name = "Last-Event-ID", required = false) String lastEventIdHeader,
                              @AuthenticationPrincipal UserDetails principal) {
         User me = resolveCurrent(principal, headerUserId, token);
         if (me == null) {
@@ -123,9 +130,20 @@ public class PrivateMessageStreamController {
             failed.complete();
             return failed;
         }
-        List<PrivateMessageDTO> initial = privateMessageService
-                .conversation(me, other)
-                .stream().map(this::toDTO).collect(Collectors.toList());
-        return publisher.subscribe(me.getId(), other.getId(), initial);
+        // 重连时优先从事件缓冲续传；否则只取最近一页，不再加载整段历史
+        String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+        return publisher.subscribe(me.getId(), other.getId(), lastEventId, () -> {
+            List<PrivateMessageDTO> initial = privateMessageService
+                    .conversationPage(me, other, PageRequest.of(0, snapshotSize))
+                    .getContent().stream().map(this::toDTO).collect(Collectors.toList());
+            // 博客链接预览整页批量解析
+            List<BlogPreviewDTO> previews = blogUrlPreviewService.extractPreviews(
+                    initial.stream().map(PrivateMessageDTO::getText).collect(Collectors.toList()));
+            for (int i = 0; i < initial.size(); i++) {
+                initial.get(i).setBlogPreview(previews.get(i));
+            }
+            Collections.reverse(initial);
+            return initial;
+        });
     }
-}
\ No newline at end of file
+}
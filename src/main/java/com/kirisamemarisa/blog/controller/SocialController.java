@@ -1,11 +1,11 @@
 package com.kirisamemarisa.blog.controller;
 
+import com.kirisamemarisa.blog.cache.ProfileSnapshot;
+import com.kirisamemarisa.blog.cache.UserProfileCache;
 import com.kirisamemarisa.blog.common.ApiResponse;
 import com.kirisamemarisa.blog.dto.UserSimpleDTO;
 import com.kirisamemarisa.blog.mapper.UserSimpleMapper;
 import com.kirisamemarisa.blog.model.User;
-import com.kirisamemarisa.blog.model.UserProfile;
-import com.kirisamemarisa.blog.repository.UserProfileRepository;
 import com.kirisamemarisa.blog.repository.UserRepository;
 import com.kirisamemarisa.blog.service.FollowService;
 import org.slf4j.Logger;
@@ -18,7 +18,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @RestController
@@ -28,12 +28,12 @@ public class SocialController {
 
     private final UserRepository userRepository;
     private final FollowService followService;
-    private final UserProfileRepository userProfileRepository;
+    private final UserProfileCache userProfileCache;
 
-    public SocialController(UserRepository userRepository, FollowService followService, UserProfileRepository userProfileRepository) {
+    public SocialController(UserRepository userRepository, FollowService followService, UserProfileCache userProfileCache) {
         this.userRepository = userRepository;
         this.followService = followService;
-        this.userProfileRepository = userProfileRepository;
+        this.userProfileCache = userProfileCache;
     }
 
     private User resolveCurrentUser(UserDetails principal, Long headerUserId) {
@@ -53,15 +53,10 @@ public class SocialController {
         if (me == null) {
             return new ApiResponse<>(401, "未认证", null);
         }
-        List<User> followers = followService.listFollowers(me);
-        List<User> following = followService.listFollowing(me);
-        Set<Long> followingIds = following.stream().map(User::getId).collect(Collectors.toSet());
-        List<UserSimpleDTO> dtoList = followers.stream()
-                .filter(u -> followingIds.contains(u.getId()))
-                .map(u -> {
-                    UserProfile profile = userProfileRepository.findById(u.getId()).orElse(null);
-                    return UserSimpleMapper.INSTANCE.toDTO(u, profile);
-                })
+        List<User> friends = followService.listFriends(me);
+        Map<Long, ProfileSnapshot> profiles = userProfileCache.getAll(friends.stream().map(User::getId).toList());
+        List<UserSimpleDTO> dtoList = friends.stream()
+                .map(u -> UserSimpleMapper.INSTANCE.toDTO(u, profiles.get(u.getId())))
                 .collect(Collectors.toList());
         return new ApiResponse<>(200, "获取成功", dtoList);
     }
@@ -74,11 +69,9 @@ public class SocialController {
             return new ApiResponse<>(401, "未认证", null);
         }
         List<User> following = followService.listFollowing(me);
+        Map<Long, ProfileSnapshot> profiles = userProfileCache.getAll(following.stream().map(User::getId).toList());
         List<UserSimpleDTO> dtoList = following.stream()
-                .map(u -> {
-                    UserProfile profile = userProfileRepository.findById(u.getId()).orElse(null);
-                    return UserSimpleMapper.INSTANCE.toDTO(u, profile);
-                })
+                .map(u -> UserSimpleMapper.INSTANCE.toDTO(u, profiles.get(u.getId())))
                 .collect(Collectors.toList());
         return new ApiResponse<>(200, "获取成功", dtoList);
     }
@@ -91,11 +84,9 @@ public class SocialController {
             return new ApiResponse<>(401, "未认证", null);
         }
         List<User> followers = followService.listFollowers(me);
+        Map<Long, ProfileSnapshot> profiles = userProfileCache.getAll(followers.stream().map(User::getId).toList());
         List<UserSimpleDTO> dtoList = followers.stream()
-                .map(u -> {
-                    UserProfile profile = userProfileRepository.findById(u.getId()).orElse(null);
-                    return UserSimpleMapper.INSTANCE.toDTO(u, profile);
-                })
+                .map(u -> UserSimpleMapper.INSTANCE.toDTO(u, profiles.get(u.getId())))
                 .collect(Collectors.toList());
         return new ApiResponse<>(200, "获取成功", dtoList);
     }
@@ -5,17 +5,11 @@ import org.slf4j.LoggerFactory;
 import com.kirisamemarisa.blog.common.ApiResponse;
 import com.kirisamemarisa.blog.dto.PageResult;
 import com.kirisamemarisa.blog.dto.UserSearchDTO;
-import com.kirisamemarisa.blog.model.User;
-import com.kirisamemarisa.blog.model.UserProfile;
 import com.kirisamemarisa.blog.service.UserSearchService;
-import com.kirisamemarisa.blog.mapper.UserSearchMapper;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 /**
  * 用户搜索接口控制器。
  * 路径示例：
@@ -39,22 +33,15 @@ public class UserSearchController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
 
-        List<Object[]> list;
-        long total;
+        PageResult<UserSearchDTO> result;
         if (username != null && !username.isBlank()) {
-            list = userSearchService.searchByUsernameWithProfile(username, page, size);
-            total = userSearchService.countByUsername(username);
+            result = userSearchService.searchByUsername(username, page, size);
         } else if (nickname != null && !nickname.isBlank()) {
-            list = userSearchService.searchByNicknameWithProfile(nickname, page, size);
-            total = userSearchService.countByNickname(nickname);
+            result = userSearchService.searchByNickname(nickname, page, size);
         } else {
             return new ApiResponse<>(400, "参数缺失：需提供 username 或 nickname", null);
         }
 
-        List<UserSearchDTO> dtoList = list.stream()
-                .map(arr -> UserSearchMapper.toDTO((User) arr[0], (UserProfile) arr[1]))
-                .toList();
-
-        return new ApiResponse<>(200, "OK", new PageResult<>(dtoList, total, page, size));
+        return new ApiResponse<>(200, "OK", result);
     }
 }
@@ -4,6 +4,8 @@ public class BlogViewRecordCreateDTO {
 
     private Long blogPostId;
     private Long userId;
+    // 未登录访客的匿名标识（前端生成并持久化），为空时由后端根据 IP + User-Agent 生成
+    private String visitorId;
 
     public Long getBlogPostId() {
         return blogPostId;
@@ -20,4 +22,12 @@ public class BlogViewRecordCreateDTO {
     public void setUserId(Long userId) {
         this.userId = userId;
     }
+
+    public String getVisitorId() {
+        return visitorId;
+    }
+
+    public void setVisitorId(String visitorId) {
+        this.visitorId = visitorId;
+    }
 }
@@ -0,0 +1,37 @@
+package com.kirisamemarisa.blog.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * 浏览量时间序列中的一个点
+ */
+public class BlogViewSeriesPointDTO {
+
+    // 时间桶起点（整点或零点）
+    private LocalDateTime bucketStart;
+    private Long viewCount;
+
+    public BlogViewSeriesPointDTO() {
+    }
+
+    public BlogViewSeriesPointDTO(LocalDateTime bucketStart, Long viewCount) {
+        this.bucketStart = bucketStart;
+        this.viewCount = viewCount;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public Long getViewCount() {
+        return viewCount;
+    }
+
+    public void setViewCount(Long viewCount) {
+        this.viewCount = viewCount;
+    }
+}
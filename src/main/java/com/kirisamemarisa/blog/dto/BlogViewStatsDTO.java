@@ -4,6 +4,8 @@ public class BlogViewStatsDTO {
 
     private Long blogPostId;
     private Long viewCount;
+    // 去重访客数（HyperLogLog 估算值，误差约 1.6%）
+    private Long uniqueVisitors;
 
     public Long getBlogPostId() {
         return blogPostId;
@@ -20,4 +22,12 @@ public class BlogViewStatsDTO {
     public void setViewCount(Long viewCount) {
         this.viewCount = viewCount;
     }
+
+    public Long getUniqueVisitors() {
+        return uniqueVisitors;
+    }
+
+    public void setUniqueVisitors(Long uniqueVisitors) {
+        this.uniqueVisitors = uniqueVisitors;
+    }
 }
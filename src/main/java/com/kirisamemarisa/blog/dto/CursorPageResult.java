@@ -0,0 +1,34 @@
+package com.kirisamemarisa.blog.dto;
+
+import java.util.List;
+
+/**
+ * 游标分页结果：nextCursor 为空表示没有更多数据；
+ * total 只有在请求 withTotal=true 时才计算，否则为 null
+ */
+public class CursorPageResult<T> {
+    private List<T> list;
+    private String nextCursor;
+    private boolean hasMore;
+    private int size;
+    private Long total;
+
+    public CursorPageResult() {}
+    public CursorPageResult(List<T> list, String nextCursor, boolean hasMore, int size, Long total) {
+        this.list = list;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+        this.size = size;
+        this.total = total;
+    }
+    public List<T> getList() { return list; }
+    public void setList(List<T> list) { this.list = list; }
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+    public int getSize() { return size; }
+    public void setSize(int size) { this.size = size; }
+    public Long getTotal() { return total; }
+    public void setTotal(Long total) { this.total = total; }
+}
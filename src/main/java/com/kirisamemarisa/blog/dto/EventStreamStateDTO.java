@@ -0,0 +1,46 @@
+package com.kirisamemarisa.blog.dto;
+
+import java.util.Set;
+
+/**
+ * 多路复用事件流的状态：连接建立时作为 ready 事件推送，修改订阅主题后作为接口返回值。
+ * resumed 为 false 表示未能按 Last-Event-ID 续传，客户端应通过 REST 接口重新拉取当前状态。
+ */
+public class EventStreamStateDTO {
+    private String streamId;
+    private Set<String> topics;
+    private boolean resumed;
+
+    public EventStreamStateDTO() {
+    }
+
+    public EventStreamStateDTO(String streamId, Set<String> topics, boolean resumed) {
+        this.streamId = streamId;
+        this.topics = topics;
+        this.resumed = resumed;
+    }
+
+    public String getStreamId() {
+        return streamId;
+    }
+
+    public void setStreamId(String streamId) {
+        this.streamId = streamId;
+    }
+
+    public Set<String> getTopics() {
+        return topics;
+    }
+
+    public void setTopics(Set<String> topics) {
+        this.topics = topics;
+    }
+
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    public void setResumed(boolean resumed) {
+        this.resumed = resumed;
+    }
+}
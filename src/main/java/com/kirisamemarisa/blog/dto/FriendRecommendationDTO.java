@@ -0,0 +1,27 @@
+package com.kirisamemarisa.blog.dto;
+
+/**
+ * “可能认识的人”：mutualCount 为我关注的人中也关注了 TA 的人数
+ */
+public class FriendRecommendationDTO {
+    private Long userId;
+    private String nickname;
+    private String avatarUrl;
+    private int mutualCount;
+
+    public FriendRecommendationDTO() {}
+    public FriendRecommendationDTO(Long userId, String nickname, String avatarUrl, int mutualCount) {
+        this.userId = userId;
+        this.nickname = nickname;
+        this.avatarUrl = avatarUrl;
+        this.mutualCount = mutualCount;
+    }
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    public String getNickname() { return nickname; }
+    public void setNickname(String nickname) { this.nickname = nickname; }
+    public String getAvatarUrl() { return avatarUrl; }
+    public void setAvatarUrl(String avatarUrl) { this.avatarUrl = avatarUrl; }
+    public int getMutualCount() { return mutualCount; }
+    public void setMutualCount(int mutualCount) { this.mutualCount = mutualCount; }
+}
@@ -7,6 +7,8 @@ import java.time.Instant;
  * 所有通知类型（博客点赞、评论、回复、私信等）均通过该 DTO 统一发送。
  */
 public class NotificationDTO {
+    // 收件箱记录 ID；实时推送时可能为空（记录尚未落库）
+    private Long id;
     // e.g., FRIEND_REQUEST, FRIEND_REQUEST_RESPONSE,
     // PRIVATE_MESSAGE, POST_LIKE, COMMENT_LIKE, REPLY_LIKE, COMMENT_REPLY
     private String type;
@@ -22,6 +24,10 @@ public class NotificationDTO {
     private Long referenceId;
     private Long referenceExtraId;
 
+    // 合并的次数（如 N 人点赞），未合并时为 1
+    private int actorCount = 1;
+    private boolean read;
+
     private String senderNickname;
     private String senderAvatarUrl;
     private String senderUsername;
@@ -34,6 +40,15 @@ public class NotificationDTO {
     public String getSenderUsername() { return senderUsername; }
     public void setSenderUsername(String senderUsername) { this.senderUsername = senderUsername; }
 
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public int getActorCount() { return actorCount; }
+    public void setActorCount(int actorCount) { this.actorCount = actorCount; }
+
+    public boolean isRead() { return read; }
+    public void setRead(boolean read) { this.read = read; }
+
     public String getType() { return type; }
     public void setType(String type) { this.type = type; }
 
@@ -0,0 +1,62 @@
+package com.kirisamemarisa.blog.dto;
+
+/**
+ * 私信会话 SSE 增量事件。
+ * seq 为会话内单调递增的序号，前端据此排序与去重；
+ * MESSAGE 事件携带完整消息，RECALL / DELETE 只携带被操作的消息 ID（墓碑）。
+ * TYPING 为“对方正在输入”的瞬时事件：只发给对方、不进续传缓冲，seq 恒为 0。
+ */
+public class PrivateMessageEventDTO {
+
+    public enum EventType {
+        MESSAGE, RECALL, DELETE, TYPING
+    }
+
+    private long seq;
+    private EventType type;
+    private Long messageId;
+    // 仅 MESSAGE 事件有值
+    private PrivateMessageDTO message;
+
+    public PrivateMessageEventDTO() {
+    }
+
+    public PrivateMessageEventDTO(long seq, EventType type, Long messageId, PrivateMessageDTO message) {
+        this.seq = seq;
+        this.type = type;
+        this.messageId = messageId;
+        this.message = message;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public EventType getType() {
+        return type;
+    }
+
+    public void setType(EventType type) {
+        this.type = type;
+    }
+
+    public Long getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(Long messageId) {
+        this.messageId = messageId;
+    }
+
+    public PrivateMessageDTO getMessage() {
+        return message;
+    }
+
+    public void setMessage(PrivateMessageDTO message) {
+        this.message = message;
+    }
+}
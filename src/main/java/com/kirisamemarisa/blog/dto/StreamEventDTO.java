@@ -0,0 +1,34 @@
+package com.kirisamemarisa.blog.dto;
+
+/**
+ * /api/events/stream 上的事件载荷：事件名（notification、message、typing 等）由 SSE event 字段给出，
+ * topic 说明事件所属的订阅主题（notifications 或 conversation:{对方ID}），data 为原事件内容。
+ */
+public class StreamEventDTO {
+    private String topic;
+    private Object data;
+
+    public StreamEventDTO() {
+    }
+
+    public StreamEventDTO(String topic, Object data) {
+        this.topic = topic;
+        this.data = data;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public void setTopic(String topic) {
+        this.topic = topic;
+    }
+
+    public Object getData() {
+        return data;
+    }
+
+    public void setData(Object data) {
+        this.data = data;
+    }
+}
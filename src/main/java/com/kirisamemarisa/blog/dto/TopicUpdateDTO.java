@@ -0,0 +1,27 @@
+package com.kirisamemarisa.blog.dto;
+
+import java.util.List;
+
+/**
+ * 修改事件流订阅主题的请求体
+ */
+public class TopicUpdateDTO {
+    private List<String> add;
+    private List<String> remove;
+
+    public List<String> getAdd() {
+        return add;
+    }
+
+    public void setAdd(List<String> add) {
+        this.add = add;
+    }
+
+    public List<String> getRemove() {
+        return remove;
+    }
+
+    public void setRemove(List<String> remove) {
+        this.remove = remove;
+    }
+}
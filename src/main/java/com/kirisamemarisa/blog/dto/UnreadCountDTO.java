@@ -0,0 +1,44 @@
+package com.kirisamemarisa.blog.dto;
+
+/**
+ * SSE unread 事件载荷：用户未读私信总数，以及发生变化的那个会话的未读数。
+ */
+public class UnreadCountDTO {
+    private long total;
+    // 发生变化的会话对方 ID
+    private Long otherId;
+    private long conversationUnread;
+
+    public UnreadCountDTO() {
+    }
+
+    public UnreadCountDTO(long total, Long otherId, long conversationUnread) {
+        this.total = total;
+        this.otherId = otherId;
+        this.conversationUnread = conversationUnread;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public Long getOtherId() {
+        return otherId;
+    }
+
+    public void setOtherId(Long otherId) {
+        this.otherId = otherId;
+    }
+
+    public long getConversationUnread() {
+        return conversationUnread;
+    }
+
+    public void setConversationUnread(long conversationUnread) {
+        this.conversationUnread = conversationUnread;
+    }
+}
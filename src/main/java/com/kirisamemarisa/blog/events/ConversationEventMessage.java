@@ -0,0 +1,53 @@
+package com.kirisamemarisa.blog.events;
+
+import com.kirisamemarisa.blog.dto.PrivateMessageDTO;
+import com.kirisamemarisa.blog.dto.PrivateMessageEventDTO.EventType;
+
+import java.io.Serializable;
+
+/**
+ * 在节点之间转发的私信会话事件。
+ * 不携带 seq：seq 由收到事件的各节点在自己的会话缓冲中分配。
+ */
+public class ConversationEventMessage implements Serializable {
+    // 会话 key：min-max
+    private String key;
+    private EventType type;
+    private Long messageId;
+    // 仅 MESSAGE 事件有值
+    private PrivateMessageDTO message;
+    // 非空时只投递给该用户的订阅（删除墓碑）
+    private Long onlyUserId;
+    // 发出事件的节点；该节点已在本机投递，收到自己的回流时跳过
+    private String originNode;
+
+    public ConversationEventMessage() {
+    }
+
+    public ConversationEventMessage(String key, EventType type, Long messageId,
+                                    PrivateMessageDTO message, Long onlyUserId) {
+        this.key = key;
+        this.type = type;
+        this.messageId = messageId;
+        this.message = message;
+        this.onlyUserId = onlyUserId;
+    }
+
+    public String getKey() { return key; }
+    public void setKey(String key) { this.key = key; }
+
+    public EventType getType() { return type; }
+    public void setType(EventType type) { this.type = type; }
+
+    public Long getMessageId() { return messageId; }
+    public void setMessageId(Long messageId) { this.messageId = messageId; }
+
+    public PrivateMessageDTO getMessage() { return message; }
+    public void setMessage(PrivateMessageDTO message) { this.message = message; }
+
+    public Long getOnlyUserId() { return onlyUserId; }
+    public void setOnlyUserId(Long onlyUserId) { this.onlyUserId = onlyUserId; }
+
+    public String getOriginNode() { return originNode; }
+    public void setOriginNode(String originNode) { this.originNode = originNode; }
+}
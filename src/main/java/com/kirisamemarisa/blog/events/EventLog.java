@@ -0,0 +1,90 @@
+package com.kirisamemarisa.blog.events;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * SSE 事件的有界环形缓冲，用于断线重连时按 Last-Event-ID 补发。
+ * 事件 ID 形如 "{generation}-{seq}"：generation 在每个缓冲创建时递增（以启动时刻为起点），
+ * 缓冲被回收或应用重启后旧 ID 自然失效，调用方回退到查库。
+ * 方法均已同步，调用方也可以对本对象加锁，把"追加 + 发送"做成原子操作。
+ */
+final class EventLog<E> {
+
+    private static final AtomicLong GENERATIONS = new AtomicLong(System.currentTimeMillis());
+
+    private final long generation = GENERATIONS.incrementAndGet();
+    private final int capacity;
+    private final ArrayDeque<Entry<E>> buffer;
+    private long lastSeq;
+
+    EventLog(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.buffer = new ArrayDeque<>(Math.min(this.capacity, 64));
+    }
+
+    /**
+     * 分配下一个序号并追加事件，超出容量时丢弃最旧的一条
+     */
+    synchronized Entry<E> append(LongFunction<E> factory) {
+        long seq = ++lastSeq;
+        Entry<E> entry = new Entry<>(idOf(seq), seq, factory.apply(seq));
+        if (buffer.size() >= capacity) {
+            buffer.pollFirst();
+        }
+        buffer.addLast(entry);
+        return entry;
+    }
+
+    synchronized long lastSeq() {
+        return lastSeq;
+    }
+
+    String idOf(long seq) {
+        return generation + "-" + seq;
+    }
+
+    /**
+     * 返回 lastEventId 之后的全部事件（可能为空列表）；
+     * ID 为空、格式不对、不属于本缓冲，或中间有事件已滚出缓冲区时返回 null
+     */
+    synchronized List<Entry<E>> since(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) return null;
+        String id = lastEventId.trim();
+        int dash = id.indexOf('-');
+        if (dash <= 0) return null;
+        long gen;
+        long seq;
+        try {
+            gen = Long.parseLong(id.substring(0, dash));
+            seq = Long.parseLong(id.substring(dash + 1));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+        if (gen != generation || seq < 0 || seq > lastSeq) return null;
+        long oldest = buffer.isEmpty() ? lastSeq + 1 : buffer.peekFirst().seq();
+        if (seq + 1 < oldest) return null;
+        return after(seq);
+    }
+
+    /**
+     * 序号大于 seq 的全部缓冲事件
+     */
+    synchronized List<Entry<E>> after(long seq) {
+        List<Entry<E>> result = new ArrayList<>();
+        for (Entry<E> e : buffer) {
+            if (e.seq() > seq) result.add(e);
+        }
+        return result;
+    }
+
+    synchronized int size() {
+        return buffer.size();
+    }
+
+    record Entry<E>(String id, long seq, E event) {
+    }
+}
@@ -1,62 +1,286 @@
 package com.kirisamemarisa.blog.events;
 
 import com.kirisamemarisa.blog.dto.PrivateMessageDTO;
+import com.kirisamemarisa.blog.dto.PrivateMessageEventDTO;
+import com.kirisamemarisa.blog.dto.PrivateMessageEventDTO.EventType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Supplier;
 
 /**
  * 简单的会话级 SSE 推送管理。
  * key = 排序后两个用户ID组合: min-max
+ * 订阅时推送一次 init（最近消息列表），之后只推送增量事件：
+ * message（新消息）、recall（撤回墓碑）、delete（仅删除者本人可见的删除墓碑），
+ * 每个事件带会话内单调递增的 seq。delete 只发给删除者，因此对另一方而言 seq 可能不连续。
+ * <p>
+ * 每个事件都带 SSE id，最近的事件保存在会话级环形缓冲中；客户端带 Last-Event-ID 重连时
+ * 只补发缺失的事件，缺口已滚出缓冲（或服务重启）时才回退为查一页快照重新 init。
+ * 会话最后一个订阅断开后缓冲再保留 idle-retention-seconds，供短暂断线重连使用。
+ * 发布方只在会话锁内把事件放入各连接的发件箱，实际写出由 SseDispatcher 完成。
+ * <p>
+ * 事件总是先在本机投递；注册了 Relay（RabbitMessageBridge）时再转发给其他节点，各节点按本机缓冲分配 seq 投递；
+ * 本机建立、回收会话通道时通知 Relay 同步该会话的订阅绑定。
+ * <p>
+ * 用户在多路复用事件流（UserEventStream）上订阅 conversation:{对方ID} 主题后成为该会话的 watcher，
+ * 会话事件同时转发到其事件流；watcher 与订阅一样会保持会话通道（及集群绑定）存活。
+ * 转发在会话锁外进行，多路复用流上的会话事件以载荷中的 seq 为准排序。
+ * typing 为瞬时事件，只发给对方，不进缓冲。
  */
 @Component
 public class MessageEventPublisher {
 
     private static final Logger logger = LoggerFactory.getLogger(MessageEventPublisher.class);
-    private final Map<String, Set<SseEmitter>> emitters = new ConcurrentHashMap<>();
+    // SseDispatcher 中的连接分组（连接数上限与计数按组统计）
+    private static final String SCOPE = "message";
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final int bufferSize;
+    private final long idleRetentionMs;
+    private final SseDispatcher dispatcher;
+    private final UserEventStream userEvents;
+    // 集群转发；未注册时只在本机投递
+    private volatile Relay relay;
 
-    public SseEmitter subscribe(Long meId, Long otherId, List<PrivateMessageDTO> initial) {
+    public MessageEventPublisher(@Value("${blog.sse.message.buffer-size:256}") int bufferSize,
+                                 @Value("${blog.sse.message.idle-retention-seconds:300}") long idleRetentionSeconds,
+                                 SseDispatcher dispatcher,
+                                 UserEventStream userEvents) {
+        this.bufferSize = Math.max(1, bufferSize);
+        this.idleRetentionMs = Math.max(0, idleRetentionSeconds) * 1000L;
+        this.dispatcher = dispatcher;
+        this.userEvents = userEvents;
+        userEvents.addTopicListener(new UserEventStream.TopicListener() {
+            @Override
+            public void onTopicAdded(Long userId, String topic) {
+                watch(userId, topic);
+            }
+
+            @Override
+            public void onTopicRemoved(Long userId, String topic) {
+                unwatch(userId, topic);
+            }
+        });
+    }
+
+    /**
+     * 订阅会话。lastEventId 能在缓冲中接上时只补发缺失事件；
+     * 否则调用 snapshot 读一页最近消息作为 init（只在需要时查库）。
+     */
+    public SseEmitter subscribe(Long meId, Long otherId, String lastEventId,
+                                Supplier<List<PrivateMessageDTO>> snapshot) {
         String key = key(meId, otherId);
         SseEmitter emitter = new SseEmitter(0L); // 不超时
-        emitters.computeIfAbsent(key, k -> new CopyOnWriteArraySet<>()).add(emitter);
+        Subscriber sub = new Subscriber(meId, dispatcher.open(SCOPE, meId, emitter, () -> remove(key, emitter)));
         emitter.onCompletion(() -> remove(key, emitter));
         emitter.onTimeout(() -> remove(key, emitter));
         emitter.onError(e -> remove(key, emitter));
-        try {
-            emitter.send(SseEmitter.event().name("init").data(initial));
-        } catch (IOException ignored) {}
-        return emitter;
-    }
-
-    public void broadcast(Long aId, Long bId, List<PrivateMessageDTO> conversation) {
-        String key = key(aId, bId);
-        Set<SseEmitter> set = emitters.get(key);
-        if (set == null) return;
-        List<SseEmitter> dead = new ArrayList<>();
-        for (SseEmitter em : set) {
-            try {
-                em.send(SseEmitter.event().name("update").data(conversation));
-            } catch (IOException ioe) {
-                dead.add(em);
-            } catch (Exception e) {
-                logger.warn("Unexpected error broadcasting message for key {}: {}", key, e.toString());
+
+        Channel seen = channel(key);
+        long fromSeq;
+        synchronized (seen) {
+            if (!seen.closed) {
+                List<EventLog.Entry<Buffered>> missed = seen.log.since(lastEventId);
+                if (missed != null) {
+                    attach(seen, sub, missed);
+                    return emitter;
+                }
+            }
+            fromSeq = seen.log.lastSeq();
+        }
+
+        // 无法续传：不持锁查一页快照，再补发查询期间产生的事件（消息按 ID 去重，墓碑幂等）
+        List<PrivateMessageDTO> initial = snapshot != null ? snapshot.get() : Collections.emptyList();
+        while (true) {
+            Channel ch = channel(key);
+            synchronized (ch) {
+                if (ch.closed) continue;
+                long after = ch == seen ? fromSeq : 0L;
+                sub.outbox().offer(SseEmitter.event().id(ch.log.idOf(after)).name("init").data(initial));
+                attach(ch, sub, ch.log.after(after));
+                return emitter;
+            }
+        }
+    }
+
+    /**
+     * 推送一条新消息（双方都会收到）
+     */
+    public void publishMessage(Long aId, Long bId, PrivateMessageDTO message) {
+        if (message == null) return;
+        publish(key(aId, bId), EventType.MESSAGE, message.getId(), message, null);
+    }
+
+    /**
+     * 推送撤回墓碑（双方都会收到）
+     */
+    public void publishRecall(Long aId, Long bId, Long messageId) {
+        publish(key(aId, bId), EventType.RECALL, messageId, null, null);
+    }
+
+    /**
+     * 推送删除墓碑：删除只对操作者本人生效，只发给 userId 自己的订阅
+     */
+    public void publishDelete(Long userId, Long otherId, Long messageId) {
+        publish(key(userId, otherId), EventType.DELETE, messageId, null, userId);
+    }
+
+    /**
+     * 推送“正在输入”提示：只发给 toId
+     */
+    public void publishTyping(Long fromId, Long toId) {
+        publish(key(fromId, toId), EventType.TYPING, null, null, toId);
+    }
+
+    private void publish(String key, EventType type, Long messageId, PrivateMessageDTO message, Long onlyUserId) {
+        deliver(key, type, messageId, message, onlyUserId);
+        Relay r = relay;
+        if (r != null) r.publish(new ConversationEventMessage(key, type, messageId, message, onlyUserId));
+    }
+
+    /**
+     * 投递给本机订阅并记入缓冲（本机发布或集群转发到达时调用）
+     */
+    void deliver(String key, EventType type, Long messageId, PrivateMessageDTO message, Long onlyUserId) {
+        // 没有订阅、也没有待续传缓冲的会话无需记录
+        Channel ch = channels.get(key);
+        if (ch == null) return;
+        String name = type.name().toLowerCase(Locale.ROOT);
+        PrivateMessageEventDTO event;
+        List<Long> watchers = new ArrayList<>();
+        synchronized (ch) {
+            if (ch.closed) return;
+            if (type == EventType.TYPING) {
+                event = new PrivateMessageEventDTO(0L, type, null, null);
+                for (Subscriber sub : ch.subscribers) {
+                    if (sub.userId().equals(onlyUserId))
+                        sub.outbox().offer(SseEmitter.event().name(name).data(event));
+                }
+            } else {
+                EventLog.Entry<Buffered> entry = ch.log.append(seq ->
+                        new Buffered(new PrivateMessageEventDTO(seq, type, messageId, message), onlyUserId));
+                event = entry.event().event();
+                // 只入队，写出在投递线程上进行；失败或积压溢出的连接由发件箱回调移除
+                for (Subscriber sub : ch.subscribers) {
+                    send(sub, entry);
+                }
+            }
+            for (Long w : ch.watchers) {
+                if (onlyUserId == null || onlyUserId.equals(w)) watchers.add(w);
+            }
+        }
+        for (Long w : watchers) {
+            String topic = UserEventStream.conversationTopic(partnerOf(key, w));
+            if (type == EventType.TYPING) {
+                userEvents.publishTransient(w, topic, name, event);
+            } else {
+                userEvents.publish(w, topic, name, event);
+            }
+        }
+    }
+
+    // 多路复用流订阅了会话主题：登记为 watcher 并保持会话通道存活
+    private void watch(Long userId, String topic) {
+        Long otherId = UserEventStream.conversationPartner(topic);
+        if (otherId == null) return;
+        String key = key(userId, otherId);
+        while (true) {
+            Channel ch = channel(key);
+            synchronized (ch) {
+                if (ch.closed) continue;
+                ch.watchers.add(userId);
+                ch.idleSince = 0L;
+                return;
+            }
+        }
+    }
+
+    private void unwatch(Long userId, String topic) {
+        Long otherId = UserEventStream.conversationPartner(topic);
+        if (otherId == null) return;
+        Channel ch = channels.get(key(userId, otherId));
+        if (ch == null) return;
+        synchronized (ch) {
+            if (ch.watchers.remove(userId) && ch.idle()) ch.idleSince = System.currentTimeMillis();
+        }
+    }
+
+    // 调用方持有 ch 锁：先补发，再加入订阅集合，保证新订阅收到的事件不乱序、不遗漏
+    private void attach(Channel ch, Subscriber sub, List<EventLog.Entry<Buffered>> missed) {
+        for (EventLog.Entry<Buffered> entry : missed) {
+            if (!send(sub, entry)) return;
+        }
+        ch.subscribers.add(sub);
+        ch.idleSince = 0L;
+    }
+
+    private boolean send(Subscriber sub, EventLog.Entry<Buffered> entry) {
+        Buffered b = entry.event();
+        if (b.onlyUserId() != null && !b.onlyUserId().equals(sub.userId())) return true;
+        String name = b.event().getType().name().toLowerCase(Locale.ROOT);
+        return sub.outbox().offer(SseEmitter.event().id(entry.id()).name(name).data(b.event()));
+    }
+
+    // 新建通道时先同步集群绑定再返回，保证之后的快照之后发布的事件都能到达本机
+    private Channel channel(String key) {
+        Channel existing = channels.get(key);
+        if (existing != null) return existing;
+        Channel created = new Channel(new EventLog<>(bufferSize));
+        Channel ch = channels.putIfAbsent(key, created);
+        if (ch != null) return ch;
+        Relay r = relay;
+        if (r != null) r.sync(key);
+        return created;
+    }
+
+    boolean hasChannel(String key) {
+        return channels.containsKey(key);
+    }
+
+    Set<String> channelKeys() {
+        return new HashSet<>(channels.keySet());
+    }
+
+    void setRelay(Relay relay) {
+        this.relay = relay;
+    }
+
+    private void remove(String key, SseEmitter emitter) {
+        Channel ch = channels.get(key);
+        if (ch == null) return;
+        synchronized (ch) {
+            for (Subscriber sub : ch.subscribers) {
+                if (sub.outbox().emitter() != emitter) continue;
+                ch.subscribers.remove(sub);
+                sub.outbox().close();
+                if (ch.idle()) ch.idleSince = System.currentTimeMillis();
             }
         }
-        for (SseEmitter d : dead) remove(key, d);
     }
 
-    private void remove(String key, SseEmitter em) {
-        Set<SseEmitter> set = emitters.get(key);
-        if (set != null) {
-            set.remove(em);
-            if (set.isEmpty()) emitters.remove(key);
+    /**
+     * 回收无人订阅且超过保留时间的会话缓冲
+     */
+    @Scheduled(fixedDelayString = "${blog.sse.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Channel> e : channels.entrySet()) {
+            Channel ch = e.getValue();
+            synchronized (ch) {
+                if (!ch.idle() || now - ch.idleSince < idleRetentionMs) continue;
+                ch.closed = true;
+                channels.remove(e.getKey(), ch);
+            }
+            Relay r = relay;
+            if (r != null) r.sync(e.getKey());
         }
     }
 
@@ -65,4 +289,50 @@ public class MessageEventPublisher {
         long max = Math.max(a, b);
         return min + "-" + max;
     }
+
+    // 会话 key 中 userId 的对方；自己和自己的会话返回自己
+    private Long partnerOf(String key, Long userId) {
+        int dash = key.indexOf('-');
+        Long a = Long.valueOf(key.substring(0, dash));
+        return a.equals(userId) ? Long.valueOf(key.substring(dash + 1)) : a;
+    }
+
+    /**
+     * 集群转发扩展点
+     */
+    interface Relay {
+        /**
+         * 把事件发往其他节点（本机已投递，回流由 Relay 过滤）；发送失败只影响其他节点
+         */
+        void publish(ConversationEventMessage event);
+
+        /**
+         * 使 key 的订阅绑定与本机是否持有该会话通道一致
+         */
+        void sync(String key);
+    }
+
+    private static final class Channel {
+        final EventLog<Buffered> log;
+        final Set<Subscriber> subscribers = new CopyOnWriteArraySet<>();
+        // 在多路复用事件流上订阅了本会话的用户
+        final Set<Long> watchers = new HashSet<>();
+        // 最后一个订阅断开的时刻；有订阅时为 0。新建时视为刚空闲
+        long idleSince = System.currentTimeMillis();
+        boolean closed;
+
+        Channel(EventLog<Buffered> log) {
+            this.log = log;
+        }
+
+        boolean idle() {
+            return subscribers.isEmpty() && watchers.isEmpty();
+        }
+    }
+
+    private record Buffered(PrivateMessageEventDTO event, Long onlyUserId) {
+    }
+
+    private record Subscriber(Long userId, SseDispatcher.Outbox outbox) {
+    }
 }
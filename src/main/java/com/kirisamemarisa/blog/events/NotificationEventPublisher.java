@@ -2,57 +2,105 @@ package com.kirisamemarisa.blog.events;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import jakarta.annotation.PreDestroy;
-import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 /**
  * 简单的用户级 SSE 推送管理，用于通知（好友申请、系统通知等）。
  * key = userId
+ * 每条通知带 SSE id 并记入用户级环形缓冲；客户端带 Last-Event-ID 重连时只补发缺失的通知，
+ * 缺口已滚出缓冲时才重新生成 init 快照。用户全部连接断开后缓冲再保留 idle-retention-seconds。
+ * 事件在用户锁内按顺序放入各连接的发件箱，由 SseDispatcher 在固定线程池上逐连接顺序写出。
+ * 所有事件同时转发到用户的多路复用事件流（UserEventStream 的 notifications 主题）。
  */
 @Component
 public class NotificationEventPublisher {
     private static final Logger logger = LoggerFactory.getLogger(NotificationEventPublisher.class);
+    private static final String NOTIFICATION_EVENT = "notification";
+    public static final String CATCHUP_EVENT = "catchup";
+    // SseDispatcher 中的连接分组（连接数上限与计数按组统计）
+    private static final String SCOPE = "notification";
 
-    private final Map<Long, Set<SseEmitter>> emitters = new ConcurrentHashMap<>();
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+    private final int bufferSize;
+    private final long idleRetentionMs;
+    private final SseDispatcher dispatcher;
+    private final UserEventStream userEvents;
 
-    // Executor to decouple SSE writes from request threads so failures don't affect callers
-    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
-        Thread t = new Thread(r, "sse-notification-%d".formatted(Thread.currentThread().getId()));
-        t.setDaemon(true);
-        return t;
-    });
+    public NotificationEventPublisher(@Value("${blog.sse.notification.buffer-size:100}") int bufferSize,
+                                      @Value("${blog.sse.notification.idle-retention-seconds:300}") long idleRetentionSeconds,
+                                      SseDispatcher dispatcher,
+                                      UserEventStream userEvents) {
+        this.bufferSize = Math.max(1, bufferSize);
+        this.idleRetentionMs = Math.max(0, idleRetentionSeconds) * 1000L;
+        this.dispatcher = dispatcher;
+        this.userEvents = userEvents;
+    }
 
     public SseEmitter subscribe(Long userId, Object initial) {
+        return subscribe(userId, null, () -> initial);
+    }
+
+    /**
+     * 订阅用户通知。lastEventId 能在缓冲中接上时只补发缺失的通知，不再推送 init；
+     * 否则调用 initial 生成初始数据（只在需要时查库）。
+     */
+    public SseEmitter subscribe(Long userId, String lastEventId, Supplier<?> initial) {
+        return subscribe(userId, lastEventId, initial, null);
+    }
+
+    /**
+     * 同上；未能续传时还会调用 catchUp，在 init 之后以 catchup 事件只发给这一个连接
+     * （不进续传缓冲，也不转发到多路复用事件流），结果为 null 时不发送
+     */
+    public SseEmitter subscribe(Long userId, String lastEventId, Supplier<?> initial, Supplier<?> catchUp) {
         SseEmitter emitter = new SseEmitter(0L);
-        emitters.computeIfAbsent(userId, k -> new CopyOnWriteArraySet<>()).add(emitter);
+        SseDispatcher.Outbox outbox = dispatcher.open(SCOPE, userId, emitter, () -> remove(userId, emitter));
         emitter.onCompletion(() -> remove(userId, emitter));
         emitter.onTimeout(() -> remove(userId, emitter));
         emitter.onError(e -> {
             logger.info("SSE emitter error for user {}: {}", userId, e == null ? "<null>" : e.toString());
             remove(userId, emitter);
         });
-        if (initial != null) {
-            try {
-                emitter.send(SseEmitter.event().name("init").data(initial));
-            } catch (IOException ignored) {
-                logger.debug("Failed to send initial named event to user {}: connection may be closed", userId);
-            } catch (Exception ex) {
-                logger.warn("Unexpected error sending initial named event to user {}: {}", userId, ex.toString());
+
+        Channel seen = channel(userId);
+        long fromSeq;
+        synchronized (seen) {
+            if (!seen.closed) {
+                List<EventLog.Entry<Named>> missed = seen.log.since(lastEventId);
+                if (missed != null) {
+                    attach(seen, outbox, missed);
+                    logger.info("SSE resumed for user {} ({} missed events)", userId, missed.size());
+                    return emitter;
+                }
             }
-            try {
-                emitter.send(initial);
-            } catch (IOException ignored) {
-                logger.debug("Failed to send initial default event to user {}: connection may be closed", userId);
-            } catch (Exception ex) {
-                logger.warn("Unexpected error sending initial default event to user {}: {}", userId, ex.toString());
+            fromSeq = seen.log.lastSeq();
+        }
+
+        Object payload = initial != null ? initial.get() : null;
+        Object missed = catchUp != null ? catchUp.get() : null;
+        while (true) {
+            Channel ch = channel(userId);
+            synchronized (ch) {
+                if (ch.closed) continue;
+                long after = ch == seen ? fromSeq : 0L;
+                if (payload != null) {
+                    outbox.offer(SseEmitter.event().id(ch.log.idOf(after)).name("init").data(payload));
+                    outbox.offer(SseEmitter.event().data(payload));
+                }
+                if (missed != null) {
+                    outbox.offer(SseEmitter.event().name(CATCHUP_EVENT).data(missed));
+                }
+                // 补发生成 init 期间产生的通知
+                attach(ch, outbox, ch.log.after(after));
+                break;
             }
         }
         logger.info("SSE subscribed for user {}", userId);
@@ -60,68 +108,109 @@ public class NotificationEventPublisher {
     }
 
     public void sendNotification(Long userId, Object payload) {
+        sendEvent(userId, NOTIFICATION_EVENT, payload);
+    }
+
+    /**
+     * 推送指定名称的事件（如 unread），同样记入续传缓冲；
+     * 只有 notification 事件会额外以默认 message 事件再发一次（兼容旧前端）
+     */
+    public void sendEvent(Long userId, String name, Object payload) {
         try {
-            Set<SseEmitter> set = emitters.get(userId);
-            if (set == null || set.isEmpty())
+            userEvents.publish(userId, UserEventStream.TOPIC_NOTIFICATIONS, name, payload);
+
+            // 用户既不在线也没有待续传的缓冲时无需记录
+            Channel ch = channels.get(userId);
+            if (ch == null)
                 return;
 
-            List<SseEmitter> snapshot = new ArrayList<>(set);
-            for (SseEmitter em : snapshot) {
-                executor.submit(() -> {
-                    try {
-                        try {
-                            em.send(SseEmitter.event().name("notification").data(payload));
-                        } catch (IOException e) {
-                            logger.debug("Failed to send named notification to user {} emitter: {}", userId, e.toString());
-                            remove(userId, em);
-                            return;
-                        } catch (Exception e) {
-                            logger.warn("Unexpected error sending named notification to user {}: {}", userId, e.toString());
-                        }
-
-                        try {
-                            em.send(payload);
-                        } catch (IOException e) {
-                            logger.debug("Failed to send default notification to user {} emitter: {}", userId, e.toString());
-                            remove(userId, em);
-                        } catch (Exception e) {
-                            logger.warn("Unexpected error sending default notification to user {}: {}", userId, e.toString());
-                        }
-                    } catch (Throwable t) {
-                        logger.warn("Unhandled throwable while delivering notification to user {} emitter: {}", userId, t.toString());
-                        try {
-                            remove(userId, em);
-                        } catch (Exception ignore) {
-                        }
-                    }
-                });
+            synchronized (ch) {
+                if (ch.closed)
+                    return;
+                EventLog.Entry<Named> entry = ch.log.append(seq -> new Named(name, payload));
+                // 在锁内入队，保证同一连接上的事件顺序与 seq 一致
+                for (SseDispatcher.Outbox outbox : ch.outboxes) {
+                    deliver(outbox, entry);
+                }
             }
         } catch (Throwable t) {
             logger.warn("Unexpected throwable in sendNotification for user {}: {}", userId, t.toString());
         }
     }
 
+    // 调用方持有 ch 锁：先把缺失事件入队，再加入连接集合
+    private void attach(Channel ch, SseDispatcher.Outbox outbox, List<EventLog.Entry<Named>> missed) {
+        for (EventLog.Entry<Named> entry : missed) {
+            if (!deliver(outbox, entry)) return;
+        }
+        ch.outboxes.add(outbox);
+        ch.idleSince = 0L;
+    }
+
+    // 入队失败（连接已关闭或积压溢出）时返回 false
+    private boolean deliver(SseDispatcher.Outbox outbox, EventLog.Entry<Named> entry) {
+        Named event = entry.event();
+        if (!outbox.offer(SseEmitter.event().id(entry.id()).name(event.name()).data(event.data())))
+            return false;
+        if (!NOTIFICATION_EVENT.equals(event.name()))
+            return true;
+        return outbox.offer(SseEmitter.event().data(event.data()));
+    }
+
+    private Channel channel(Long userId) {
+        return channels.computeIfAbsent(userId, k -> new Channel(new EventLog<>(bufferSize)));
+    }
+
     private void remove(Long userId, SseEmitter em) {
-        Set<SseEmitter> set = emitters.get(userId);
-        if (set != null) {
-            set.remove(em);
-            if (set.isEmpty())
-                emitters.remove(userId);
+        Channel ch = channels.get(userId);
+        if (ch != null) {
+            synchronized (ch) {
+                for (SseDispatcher.Outbox outbox : ch.outboxes) {
+                    if (outbox.emitter() != em) continue;
+                    ch.outboxes.remove(outbox);
+                    outbox.close();
+                    if (ch.outboxes.isEmpty())
+                        ch.idleSince = System.currentTimeMillis();
+                }
+            }
         }
         logger.info("SSE removed for user {}", userId);
     }
 
     public boolean isOnline(Long userId) {
-        Set<SseEmitter> set = emitters.get(userId);
-        return set != null && !set.isEmpty();
+        Channel ch = channels.get(userId);
+        return (ch != null && !ch.outboxes.isEmpty()) || userEvents.isOnline(userId);
     }
 
-    @PreDestroy
-    public void shutdown() {
-        try {
-            executor.shutdownNow();
-        } catch (Exception ex) {
-            logger.debug("Error shutting down SSE executor: {}", ex.toString());
+    /**
+     * 回收已离线且超过保留时间的用户缓冲
+     */
+    @Scheduled(fixedDelayString = "${blog.sse.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Channel> e : channels.entrySet()) {
+            Channel ch = e.getValue();
+            synchronized (ch) {
+                if (ch.outboxes.isEmpty() && now - ch.idleSince >= idleRetentionMs) {
+                    ch.closed = true;
+                    channels.remove(e.getKey(), ch);
+                }
+            }
         }
     }
-}
\ No newline at end of file
+
+    private static final class Channel {
+        final EventLog<Named> log;
+        final Set<SseDispatcher.Outbox> outboxes = new CopyOnWriteArraySet<>();
+        // 最后一个连接断开的时刻；有连接时为 0。新建时视为刚空闲
+        long idleSince = System.currentTimeMillis();
+        boolean closed;
+
+        Channel(EventLog<Named> log) {
+            this.log = log;
+        }
+    }
+
+    private record Named(String name, Object data) {
+    }
+}
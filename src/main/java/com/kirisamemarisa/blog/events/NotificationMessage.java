@@ -8,6 +8,8 @@ import java.time.Instant;
  * 增加 referenceId / referenceExtraId 以携带业务主键。
  */
 public class NotificationMessage implements Serializable {
+    // 收件箱记录 ID；未落库的通知为空
+    private Long id;
     private Long requestId;
     private Long senderId;
     private Long receiverId;
@@ -19,6 +21,13 @@ public class NotificationMessage implements Serializable {
     // 与 DTO 对齐，用于在 MQ 中携带业务 ID
     private Long referenceId;
     private Long referenceExtraId;
+    // 合并通知的次数
+    private int actorCount = 1;
+    // 已在该节点本地投递过（broker 不可用时先本地推送、之后补发），该节点收到时跳过
+    private String deliveredOnNode;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
 
     public Long getRequestId() { return requestId; }
     public void setRequestId(Long requestId) { this.requestId = requestId; }
@@ -29,6 +38,12 @@ public class NotificationMessage implements Serializable {
     public Long getReceiverId() { return receiverId; }
     public void setReceiverId(Long receiverId) { this.receiverId = receiverId; }
 
+    public String getDeliveredOnNode() { return deliveredOnNode; }
+    public void setDeliveredOnNode(String deliveredOnNode) { this.deliveredOnNode = deliveredOnNode; }
+
+    public int getActorCount() { return actorCount; }
+    public void setActorCount(int actorCount) { this.actorCount = actorCount; }
+
     public String getType() { return type; }
     public void setType(String type) { this.type = type; }
 
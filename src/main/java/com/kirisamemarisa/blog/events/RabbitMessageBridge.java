@@ -0,0 +1,151 @@
+package com.kirisamemarisa.blog.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 私信会话事件专用的 topic exchange。
+ * 每个实例一个匿名独占队列，启动时不绑定任何 routing key，由 RabbitMessageBridge 按需绑定。
+ */
+@Configuration
+class RabbitMessageConfig {
+    @Value("${app.rabbitmq.message-exchange:blog.messages}")
+    private String exchangeName;
+
+    @Bean
+    public TopicExchange conversationEventExchange() {
+        return new TopicExchange(exchangeName, true, false);
+    }
+
+    @Bean
+    public AnonymousQueue conversationEventQueue() {
+        return new AnonymousQueue();
+    }
+}
+
+/**
+ * 私信会话事件的集群转发：事件以 routing key 'conversation.{min-max}' 发往专用 exchange，
+ * 每个实例只为本机持有会话通道（有订阅或仍在续传保留期内）的 key 绑定队列，
+ * 通道建立时绑定、被回收时解绑，因此节点只收到自己需要的会话事件。
+ * 发出方总是先在本机投递，再把事件发往 exchange 供其他节点投递；
+ * 事件带发出节点 ID，本机收到自己的回流时跳过，因此发布是否到达 broker 都不影响本机订阅。
+ */
+@Component
+public class RabbitMessageBridge implements MessageEventPublisher.Relay {
+    private static final Logger logger = LoggerFactory.getLogger(RabbitMessageBridge.class);
+    private static final String ROUTING_PREFIX = "conversation.";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final AmqpAdmin amqpAdmin;
+    private final MessageEventPublisher publisher;
+    private final String exchangeName;
+    private final String queueName;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 已在 broker 上声明的绑定
+    private final Set<String> bound = ConcurrentHashMap.newKeySet();
+    // 同一 key 的绑定/解绑串行执行，避免回收与新订阅交错时把刚建立的绑定解掉
+    private final Object[] locks = new Object[64];
+    // 连接重建后匿名队列是新建的，需要重新声明全部绑定
+    private final AtomicBoolean resync = new AtomicBoolean();
+
+    public RabbitMessageBridge(RabbitTemplate rabbitTemplate, AmqpAdmin amqpAdmin,
+                               ConnectionFactory connectionFactory, MessageEventPublisher publisher,
+                               @Qualifier("conversationEventExchange") TopicExchange exchange,
+                               @Qualifier("conversationEventQueue") AnonymousQueue queue) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.amqpAdmin = amqpAdmin;
+        this.publisher = publisher;
+        this.exchangeName = exchange.getName();
+        this.queueName = queue.getName();
+        for (int i = 0; i < locks.length; i++) locks[i] = new Object();
+        // 连接回调里不做声明（可能处于建连线程内），只打标记交给定时任务
+        connectionFactory.addConnectionListener(connection -> resync.set(true));
+        publisher.setRelay(this);
+    }
+
+    @Override
+    public void publish(ConversationEventMessage event) {
+        try {
+            event.setOriginNode(nodeId);
+            rabbitTemplate.convertAndSend(exchangeName, ROUTING_PREFIX + event.getKey(), event);
+        } catch (Exception ex) {
+            // 本机已投递，只是其他节点上的订阅收不到这条
+            logger.warn("Failed to publish conversation event to RabbitMQ: {}", ex.toString());
+        }
+    }
+
+    @Override
+    public void sync(String key) {
+        sync(key, false);
+    }
+
+    @RabbitListener(queues = "#{conversationEventQueue.name}")
+    public void onMessage(ConversationEventMessage event) {
+        if (event == null || event.getKey() == null || event.getType() == null) return;
+        // 本机发出的事件已在发布时投递
+        if (nodeId.equals(event.getOriginNode())) return;
+        try {
+            publisher.deliver(event.getKey(), event.getType(), event.getMessageId(),
+                    event.getMessage(), event.getOnlyUserId());
+        } catch (Exception ex) {
+            logger.warn("Failed to deliver conversation event {} locally: {}", event.getKey(), ex.toString());
+        }
+    }
+
+    /**
+     * 连接重建后重新声明本机所需的全部绑定，并清理已不需要的绑定
+     */
+    @Scheduled(fixedDelayString = "${app.rabbitmq.message-resync-interval-ms:5000}")
+    public void resyncIfNeeded() {
+        if (!resync.getAndSet(false)) return;
+        Set<String> keys = new HashSet<>(bound);
+        keys.addAll(publisher.channelKeys());
+        for (String key : keys) {
+            sync(key, true);
+        }
+        logger.info("Conversation bindings re-synced: {} bound", bound.size());
+    }
+
+    // 让 key 的绑定与本机是否持有该会话通道一致；force 时即使记录为已绑定也重新声明
+    private void sync(String key, boolean force) {
+        synchronized (locks[Math.floorMod(key.hashCode(), locks.length)]) {
+            boolean wanted = publisher.hasChannel(key);
+            try {
+                if (wanted && (force || !bound.contains(key))) {
+                    amqpAdmin.declareBinding(binding(key));
+                    bound.add(key);
+                } else if (!wanted && bound.contains(key)) {
+                    amqpAdmin.removeBinding(binding(key));
+                    bound.remove(key);
+                }
+            } catch (Exception ex) {
+                logger.warn("Failed to {} conversation binding {}: {}", wanted ? "declare" : "remove", key, ex.toString());
+                resync.set(true);
+            }
+        }
+    }
+
+    private Binding binding(String key) {
+        return new Binding(queueName, Binding.DestinationType.QUEUE, exchangeName, ROUTING_PREFIX + key, null);
+    }
+}
@@ -1,6 +1,9 @@
 package com.kirisamemarisa.blog.events;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kirisamemarisa.blog.dto.NotificationDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.core.AmqpAdmin;
@@ -9,19 +12,41 @@ import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.TopicExchange;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Component;
 import org.springframework.amqp.core.AnonymousQueue;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
- * Simple RabbitMQ bridge: publish NotificationMessage to exchange with routing key 'notification.{userId}',
+ * RabbitMQ bridge: publish NotificationMessage to exchange with routing key 'notification.{userId}',
  * and each instance creates an exclusive anonymous queue bound to the exchange so all instances receive messages
  * and forward to local SSE emitters.
+ * <p>
+ * 发布是异步的：publish 只把消息放进有界内存缓冲，后台线程按批发送并整批等待 broker 确认
+ * （RabbitConfig 在未显式配置 spring.rabbitmq.publisher-confirm-type 时把连接工厂设为 simple；
+ * 显式配置为其他类型时退化为不等待确认的发送，启动时告警，此时 broker 收到前丢失的批次不会落盘补发）。
+ * 发送失败时按指数退避重试；退避期间及积压未清空前的消息追加到本地落盘文件（JSON 行，fsync），
+ * 同时先推送给本节点的 SSE 连接，broker 恢复后按原顺序补发给其他节点（本节点收到时跳过）。
+ * 缓冲已满时请求线程只做本地推送，落盘交给发布线程，请求线程上没有文件 IO。
+ * 投递语义为至少一次：确认超时的批次可能已部分到达，补发时会重复。
  */
 @Configuration
 class RabbitConfig {
@@ -49,45 +74,402 @@ class RabbitConfig {
         return new Jackson2JsonMessageConverter();
     }
 
+    /**
+     * 通知发布按批等待 broker 确认：连接工厂未开启任何确认模式时改为 simple，
+     * 已显式配置（如 correlated）时保持不变，由 RabbitNotificationBridge 退化为不等待确认
+     */
+    @Bean
+    public static BeanPostProcessor publisherConfirmsPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof CachingConnectionFactory factory
+                        && !factory.isPublisherConfirms() && !factory.isSimplePublisherConfirms()) {
+                    factory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.SIMPLE);
+                }
+                return bean;
+            }
+        };
+    }
+
 }
 
 @Component
 public class RabbitNotificationBridge {
     private static final Logger logger = LoggerFactory.getLogger(RabbitNotificationBridge.class);
+    private static final String ROUTING_PREFIX = "notification.";
+    // 缓冲为空时的轮询间隔，到期后检查是否该补发落盘消息
+    private static final long IDLE_POLL_MS = 1000;
 
     private final RabbitTemplate rabbitTemplate;
     private final NotificationEventPublisher publisher;
+    private final ObjectMapper objectMapper;
     private final String exchangeName;
+    private final BlockingQueue<NotificationMessage> buffer;
+    // 缓冲已满时已在本地推送过、等待发布线程落盘的消息
+    private final BlockingQueue<NotificationMessage> overflow;
+    private final int batchSize;
+    private final long maxWaitMs;
+    private final long confirmTimeoutMs;
+    private final long retryInitialMs;
+    private final long retryMaxMs;
+    private final Path spillFile;
+    private final Path replayFile;
+    // 本节点标识：落盘前已在本地推送过的消息带上它，补发回来时跳过
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 落盘文件的读写与 spillPending 由 spillLock 保护
+    private final Object spillLock = new Object();
+    private volatile boolean spillPending;
+    // 以下退避状态只在发布线程中读写
+    private int consecutiveFailures;
+    private long nextAttemptAt;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong lost = new AtomicLong();
+
+    private volatile boolean running = true;
+    // 连接工厂开启了 simple 确认时整批等待确认，否则只要发送未抛异常即视为成功
+    private boolean confirms;
+    private Thread worker;
 
     public RabbitNotificationBridge(RabbitTemplate rabbitTemplate, NotificationEventPublisher publisher,
-                                    @Value("${app.rabbitmq.exchange:blog.notifications}") String exchangeName) {
+                                    ObjectMapper objectMapper,
+                                    @Value("${app.rabbitmq.exchange:blog.notifications}") String exchangeName,
+                                    @Value("${app.rabbitmq.publisher.buffer-capacity:10000}") int bufferCapacity,
+                                    @Value("${app.rabbitmq.publisher.batch-size:100}") int batchSize,
+                                    @Value("${app.rabbitmq.publisher.max-wait-ms:50}") long maxWaitMs,
+                                    @Value("${app.rabbitmq.publisher.confirm-timeout-ms:5000}") long confirmTimeoutMs,
+                                    @Value("${app.rabbitmq.publisher.retry-initial-ms:500}") long retryInitialMs,
+                                    @Value("${app.rabbitmq.publisher.retry-max-ms:30000}") long retryMaxMs,
+                                    @Value("${app.rabbitmq.publisher.spill-file:data/notification-spill.jsonl}") String spillFile) {
         this.rabbitTemplate = rabbitTemplate;
         this.publisher = publisher;
+        this.objectMapper = objectMapper;
         this.exchangeName = exchangeName;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferCapacity));
+        this.overflow = new ArrayBlockingQueue<>(Math.max(1, bufferCapacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.maxWaitMs = Math.max(0, maxWaitMs);
+        this.confirmTimeoutMs = Math.max(1, confirmTimeoutMs);
+        this.retryInitialMs = Math.max(1, retryInitialMs);
+        this.retryMaxMs = Math.max(this.retryInitialMs, retryMaxMs);
+        this.spillFile = Paths.get(spillFile).toAbsolutePath();
+        this.replayFile = Paths.get(this.spillFile + ".replaying");
         // configure converter
         this.rabbitTemplate.setMessageConverter(new Jackson2JsonMessageConverter());
     }
 
+    @PostConstruct
+    public void start() {
+        confirms = rabbitTemplate.getConnectionFactory().isSimplePublisherConfirms();
+        if (!confirms) {
+            // 没有发布确认时无法判断批次是否到达 broker，只有发送时抛出异常的批次才会落盘补发
+            logger.warn("RabbitMQ publisher confirms are not enabled (spring.rabbitmq.publisher-confirm-type is not simple), "
+                    + "notifications are published without waiting for broker confirms");
+        }
+        synchronized (spillLock) {
+            try {
+                Files.createDirectories(spillFile.getParent());
+                // 上次补发到一半退出：未补发完的部分排回最前面
+                if (Files.exists(replayFile)) {
+                    requeueReplay(null, null);
+                }
+            } catch (IOException ex) {
+                logger.warn("Failed to recover notification spill file {}: {}", spillFile, ex.toString());
+            }
+            spillPending = hasContent(spillFile) || hasContent(replayFile);
+        }
+        if (spillPending) {
+            logger.info("Found spilled notifications in {}, will replay once RabbitMQ is reachable", spillFile);
+        }
+        worker = new Thread(this::publishLoop, "rabbit-notification-publisher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 异步发布；缓冲已满时先本地推送，再交给发布线程落盘，不在调用方线程上做文件 IO
+     */
     public void publish(NotificationMessage msg) {
         if (msg == null || msg.getReceiverId() == null) return;
+        accepted.incrementAndGet();
+        if (running && buffer.offer(msg)) return;
+        deliverLocally(msg);
+        msg.setDeliveredOnNode(nodeId);
+        if (!overflow.offer(msg)) {
+            // 发布线程长时间卡住：本节点已推送，其他节点错过这条（收件箱中仍可查到）
+            long n = lost.incrementAndGet();
+            if (n == 1 || n % 1000 == 0) {
+                logger.warn("Notification overflow queue is full, {} notifications not relayed to other nodes", n);
+            }
+        }
+    }
+
+    private void publishLoop() {
+        List<NotificationMessage> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty() || !overflow.isEmpty()) {
+            try {
+                NotificationMessage first = buffer.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    collect(batch);
+                }
+                if (spillPending && System.currentTimeMillis() >= nextAttemptAt) {
+                    replaySpill();
+                }
+                if (!batch.isEmpty()) {
+                    deliver(batch);
+                }
+                spillOverflow();
+            } catch (InterruptedException ie) {
+                // 关闭时被中断：剩余消息落盘，下次启动补发
+                running = false;
+                buffer.drainTo(batch);
+                spill(batch);
+                spillOverflow();
+            } catch (Exception ex) {
+                logger.warn("Rabbit notification publisher loop error: {}", ex.toString());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // 在 max-wait-ms 内凑满一批
+    private void collect(List<NotificationMessage> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        while (batch.size() < batchSize) {
+            buffer.drainTo(batch, batchSize - batch.size());
+            if (batch.size() >= batchSize) break;
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) break;
+            NotificationMessage next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) break;
+            batch.add(next);
+        }
+    }
+
+    // 积压未清空或仍在退避期内时直接落盘，保证先后顺序
+    private void deliver(List<NotificationMessage> batch) {
+        if (!spillPending && System.currentTimeMillis() >= nextAttemptAt && send(batch)) {
+            published.addAndGet(batch.size());
+            return;
+        }
+        spill(batch);
+    }
+
+    /**
+     * 在同一个 channel 上发送整批并等待整批确认，超时或被 nack 视为失败；未开启确认时只发送
+     */
+    private boolean send(List<NotificationMessage> batch) {
         try {
-            // routing key by receiver id
-            String routingKey = "notification." + msg.getReceiverId();
-            rabbitTemplate.convertAndSend(exchangeName, routingKey, msg);
+            rabbitTemplate.invoke(ops -> {
+                for (NotificationMessage m : batch) {
+                    ops.convertAndSend(exchangeName, ROUTING_PREFIX + m.getReceiverId(), m);
+                }
+                if (confirms) {
+                    ops.waitForConfirmsOrDie(confirmTimeoutMs);
+                }
+                return null;
+            });
+            consecutiveFailures = 0;
+            nextAttemptAt = 0L;
+            return true;
         } catch (Exception ex) {
-            logger.warn("Failed to publish notification to RabbitMQ: {}", ex.toString());
-            // fallback: send locally
+            failedBatches.incrementAndGet();
+            consecutiveFailures++;
+            long backoff = Math.min(retryMaxMs, retryInitialMs << Math.min(consecutiveFailures - 1, 20));
+            nextAttemptAt = System.currentTimeMillis() + backoff;
+            logger.warn("Failed to publish {} notifications to RabbitMQ (attempt {}), retrying in {} ms: {}",
+                    batch.size(), consecutiveFailures, backoff, ex.toString());
+            return false;
+        }
+    }
+
+    /**
+     * 落盘：先推送给本节点的连接并打上本节点标识，再以 JSON 行追加到落盘文件并 fsync
+     */
+    private void spill(List<NotificationMessage> batch) {
+        if (batch.isEmpty()) return;
+        for (NotificationMessage m : batch) {
+            deliverLocally(m);
+            m.setDeliveredOnNode(nodeId);
+        }
+        append(batch);
+    }
+
+    // 发布线程中执行：缓冲满时 publish 已在本地推送过的消息，排在当前积压之后落盘
+    private void spillOverflow() {
+        if (overflow.isEmpty()) return;
+        List<NotificationMessage> pending = new ArrayList<>(overflow.size());
+        overflow.drainTo(pending);
+        append(pending);
+    }
+
+    private void append(List<NotificationMessage> batch) {
+        if (batch.isEmpty()) return;
+        synchronized (spillLock) {
+            try (FileOutputStream out = new FileOutputStream(spillFile.toFile(), true)) {
+                Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                for (NotificationMessage m : batch) {
+                    w.write(objectMapper.writeValueAsString(m));
+                    w.write('\n');
+                }
+                w.flush();
+                out.getFD().sync();
+                spillPending = true;
+                spilled.addAndGet(batch.size());
+            } catch (IOException ex) {
+                // 本节点已推送过，其他节点的在线用户会错过这批实时推送（收件箱中仍可查到）
+                lost.addAndGet(batch.size());
+                logger.warn("Failed to spill {} notifications to {}: {}", batch.size(), spillFile, ex.toString());
+            }
+        }
+    }
+
+    /**
+     * 按原顺序补发落盘消息。补发前把落盘文件移为 .replaying，新落盘的消息写入新文件；
+     * 中途失败时把未补发的部分与新文件按顺序合并回落盘文件，等下次退避到期再试。
+     */
+    private void replaySpill() {
+        synchronized (spillLock) {
+            try {
+                if (!Files.exists(replayFile)) {
+                    if (!hasContent(spillFile)) {
+                        spillPending = false;
+                        return;
+                    }
+                    Files.move(spillFile, replayFile, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException ex) {
+                logger.warn("Failed to prepare notification spill replay: {}", ex.toString());
+                return;
+            }
+        }
+        long sent = 0;
+        List<String> lines = new ArrayList<>(batchSize);
+        try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+            String line;
+            while (true) {
+                lines.clear();
+                while (lines.size() < batchSize && (line = reader.readLine()) != null) {
+                    if (!line.isBlank()) lines.add(line);
+                }
+                if (lines.isEmpty()) break;
+                if (!send(parse(lines))) {
+                    synchronized (spillLock) {
+                        requeueReplay(lines, reader);
+                    }
+                    logger.info("Replayed {} spilled notifications before RabbitMQ failed again", sent);
+                    return;
+                }
+                sent += lines.size();
+                replayed.addAndGet(lines.size());
+            }
+        } catch (IOException ex) {
+            logger.warn("Failed to replay spilled notifications from {}: {}", replayFile, ex.toString());
+            return;
+        }
+        synchronized (spillLock) {
             try {
-                publisher.sendNotification(msg.getReceiverId(), toDto(msg));
-            } catch (Exception e) {
-                logger.warn("Failed to fallback-send notification locally: {}", e.toString());
+                Files.deleteIfExists(replayFile);
+            } catch (IOException ex) {
+                logger.warn("Failed to delete replayed spill file {}: {}", replayFile, ex.toString());
+            }
+            spillPending = hasContent(spillFile);
+        }
+        logger.info("Replayed {} spilled notifications to RabbitMQ", sent);
+    }
+
+    /**
+     * 调用方持有 spillLock：把 head + reader 剩余内容（为空时取整个 .replaying 文件）与当前落盘文件按顺序合并回落盘文件
+     */
+    private void requeueReplay(List<String> head, BufferedReader rest) {
+        Path tmp = Paths.get(spillFile + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp.toFile(), false)) {
+            Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            if (head != null) {
+                for (String line : head) {
+                    w.write(line);
+                    w.write('\n');
+                }
+            }
+            if (rest != null) {
+                copyLines(rest, w);
+            } else {
+                try (BufferedReader r = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+                    copyLines(r, w);
+                }
+            }
+            if (Files.exists(spillFile)) {
+                try (BufferedReader r = Files.newBufferedReader(spillFile, StandardCharsets.UTF_8)) {
+                    copyLines(r, w);
+                }
             }
+            w.flush();
+            out.getFD().sync();
+        } catch (IOException ex) {
+            // 合并失败时保留 .replaying，下次补发或重启时再处理
+            logger.warn("Failed to merge notification spill files: {}", ex.toString());
+            return;
+        }
+        try {
+            Files.move(tmp, spillFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(replayFile);
+            spillPending = true;
+        } catch (IOException ex) {
+            logger.warn("Failed to replace notification spill file {}: {}", spillFile, ex.toString());
+        }
+    }
+
+    private static void copyLines(BufferedReader r, Writer w) throws IOException {
+        String line;
+        while ((line = r.readLine()) != null) {
+            if (line.isBlank()) continue;
+            w.write(line);
+            w.write('\n');
+        }
+    }
+
+    private List<NotificationMessage> parse(List<String> lines) {
+        List<NotificationMessage> list = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            try {
+                list.add(objectMapper.readValue(line, NotificationMessage.class));
+            } catch (IOException ex) {
+                lost.incrementAndGet();
+                logger.warn("Skipping unreadable spilled notification: {}", ex.toString());
+            }
+        }
+        return list;
+    }
+
+    private static boolean hasContent(Path file) {
+        try {
+            return Files.exists(file) && Files.size(file) > 0;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private void deliverLocally(NotificationMessage msg) {
+        try {
+            publisher.sendNotification(msg.getReceiverId(), toDto(msg));
+        } catch (Exception e) {
+            logger.warn("Failed to fallback-send notification locally: {}", e.toString());
         }
     }
 
     @RabbitListener(queues = "#{notificationQueue.name}")
     public void onMessage(NotificationMessage msg) {
         if (msg == null) return;
+        // 落盘前已在本节点推送过
+        if (nodeId.equals(msg.getDeliveredOnNode())) return;
         try {
             // deliver to local emitters only
             publisher.sendNotification(msg.getReceiverId(), toDto(msg));
@@ -96,8 +478,40 @@ public class RabbitNotificationBridge {
         }
     }
 
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (worker == null) return;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            worker.interrupt();
+        }
+        logger.info("Rabbit notification publisher stopped: accepted={} published={} spilled={} replayed={} failedBatches={} lost={}",
+                accepted.get(), published.get(), spilled.get(), replayed.get(), failedBatches.get(), lost.get());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("buffered", buffer.size());
+        m.put("overflow", overflow.size());
+        m.put("accepted", accepted.get());
+        m.put("published", published.get());
+        m.put("spilled", spilled.get());
+        m.put("replayed", replayed.get());
+        m.put("failedBatches", failedBatches.get());
+        m.put("lost", lost.get());
+        m.put("spillPending", spillPending);
+        m.put("publisherConfirms", confirms);
+        return m;
+    }
+
     private NotificationDTO toDto(NotificationMessage m) {
         NotificationDTO d = new NotificationDTO();
+        d.setId(m.getId());
         d.setType(m.getType());
         d.setRequestId(m.getRequestId());
         d.setSenderId(m.getSenderId());
@@ -107,6 +521,7 @@ public class RabbitNotificationBridge {
         d.setCreatedAt(m.getCreatedAt());
         d.setReferenceId(m.getReferenceId());
         d.setReferenceExtraId(m.getReferenceExtraId());
+        d.setActorCount(m.getActorCount());
         return d;
     }
 }
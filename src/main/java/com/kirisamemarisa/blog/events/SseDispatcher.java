@@ -0,0 +1,362 @@
+package com.kirisamemarisa.blog.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 两个 SSE 发布器共用的投递引擎。
+ * 每个连接一个串行发件箱（Outbox），事件按入队顺序写出；同一时刻每个发件箱最多有一个写任务在固定线程池上运行，
+ * 因此线程数与待执行任务数都有上界，请求线程只负责入队。
+ * 单个连接积压超过 max-queued-per-client 时丢弃其积压并关闭该连接，
+ * 客户端带 Last-Event-ID 重连后从发布器的环形缓冲补发，不会丢事件。
+ * <p>
+ * 连接管理：
+ * - 定时给空闲连接写注释帧心跳，半开连接会在心跳写失败时被发现；
+ * - 单次写入超过 stall-timeout-ms 仍未返回的连接视为卡死：从发布器摘除，并中断阻塞在写入上的线程；
+ *   中断未能让写入返回时，线程池临时多开一个线程顶替被占住的线程（最多 max-stalled-threads 个），
+ *   写入最终返回后再收回，因此少数慢客户端不会占满投递线程、拖住其他所有连接；
+ * - 同一用户在同一发布器（scope）上最多 max-streams-per-user 个连接，超出时关闭最早的连接。
+ */
+@Component
+public class SseDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(SseDispatcher.class);
+    // 每轮最多写出的事件数，写满后让出线程，避免一个积压很深的连接占住线程
+    private static final int DRAIN_BATCH = 32;
+
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final int maxStalledThreads;
+    // 当前为卡死写入临时补充的线程数
+    private final AtomicInteger compensating = new AtomicInteger();
+    private final int maxQueued;
+    private final int maxStreamsPerUser;
+    private final long heartbeatIntervalMs;
+    private final long stallTimeoutMs;
+
+    private final Set<Outbox> outboxes = ConcurrentHashMap.newKeySet();
+    // scope + userId -> 该用户的连接，按打开顺序；只在 compute 内修改
+    private final Map<UserKey, ArrayDeque<Outbox>> streamsByUser = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> openByScope = new ConcurrentHashMap<>();
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder heartbeats = new LongAdder();
+    private final LongAdder stalled = new LongAdder();
+    private final LongAdder capped = new LongAdder();
+
+    public SseDispatcher(@Value("${blog.sse.delivery.threads:4}") int threads,
+                         @Value("${blog.sse.delivery.max-queued-per-client:256}") int maxQueued,
+                         @Value("${blog.sse.max-streams-per-user:5}") int maxStreamsPerUser,
+                         @Value("${blog.sse.heartbeat-interval-ms:25000}") long heartbeatIntervalMs,
+                         @Value("${blog.sse.stall-timeout-ms:20000}") long stallTimeoutMs,
+                         @Value("${blog.sse.delivery.max-stalled-threads:16}") int maxStalledThreads) {
+        this.maxQueued = Math.max(1, maxQueued);
+        this.maxStreamsPerUser = Math.max(1, maxStreamsPerUser);
+        this.heartbeatIntervalMs = Math.max(1000L, heartbeatIntervalMs);
+        this.stallTimeoutMs = Math.max(1000L, stallTimeoutMs);
+        this.threads = Math.max(1, threads);
+        this.maxStalledThreads = Math.max(0, maxStalledThreads);
+        AtomicInteger seq = new AtomicInteger();
+        // 常驻 threads 个线程；最大值留出顶替卡死线程的余量，只通过调整核心线程数使用
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads + this.maxStalledThreads,
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "sse-delivery-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 为一个连接创建发件箱。scope 区分发布器，userId 用于限制每个用户的连接数（为空时不限制）。
+     * onDead 在写失败、积压溢出、卡死或超出连接数上限导致发件箱关闭时调用一次（可能在入队线程上）
+     */
+    public Outbox open(String scope, Long userId, SseEmitter emitter, Runnable onDead) {
+        Outbox outbox = new Outbox(scope, userId, emitter, onDead);
+        outboxes.add(outbox);
+        openByScope.computeIfAbsent(scope, s -> new AtomicInteger()).incrementAndGet();
+        if (userId == null) return outbox;
+
+        List<Outbox> evicted = new ArrayList<>();
+        streamsByUser.compute(outbox.userKey, (k, streams) -> {
+            if (streams == null) streams = new ArrayDeque<>();
+            streams.addLast(outbox);
+            while (streams.size() > maxStreamsPerUser) {
+                evicted.add(streams.pollFirst());
+            }
+            return streams;
+        });
+        for (Outbox old : evicted) {
+            capped.increment();
+            logger.info("SSE {} streams of user {} exceed {}, closing the oldest", scope, userId, maxStreamsPerUser);
+            old.kill(0, true);
+        }
+        return outbox;
+    }
+
+    /**
+     * 给空闲连接发心跳，摘除写入卡死的连接
+     */
+    @Scheduled(fixedDelayString = "${blog.sse.heartbeat-interval-ms:25000}")
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        for (Outbox outbox : outboxes) {
+            long started = outbox.writeStartedAt;
+            if (started > 0 && now - started >= stallTimeoutMs) {
+                // 写线程仍阻塞在 emitter 上，这里不能再调用 emitter 的同步方法
+                stalled.increment();
+                logger.info("SSE {} stream of user {} stalled for {} ms, evicting", outbox.scope, outbox.userId, now - started);
+                outbox.kill(0, false);
+                outbox.release();
+            } else if (now - outbox.lastWriteAt >= heartbeatIntervalMs && outbox.isIdle()) {
+                if (outbox.offer(SseEmitter.event().comment("ping"))) heartbeats.increment();
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        Map<String, Integer> open = new TreeMap<>();
+        openByScope.forEach((scope, n) -> open.put(scope, n.get()));
+        m.put("openStreams", open);
+        m.put("enqueued", enqueued.sum());
+        m.put("delivered", delivered.sum());
+        m.put("dropped", dropped.sum());
+        m.put("overflowedClients", overflowed.sum());
+        m.put("failedWrites", failed.sum());
+        m.put("heartbeats", heartbeats.sum());
+        m.put("stalledEvicted", stalled.sum());
+        m.put("cappedEvicted", capped.sum());
+        m.put("stalledThreads", compensating.get());
+        return m;
+    }
+
+    // 顶替一个卡死的投递线程
+    private boolean compensate() {
+        while (true) {
+            int n = compensating.get();
+            if (n >= maxStalledThreads) return false;
+            if (compensating.compareAndSet(n, n + 1)) break;
+        }
+        resizePool();
+        return true;
+    }
+
+    private void uncompensate() {
+        compensating.decrementAndGet();
+        resizePool();
+    }
+
+    private synchronized void resizePool() {
+        try {
+            executor.setCorePoolSize(threads + compensating.get());
+        } catch (IllegalArgumentException ex) {
+            logger.debug("Failed to resize SSE executor: {}", ex.toString());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            executor.shutdownNow();
+        } catch (Exception ex) {
+            logger.debug("Error shutting down SSE executor: {}", ex.toString());
+        }
+    }
+
+    public final class Outbox implements Runnable {
+        private final String scope;
+        private final Long userId;
+        private final UserKey userKey;
+        private final SseEmitter emitter;
+        private final Runnable onDead;
+        // 以下字段由 this 保护
+        private final ArrayDeque<SseEmitter.SseEventBuilder> queue = new ArrayDeque<>();
+        private boolean scheduled;
+        private boolean closed;
+        // 正在进行的写入开始时刻（没有写入时为 0）与最近一次写完的时刻，供心跳任务读取
+        private volatile long writeStartedAt;
+        private volatile long lastWriteAt = System.currentTimeMillis();
+        // 正在写出的线程；由 writeGuard 保护，保证中断只落在本发件箱的写入上
+        private final Object writeGuard = new Object();
+        private Thread writer;
+        // 卡死时是否为它补充了线程，写入返回后收回
+        private final AtomicBoolean compensated = new AtomicBoolean();
+
+        private Outbox(String scope, Long userId, SseEmitter emitter, Runnable onDead) {
+            this.scope = scope;
+            this.userId = userId;
+            this.userKey = new UserKey(scope, userId);
+            this.emitter = emitter;
+            this.onDead = onDead;
+        }
+
+        public SseEmitter emitter() {
+            return emitter;
+        }
+
+        /**
+         * 入队一个事件；发件箱已关闭或因本次入队溢出而关闭时返回 false
+         */
+        public boolean offer(SseEmitter.SseEventBuilder event) {
+            boolean overflow = false;
+            synchronized (this) {
+                if (closed) return false;
+                if (queue.size() < maxQueued) {
+                    queue.add(event);
+                    enqueued.increment();
+                    if (scheduled) return true;
+                    scheduled = true;
+                } else {
+                    overflow = true;
+                }
+            }
+            if (!overflow) {
+                try {
+                    executor.execute(this);
+                    return true;
+                } catch (RejectedExecutionException ex) {
+                    // 关闭中
+                    close();
+                    return false;
+                }
+            }
+            overflowed.increment();
+            logger.info("SSE client backlog exceeded {} events, closing the stream for resume", maxQueued);
+            kill(1, true);
+            return false;
+        }
+
+        /**
+         * 关闭发件箱并丢弃积压（连接正常断开时由发布器调用）
+         */
+        public void close() {
+            closeOnce();
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < DRAIN_BATCH; i++) {
+                SseEmitter.SseEventBuilder next;
+                boolean finished;
+                synchronized (this) {
+                    finished = closed;
+                    next = closed ? null : queue.poll();
+                    if (next == null) scheduled = false;
+                }
+                if (next == null) {
+                    // 卡死被摘除后写入又恢复了：此时才能安全地结束连接
+                    if (finished) completeQuietly();
+                    return;
+                }
+                synchronized (writeGuard) {
+                    writer = Thread.currentThread();
+                }
+                writeStartedAt = System.currentTimeMillis();
+                try {
+                    emitter.send(next);
+                    delivered.increment();
+                } catch (IOException | IllegalStateException ex) {
+                    // 连接已断开或已完成
+                    failed.increment();
+                    logger.debug("SSE write failed: {}", ex.toString());
+                    kill(0, true);
+                    return;
+                } catch (Exception ex) {
+                    logger.warn("Unexpected error writing SSE event: {}", ex.toString());
+                } finally {
+                    synchronized (writeGuard) {
+                        writer = null;
+                        // 清除卡死处理留下的中断标记，线程回到池中时不带中断状态
+                        Thread.interrupted();
+                    }
+                    writeStartedAt = 0L;
+                    lastWriteAt = System.currentTimeMillis();
+                    if (compensated.getAndSet(false)) uncompensate();
+                }
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException ex) {
+                close();
+            }
+        }
+
+        /**
+         * 释放卡死在写入上的线程：中断写线程，并在写入返回前临时补充一个投递线程
+         */
+        private void release() {
+            synchronized (writeGuard) {
+                if (writer == null) return;
+                if (compensated.compareAndSet(false, true) && !compensate()) compensated.set(false);
+                writer.interrupt();
+            }
+        }
+
+        private synchronized boolean isIdle() {
+            return !closed && queue.isEmpty();
+        }
+
+        // 返回本次调用是否真正关闭了发件箱
+        private boolean closeOnce() {
+            int pending;
+            synchronized (this) {
+                if (closed) return false;
+                closed = true;
+                pending = queue.size();
+                queue.clear();
+            }
+            dropped.add(pending);
+            outboxes.remove(this);
+            openByScope.get(scope).decrementAndGet();
+            if (userId != null) {
+                streamsByUser.computeIfPresent(userKey, (k, streams) -> {
+                    streams.remove(this);
+                    return streams.isEmpty() ? null : streams;
+                });
+            }
+            return true;
+        }
+
+        // 关闭发件箱并通知发布器移除；complete 为 false 时不触碰 emitter（写线程可能仍持有其锁）
+        private void kill(int extraDropped, boolean complete) {
+            dropped.add(extraDropped);
+            boolean first = closeOnce();
+            if (complete) completeQuietly();
+            if (!first) return;
+            try {
+                onDead.run();
+            } catch (Exception ex) {
+                logger.debug("SSE onDead callback failed: {}", ex.toString());
+            }
+        }
+
+        private void completeQuietly() {
+            try {
+                emitter.complete();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    private record UserKey(String scope, Long userId) {
+    }
+}
@@ -0,0 +1,295 @@
+package com.kirisamemarisa.blog.events;
+
+import com.kirisamemarisa.blog.dto.EventStreamStateDTO;
+import com.kirisamemarisa.blog.dto.StreamEventDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * 用户级多路复用事件流（/api/events/stream）。
+ * 一个连接承载该用户的通知、未读数、私信会话事件与输入中提示，事件名区分类型，载荷中的 topic 区分来源：
+ * - notifications：NotificationEventPublisher 推送的 notification / unread 事件；
+ * - conversation:{对方ID}：MessageEventPublisher 推送的 message / recall / delete / typing 事件。
+ * 每个连接有自己的订阅主题集合，可在运行期增删；用户级的主题引用计数变化时通知 TopicListener，
+ * 由 MessageEventPublisher 据此开始或停止向本流转发对应会话的事件。
+ * <p>
+ * 事件按用户记入环形缓冲并带 SSE id（typing 等瞬时事件除外），带 Last-Event-ID 重连时补发新连接订阅主题内的缺失事件；
+ * 接不上时 ready 事件的 resumed 为 false，客户端自行通过 REST 接口刷新。
+ * <p>
+ * 锁顺序：用户通道锁 → 主题锁 → 监听器内部的锁。主题锁内不会再获取用户通道锁。
+ */
+@Component
+public class UserEventStream {
+    private static final Logger logger = LoggerFactory.getLogger(UserEventStream.class);
+    // SseDispatcher 中的连接分组（连接数上限与计数按组统计）
+    private static final String SCOPE = "events";
+
+    public static final String TOPIC_NOTIFICATIONS = "notifications";
+    public static final String CONVERSATION_TOPIC_PREFIX = "conversation:";
+
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+    private final Map<String, Stream> streams = new ConcurrentHashMap<>();
+    private final List<TopicListener> listeners = new CopyOnWriteArrayList<>();
+    private final SseDispatcher dispatcher;
+    private final int bufferSize;
+    private final long idleRetentionMs;
+
+    public UserEventStream(SseDispatcher dispatcher,
+                           @Value("${blog.sse.events.buffer-size:200}") int bufferSize,
+                           @Value("${blog.sse.events.idle-retention-seconds:300}") long idleRetentionSeconds) {
+        this.dispatcher = dispatcher;
+        this.bufferSize = Math.max(1, bufferSize);
+        this.idleRetentionMs = Math.max(0, idleRetentionSeconds) * 1000L;
+    }
+
+    public static String conversationTopic(Long otherId) {
+        return CONVERSATION_TOPIC_PREFIX + otherId;
+    }
+
+    /**
+     * 从 conversation:{对方ID} 主题中解析对方 ID，不是会话主题时返回 null
+     */
+    public static Long conversationPartner(String topic) {
+        if (topic == null || !topic.startsWith(CONVERSATION_TOPIC_PREFIX)) return null;
+        try {
+            return Long.valueOf(topic.substring(CONVERSATION_TOPIC_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public static boolean isValidTopic(String topic) {
+        return TOPIC_NOTIFICATIONS.equals(topic) || conversationPartner(topic) != null;
+    }
+
+    public void addTopicListener(TopicListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 打开一个事件流，topics 为初始订阅主题（调用方已校验）
+     */
+    public SseEmitter subscribe(Long userId, String lastEventId, Set<String> topics) {
+        SseEmitter emitter = new SseEmitter(0L);
+        String streamId = UUID.randomUUID().toString();
+        Stream stream = new Stream(userId, dispatcher.open(SCOPE, userId, emitter, () -> close(streamId)));
+        streams.put(streamId, stream);
+        emitter.onCompletion(() -> close(streamId));
+        emitter.onTimeout(() -> close(streamId));
+        emitter.onError(e -> close(streamId));
+
+        Channel ch;
+        while (true) {
+            ch = channel(userId);
+            synchronized (ch) {
+                if (ch.closed) continue;
+                if (stream.closed) return emitter;
+                stream.topics.addAll(topics);
+                List<EventLog.Entry<Typed>> missed = ch.log.since(lastEventId);
+                EventStreamStateDTO ready = new EventStreamStateDTO(streamId, Set.copyOf(stream.topics), missed != null);
+                if (missed != null) {
+                    stream.outbox.offer(SseEmitter.event().name("ready").data(ready));
+                    for (EventLog.Entry<Typed> entry : missed) {
+                        if (stream.topics.contains(entry.event().topic()) && !send(stream, entry)) break;
+                    }
+                } else {
+                    // 接不上时把客户端的续传位置推进到当前位置
+                    stream.outbox.offer(SseEmitter.event().id(ch.log.idOf(ch.log.lastSeq())).name("ready").data(ready));
+                }
+                // 补发时连接已失效则不再加入
+                if (!stream.closed) {
+                    ch.streams.add(stream);
+                    ch.idleSince = 0L;
+                }
+                break;
+            }
+        }
+        synchronized (ch.topicLock) {
+            if (!stream.closed) {
+                stream.retained = true;
+                for (String topic : stream.topics) retain(ch, userId, topic);
+            }
+        }
+        logger.info("Event stream {} opened for user {} with topics {}", streamId, userId, topics);
+        return emitter;
+    }
+
+    /**
+     * 增删某个连接的订阅主题；连接不存在或不属于该用户时返回 null
+     */
+    public EventStreamStateDTO updateTopics(Long userId, String streamId, Collection<String> add, Collection<String> remove) {
+        Stream stream = streams.get(streamId);
+        if (stream == null || !stream.userId.equals(userId)) return null;
+        Channel ch = channels.get(userId);
+        if (ch == null) return null;
+        synchronized (ch.topicLock) {
+            if (stream.closed) return null;
+            if (add != null) {
+                for (String topic : add) {
+                    if (stream.topics.add(topic) && stream.retained) retain(ch, userId, topic);
+                }
+            }
+            if (remove != null) {
+                for (String topic : remove) {
+                    if (stream.topics.remove(topic) && stream.retained) release(ch, userId, topic);
+                }
+            }
+            return new EventStreamStateDTO(streamId, Set.copyOf(stream.topics), true);
+        }
+    }
+
+    /**
+     * 推送一个事件给订阅了 topic 的连接，并记入续传缓冲
+     */
+    public void publish(Long userId, String topic, String name, Object data) {
+        Channel ch = channels.get(userId);
+        if (ch == null) return;
+        synchronized (ch) {
+            if (ch.closed) return;
+            EventLog.Entry<Typed> entry = ch.log.append(seq -> new Typed(topic, name, data));
+            for (Stream stream : ch.streams) {
+                if (stream.topics.contains(topic)) send(stream, entry);
+            }
+        }
+    }
+
+    /**
+     * 推送瞬时事件（如 typing）：不带 id、不进缓冲，断线期间的瞬时事件不补发
+     */
+    public void publishTransient(Long userId, String topic, String name, Object data) {
+        Channel ch = channels.get(userId);
+        if (ch == null) return;
+        synchronized (ch) {
+            for (Stream stream : ch.streams) {
+                if (stream.topics.contains(topic)) {
+                    stream.outbox.offer(SseEmitter.event().name(name).data(new StreamEventDTO(topic, data)));
+                }
+            }
+        }
+    }
+
+    public boolean isOnline(Long userId) {
+        Channel ch = channels.get(userId);
+        return ch != null && !ch.streams.isEmpty();
+    }
+
+    private boolean send(Stream stream, EventLog.Entry<Typed> entry) {
+        Typed e = entry.event();
+        return stream.outbox.offer(SseEmitter.event().id(entry.id()).name(e.name()).data(new StreamEventDTO(e.topic(), e.data())));
+    }
+
+    private void close(String streamId) {
+        Stream stream = streams.remove(streamId);
+        if (stream == null) return;
+        stream.closed = true;
+        stream.outbox.close();
+        Channel ch = channels.get(stream.userId);
+        if (ch == null) return;
+        synchronized (ch) {
+            if (ch.streams.remove(stream) && ch.streams.isEmpty())
+                ch.idleSince = System.currentTimeMillis();
+        }
+        synchronized (ch.topicLock) {
+            if (!stream.retained) return;
+            stream.retained = false;
+            for (String topic : stream.topics) release(ch, stream.userId, topic);
+        }
+        logger.info("Event stream {} closed for user {}", streamId, stream.userId);
+    }
+
+    // 调用方持有 ch.topicLock
+    private void retain(Channel ch, Long userId, String topic) {
+        if (ch.topicRefs.merge(topic, 1, Integer::sum) != 1) return;
+        for (TopicListener l : listeners) {
+            try {
+                l.onTopicAdded(userId, topic);
+            } catch (Exception ex) {
+                logger.warn("Topic listener failed on add {} for user {}: {}", topic, userId, ex.toString());
+            }
+        }
+    }
+
+    // 调用方持有 ch.topicLock
+    private void release(Channel ch, Long userId, String topic) {
+        Integer left = ch.topicRefs.computeIfPresent(topic, (t, n) -> n > 1 ? n - 1 : null);
+        if (left != null) return;
+        for (TopicListener l : listeners) {
+            try {
+                l.onTopicRemoved(userId, topic);
+            } catch (Exception ex) {
+                logger.warn("Topic listener failed on remove {} for user {}: {}", topic, userId, ex.toString());
+            }
+        }
+    }
+
+    private Channel channel(Long userId) {
+        return channels.computeIfAbsent(userId, k -> new Channel(new EventLog<>(bufferSize)));
+    }
+
+    /**
+     * 回收已无连接且超过保留时间的用户缓冲
+     */
+    @Scheduled(fixedDelayString = "${blog.sse.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Channel> e : channels.entrySet()) {
+            Channel ch = e.getValue();
+            synchronized (ch) {
+                if (ch.streams.isEmpty() && now - ch.idleSince >= idleRetentionMs) {
+                    ch.closed = true;
+                    channels.remove(e.getKey(), ch);
+                }
+            }
+        }
+    }
+
+    /**
+     * 用户级主题引用计数的变化回调：某主题第一次被该用户的连接订阅、最后一次被取消时各调用一次
+     */
+    public interface TopicListener {
+        void onTopicAdded(Long userId, String topic);
+
+        void onTopicRemoved(Long userId, String topic);
+    }
+
+    private static final class Channel {
+        final EventLog<Typed> log;
+        final Set<Stream> streams = new CopyOnWriteArraySet<>();
+        // 主题引用计数及其回调由 topicLock 保护
+        final Object topicLock = new Object();
+        final Map<String, Integer> topicRefs = new HashMap<>();
+        // 最后一个连接断开的时刻；有连接时为 0。新建时视为刚空闲
+        long idleSince = System.currentTimeMillis();
+        boolean closed;
+
+        Channel(EventLog<Typed> log) {
+            this.log = log;
+        }
+    }
+
+    private static final class Stream {
+        final Long userId;
+        final SseDispatcher.Outbox outbox;
+        final Set<String> topics = ConcurrentHashMap.newKeySet();
+        volatile boolean closed;
+        // 是否已把 topics 计入用户级引用计数（由 topicLock 保护）
+        boolean retained;
+
+        Stream(Long userId, SseDispatcher.Outbox outbox) {
+            this.userId = userId;
+            this.outbox = outbox;
+        }
+    }
+
+    private record Typed(String topic, String name, Object data) {
+    }
+}
@@ -1,10 +1,10 @@
 package com.kirisamemarisa.blog.mapper;
 
+import com.kirisamemarisa.blog.cache.ProfileSnapshot;
 import com.kirisamemarisa.blog.dto.BlogPostCreateDTO;
 import com.kirisamemarisa.blog.dto.BlogPostDTO;
 import com.kirisamemarisa.blog.dto.BlogPostUpdateDTO;
 import com.kirisamemarisa.blog.model.BlogPost;
-import com.kirisamemarisa.blog.model.UserProfile;
 import org.mapstruct.*;
 
 @Mapper(componentModel = "spring")
@@ -38,7 +38,7 @@ public interface BlogPostMapper {
     })
     BlogPostDTO toDTO(BlogPost entity);
 
-    default BlogPostDTO toDTOWithProfile(BlogPost entity, UserProfile profile) {
+    default BlogPostDTO toDTOWithProfile(BlogPost entity, ProfileSnapshot profile) {
         BlogPostDTO dto = toDTO(entity);
         if (dto == null) return null;
         if (profile != null) {
@@ -12,7 +12,8 @@ public interface BlogViewStatsMapper {
 
     @Mappings({
             @Mapping(target = "blogPostId", source = "blogPost.id"),
-            @Mapping(target = "viewCount", source = "viewCount")
+            @Mapping(target = "viewCount", source = "viewCount"),
+            @Mapping(target = "uniqueVisitors", source = "uniqueVisitors")
     })
     BlogViewStatsDTO toDTO(BlogViewStats entity);
 }
@@ -5,6 +5,7 @@ import com.kirisamemarisa.blog.dto.PrivateMessageViewDTO;
 import com.kirisamemarisa.blog.model.PrivateMessage;
 import com.kirisamemarisa.blog.model.PrivateMessageStatus;
 import com.kirisamemarisa.blog.model.User;
+import com.kirisamemarisa.blog.repository.PrivateMessageRepository.ConversationViewRow;
 
 public class PrivateMessageViewMapper {
 
@@ -43,4 +44,31 @@ public class PrivateMessageViewMapper {
 
         return dto;
     }
+
+    /**
+     * 会话视图查询的投影行（已剔除本地删除的消息）转为视图 DTO
+     */
+    public static PrivateMessageViewDTO toViewDTO(ConversationViewRow row, Long currentUserId) {
+        if (row == null) return null;
+        PrivateMessageViewDTO dto = new PrivateMessageViewDTO();
+        dto.setId(row.getId());
+        dto.setSenderId(row.getSenderId());
+        dto.setReceiverId(row.getReceiverId());
+        dto.setMediaUrl(row.getMediaUrl());
+        dto.setType(row.getType());
+        dto.setCreatedAt(row.getCreatedAt());
+
+        boolean recalled = Boolean.TRUE.equals(row.getRecalled());
+        dto.setRecalled(recalled);
+        dto.setDeletedForCurrentUser(false);
+        if (recalled) {
+            dto.setDisplayText(currentUserId != null && currentUserId.equals(row.getSenderId())
+                    ? "你撤回了一条消息" : "对方撤回了一条消息");
+            dto.setText(null);
+        } else {
+            dto.setText(row.getText());
+            dto.setDisplayText(row.getText());
+        }
+        return dto;
+    }
 }
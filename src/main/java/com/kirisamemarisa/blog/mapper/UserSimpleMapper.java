@@ -1,5 +1,6 @@
 package com.kirisamemarisa.blog.mapper;
 
+import com.kirisamemarisa.blog.cache.ProfileSnapshot;
 import com.kirisamemarisa.blog.dto.UserSimpleDTO;
 import com.kirisamemarisa.blog.model.User;
 import com.kirisamemarisa.blog.model.UserProfile;
@@ -18,5 +19,17 @@ public interface UserSimpleMapper {
         @Mapping(target = "avatarUrl", source = "profile.avatarUrl")
     })
     UserSimpleDTO toDTO(User user, UserProfile profile);
+
+    // 使用缓存中的资料快照
+    default UserSimpleDTO toDTO(User user, ProfileSnapshot profile) {
+        if (user == null && profile == null) return null;
+        UserSimpleDTO dto = new UserSimpleDTO();
+        if (user != null) dto.setId(user.getId());
+        if (profile != null) {
+            dto.setNickname(profile.getNickname());
+            dto.setAvatarUrl(profile.getAvatarUrl());
+        }
+        return dto;
+    }
 }
 
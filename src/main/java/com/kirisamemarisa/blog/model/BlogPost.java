@@ -9,7 +9,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "blog_post")
+@Table(
+        name = "blog_post",
+        // 文章列表游标分页：order by created_at desc, id desc
+        indexes = @Index(name = "idx_blog_post_created_id", columnList = "created_at, id")
+)
 public class BlogPost {
     private static final Logger logger = LoggerFactory.getLogger(BlogPost.class);
 
@@ -4,7 +4,11 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "blog_view_record")
+@Table(
+        name = "blog_view_record",
+        // 汇总与过期清理都按 viewed_at 做范围扫描
+        indexes = @Index(name = "idx_blog_view_record_viewed_at", columnList = "viewed_at")
+)
 public class BlogViewRecord {
 
     @Id
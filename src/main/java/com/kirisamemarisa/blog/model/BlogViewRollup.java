@@ -0,0 +1,75 @@
+package com.kirisamemarisa.blog.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 浏览量按时间桶聚合后的结果（小时 / 天），由 BlogViewRollupJob 从 blog_view_record 汇总生成。
+ * 时间序列查询只读这张表，不再扫描浏览明细。
+ */
+@Entity
+@Table(
+        name = "blog_view_rollup",
+        uniqueConstraints = @UniqueConstraint(columnNames = { "blog_post_id", "granularity", "bucket_start" })
+)
+public class BlogViewRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // 博客 ID（不建外键，删除博客时由 BlogViewService 一并清理）
+    @Column(name = "blog_post_id", nullable = false)
+    private Long blogPostId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "granularity", nullable = false, length = 8)
+    private Granularity granularity;
+
+    // 时间桶起点：整点（HOUR）或零点（DAY）
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "view_count", nullable = false)
+    private Long viewCount = 0L;
+
+    public enum Granularity {
+        HOUR, DAY
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getBlogPostId() {
+        return blogPostId;
+    }
+
+    public void setBlogPostId(Long blogPostId) {
+        this.blogPostId = blogPostId;
+    }
+
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(Granularity granularity) {
+        this.granularity = granularity;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public Long getViewCount() {
+        return viewCount;
+    }
+
+    public void setViewCount(Long viewCount) {
+        this.viewCount = viewCount;
+    }
+}
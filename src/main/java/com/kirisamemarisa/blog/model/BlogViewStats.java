@@ -18,6 +18,15 @@ public class BlogViewStats {
     @Column(name = "view_count", nullable = false)
     private Long viewCount = 0L;
 
+    // 去重访客 HyperLogLog 草图（用户 ID / 匿名指纹），固定 4KB
+    @Lob
+    @Column(name = "visitor_sketch", columnDefinition = "BLOB")
+    private byte[] visitorSketch;
+
+    // 由草图估算出的去重访客数，写回时同步更新，读取时无需解析草图
+    @Column(name = "unique_visitors", nullable = false)
+    private Long uniqueVisitors = 0L;
+
     public Long getId() {
         return id;
     }
@@ -37,4 +46,20 @@ public class BlogViewStats {
     public void setViewCount(Long viewCount) {
         this.viewCount = viewCount;
     }
+
+    public byte[] getVisitorSketch() {
+        return visitorSketch;
+    }
+
+    public void setVisitorSketch(byte[] visitorSketch) {
+        this.visitorSketch = visitorSketch;
+    }
+
+    public Long getUniqueVisitors() {
+        return uniqueVisitors;
+    }
+
+    public void setUniqueVisitors(Long uniqueVisitors) {
+        this.uniqueVisitors = uniqueVisitors;
+    }
 }
@@ -6,7 +6,11 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "comment")
+@Table(
+        name = "comment",
+        // 评论游标分页：where blog_post_id = ? and (created_at, id) < (?, ?)
+        indexes = @Index(name = "idx_comment_post_created_id", columnList = "blog_post_id, created_at, id")
+)
 public class Comment {
     private static final Logger logger = LoggerFactory.getLogger(Comment.class);
 
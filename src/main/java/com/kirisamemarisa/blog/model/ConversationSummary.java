@@ -0,0 +1,96 @@
+package com.kirisamemarisa.blog.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * 私信会话摘要：每个 (owner, partner) 一行，记录最后一条消息预览、时间与 owner 的未读数。
+ * 由 ConversationSummaryService 在发送、已读、撤回、删除时同事务维护，收件箱列表只读这张表。
+ */
+@Entity
+@Table(
+        name = "conversation_summary",
+        uniqueConstraints = @UniqueConstraint(name = "uk_conversation_owner_partner", columnNames = { "owner_id", "partner_id" }),
+        // 收件箱分页：where owner_id = ? order by last_at desc, id desc
+        indexes = @Index(name = "idx_conversation_owner_last", columnList = "owner_id, last_at, id")
+)
+public class ConversationSummary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // 收件箱所属用户（不建外键，与私信表一样随用户存在）
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    // 会话对方
+    @Column(name = "partner_id", nullable = false)
+    private Long partnerId;
+
+    // 最后一条（对 owner 可见的）消息 ID
+    @Column(name = "last_message_id", nullable = false)
+    private Long lastMessageId;
+
+    @Column(name = "last_preview", length = 128)
+    private String lastPreview;
+
+    @Column(name = "last_at", nullable = false)
+    private Instant lastAt;
+
+    // owner 在该会话中的未读数
+    @Column(name = "unread_count", nullable = false)
+    private long unreadCount;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getOwnerId() {
+        return ownerId;
+    }
+
+    public void setOwnerId(Long ownerId) {
+        this.ownerId = ownerId;
+    }
+
+    public Long getPartnerId() {
+        return partnerId;
+    }
+
+    public void setPartnerId(Long partnerId) {
+        this.partnerId = partnerId;
+    }
+
+    public Long getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public void setLastMessageId(Long lastMessageId) {
+        this.lastMessageId = lastMessageId;
+    }
+
+    public String getLastPreview() {
+        return lastPreview;
+    }
+
+    public void setLastPreview(String lastPreview) {
+        this.lastPreview = lastPreview;
+    }
+
+    public Instant getLastAt() {
+        return lastAt;
+    }
+
+    public void setLastAt(Instant lastAt) {
+        this.lastAt = lastAt;
+    }
+
+    public long getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(long unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+}
@@ -0,0 +1,83 @@
+package com.kirisamemarisa.blog.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * “可能认识的人”推荐结果：每个用户保存按共同关注数排好的前 K 个候选，
+ * 由 FriendRecommendationJob 在关注图变化后增量重算整组替换，接口只按 (user_id, rank_no) 顺序读取。
+ * 算过但没有候选时只有一行 candidate_id = 0、rank_no = 0 的空标记。
+ */
+@Entity
+@Table(
+        name = "friend_recommendations",
+        uniqueConstraints = @UniqueConstraint(columnNames = { "user_id", "candidate_id" }),
+        // 读取：where user_id = ? order by rank_no
+        indexes = @Index(name = "idx_friend_rec_user_rank", columnList = "user_id, rank_no")
+)
+public class FriendRecommendation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "candidate_id", nullable = false)
+    private Long candidateId;
+
+    // 我关注的人里有多少也关注了候选人
+    @Column(name = "mutual_count", nullable = false)
+    private int mutualCount;
+
+    @Column(name = "rank_no", nullable = false)
+    private int rankNo;
+
+    @Column(name = "computed_at", nullable = false)
+    private Instant computedAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getCandidateId() {
+        return candidateId;
+    }
+
+    public void setCandidateId(Long candidateId) {
+        this.candidateId = candidateId;
+    }
+
+    public int getMutualCount() {
+        return mutualCount;
+    }
+
+    public void setMutualCount(int mutualCount) {
+        this.mutualCount = mutualCount;
+    }
+
+    public int getRankNo() {
+        return rankNo;
+    }
+
+    public void setRankNo(int rankNo) {
+        this.rankNo = rankNo;
+    }
+
+    public Instant getComputedAt() {
+        return computedAt;
+    }
+
+    public void setComputedAt(Instant computedAt) {
+        this.computedAt = computedAt;
+    }
+}
@@ -0,0 +1,165 @@
+package com.kirisamemarisa.blog.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * 持久化的通知收件箱：离线期间的通知也能在上线后查到。
+ * 点赞类通知按 (receiver, type, reference_id) 合并到同一条未读记录上，actor_count 为不同触发者的人数（见 NotificationActor）。
+ * 由 NotificationInboxWriter 异步批量写入。
+ */
+@Entity
+@Table(
+        name = "notifications",
+        indexes = {
+                // 收件箱分页：where receiver_id = ? order by is_read, updated_at desc, id desc
+                // 列方向与排序一致（MySQL 8 降序索引），混合方向的排序才能直接按索引顺序读取
+                @Index(name = "idx_notification_receiver_inbox_desc", columnList = "receiver_id, is_read, updated_at desc, id desc"),
+                // 合并查找：where receiver_id = ? and type = ? and reference_id = ? and is_read = false
+                @Index(name = "idx_notification_receiver_merge", columnList = "receiver_id, type, reference_id, is_read")
+        }
+)
+public class Notification {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "receiver_id", nullable = false)
+    private Long receiverId;
+
+    @Column(name = "type", nullable = false, length = 32)
+    private String type;
+
+    // 最近一次触发者
+    @Column(name = "sender_id")
+    private Long senderId;
+
+    @Column(name = "reference_id")
+    private Long referenceId;
+
+    @Column(name = "reference_extra_id")
+    private Long referenceExtraId;
+
+    @Column(name = "request_id")
+    private Long requestId;
+
+    @Column(name = "message", length = 255)
+    private String message;
+
+    @Column(name = "status", length = 32)
+    private String status;
+
+    @Column(name = "actor_count", nullable = false)
+    private int actorCount = 1;
+
+    @Column(name = "is_read", nullable = false)
+    private boolean read;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    // 最近一次合并的时间，收件箱按它排序
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getReceiverId() {
+        return receiverId;
+    }
+
+    public void setReceiverId(Long receiverId) {
+        this.receiverId = receiverId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Long getSenderId() {
+        return senderId;
+    }
+
+    public void setSenderId(Long senderId) {
+        this.senderId = senderId;
+    }
+
+    public Long getReferenceId() {
+        return referenceId;
+    }
+
+    public void setReferenceId(Long referenceId) {
+        this.referenceId = referenceId;
+    }
+
+    public Long getReferenceExtraId() {
+        return referenceExtraId;
+    }
+
+    public void setReferenceExtraId(Long referenceExtraId) {
+        this.referenceExtraId = referenceExtraId;
+    }
+
+    public Long getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(Long requestId) {
+        this.requestId = requestId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getActorCount() {
+        return actorCount;
+    }
+
+    public void setActorCount(int actorCount) {
+        this.actorCount = actorCount;
+    }
+
+    public boolean isRead() {
+        return read;
+    }
+
+    public void setRead(boolean read) {
+        this.read = read;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,46 @@
+package com.kirisamemarisa.blog.model;
+
+import jakarta.persistence.*;
+
+/**
+ * 合并通知的触发者：每条合并通知上每个用户只记一次，
+ * 同一用户反复点赞 / 取消点赞不会让 actor_count 增加。
+ * 由 NotificationInboxWriter 以 insert ignore 写入。
+ */
+@Entity
+@Table(
+        name = "notification_actors",
+        uniqueConstraints = @UniqueConstraint(name = "uk_notification_actor", columnNames = {"notification_id", "actor_id"})
+)
+public class NotificationActor {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "notification_id", nullable = false)
+    private Long notificationId;
+
+    @Column(name = "actor_id", nullable = false)
+    private Long actorId;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getNotificationId() {
+        return notificationId;
+    }
+
+    public void setNotificationId(Long notificationId) {
+        this.notificationId = notificationId;
+    }
+
+    public Long getActorId() {
+        return actorId;
+    }
+
+    public void setActorId(Long actorId) {
+        this.actorId = actorId;
+    }
+}
@@ -7,7 +7,11 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "private_messages")
+@Table(
+        name = "private_messages",
+        // 按方向查会话 / exists 探针：where sender_id = ? and receiver_id = ? [order by created_at]
+        indexes = @Index(name = "idx_pm_sender_receiver_created", columnList = "sender_id, receiver_id, created_at")
+)
 public class PrivateMessage {
     private static final Logger logger = LoggerFactory.getLogger(PrivateMessage.class);
     @Id
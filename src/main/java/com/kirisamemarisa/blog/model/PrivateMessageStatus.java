@@ -6,7 +6,11 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "private_message_status")
+@Table(
+        name = "private_message_status",
+        // 会话视图按 (当前用户, 消息) 左连接 / 反连接状态行；唯一约束保证左连接不会把一条消息连出多行
+        uniqueConstraints = @UniqueConstraint(name = "uk_pm_status_user_message", columnNames = {"user_id", "message_id"})
+)
 public class PrivateMessageStatus {
 
     @Id
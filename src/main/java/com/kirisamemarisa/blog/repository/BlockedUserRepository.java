@@ -3,7 +3,10 @@ package com.kirisamemarisa.blog.repository;
 import com.kirisamemarisa.blog.model.BlockedUser;
 import com.kirisamemarisa.blog.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface BlockedUserRepository extends JpaRepository<BlockedUser, Long> {
@@ -13,4 +16,10 @@ public interface BlockedUserRepository extends JpaRepository<BlockedUser, Long>
     boolean existsByBlockerAndBlocked(User blocker, User blocked);
 
     void deleteByBlockerAndBlocked(User blocker, User blocked);
+
+    @Query("select b.blocked.id from BlockedUser b where b.blocker.id = :userId")
+    List<Long> findBlockedIds(@Param("userId") Long userId);
+
+    @Query("select b.blocker.id from BlockedUser b where b.blocked.id = :userId")
+    List<Long> findBlockerIds(@Param("userId") Long userId);
 }
\ No newline at end of file
@@ -2,6 +2,10 @@ package com.kirisamemarisa.blog.repository;
 
 import com.kirisamemarisa.blog.model.BlogPostLike;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
 
@@ -9,6 +13,10 @@ public interface BlogPostLikeRepository extends JpaRepository<BlogPostLike, Long
     Optional<BlogPostLike> findByBlogPostIdAndUserId(Long blogPostId, Long userId);
     long countByBlogPostId(Long blogPostId);
 
+    // 一次 IN 查询取出某用户在一批文章中点过赞的文章 ID
+    @Query("select l.blogPost.id from BlogPostLike l where l.user.id = :userId and l.blogPost.id in :blogPostIds")
+    List<Long> findLikedPostIds(@Param("userId") Long userId, @Param("blogPostIds") Collection<Long> blogPostIds);
+
     // 根据博客 ID 删除点赞
     void deleteByBlogPost_Id(Long blogPostId);
 
@@ -1,12 +1,61 @@
 package com.kirisamemarisa.blog.repository;
 
 import com.kirisamemarisa.blog.model.BlogPost;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface BlogPostRepository extends JpaRepository<BlogPost, Long> {
 
     // 用于校验“只有作者能删除”
     Optional<BlogPost> findByIdAndUserId(Long id, Long userId);
-}
\ No newline at end of file
+
+    /**
+     * 按 ID 批量取文章并带出作者（生成链接预览用，避免逐条懒加载作者）
+     */
+    @Query("select p from BlogPost p join fetch p.user where p.id in :ids")
+    List<BlogPost> findAllWithUserByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 游标分页第一页（返回 List，不触发 count 查询）
+     */
+    @Query("select p from BlogPost p order by p.createdAt desc, p.id desc")
+    List<BlogPost> findFirstPage(Pageable pageable);
+
+    /**
+     * 游标分页后续页：取 (createdAt, id) 严格小于游标的记录
+     */
+    @Query("select p from BlogPost p where p.createdAt < :createdAt " +
+            "or (p.createdAt = :createdAt and p.id < :id) order by p.createdAt desc, p.id desc")
+    List<BlogPost> findPageBefore(@Param("createdAt") LocalDateTime createdAt,
+                                  @Param("id") Long id,
+                                  Pageable pageable);
+
+    /**
+     * 重建热门索引用：只取计数列和发布时间，浏览量来自 blog_view_stats
+     */
+    @Query("select p.id as id, p.createdAt as createdAt, p.likeCount as likeCount, " +
+            "p.commentCount as commentCount, p.repostCount as repostCount, s.viewCount as viewCount " +
+            "from BlogPost p left join BlogViewStats s on s.blogPost = p")
+    List<TrendingSeed> findTrendingSeeds();
+
+    interface TrendingSeed {
+        Long getId();
+
+        LocalDateTime getCreatedAt();
+
+        Long getLikeCount();
+
+        Long getCommentCount();
+
+        Integer getRepostCount();
+
+        Long getViewCount();
+    }
+}
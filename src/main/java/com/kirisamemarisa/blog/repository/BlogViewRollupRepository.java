@@ -0,0 +1,33 @@
+package com.kirisamemarisa.blog.repository;
+
+import com.kirisamemarisa.blog.model.BlogViewRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface BlogViewRollupRepository extends JpaRepository<BlogViewRollup, Long> {
+
+    /**
+     * 查询某篇博客在 [from, to) 区间内指定粒度的聚合数据，按时间升序
+     */
+    @Query("select r from BlogViewRollup r where r.blogPostId = :blogPostId and r.granularity = :granularity " +
+            "and r.bucketStart >= :from and r.bucketStart < :to order by r.bucketStart asc")
+    List<BlogViewRollup> findSeries(@Param("blogPostId") Long blogPostId,
+                                    @Param("granularity") BlogViewRollup.Granularity granularity,
+                                    @Param("from") LocalDateTime from,
+                                    @Param("to") LocalDateTime to);
+
+    /**
+     * 已汇总到的最新小时桶，用于应用重启后恢复汇总进度
+     */
+    @Query("select max(r.bucketStart) from BlogViewRollup r where r.granularity = :granularity")
+    LocalDateTime findLatestBucket(@Param("granularity") BlogViewRollup.Granularity granularity);
+
+    /**
+     * 根据文章 ID 删除所有聚合数据
+     */
+    void deleteByBlogPostId(Long blogPostId);
+}
@@ -1,7 +1,12 @@
 package com.kirisamemarisa.blog.repository;
 
 import com.kirisamemarisa.blog.model.BlogViewStats;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
@@ -9,8 +14,35 @@ public interface BlogViewStatsRepository extends JpaRepository<BlogViewStats, Lo
 
     Optional<BlogViewStats> findByBlogPostId(Long blogPostId);
 
+    /**
+     * 只读取浏览量与去重访客数，避免加载整个实体（含草图）
+     */
+    @Query("select s.viewCount as viewCount, s.uniqueVisitors as uniqueVisitors " +
+            "from BlogViewStats s where s.blogPost.id = :blogPostId")
+    Optional<ViewCounts> findCountsByBlogPostId(@Param("blogPostId") Long blogPostId);
+
+    /**
+     * 写回去重草图时加行锁，避免多实例同时合并草图互相覆盖
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from BlogViewStats s where s.blogPost.id = :blogPostId")
+    Optional<BlogViewStats> findForUpdateByBlogPostId(@Param("blogPostId") Long blogPostId);
+
+    /**
+     * 原子地累加浏览量：UPDATE ... SET view_count = view_count + ?，返回受影响行数
+     */
+    @Modifying
+    @Query("update BlogViewStats s set s.viewCount = s.viewCount + :delta where s.blogPost.id = :blogPostId")
+    int incrementViewCount(@Param("blogPostId") Long blogPostId, @Param("delta") long delta);
+
     /**
      * 根据文章 ID 删除浏览统计记录
      */
     void deleteByBlogPost_Id(Long blogPostId);
-}
\ No newline at end of file
+
+    interface ViewCounts {
+        Long getViewCount();
+
+        Long getUniqueVisitors();
+    }
+}
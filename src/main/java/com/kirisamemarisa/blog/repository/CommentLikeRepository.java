@@ -2,6 +2,10 @@ package com.kirisamemarisa.blog.repository;
 
 import com.kirisamemarisa.blog.model.CommentLike;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
 
@@ -9,6 +13,10 @@ public interface CommentLikeRepository extends JpaRepository<CommentLike, Long>
     Optional<CommentLike> findByCommentIdAndUserId(Long commentId, Long userId);
     long countByCommentId(Long commentId);
 
+    // 一次 IN 查询取出某用户在一批评论中点过赞的评论 ID
+    @Query("select l.comment.id from CommentLike l where l.user.id = :userId and l.comment.id in :commentIds")
+    List<Long> findLikedCommentIds(@Param("userId") Long userId, @Param("commentIds") Collection<Long> commentIds);
+
     // 根据评论 ID 删除点赞
     void deleteByComment_Id(Long commentId);
 
@@ -4,6 +4,10 @@ import com.kirisamemarisa.blog.model.CommentReplyLike;
 import java.util.Optional;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
 
 public interface CommentReplyLikeRepository extends JpaRepository<CommentReplyLike, Long> {
 
@@ -11,6 +15,10 @@ public interface CommentReplyLikeRepository extends JpaRepository<CommentReplyLi
 
     long countByReplyId(Long replyId);
 
+    // 一次 IN 查询取出某用户在一批回复中点过赞的回复 ID
+    @Query("select l.reply.id from CommentReplyLike l where l.user.id = :userId and l.reply.id in :replyIds")
+    List<Long> findLikedReplyIds(@Param("userId") Long userId, @Param("replyIds") Collection<Long> replyIds);
+
     // 根据回复 ID 删除点赞
     void deleteByReply_Id(Long replyId);
 
@@ -4,7 +4,10 @@ import com.kirisamemarisa.blog.model.Comment;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface CommentRepository extends JpaRepository<Comment, Long> {
@@ -13,6 +16,20 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
 
     Page<Comment> findByBlogPostIdOrderByCreatedAtDesc(Long blogPostId, Pageable pageable);
 
+    long countByBlogPostId(Long blogPostId);
+
+    // 游标分页第一页（返回 List，不触发 count 查询）
+    @Query("select c from Comment c where c.blogPost.id = :blogPostId order by c.createdAt desc, c.id desc")
+    List<Comment> findFirstPage(@Param("blogPostId") Long blogPostId, Pageable pageable);
+
+    // 游标分页后续页：取 (createdAt, id) 严格小于游标的评论
+    @Query("select c from Comment c where c.blogPost.id = :blogPostId and (c.createdAt < :createdAt " +
+            "or (c.createdAt = :createdAt and c.id < :id)) order by c.createdAt desc, c.id desc")
+    List<Comment> findPageBefore(@Param("blogPostId") Long blogPostId,
+                                 @Param("createdAt") LocalDateTime createdAt,
+                                 @Param("id") Long id,
+                                 Pageable pageable);
+
     // 根据博客 ID 删除所有评论
     void deleteByBlogPost_Id(Long blogPostId);
 
@@ -0,0 +1,65 @@
+package com.kirisamemarisa.blog.repository;
+
+import com.kirisamemarisa.blog.model.ConversationSummary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface ConversationSummaryRepository extends JpaRepository<ConversationSummary, Long> {
+
+    /**
+     * 收件箱分页：按最后消息时间倒序，走 (owner_id, last_at, id) 索引
+     */
+    @Query("select c from ConversationSummary c where c.ownerId = :ownerId order by c.lastAt desc, c.id desc")
+    Page<ConversationSummary> findInbox(@Param("ownerId") Long ownerId, Pageable pageable);
+
+    Optional<ConversationSummary> findByOwnerIdAndPartnerId(Long ownerId, Long partnerId);
+
+    /**
+     * 新消息写入摘要：不存在则插入，存在则在消息更新时覆盖最后一条，并原子累加未读数。
+     * 注意 MySQL 按书写顺序求值，last_message_id 必须放在最后更新。
+     */
+    @Modifying
+    @Query(value = "insert into conversation_summary " +
+            "(owner_id, partner_id, last_message_id, last_preview, last_at, unread_count) " +
+            "values (:ownerId, :partnerId, :messageId, :preview, :lastAt, :unread) " +
+            "on duplicate key update " +
+            "last_preview = if(values(last_message_id) > last_message_id, values(last_preview), last_preview), " +
+            "last_at = if(values(last_message_id) > last_message_id, values(last_at), last_at), " +
+            "unread_count = unread_count + values(unread_count), " +
+            "last_message_id = greatest(last_message_id, values(last_message_id))",
+            nativeQuery = true)
+    int upsertLastMessage(@Param("ownerId") Long ownerId,
+                          @Param("partnerId") Long partnerId,
+                          @Param("messageId") Long messageId,
+                          @Param("preview") String preview,
+                          @Param("lastAt") Instant lastAt,
+                          @Param("unread") long unread);
+
+    @Modifying
+    @Query("update ConversationSummary c set c.unreadCount = 0 " +
+            "where c.ownerId = :ownerId and c.partnerId = :partnerId and c.unreadCount <> 0")
+    int clearUnread(@Param("ownerId") Long ownerId, @Param("partnerId") Long partnerId);
+
+    @Modifying
+    @Query("update ConversationSummary c set c.unreadCount = c.unreadCount - 1 " +
+            "where c.ownerId = :ownerId and c.partnerId = :partnerId and c.unreadCount > 0")
+    int decrementUnread(@Param("ownerId") Long ownerId, @Param("partnerId") Long partnerId);
+
+    /**
+     * 最后一条消息被撤回时替换预览（双方的摘要都会命中）
+     */
+    @Modifying
+    @Query("update ConversationSummary c set c.lastPreview = :preview where c.lastMessageId = :messageId")
+    int replacePreview(@Param("messageId") Long messageId, @Param("preview") String preview);
+
+    @Modifying
+    @Query("delete from ConversationSummary c where c.ownerId = :ownerId and c.partnerId = :partnerId")
+    int deleteByOwnerAndPartner(@Param("ownerId") Long ownerId, @Param("partnerId") Long partnerId);
+}
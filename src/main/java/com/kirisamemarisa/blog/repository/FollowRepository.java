@@ -13,6 +13,7 @@ import java.util.Optional;
 
 public interface FollowRepository extends JpaRepository<Follow, Long> {
     Optional<Follow> findByFollowerAndFollowee(User follower, User followee);
+    boolean existsByFollower_IdAndFollowee_Id(Long followerId, Long followeeId);
     List<Follow> findByFollower(User follower);
     List<Follow> findByFollowee(User followee);
 
@@ -22,6 +23,11 @@ public interface FollowRepository extends JpaRepository<Follow, Long> {
     @Query(value = "SELECT f.followee, p FROM Follow f JOIN UserProfile p ON f.followee.id = p.id WHERE f.follower = :user",
            countQuery = "SELECT COUNT(f) FROM Follow f WHERE f.follower = :user")
     List<Object[]> findFollowingWithProfile(@Param("user") User user, Pageable pageable);
+    // 关注图加载：只取 ID
+    @Query("select f.followee.id from Follow f where f.follower.id = :userId")
+    List<Long> findFolloweeIds(@Param("userId") Long userId);
+    @Query("select f.follower.id from Follow f where f.followee.id = :userId")
+    List<Long> findFollowerIds(@Param("userId") Long userId);
     long countByFollowee(User user);
     long countByFollower(User user);
 }
@@ -0,0 +1,12 @@
+package com.kirisamemarisa.blog.repository;
+
+import com.kirisamemarisa.blog.model.FriendRecommendation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface FriendRecommendationRepository extends JpaRepository<FriendRecommendation, Long> {
+
+    List<FriendRecommendation> findByUserIdOrderByRankNoAsc(Long userId, Pageable pageable);
+}
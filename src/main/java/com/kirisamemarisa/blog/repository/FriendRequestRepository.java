@@ -3,11 +3,19 @@ package com.kirisamemarisa.blog.repository;
 import com.kirisamemarisa.blog.model.FriendRequest;
 import com.kirisamemarisa.blog.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.util.List;
 import java.util.Optional;
 
 public interface FriendRequestRepository extends JpaRepository<FriendRequest, Long> {
     List<FriendRequest> findByReceiverAndStatus(User receiver, FriendRequest.Status status);
     Optional<FriendRequest> findBySenderAndReceiverAndStatus(User sender, User receiver, FriendRequest.Status status);
+
+    // 与该用户之间有待处理申请（任一方向）的对方 ID
+    @Query("select fr.receiver.id from FriendRequest fr where fr.sender.id = :userId and fr.status = com.kirisamemarisa.blog.model.FriendRequest.Status.PENDING")
+    List<Long> findPendingReceiverIds(@Param("userId") Long userId);
+    @Query("select fr.sender.id from FriendRequest fr where fr.receiver.id = :userId and fr.status = com.kirisamemarisa.blog.model.FriendRequest.Status.PENDING")
+    List<Long> findPendingSenderIds(@Param("userId") Long userId);
 }
 
@@ -0,0 +1,47 @@
+package com.kirisamemarisa.blog.repository;
+
+import com.kirisamemarisa.blog.model.Notification;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface NotificationRepository extends JpaRepository<Notification, Long> {
+
+    /**
+     * 收件箱分页：未读在前，再按最近更新时间倒序；
+     * 排序方向与 (receiver_id, is_read, updated_at desc, id desc) 索引一致，不需要 filesort
+     */
+    @Query("select n from Notification n where n.receiverId = :receiverId " +
+            "order by n.read asc, n.updatedAt desc, n.id desc")
+    Page<Notification> findInbox(@Param("receiverId") Long receiverId, Pageable pageable);
+
+    @Query("select n from Notification n where n.receiverId = :receiverId and n.read = false " +
+            "order by n.updatedAt desc, n.id desc")
+    List<Notification> findUnread(@Param("receiverId") Long receiverId, Pageable pageable);
+
+    /**
+     * 断线补推：since 之后新增或合并过的未读通知，最新的在前
+     */
+    @Query("select n from Notification n where n.receiverId = :receiverId and n.read = false " +
+            "and n.updatedAt > :since order by n.updatedAt desc, n.id desc")
+    List<Notification> findUnreadSince(@Param("receiverId") Long receiverId, @Param("since") Instant since,
+                                       Pageable pageable);
+
+    long countByReceiverIdAndReadFalse(Long receiverId);
+
+    @Modifying
+    @Query("update Notification n set n.read = true " +
+            "where n.receiverId = :receiverId and n.id in :ids and n.read = false")
+    int markRead(@Param("receiverId") Long receiverId, @Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("update Notification n set n.read = true where n.receiverId = :receiverId and n.read = false")
+    int markAllRead(@Param("receiverId") Long receiverId);
+}
@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
 
 public interface PrivateMessageRepository extends JpaRepository<PrivateMessage, Long> {
@@ -32,19 +33,123 @@ public interface PrivateMessageRepository extends JpaRepository<PrivateMessage,
     @Query("select pm from PrivateMessage pm join fetch pm.sender s where pm.receiver = :receiver order by pm.createdAt desc")
     List<PrivateMessage> findByReceiverWithSenderOrderByCreatedAtDesc(@Param("receiver") User receiver);
 
+    /**
+     * 两人之间的全部消息（双向），由数据库按时间正序排好
+     */
+    @Query("select pm from PrivateMessage pm join fetch pm.sender s join fetch pm.receiver r " +
+            "where (s.id = :aId and r.id = :bId) or (s.id = :bId and r.id = :aId) " +
+            "order by pm.createdAt asc, pm.id asc")
+    List<PrivateMessage> findConversationAsc(@Param("aId") Long aId, @Param("bId") Long bId);
+
+    /**
+     * exists 探针：sender 是否给 receiver 发过消息（Spring Data 生成 limit 1 查询）
+     */
+    boolean existsBySender_IdAndReceiver_Id(Long senderId, Long receiverId);
+
     // 下面这两个可以废弃或保留用于兼容旧逻辑，但建议尽量不使用以避免全表查询
     List<PrivateMessage> findBySenderAndReceiverOrderByCreatedAtAsc(User sender, User receiver);
     @Query("select pm from PrivateMessage pm join fetch pm.sender s join fetch pm.receiver r where pm.sender = :sender and pm.receiver = :receiver order by pm.createdAt asc")
     List<PrivateMessage> findBySenderAndReceiverWithParticipantsOrderByCreatedAtAsc(@Param("sender") User sender, @Param("receiver") User receiver);
 
-    @Query("select count(pm) from PrivateMessage pm where pm.receiver.id = :receiverId and pm.readByReceiver = false")
+    /**
+     * 未读数不含接收方已本地删除的消息（与 conversation_summary.unread_count 一致）
+     */
+    @Query("select count(pm) from PrivateMessage pm where pm.receiver.id = :receiverId and pm.readByReceiver = false " +
+            "and not exists (select 1 from PrivateMessageStatus s where s.message = pm and s.user.id = :receiverId " +
+            "and s.deletedForUser = true)")
     long countUnreadTotal(@Param("receiverId") Long receiverId);
 
-    @Query("select count(pm) from PrivateMessage pm where pm.receiver.id = :receiverId and pm.sender.id = :senderId and pm.readByReceiver = false")
+    @Query("select count(pm) from PrivateMessage pm where pm.receiver.id = :receiverId and pm.sender.id = :senderId " +
+            "and pm.readByReceiver = false " +
+            "and not exists (select 1 from PrivateMessageStatus s where s.message = pm and s.user.id = :receiverId " +
+            "and s.deletedForUser = true)")
     long countUnreadBetween(@Param("receiverId") Long receiverId, @Param("senderId") Long senderId);
 
+    /**
+     * 接收方已本地删除但仍未读的消息数：标记已读会一并更新它们，但它们不计入未读数
+     */
+    @Query("select count(pm) from PrivateMessage pm where pm.receiver.id = :receiverId and pm.sender.id = :senderId " +
+            "and pm.readByReceiver = false " +
+            "and exists (select 1 from PrivateMessageStatus s where s.message = pm and s.user.id = :receiverId " +
+            "and s.deletedForUser = true)")
+    long countDeletedUnreadBetween(@Param("receiverId") Long receiverId, @Param("senderId") Long senderId);
+
+    /**
+     * 会话中对 owner 仍可见（未被 owner 本地删除）的最新消息，用于删除后重算会话摘要
+     */
+    @Query("select pm from PrivateMessage pm " +
+            "where ((pm.sender.id = :ownerId and pm.receiver.id = :partnerId) " +
+            "or (pm.sender.id = :partnerId and pm.receiver.id = :ownerId)) " +
+            "and not exists (select s.id from PrivateMessageStatus s " +
+            "where s.message = pm and s.user.id = :ownerId and s.deletedForUser = true) " +
+            "order by pm.createdAt desc, pm.id desc")
+    List<PrivateMessage> findLatestVisible(@Param("ownerId") Long ownerId,
+                                           @Param("partnerId") Long partnerId,
+                                           Pageable pageable);
+
+    String VIEW_SELECT = "select pm.id as id, pm.sender.id as senderId, pm.receiver.id as receiverId, " +
+            "pm.text as text, pm.mediaUrl as mediaUrl, pm.type as type, pm.createdAt as createdAt, " +
+            "coalesce(st.recalled, false) as recalled ";
+
+    // 当前用户视角的会话：左连接自己的状态行取撤回标记，本地删除的消息用 not exists 反连接剔除
+    String VIEW_FROM = "from PrivateMessage pm " +
+            "left join PrivateMessageStatus st on st.message = pm and st.user.id = :meId " +
+            "where ((pm.sender.id = :meId and pm.receiver.id = :otherId) " +
+            "or (pm.sender.id = :otherId and pm.receiver.id = :meId)) " +
+            "and not exists (select d.id from PrivateMessageStatus d " +
+            "where d.message = pm and d.user.id = :meId and d.deletedForUser = true) ";
+
+    /**
+     * 会话视图按页码分页（时间正序，兼容旧接口）
+     */
+    @Query(value = VIEW_SELECT + VIEW_FROM + "order by pm.createdAt asc, pm.id asc",
+            countQuery = "select count(pm) " + VIEW_FROM)
+    Page<ConversationViewRow> findConversationView(@Param("meId") Long meId,
+                                                   @Param("otherId") Long otherId,
+                                                   Pageable pageable);
+
+    /**
+     * 会话视图游标分页第一页（最新的在前，不做 count）
+     */
+    @Query(VIEW_SELECT + VIEW_FROM + "order by pm.createdAt desc, pm.id desc")
+    List<ConversationViewRow> findConversationViewFirstPage(@Param("meId") Long meId,
+                                                            @Param("otherId") Long otherId,
+                                                            Pageable pageable);
+
+    /**
+     * 会话视图游标分页后续页：取 (createdAt, id) 严格小于游标的消息
+     */
+    @Query(VIEW_SELECT + VIEW_FROM + "and (pm.createdAt < :createdAt " +
+            "or (pm.createdAt = :createdAt and pm.id < :id)) order by pm.createdAt desc, pm.id desc")
+    List<ConversationViewRow> findConversationViewBefore(@Param("meId") Long meId,
+                                                         @Param("otherId") Long otherId,
+                                                         @Param("createdAt") Instant createdAt,
+                                                         @Param("id") Long id,
+                                                         Pageable pageable);
+
+    @Query("select count(pm) " + VIEW_FROM)
+    long countConversationView(@Param("meId") Long meId, @Param("otherId") Long otherId);
+
     @Modifying
     @Query("update PrivateMessage pm set pm.readByReceiver = true " +
             "where pm.sender.id = :senderId and pm.receiver.id = :receiverId and pm.readByReceiver = false")
     int markConversationRead(@Param("senderId") Long senderId, @Param("receiverId") Long receiverId);
-}
\ No newline at end of file
+
+    interface ConversationViewRow {
+        Long getId();
+
+        Long getSenderId();
+
+        Long getReceiverId();
+
+        String getText();
+
+        String getMediaUrl();
+
+        PrivateMessage.MessageType getType();
+
+        Instant getCreatedAt();
+
+        Boolean getRecalled();
+    }
+}
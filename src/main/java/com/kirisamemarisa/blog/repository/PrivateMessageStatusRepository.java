@@ -15,4 +15,6 @@ public interface PrivateMessageStatusRepository extends JpaRepository<PrivateMes
     List<PrivateMessageStatus> findByMessageInAndUser(List<PrivateMessage> messages, User user);
 
     List<PrivateMessageStatus> findByMessage(PrivateMessage message);
+
+    boolean existsByMessage_IdAndRecalledTrue(Long messageId);
 }
@@ -17,7 +17,13 @@ public interface BlogPostService {
     List<CommentDTO> listComments(Long blogPostId, Long currentUserId);
     List<BlogPostDTO> list(int page, int size, Long currentUserId);
     PageResult<BlogPostDTO> pageList(int page, int size, Long currentUserId);
+    // 热门文章：按时间衰减的热度分降序分页
+    PageResult<BlogPostDTO> pageTrending(int page, int size, Long currentUserId);
     PageResult<CommentDTO> pageComments(Long blogPostId, int page, int size, Long currentUserId);
+    // 游标分页（按 createdAt、id 倒序），cursor 为空表示第一页；withTotal=false 时不做 count
+    CursorPageResult<BlogPostDTO> cursorList(String cursor, int size, boolean withTotal, Long currentUserId);
+    CursorPageResult<CommentDTO> cursorComments(Long blogPostId, String cursor, int size, boolean withTotal,
+                                                Long currentUserId);
     ApiResponse<Long> createWithCover(String title, String content, Long userId, String directory, MultipartFile cover);
     ApiResponse<Boolean> updateWithCover(Long id, String content, String directory, MultipartFile cover);
 
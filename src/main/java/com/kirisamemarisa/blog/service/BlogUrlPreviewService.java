@@ -2,6 +2,8 @@ package com.kirisamemarisa.blog.service;
 
 import com.kirisamemarisa.blog.dto.BlogPreviewDTO;
 
+import java.util.List;
+
 /**
  * 识别站内博客 URL 并生成预览信息的服务。
  */
@@ -11,4 +13,15 @@ public interface BlogUrlPreviewService {
      * 如果 text 中包含站内博客链接，则返回对应的预览信息；否则返回 null。
      */
     BlogPreviewDTO extractPreviewFromText(String text);
+
+    /**
+     * 批量版本：返回与 texts 一一对应的预览（无链接或文章不存在的位置为 null）。
+     * 一页消息引用的文章只查一次库（未命中缓存的部分一次 IN 查询），作者昵称批量取资料缓存。
+     */
+    List<BlogPreviewDTO> extractPreviews(List<String> texts);
+
+    /**
+     * 文章修改或删除后调用，使该文章的预览缓存失效
+     */
+    void invalidate(Long blogPostId);
 }
\ No newline at end of file
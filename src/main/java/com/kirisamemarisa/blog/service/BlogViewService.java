@@ -2,8 +2,12 @@ package com.kirisamemarisa.blog.service;
 
 import com.kirisamemarisa.blog.common.ApiResponse;
 import com.kirisamemarisa.blog.dto.BlogViewRecordCreateDTO;
+import com.kirisamemarisa.blog.dto.BlogViewSeriesPointDTO;
 import com.kirisamemarisa.blog.dto.BlogViewStatsDTO;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 public interface BlogViewService {
 
     /**
@@ -17,7 +21,14 @@ public interface BlogViewService {
     ApiResponse<BlogViewStatsDTO> getStats(Long blogPostId);
 
     /**
-     * 删除指定博客的所有浏览相关数据（明细 + 统计）
+     * 获取指定博客的浏览量时间序列（只读汇总表），granularity 为 hour 或 day，
+     * from/to 为空时分别默认最近 24 小时 / 30 天；没有浏览的时间桶补 0
+     */
+    ApiResponse<List<BlogViewSeriesPointDTO>> getSeries(Long blogPostId, String granularity,
+                                                        LocalDateTime from, LocalDateTime to);
+
+    /**
+     * 删除指定博客的所有浏览相关数据（明细 + 统计 + 汇总）
      */
     void deleteByBlogPostId(Long blogPostId);
 
@@ -0,0 +1,43 @@
+package com.kirisamemarisa.blog.service;
+
+import com.kirisamemarisa.blog.dto.ConversationSummaryDTO;
+import com.kirisamemarisa.blog.dto.PageResult;
+import com.kirisamemarisa.blog.model.PrivateMessage;
+
+/**
+ * 私信会话摘要（收件箱）维护与查询。
+ * 各 on* 方法须在对应业务事务内调用，与私信数据同时提交或回滚。
+ */
+public interface ConversationSummaryService {
+
+    /**
+     * 新消息：更新双方摘要的最后一条消息，接收方未读数 +1
+     */
+    void onMessageSent(PrivateMessage message);
+
+    /**
+     * owner 已读与 partner 的会话：清零未读数
+     */
+    void onConversationRead(Long ownerId, Long partnerId);
+
+    /**
+     * 消息被撤回：若它是某一方摘要中的最后一条，预览改为撤回提示
+     */
+    void onMessageRecalled(PrivateMessage message);
+
+    /**
+     * owner 本地删除了一条消息：unread 表示它是 owner 尚未读的消息，需扣减未读数；
+     * 若它是 owner 摘要中的最后一条，重算为下一条可见消息
+     */
+    void onMessageDeleted(Long ownerId, Long partnerId, Long messageId, boolean unread);
+
+    /**
+     * 收件箱分页，按最后消息时间倒序
+     */
+    PageResult<ConversationSummaryDTO> inbox(Long ownerId, int page, int size);
+
+    /**
+     * 会话列表 / 通知中展示的消息预览
+     */
+    String preview(PrivateMessage message);
+}
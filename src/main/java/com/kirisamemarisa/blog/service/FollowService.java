@@ -12,6 +12,10 @@ public interface FollowService {
     void unfollow(User follower, User followee);
     boolean isFollowing(User follower, User followee);
     boolean areFriends(User a, User b);
+    // 互相关注的好友
+    List<User> listFriends(User user);
+    // 两人的共同好友
+    List<User> listMutualFriends(User a, User b);
     List<User> listFollowers(User user);
     List<User> listFollowing(User user);
     List<Object[]> pageFollowers(User user, Pageable pageable);
@@ -0,0 +1,23 @@
+package com.kirisamemarisa.blog.service;
+
+import com.kirisamemarisa.blog.dto.FriendRecommendationDTO;
+
+import java.util.List;
+
+/**
+ * “可能认识的人”：基于关注图的二度关系，按共同关注数排序，结果预先算好存表。
+ */
+public interface FriendRecommendationService {
+
+    // 读取已算好的推荐（最多 size 个）
+    List<FriendRecommendationDTO> recommend(Long userId, int size);
+
+    // 关系、好友申请、拉黑变化后标记需要重算的用户（事务提交后生效）
+    void markDirty(Long... userIds);
+
+    // 重算最多 maxUsers 个待重算用户，返回实际重算的人数
+    int refreshDirty(int maxUsers);
+
+    // 待重算的用户数（含尚未展开到粉丝的关系变化）
+    int pendingCount();
+}
@@ -1,8 +1,13 @@
 package com.kirisamemarisa.blog.service;
 
 import com.kirisamemarisa.blog.dto.NotificationDTO;
+import com.kirisamemarisa.blog.dto.PageResult;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.function.Supplier;
+
 /**
  * 通知服务统一接口。
  * 所有需要通知的业务（文章点赞、评论、楼中楼、私信等）都通过这里发。
@@ -13,6 +18,18 @@ public interface NotificationService {
      */
     SseEmitter subscribe(Long userId, Object initialPayload);
 
+    /**
+     * 可续传的 SSE 订阅：lastEventId 能接上时只补发断线期间的通知，
+     * 否则才调用 initialPayload 生成初始数据。
+     */
+    SseEmitter subscribe(Long userId, String lastEventId, Supplier<?> initialPayload);
+
+    /**
+     * 同上；未能续传时还会以 catchup 事件只向这个新连接补推 catchUpSince 之后更新过的未读通知。
+     * catchUpSince 为客户端已见过的最新通知时间，为空时不补推（客户端自行分页拉取收件箱）。
+     */
+    SseEmitter subscribe(Long userId, String lastEventId, Supplier<?> initialPayload, Instant catchUpSince);
+
     /**
      * 发送一条通知给 userId 对应的用户。
      * 具体实现中会优先通过 RabbitMQ 暂存，再通过 SSE 下发。
@@ -23,4 +40,18 @@ public interface NotificationService {
      * 用户是否有活跃的 SSE 连接。
      */
     boolean isOnline(Long userId);
+
+    /**
+     * 通知收件箱分页：未读在前，再按最近更新时间倒序。
+     */
+    PageResult<NotificationDTO> inbox(Long userId, int page, int size);
+
+    long unreadCount(Long userId);
+
+    /**
+     * 标记指定通知为已读，返回实际更新条数。
+     */
+    int markRead(Long userId, Collection<Long> ids);
+
+    int markAllRead(Long userId);
 }
\ No newline at end of file
@@ -1,11 +1,11 @@
 //管理撤回/删除
 package com.kirisamemarisa.blog.service;
 
+import com.kirisamemarisa.blog.dto.CursorPageResult;
+import com.kirisamemarisa.blog.dto.PageResult;
 import com.kirisamemarisa.blog.dto.PrivateMessageViewDTO;
 import com.kirisamemarisa.blog.model.User;
 
-import java.util.List;
-
 public interface PrivateMessageManageService {
 
     // 当前用户撤回一条消息（只能撤回自己发送的，且有两分钟的时间限制）
@@ -14,6 +14,10 @@ public interface PrivateMessageManageService {
     // 当前用户删除一条消息（仅在自己视角隐藏）
     void deleteMessageForUser(User currentUser, Long messageId);
 
-    // 按当前用户视角获取与另一方的会话（会自动应用撤回/删除逻辑）
-    List<PrivateMessageViewDTO> getConversationView(User currentUser, User otherUser);
+    // 按当前用户视角分页获取与另一方的会话（时间正序，会自动应用撤回/删除逻辑）
+    PageResult<PrivateMessageViewDTO> getConversationView(User currentUser, User otherUser, int page, int size);
+
+    // 同上，游标分页（按 createdAt、id 倒序，最新的在前），cursor 为空表示第一页；withTotal=false 时不做 count
+    CursorPageResult<PrivateMessageViewDTO> cursorConversationView(User currentUser, User otherUser, String cursor,
+                                                                   int size, boolean withTotal);
 }
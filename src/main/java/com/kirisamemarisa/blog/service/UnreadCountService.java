@@ -0,0 +1,33 @@
+package com.kirisamemarisa.blog.service;
+
+/**
+ * 私信未读计数：按用户与 (用户, 会话对方) 在内存中计数，首次访问时从数据库加载，
+ * 变化后通过通知 SSE 流推送 unread 事件。
+ */
+public interface UnreadCountService {
+
+    /**
+     * 用户未读私信总数
+     */
+    long total(Long userId);
+
+    /**
+     * 用户与 partner 会话中的未读数
+     */
+    long conversation(Long userId, Long partnerId);
+
+    /**
+     * 发送了一条私信（在发送事务内调用，提交后才计数和推送）
+     */
+    void onMessageSent(Long senderId, Long receiverId);
+
+    /**
+     * 用户把与 partner 的会话标记为已读，marked 为实际更新的消息数（在事务内调用，提交后生效）
+     */
+    void onConversationRead(Long userId, Long partnerId, int marked);
+
+    /**
+     * 用户本地删除了 partner 发来的一条未读消息：已删除的消息不计入未读（在事务内调用，提交后生效）
+     */
+    void onUnreadMessageDeleted(Long userId, Long partnerId);
+}
@@ -1,8 +1,21 @@
 package com.kirisamemarisa.blog.service;
 
+import com.kirisamemarisa.blog.dto.PageResult;
+import com.kirisamemarisa.blog.dto.UserSearchDTO;
+
 import java.util.List;
 
 public interface UserSearchService {
+    /**
+     * 按用户名子串搜索，返回排序后的一页结果和精确总数
+     */
+    PageResult<UserSearchDTO> searchByUsername(String username, int page, int size);
+
+    /**
+     * 按昵称子串搜索，返回排序后的一页结果和精确总数
+     */
+    PageResult<UserSearchDTO> searchByNickname(String nickname, int page, int size);
+
     /**
      * 根据用户名模糊搜索，返回User和UserProfile的组合
      */
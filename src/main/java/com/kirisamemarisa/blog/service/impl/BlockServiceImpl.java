@@ -1,9 +1,11 @@
 package com.kirisamemarisa.blog.service.impl;
 
+import com.kirisamemarisa.blog.cache.BlockIndex;
 import com.kirisamemarisa.blog.model.BlockedUser;
 import com.kirisamemarisa.blog.model.User;
 import com.kirisamemarisa.blog.repository.BlockedUserRepository;
 import com.kirisamemarisa.blog.service.BlockService;
+import com.kirisamemarisa.blog.service.FriendRecommendationService;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -12,9 +14,15 @@ import org.springframework.transaction.annotation.Transactional;
 public class BlockServiceImpl implements BlockService {
 
     private final BlockedUserRepository blockedUserRepository;
+    private final FriendRecommendationService recommendationService;
+    private final BlockIndex blockIndex;
 
-    public BlockServiceImpl(BlockedUserRepository blockedUserRepository) {
+    public BlockServiceImpl(BlockedUserRepository blockedUserRepository,
+                            FriendRecommendationService recommendationService,
+                            BlockIndex blockIndex) {
         this.blockedUserRepository = blockedUserRepository;
+        this.recommendationService = recommendationService;
+        this.blockIndex = blockIndex;
     }
 
     @Override
@@ -29,6 +37,8 @@ public class BlockServiceImpl implements BlockService {
         bu.setBlocker(blocker);
         bu.setBlocked(target);
         blockedUserRepository.save(bu);
+        blockIndex.onBlocked(blocker.getId(), target.getId());
+        recommendationService.markDirty(blocker.getId(), target.getId());
     }
 
     @Override
@@ -37,6 +47,8 @@ public class BlockServiceImpl implements BlockService {
             return;
         }
         blockedUserRepository.deleteByBlockerAndBlocked(blocker, target);
+        blockIndex.onUnblocked(blocker.getId(), target.getId());
+        recommendationService.markDirty(blocker.getId(), target.getId());
     }
 
     @Override
@@ -44,7 +56,9 @@ public class BlockServiceImpl implements BlockService {
         if (blocker == null || target == null || blocker.getId().equals(target.getId())) {
             return false;
         }
-        return blockedUserRepository.existsByBlockerAndBlocked(blocker, target);
+        // 完全由拉黑索引回答（私信发送路径不查库）；其他节点上的拉黑 / 取消拉黑最多延迟
+        // block-index 的 rebuild-interval-seconds / max-age-seconds 后生效，见 BlockIndex
+        return blockIndex.isBlocked(blocker.getId(), target.getId());
     }
 
     @Override
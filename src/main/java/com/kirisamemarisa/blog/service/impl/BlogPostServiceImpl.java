@@ -3,11 +3,17 @@ package com.kirisamemarisa.blog.service.impl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.kirisamemarisa.blog.cache.BlockIndex;
+import com.kirisamemarisa.blog.cache.TrendingIndex;
+import com.kirisamemarisa.blog.cache.ProfileSnapshot;
+import com.kirisamemarisa.blog.cache.UserProfileCache;
 import com.kirisamemarisa.blog.common.ApiResponse;
+import com.kirisamemarisa.blog.common.PageCursor;
 import com.kirisamemarisa.blog.dto.*;
 import com.kirisamemarisa.blog.model.*;
 import com.kirisamemarisa.blog.repository.*;
 import com.kirisamemarisa.blog.service.BlogPostService;
+import com.kirisamemarisa.blog.service.BlogUrlPreviewService;
 import com.kirisamemarisa.blog.service.BlogViewService;
 import com.kirisamemarisa.blog.mapper.BlogPostMapper;
 import com.kirisamemarisa.blog.service.CommentService;
@@ -41,11 +47,15 @@ public class BlogPostServiceImpl implements BlogPostService {
     private final CommentLikeRepository commentLikeRepository;
     private final CommentReplyRepository commentReplyRepository;
     private final CommentReplyLikeRepository commentReplyLikeRepository;
-    private final UserProfileRepository userProfileRepository;
+    private final UserProfileCache userProfileCache;
     private final BlogPostMapper blogpostMapper;
     private final CommentService commentService;
     private final NotificationService notificationService;
     private final BlogViewService blogViewService;   // 新增：浏览相关服务
+    private final TrendingIndex trendingIndex;
+    private final ViewerStateHydrator viewerStateHydrator;
+    private final BlogUrlPreviewService blogUrlPreviewService;
+    private final BlockIndex blockIndex;
 
     @Value("${resource.blogpostcover-location}")
     private String blogpostcoverLocation;
@@ -57,11 +67,15 @@ public class BlogPostServiceImpl implements BlogPostService {
                                CommentLikeRepository commentLikeRepository,
                                CommentReplyRepository commentReplyRepository,
                                CommentReplyLikeRepository commentReplyLikeRepository,
-                               UserProfileRepository userProfileRepository,
+                               UserProfileCache userProfileCache,
                                BlogPostMapper blogpostMapper,
                                CommentService commentService,
                                NotificationService notificationService,
-                               BlogViewService blogViewService) {
+                               BlogViewService blogViewService,
+                               TrendingIndex trendingIndex,
+                               ViewerStateHydrator viewerStateHydrator,
+                               BlogUrlPreviewService blogUrlPreviewService,
+                               BlockIndex blockIndex) {
         this.blogPostRepository = blogPostRepository;
         this.userRepository = userRepository;
         this.commentRepository = commentRepository;
@@ -69,11 +83,15 @@ public class BlogPostServiceImpl implements BlogPostService {
         this.commentLikeRepository = commentLikeRepository;
         this.commentReplyRepository = commentReplyRepository;
         this.commentReplyLikeRepository = commentReplyLikeRepository;
-        this.userProfileRepository = userProfileRepository;
+        this.userProfileCache = userProfileCache;
         this.blogpostMapper = blogpostMapper;
         this.commentService = commentService;
         this.notificationService = notificationService;
         this.blogViewService = blogViewService;
+        this.trendingIndex = trendingIndex;
+        this.viewerStateHydrator = viewerStateHydrator;
+        this.blogUrlPreviewService = blogUrlPreviewService;
+        this.blockIndex = blockIndex;
     }
 
     @Override
@@ -110,7 +128,7 @@ public class BlogPostServiceImpl implements BlogPostService {
             return null;
         BlogPost post = opt.get();
         // load author profile (may be absent)
-        UserProfile profile = userProfileRepository.findById(post.getUser().getId()).orElse(null);
+        ProfileSnapshot profile = userProfileCache.get(post.getUser().getId());
         BlogPostDTO dto = blogpostMapper.toDTOWithProfile(post, profile);
         if (dto != null && currentUserId != null) {
             boolean liked = blogPostLikeRepository.findByBlogPostIdAndUserId(id, currentUserId).isPresent();
@@ -148,6 +166,7 @@ public class BlogPostServiceImpl implements BlogPostService {
         // 支持后续字段扩展
         blogpostMapper.updateEntityFromDTO(dto, post);
         blogPostRepository.save(post);
+        blogUrlPreviewService.invalidate(id);
         return new ApiResponse<>(200, "更新成功", true);
     }
 
@@ -169,6 +188,7 @@ public class BlogPostServiceImpl implements BlogPostService {
             blogPostLikeRepository.delete(likeOpt.get());
             post.setLikeCount(safeLong(post.getLikeCount()) - 1);
             blogPostRepository.save(post);
+            trendingIndex.onLike(blogPostId, false);
             return new ApiResponse<>(200, "已取消点赞", false);
         } else {
             BlogPostLike like = new BlogPostLike();
@@ -177,6 +197,7 @@ public class BlogPostServiceImpl implements BlogPostService {
             blogPostLikeRepository.save(like);
             post.setLikeCount(safeLong(post.getLikeCount()) + 1);
             blogPostRepository.save(post);
+            trendingIndex.onLike(blogPostId, true);
 
             // 文章被点赞通知
             try {
@@ -221,24 +242,61 @@ public class BlogPostServiceImpl implements BlogPostService {
     public PageResult<BlogPostDTO> pageList(int page, int size, Long currentUserId) {
         PageRequest pageRequest = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
         Page<BlogPost> blogPage = blogPostRepository.findAll(pageRequest);
-        List<BlogPost> posts = blogPage.getContent();
-        // 批量获取所有 userId
-        List<Long> userIds = posts.stream()
+        List<BlogPostDTO> dtoList = toPostDTOs(blogPage.getContent(), currentUserId);
+        return new PageResult<>(dtoList, blogPage.getTotalElements(), page, size);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResult<BlogPostDTO> cursorList(String cursor, int size, boolean withTotal, Long currentUserId) {
+        int limit = clampPageSize(size);
+        PageCursor after = PageCursor.decode(cursor);
+        // 多取一条用于判断是否还有下一页
+        PageRequest probe = PageRequest.of(0, limit + 1);
+        List<BlogPost> posts = after == null
+                ? blogPostRepository.findFirstPage(probe)
+                : blogPostRepository.findPageBefore(after.createdAt(), after.id(), probe);
+        boolean hasMore = posts.size() > limit;
+        if (hasMore) posts = posts.subList(0, limit);
+        String next = hasMore ? lastCursor(posts.get(posts.size() - 1).getCreatedAt(),
+                posts.get(posts.size() - 1).getId()) : null;
+        Long total = withTotal ? blogPostRepository.count() : null;
+        return new CursorPageResult<>(toPostDTOs(posts, currentUserId), next, hasMore, limit, total);
+    }
+
+    // 批量查作者资料和点赞状态后转换为 DTO（各一次 IN 查询，避免 N+1）；当前用户拉黑的作者整页一次过滤
+    private List<BlogPostDTO> toPostDTOs(List<BlogPost> posts, Long currentUserId) {
+        posts = blockIndex.filter(currentUserId, posts, post -> post.getUser().getId());
+        java.util.Map<Long, ProfileSnapshot> profileMap = viewerStateHydrator.profiles(posts.stream()
                 .map(post -> post.getUser().getId())
-                .distinct()
-                .toList();
-        // 批量查找所有 UserProfile
-        List<UserProfile> profiles = userProfileRepository.findAllById(userIds);
-        // 构建 userId -> UserProfile 映射
-        java.util.Map<Long, UserProfile> profileMap = new java.util.HashMap<>();
-        for (UserProfile profile : profiles) {
-            profileMap.put(profile.getUser().getId(), profile);
-        }
+                .toList());
         List<BlogPostDTO> dtoList = posts.stream().map(post -> {
-            UserProfile profile = profileMap.get(post.getUser().getId());
+            ProfileSnapshot profile = profileMap.get(post.getUser().getId());
             return blogpostMapper.toDTOWithProfile(post, profile);
-        }).toList();
-        return new PageResult<>(dtoList, blogPage.getTotalElements(), page, size);
+        }).collect(Collectors.toList());
+        viewerStateHydrator.hydratePosts(dtoList, currentUserId);
+        return dtoList;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PageResult<BlogPostDTO> pageTrending(int page, int size, Long currentUserId) {
+        // 热度排序完全来自内存索引，这里只按 ID 批量回表
+        List<Long> ids = trendingIndex.page(page, size);
+        if (ids.isEmpty()) {
+            return new PageResult<>(List.of(), trendingIndex.size(), page, size);
+        }
+        java.util.Map<Long, BlogPost> postMap = new java.util.HashMap<>();
+        for (BlogPost post : blogPostRepository.findAllById(ids)) {
+            postMap.put(post.getId(), post);
+        }
+        // 保持索引给出的顺序；已被删除但尚未移出索引的文章直接跳过
+        List<BlogPost> ordered = ids.stream()
+                .map(postMap::get)
+                .filter(java.util.Objects::nonNull)
+                .toList();
+        List<BlogPostDTO> dtoList = toPostDTOs(ordered, currentUserId);
+        return new PageResult<>(dtoList, trendingIndex.size(), page, size);
     }
 
     @Override
@@ -250,11 +308,51 @@ public class BlogPostServiceImpl implements BlogPostService {
     public PageResult<CommentDTO> pageComments(Long blogPostId, int page, int size, Long currentUserId) {
         Page<Comment> commentPage = commentRepository.findByBlogPostIdOrderByCreatedAtDesc(blogPostId,
                 PageRequest.of(page, size));
-        List<CommentDTO> dtoList = commentPage.getContent().stream().map(c -> toCommentDTO(c, currentUserId)).toList();
+        List<CommentDTO> dtoList = toCommentDTOs(commentPage.getContent(), currentUserId);
         return new PageResult<>(dtoList, commentPage.getTotalElements(), page, size);
     }
 
-    private CommentDTO toCommentDTO(Comment c, Long currentUserId) {
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResult<CommentDTO> cursorComments(Long blogPostId, String cursor, int size, boolean withTotal,
+                                                       Long currentUserId) {
+        int limit = clampPageSize(size);
+        PageCursor after = PageCursor.decode(cursor);
+        PageRequest probe = PageRequest.of(0, limit + 1);
+        List<Comment> comments = after == null
+                ? commentRepository.findFirstPage(blogPostId, probe)
+                : commentRepository.findPageBefore(blogPostId, after.createdAt(), after.id(), probe);
+        boolean hasMore = comments.size() > limit;
+        if (hasMore) comments = comments.subList(0, limit);
+        String next = hasMore ? lastCursor(comments.get(comments.size() - 1).getCreatedAt(),
+                comments.get(comments.size() - 1).getId()) : null;
+        Long total = withTotal ? commentRepository.countByBlogPostId(blogPostId) : null;
+        List<CommentDTO> dtoList = toCommentDTOs(comments, currentUserId);
+        return new CursorPageResult<>(dtoList, next, hasMore, limit, total);
+    }
+
+    private String lastCursor(java.time.LocalDateTime createdAt, Long id) {
+        return new PageCursor(createdAt, id).encode();
+    }
+
+    private int clampPageSize(int size) {
+        return Math.max(1, Math.min(size, 100));
+    }
+
+    // 作者资料、点赞状态整页批量查询，不再逐条查库
+    private List<CommentDTO> toCommentDTOs(List<Comment> comments, Long currentUserId) {
+        comments = blockIndex.filter(currentUserId, comments, c -> c.getUser().getId());
+        java.util.Map<Long, ProfileSnapshot> profileMap = viewerStateHydrator.profiles(comments.stream()
+                .map(c -> c.getUser().getId())
+                .toList());
+        List<CommentDTO> dtoList = comments.stream()
+                .map(c -> toCommentDTO(c, profileMap.get(c.getUser().getId())))
+                .collect(Collectors.toList());
+        viewerStateHydrator.hydrateComments(dtoList, currentUserId);
+        return dtoList;
+    }
+
+    private CommentDTO toCommentDTO(Comment c, ProfileSnapshot up) {
         CommentDTO dto = new CommentDTO();
         dto.setId(c.getId());
         dto.setBlogPostId(c.getBlogPost().getId());
@@ -262,11 +360,6 @@ public class BlogPostServiceImpl implements BlogPostService {
         dto.setContent(c.getContent());
         dto.setCreatedAt(c.getCreatedAt());
         dto.setLikeCount(safeLong(c.getLikeCount()));
-        if (currentUserId != null) {
-            dto.setLikedByCurrentUser(
-                    commentLikeRepository.findByCommentIdAndUserId(c.getId(), currentUserId).isPresent());
-        }
-        UserProfile up = userProfileRepository.findById(c.getUser().getId()).orElse(null);
         if (up != null) {
             dto.setNickname(up.getNickname() != null ? up.getNickname() : "");
             dto.setAvatarUrl(up.getAvatarUrl() != null ? up.getAvatarUrl() : "");
@@ -378,6 +471,7 @@ public class BlogPostServiceImpl implements BlogPostService {
             }
         }
         blogPostRepository.save(post);
+        blogUrlPreviewService.invalidate(id);
         return new ApiResponse<>(200, "更新成功", true);
     }
 
@@ -440,6 +534,8 @@ public class BlogPostServiceImpl implements BlogPostService {
 
         // 9. 最后删博客
         blogPostRepository.delete(post);
+        trendingIndex.remove(blogPostId);
+        blogUrlPreviewService.invalidate(blogPostId);
 
         return new ApiResponse<>(200, "删除成功", true);
     }
@@ -1,22 +1,25 @@
 package com.kirisamemarisa.blog.service.impl;
 
+import com.kirisamemarisa.blog.cache.BoundedCache;
+import com.kirisamemarisa.blog.cache.ProfileSnapshot;
+import com.kirisamemarisa.blog.cache.UserProfileCache;
 import com.kirisamemarisa.blog.dto.BlogPreviewDTO;
 import com.kirisamemarisa.blog.model.BlogPost;
-import com.kirisamemarisa.blog.model.UserProfile;
 import com.kirisamemarisa.blog.repository.BlogPostRepository;
-import com.kirisamemarisa.blog.repository.UserProfileRepository;
 import com.kirisamemarisa.blog.service.BlogUrlPreviewService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * 根据文本中的 URL 识别是否为站内博客链接，若是则查库生成预览信息。
+ * 预览按博客 ID 缓存在有界缓存中，文章修改 / 删除时由 BlogPostServiceImpl 调用 invalidate。
  */
 @Service
 public class BlogUrlPreviewServiceImpl implements BlogUrlPreviewService {
@@ -35,48 +38,92 @@ public class BlogUrlPreviewServiceImpl implements BlogUrlPreviewService {
     private static final Pattern PATH_PATTERN = Pattern.compile("/post/(\\d+)");
 
     private final BlogPostRepository blogPostRepository;
-    private final UserProfileRepository userProfileRepository;
+    private final UserProfileCache userProfileCache;
+    // blogId -> 预览；文章不存在时缓存 null（负缓存）
+    private final BoundedCache<Long, BlogPreviewDTO> previewCache;
 
     public BlogUrlPreviewServiceImpl(BlogPostRepository blogPostRepository,
-                                     UserProfileRepository userProfileRepository) {
+                                     UserProfileCache userProfileCache,
+                                     @Value("${blog.cache.blog-preview.max-size:2000}") int maxSize,
+                                     @Value("${blog.cache.blog-preview.ttl-seconds:600}") long ttlSeconds) {
         this.blogPostRepository = blogPostRepository;
-        this.userProfileRepository = userProfileRepository;
+        this.userProfileCache = userProfileCache;
+        this.previewCache = new BoundedCache<>(maxSize, ttlSeconds, TimeUnit.SECONDS);
     }
 
     @Override
     public BlogPreviewDTO extractPreviewFromText(String text) {
-        if (text == null || text.isEmpty()) return null;
+        return extractPreviews(Collections.singletonList(text)).get(0);
+    }
 
-        // 在文本中查找一个形如 /post/{id} 或 http(s)://xxx/post/{id} 的片段
-        String urlPart = findBlogUrl(text);
-        if (urlPart == null) return null;
+    @Override
+    public List<BlogPreviewDTO> extractPreviews(List<String> texts) {
+        if (texts == null || texts.isEmpty()) return new ArrayList<>();
+
+        // 1. 扫描整页文本，收集引用的博客 ID
+        List<Long> blogIds = new ArrayList<>(texts.size());
+        Set<Long> distinct = new LinkedHashSet<>();
+        for (String text : texts) {
+            Long blogId = extractBlogId(findBlogUrl(text));
+            blogIds.add(blogId);
+            if (blogId != null) distinct.add(blogId);
+        }
 
-        Long blogId = extractBlogId(urlPart);
-        if (blogId == null) return null;
+        // 2. 先查缓存，未命中的一次 IN 查询
+        Map<Long, BlogPreviewDTO> resolved = new HashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long id : distinct) {
+            BoundedCache.Cached<BlogPreviewDTO> hit = previewCache.lookup(id);
+            if (hit == null) missing.add(id);
+            else if (hit.value() != null) resolved.put(id, hit.value());
+        }
+        if (!missing.isEmpty()) {
+            Map<Long, Long> stamps = previewCache.loadStamps(missing);
+            List<BlogPost> posts = blogPostRepository.findAllWithUserByIdIn(missing);
+            Set<Long> authorIds = new HashSet<>();
+            for (BlogPost post : posts) {
+                if (post.getUser() != null && post.getUser().getId() != null) authorIds.add(post.getUser().getId());
+            }
+            Map<Long, ProfileSnapshot> profiles = userProfileCache.getAll(authorIds);
+            for (BlogPost post : posts) {
+                Long authorId = post.getUser() != null ? post.getUser().getId() : null;
+                resolved.put(post.getId(), toPreview(post, authorId != null ? profiles.get(authorId) : null));
+            }
+            for (Long id : missing) {
+                previewCache.put(id, resolved.get(id), stamps.get(id));
+            }
+        }
 
-        Optional<BlogPost> opt = blogPostRepository.findById(blogId);
-        if (opt.isEmpty()) return null;
-        BlogPost post = opt.get();
+        // 3. 按原顺序返回副本，调用方修改不会污染缓存
+        List<BlogPreviewDTO> result = new ArrayList<>(texts.size());
+        for (Long blogId : blogIds) {
+            BlogPreviewDTO cached = blogId != null ? resolved.get(blogId) : null;
+            result.add(cached != null ? copy(cached) : null);
+        }
+        return result;
+    }
 
+    @Override
+    public void invalidate(Long blogPostId) {
+        if (blogPostId == null) return;
+        previewCache.invalidate(blogPostId);
+        // 提交后再失效一次，防止提交前有请求把旧数据重新加载进缓存
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    previewCache.invalidate(blogPostId);
+                }
+            });
+        }
+    }
+
+    private BlogPreviewDTO toPreview(BlogPost post, ProfileSnapshot profile) {
         BlogPreviewDTO dto = new BlogPreviewDTO();
         dto.setBlogId(post.getId());
         dto.setTitle(post.getTitle());
         dto.setCoverImageUrl(post.getCoverImageUrl());
-
-        // createdAt 类型按你的实体来，这里假设 BlogPost.getCreatedAt() 返回 LocalDateTime。
-        // 如果是 Instant，可以改为：
-        // LocalDateTime created = post.getCreatedAt() == null
-        //     ? null
-        //     : LocalDateTime.ofInstant(post.getCreatedAt(), ZoneId.systemDefault());
-        LocalDateTime created = null;
-        if (post.getCreatedAt() instanceof LocalDateTime) {
-            created = (LocalDateTime) post.getCreatedAt();
-        } else if (post.getCreatedAt() != null) {
-            // 如果实际是 Instant，取消注释下面两行并删除上面的判断
-            // created = LocalDateTime.ofInstant(
-            //     (Instant) post.getCreatedAt(), ZoneId.systemDefault());
-        }
-        dto.setCreatedAt(created);
+        dto.setCreatedAt(post.getCreatedAt());
 
         // 预览 URL：前端实际使用的是 /post/{id}，这里保持一致
         String prefix = (blogBaseUrl != null && !blogBaseUrl.isEmpty())
@@ -87,21 +134,24 @@ public class BlogUrlPreviewServiceImpl implements BlogUrlPreviewService {
         dto.setUrl(prefix + "/post/" + post.getId());
 
         // 作者昵称
-        if (post.getUser() != null && post.getUser().getId() != null) {
-            UserProfile profile = userProfileRepository
-                    .findById(post.getUser().getId())
-                    .orElse(null);
-            if (profile != null && profile.getNickname() != null) {
-                dto.setAuthorNickname(profile.getNickname());
-            } else if (post.getUser().getUsername() != null) {
-                dto.setAuthorNickname(post.getUser().getUsername());
-            } else {
-                dto.setAuthorNickname("");
-            }
+        if (profile != null && profile.getNickname() != null) {
+            dto.setAuthorNickname(profile.getNickname());
+        } else if (post.getUser() != null && post.getUser().getUsername() != null) {
+            dto.setAuthorNickname(post.getUser().getUsername());
         } else {
             dto.setAuthorNickname("");
         }
+        return dto;
+    }
 
+    private BlogPreviewDTO copy(BlogPreviewDTO src) {
+        BlogPreviewDTO dto = new BlogPreviewDTO();
+        dto.setBlogId(src.getBlogId());
+        dto.setTitle(src.getTitle());
+        dto.setCoverImageUrl(src.getCoverImageUrl());
+        dto.setUrl(src.getUrl());
+        dto.setAuthorNickname(src.getAuthorNickname());
+        dto.setCreatedAt(src.getCreatedAt());
         return dto;
     }
 
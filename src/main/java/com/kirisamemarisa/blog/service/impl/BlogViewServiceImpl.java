@@ -1,86 +1,79 @@
 package com.kirisamemarisa.blog.service.impl;
 
+import com.kirisamemarisa.blog.cache.BlogViewCounter;
+import com.kirisamemarisa.blog.cache.TrendingIndex;
 import com.kirisamemarisa.blog.common.ApiResponse;
 import com.kirisamemarisa.blog.dto.BlogViewRecordCreateDTO;
+import com.kirisamemarisa.blog.dto.BlogViewSeriesPointDTO;
 import com.kirisamemarisa.blog.dto.BlogViewStatsDTO;
-import com.kirisamemarisa.blog.mapper.BlogViewStatsMapper;
-import com.kirisamemarisa.blog.model.BlogPost;
-import com.kirisamemarisa.blog.model.BlogViewRecord;
-import com.kirisamemarisa.blog.model.BlogViewStats;
-import com.kirisamemarisa.blog.model.User;
-import com.kirisamemarisa.blog.repository.BlogPostRepository;
+import com.kirisamemarisa.blog.model.BlogViewRollup;
 import com.kirisamemarisa.blog.repository.BlogViewRecordRepository;
+import com.kirisamemarisa.blog.repository.BlogViewRollupRepository;
 import com.kirisamemarisa.blog.repository.BlogViewStatsRepository;
-import com.kirisamemarisa.blog.repository.UserRepository;
 import com.kirisamemarisa.blog.service.BlogViewService;
+import com.kirisamemarisa.blog.task.BlogViewRecordWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Optional;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Service
 public class BlogViewServiceImpl implements BlogViewService {
 
     private static final Logger logger = LoggerFactory.getLogger(BlogViewServiceImpl.class);
 
-    private final BlogPostRepository blogPostRepository;
-    private final UserRepository userRepository;
+    // 单次时间序列查询最多返回的点数（约 31 天的小时桶 / 两年的天桶）
+    private static final int MAX_HOUR_POINTS = 24 * 31;
+    private static final int MAX_DAY_POINTS = 366 * 2;
+
     private final BlogViewRecordRepository blogViewRecordRepository;
     private final BlogViewStatsRepository blogViewStatsRepository;
-    private final BlogViewStatsMapper blogViewStatsMapper;
+    private final BlogViewRollupRepository blogViewRollupRepository;
+    private final BlogViewCounter blogViewCounter;
+    private final BlogViewRecordWriter blogViewRecordWriter;
+    private final TrendingIndex trendingIndex;
 
-    public BlogViewServiceImpl(BlogPostRepository blogPostRepository,
-                               UserRepository userRepository,
-                               BlogViewRecordRepository blogViewRecordRepository,
+    public BlogViewServiceImpl(BlogViewRecordRepository blogViewRecordRepository,
                                BlogViewStatsRepository blogViewStatsRepository,
-                               BlogViewStatsMapper blogViewStatsMapper) {
-        this.blogPostRepository = blogPostRepository;
-        this.userRepository = userRepository;
+                               BlogViewRollupRepository blogViewRollupRepository,
+                               BlogViewCounter blogViewCounter,
+                               BlogViewRecordWriter blogViewRecordWriter,
+                               TrendingIndex trendingIndex) {
         this.blogViewRecordRepository = blogViewRecordRepository;
         this.blogViewStatsRepository = blogViewStatsRepository;
-        this.blogViewStatsMapper = blogViewStatsMapper;
+        this.blogViewRollupRepository = blogViewRollupRepository;
+        this.blogViewCounter = blogViewCounter;
+        this.blogViewRecordWriter = blogViewRecordWriter;
+        this.trendingIndex = trendingIndex;
     }
 
     @Override
-    @Transactional
     public ApiResponse<BlogViewStatsDTO> recordView(BlogViewRecordCreateDTO dto) {
         if (dto == null || dto.getBlogPostId() == null) {
             return new ApiResponse<>(400, "blogPostId 不能为空", null);
         }
 
-        Optional<BlogPost> postOpt = blogPostRepository.findById(dto.getBlogPostId());
-        if (postOpt.isEmpty()) {
+        Long blogPostId = dto.getBlogPostId();
+        // 存在性与当前统计都来自 BlogViewCounter 的缓存，浏览请求不查库
+        if (blogViewCounter.totals(blogPostId) == null) {
             return new ApiResponse<>(404, "博客不存在", null);
         }
-        BlogPost post = postOpt.get();
 
-        User user = null;
-        if (dto.getUserId() != null) {
-            user = userRepository.findById(dto.getUserId()).orElse(null);
-        }
+        // 1. 浏览明细放入队列，由 BlogViewRecordWriter 异步批量写入
+        blogViewRecordWriter.submit(blogPostId, dto.getUserId());
+
+        // 2. 浏览量与访客草图只在内存中累加，由 BlogViewCounter 定时批量写回 blog_view_stats
+        blogViewCounter.increment(blogPostId, visitorKey(dto));
+        trendingIndex.onView(blogPostId);
 
-        // 1. 记录一条浏览明细
-        BlogViewRecord record = new BlogViewRecord();
-        record.setBlogPost(post);
-        record.setUser(user);
-        blogViewRecordRepository.save(record);
-
-        // 2. 增加浏览统计
-        BlogViewStats stats = blogViewStatsRepository.findByBlogPostId(post.getId())
-                .orElseGet(() -> {
-                    BlogViewStats s = new BlogViewStats();
-                    s.setBlogPost(post);
-                    s.setViewCount(0L);
-                    return s;
-                });
-        Long current = stats.getViewCount() == null ? 0L : stats.getViewCount();
-        stats.setViewCount(current + 1L);
-        stats = blogViewStatsRepository.save(stats);
-
-        BlogViewStatsDTO statsDTO = blogViewStatsMapper.toDTO(stats);
-        return new ApiResponse<>(200, "浏览记录成功", statsDTO);
+        return new ApiResponse<>(200, "浏览记录成功", currentStats(blogPostId));
     }
 
     @Override
@@ -89,16 +82,69 @@ public class BlogViewServiceImpl implements BlogViewService {
         if (blogPostId == null) {
             return new ApiResponse<>(400, "blogPostId 不能为空", null);
         }
-        Optional<BlogViewStats> statsOpt = blogViewStatsRepository.findByBlogPostId(blogPostId);
-        if (statsOpt.isEmpty()) {
-            // 没有记录时默认 0
-            BlogViewStatsDTO dto = new BlogViewStatsDTO();
-            dto.setBlogPostId(blogPostId);
-            dto.setViewCount(0L);
-            return new ApiResponse<>(200, "获取成功", dto);
+        return new ApiResponse<>(200, "获取成功", currentStats(blogPostId));
+    }
+
+    /**
+     * 去重用的访客标识：登录用户按用户 ID，匿名访客按 visitorId（指纹），两者前缀不同互不冲突
+     */
+    private String visitorKey(BlogViewRecordCreateDTO dto) {
+        if (dto.getUserId() != null) return "u:" + dto.getUserId();
+        if (dto.getVisitorId() != null && !dto.getVisitorId().isBlank()) return "a:" + dto.getVisitorId();
+        return null;
+    }
+
+    /**
+     * 当前浏览量 = 已写回数据库的值（缓存）+ 内存中尚未写回的增量；文章不存在时两项都为 0
+     */
+    private BlogViewStatsDTO currentStats(Long blogPostId) {
+        BlogViewCounter.Totals totals = blogViewCounter.totals(blogPostId);
+        BlogViewStatsDTO dto = new BlogViewStatsDTO();
+        dto.setBlogPostId(blogPostId);
+        dto.setViewCount(totals == null ? 0L : totals.viewCount());
+        dto.setUniqueVisitors(totals == null ? 0L : totals.uniqueVisitors());
+        return dto;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ApiResponse<List<BlogViewSeriesPointDTO>> getSeries(Long blogPostId, String granularity,
+                                                               LocalDateTime from, LocalDateTime to) {
+        if (blogPostId == null) {
+            return new ApiResponse<>(400, "blogPostId 不能为空", null);
+        }
+        BlogViewRollup.Granularity g;
+        if (granularity == null || granularity.isBlank() || "hour".equalsIgnoreCase(granularity)) {
+            g = BlogViewRollup.Granularity.HOUR;
+        } else if ("day".equalsIgnoreCase(granularity)) {
+            g = BlogViewRollup.Granularity.DAY;
+        } else {
+            return new ApiResponse<>(400, "granularity 只能是 hour 或 day", null);
+        }
+        ChronoUnit unit = g == BlogViewRollup.Granularity.HOUR ? ChronoUnit.HOURS : ChronoUnit.DAYS;
+        int maxPoints = g == BlogViewRollup.Granularity.HOUR ? MAX_HOUR_POINTS : MAX_DAY_POINTS;
+
+        // 区间按桶对齐为 [start, end)，end 默认为当前桶的下一个桶
+        LocalDateTime end = (to != null ? to : LocalDateTime.now()).truncatedTo(unit).plus(1, unit);
+        LocalDateTime start = from != null
+                ? from.truncatedTo(unit)
+                : end.minus(g == BlogViewRollup.Granularity.HOUR ? 24 : 30, unit);
+        if (!start.isBefore(end)) {
+            return new ApiResponse<>(400, "from 必须早于 to", null);
+        }
+        if (unit.between(start, end) > maxPoints) {
+            return new ApiResponse<>(400, "查询区间过大，最多 " + maxPoints + " 个时间点", null);
+        }
+
+        Map<LocalDateTime, Long> counts = new HashMap<>();
+        for (BlogViewRollup r : blogViewRollupRepository.findSeries(blogPostId, g, start, end)) {
+            counts.put(r.getBucketStart(), r.getViewCount());
         }
-        BlogViewStatsDTO dto = blogViewStatsMapper.toDTO(statsOpt.get());
-        return new ApiResponse<>(200, "获取成功", dto);
+        List<BlogViewSeriesPointDTO> points = new ArrayList<>();
+        for (LocalDateTime t = start; t.isBefore(end); t = t.plus(1, unit)) {
+            points.add(new BlogViewSeriesPointDTO(t, counts.getOrDefault(t, 0L)));
+        }
+        return new ApiResponse<>(200, "获取成功", points);
     }
 
     @Override
@@ -106,6 +152,9 @@ public class BlogViewServiceImpl implements BlogViewService {
     public void deleteByBlogPostId(Long blogPostId) {
         if (blogPostId == null) return;
 
+        // 丢弃尚未写回的浏览增量
+        blogViewCounter.discard(blogPostId);
+
         try {
             // 先删明细，再删统计，避免外键约束
             blogViewRecordRepository.deleteByBlogPost_Id(blogPostId);
@@ -118,6 +167,12 @@ public class BlogViewServiceImpl implements BlogViewService {
         } catch (Exception e) {
             logger.warn("删除博客 {} 的浏览统计失败", blogPostId, e);
         }
+
+        try {
+            blogViewRollupRepository.deleteByBlogPostId(blogPostId);
+        } catch (Exception e) {
+            logger.warn("删除博客 {} 的浏览汇总失败", blogPostId, e);
+        }
     }
 
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.kirisamemarisa.blog.service.impl;
 
+import com.kirisamemarisa.blog.cache.BlockIndex;
+import com.kirisamemarisa.blog.cache.ProfileSnapshot;
 import com.kirisamemarisa.blog.common.ApiResponse;
 import com.kirisamemarisa.blog.dto.CommentReplyCreateDTO;
 import com.kirisamemarisa.blog.dto.CommentReplyDTO;
@@ -10,11 +12,9 @@ import com.kirisamemarisa.blog.model.Comment;
 import com.kirisamemarisa.blog.model.CommentReply;
 import com.kirisamemarisa.blog.model.CommentReplyLike;
 import com.kirisamemarisa.blog.model.User;
-import com.kirisamemarisa.blog.model.UserProfile;
 import com.kirisamemarisa.blog.repository.CommentReplyLikeRepository;
 import com.kirisamemarisa.blog.repository.CommentReplyRepository;
 import com.kirisamemarisa.blog.repository.CommentRepository;
-import com.kirisamemarisa.blog.repository.UserProfileRepository;
 import com.kirisamemarisa.blog.repository.UserRepository;
 import com.kirisamemarisa.blog.service.CommentReplyService;
 import com.kirisamemarisa.blog.service.NotificationService;
@@ -27,7 +27,6 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -37,24 +36,27 @@ public class CommentReplyServiceImpl implements CommentReplyService {
     private final CommentReplyLikeRepository replyLikeRepository;
     private final CommentRepository commentRepository;
     private final UserRepository userRepository;
-    private final UserProfileRepository userProfileRepository;
     private final CommentReplyMapper replyMapper;
     private final NotificationService notificationService;
+    private final ViewerStateHydrator viewerStateHydrator;
+    private final BlockIndex blockIndex;
 
     public CommentReplyServiceImpl(CommentReplyRepository replyRepository,
                                    CommentReplyLikeRepository replyLikeRepository,
                                    CommentRepository commentRepository,
                                    UserRepository userRepository,
-                                   UserProfileRepository userProfileRepository,
                                    CommentReplyMapper replyMapper,
-                                   NotificationService notificationService) {
+                                   NotificationService notificationService,
+                                   ViewerStateHydrator viewerStateHydrator,
+                                   BlockIndex blockIndex) {
         this.replyRepository = replyRepository;
         this.replyLikeRepository = replyLikeRepository;
         this.commentRepository = commentRepository;
         this.userRepository = userRepository;
-        this.userProfileRepository = userProfileRepository;
         this.replyMapper = replyMapper;
         this.notificationService = notificationService;
+        this.viewerStateHydrator = viewerStateHydrator;
+        this.blockIndex = blockIndex;
     }
 
     @Override
@@ -113,37 +115,26 @@ public class CommentReplyServiceImpl implements CommentReplyService {
         Page<CommentReply> replyPage = replyRepository
                 .findByCommentIdOrderByCreatedAtDesc(commentId, PageRequest.of(page, size));
 
-        List<CommentReply> replies = replyPage.getContent();
+        // 过滤当前用户拉黑的人的回复（整页一次，不逐条查库）
+        List<CommentReply> replies = blockIndex.filter(currentUserId, replyPage.getContent(),
+                r -> r.getUser().getId());
 
-        // 批量获取所有 userId
-        List<Long> userIds = replies.stream()
+        // 批量获取作者资料
+        Map<Long, ProfileSnapshot> profileMap = viewerStateHydrator.profiles(replies.stream()
                 .map(r -> r.getUser().getId())
-                .distinct()
-                .toList();
-
-        List<UserProfile> profiles = userProfileRepository.findAllById(userIds);
-        Map<Long, UserProfile> profileMap = new HashMap<>();
-        for (UserProfile profile : profiles) {
-            profileMap.put(profile.getUser().getId(), profile);
-        }
+                .toList());
 
         List<CommentReplyDTO> dtoList = replies.stream().map(reply -> {
             CommentReplyDTO dto = replyMapper.toDTO(reply);
-            if (currentUserId != null) {
-                boolean liked = replyLikeRepository
-                        .findByReplyIdAndUserId(reply.getId(), currentUserId)
-                        .isPresent();
-                dto.setLikedByCurrentUser(liked);
-            } else {
-                dto.setLikedByCurrentUser(false);
-            }
-            UserProfile profile = profileMap.get(reply.getUser().getId());
+            ProfileSnapshot profile = profileMap.get(reply.getUser().getId());
             if (profile != null) {
                 dto.setNickname(profile.getNickname());
                 dto.setAvatarUrl(profile.getAvatarUrl());
             }
             return dto;
         }).collect(Collectors.toList());
+        // 点赞状态一次 IN 查询
+        viewerStateHydrator.hydrateReplies(dtoList, currentUserId);
 
         return new PageResult<>(dtoList, replyPage.getTotalElements(), page, size);
     }
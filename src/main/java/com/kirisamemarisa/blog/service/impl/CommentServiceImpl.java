@@ -3,6 +3,9 @@ package com.kirisamemarisa.blog.service.impl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.kirisamemarisa.blog.cache.BlockIndex;
+import com.kirisamemarisa.blog.cache.TrendingIndex;
+import com.kirisamemarisa.blog.cache.ProfileSnapshot;
 import com.kirisamemarisa.blog.common.ApiResponse;
 import com.kirisamemarisa.blog.dto.CommentCreateDTO;
 import com.kirisamemarisa.blog.dto.CommentDTO;
@@ -12,11 +15,9 @@ import com.kirisamemarisa.blog.model.BlogPost;
 import com.kirisamemarisa.blog.model.Comment;
 import com.kirisamemarisa.blog.model.CommentLike;
 import com.kirisamemarisa.blog.model.User;
-import com.kirisamemarisa.blog.model.UserProfile;
 import com.kirisamemarisa.blog.repository.BlogPostRepository;
 import com.kirisamemarisa.blog.repository.CommentLikeRepository;
 import com.kirisamemarisa.blog.repository.CommentRepository;
-import com.kirisamemarisa.blog.repository.UserProfileRepository;
 import com.kirisamemarisa.blog.repository.UserRepository;
 import com.kirisamemarisa.blog.service.CommentService;
 import com.kirisamemarisa.blog.service.NotificationService;
@@ -42,10 +43,14 @@ public class CommentServiceImpl implements CommentService {
     private CommentLikeRepository commentLikeRepository;
     @Autowired
     private CommentMapper commentMapper;
-    @Autowired
-    private UserProfileRepository userProfileRepository;
     @Autowired(required = false)
     private NotificationService notificationService;
+    @Autowired
+    private TrendingIndex trendingIndex;
+    @Autowired
+    private ViewerStateHydrator viewerStateHydrator;
+    @Autowired
+    private BlockIndex blockIndex;
 
     @Override
     @Transactional
@@ -68,6 +73,7 @@ public class CommentServiceImpl implements CommentService {
         BlogPost blogPost = blogPostOpt.get();
         blogPost.setCommentCount(blogPost.getCommentCount() + 1);
         blogPostRepository.save(blogPost);
+        trendingIndex.onComment(blogPost.getId());
 
         // 通知文章作者“收到评论”
         try {
@@ -95,31 +101,7 @@ public class CommentServiceImpl implements CommentService {
     @Override
     public List<CommentDTO> listComments(Long blogPostId, Long currentUserId) {
         List<Comment> comments = commentRepository.findByBlogPostIdOrderByCreatedAtDesc(blogPostId);
-        // 批量获取所有 userId
-        List<Long> userIds = comments.stream()
-                .map(comment -> comment.getUser().getId())
-                .distinct()
-                .toList();
-        List<UserProfile> profiles = userProfileRepository.findAllById(userIds);
-        java.util.Map<Long, UserProfile> profileMap = new java.util.HashMap<>();
-        for (UserProfile profile : profiles) {
-            profileMap.put(profile.getUser().getId(), profile);
-        }
-        return comments.stream().map(comment -> {
-            CommentDTO dto = commentMapper.toDTO(comment);
-            if (currentUserId != null) {
-                dto.setLikedByCurrentUser(
-                        commentLikeRepository.findByCommentIdAndUserId(comment.getId(), currentUserId).isPresent());
-            } else {
-                dto.setLikedByCurrentUser(false);
-            }
-            UserProfile profile = profileMap.get(comment.getUser().getId());
-            if (profile != null) {
-                dto.setNickname(profile.getNickname());
-                dto.setAvatarUrl(profile.getAvatarUrl());
-            }
-            return dto;
-        }).collect(java.util.stream.Collectors.toList());
+        return toDTOs(comments, currentUserId);
     }
 
     @Override
@@ -127,32 +109,27 @@ public class CommentServiceImpl implements CommentService {
         org.springframework.data.domain.Page<Comment> commentPage = commentRepository
                 .findByBlogPostIdOrderByCreatedAtDesc(blogPostId,
                         org.springframework.data.domain.PageRequest.of(page, size));
-        List<Comment> comments = commentPage.getContent();
-        List<Long> userIds = comments.stream()
+        List<CommentDTO> dtoList = toDTOs(commentPage.getContent(), currentUserId);
+        return new PageResult<>(dtoList, commentPage.getTotalElements(), page, size);
+    }
+
+    // 作者资料与点赞状态都按整页批量查询；当前用户拉黑的作者在转换前整页过滤
+    private List<CommentDTO> toDTOs(List<Comment> comments, Long currentUserId) {
+        comments = blockIndex.filter(currentUserId, comments, comment -> comment.getUser().getId());
+        java.util.Map<Long, ProfileSnapshot> profileMap = viewerStateHydrator.profiles(comments.stream()
                 .map(comment -> comment.getUser().getId())
-                .distinct()
-                .toList();
-        List<UserProfile> profiles = userProfileRepository.findAllById(userIds);
-        java.util.Map<Long, UserProfile> profileMap = new java.util.HashMap<>();
-        for (UserProfile profile : profiles) {
-            profileMap.put(profile.getUser().getId(), profile);
-        }
+                .toList());
         List<CommentDTO> dtoList = comments.stream().map(comment -> {
             CommentDTO dto = commentMapper.toDTO(comment);
-            if (currentUserId != null) {
-                dto.setLikedByCurrentUser(
-                        commentLikeRepository.findByCommentIdAndUserId(comment.getId(), currentUserId).isPresent());
-            } else {
-                dto.setLikedByCurrentUser(false);
-            }
-            UserProfile profile = profileMap.get(comment.getUser().getId());
+            ProfileSnapshot profile = profileMap.get(comment.getUser().getId());
             if (profile != null) {
                 dto.setNickname(profile.getNickname());
                 dto.setAvatarUrl(profile.getAvatarUrl());
             }
             return dto;
         }).collect(java.util.stream.Collectors.toList());
-        return new PageResult<>(dtoList, commentPage.getTotalElements(), page, size);
+        viewerStateHydrator.hydrateComments(dtoList, currentUserId);
+        return dtoList;
     }
 
     @Override
@@ -0,0 +1,146 @@
+package com.kirisamemarisa.blog.service.impl;
+
+import com.kirisamemarisa.blog.cache.ProfileSnapshot;
+import com.kirisamemarisa.blog.cache.UserProfileCache;
+import com.kirisamemarisa.blog.dto.ConversationSummaryDTO;
+import com.kirisamemarisa.blog.dto.PageResult;
+import com.kirisamemarisa.blog.model.ConversationSummary;
+import com.kirisamemarisa.blog.model.PrivateMessage;
+import com.kirisamemarisa.blog.model.User;
+import com.kirisamemarisa.blog.repository.ConversationSummaryRepository;
+import com.kirisamemarisa.blog.repository.PrivateMessageRepository;
+import com.kirisamemarisa.blog.repository.PrivateMessageStatusRepository;
+import com.kirisamemarisa.blog.repository.UserRepository;
+import com.kirisamemarisa.blog.service.ConversationSummaryService;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+@Service
+@Transactional
+public class ConversationSummaryServiceImpl implements ConversationSummaryService {
+
+    public static final String RECALLED_PREVIEW = "[消息已撤回]";
+
+    private final ConversationSummaryRepository summaryRepository;
+    private final PrivateMessageRepository messageRepository;
+    private final PrivateMessageStatusRepository statusRepository;
+    private final UserRepository userRepository;
+    private final UserProfileCache userProfileCache;
+
+    public ConversationSummaryServiceImpl(ConversationSummaryRepository summaryRepository,
+                                          PrivateMessageRepository messageRepository,
+                                          PrivateMessageStatusRepository statusRepository,
+                                          UserRepository userRepository,
+                                          UserProfileCache userProfileCache) {
+        this.summaryRepository = summaryRepository;
+        this.messageRepository = messageRepository;
+        this.statusRepository = statusRepository;
+        this.userRepository = userRepository;
+        this.userProfileCache = userProfileCache;
+    }
+
+    @Override
+    public void onMessageSent(PrivateMessage message) {
+        if (message == null || message.getId() == null
+                || message.getSender() == null || message.getReceiver() == null) return;
+        Long senderId = message.getSender().getId();
+        Long receiverId = message.getReceiver().getId();
+        String preview = preview(message);
+        summaryRepository.upsertLastMessage(senderId, receiverId, message.getId(), preview, message.getCreatedAt(), 0L);
+        if (!senderId.equals(receiverId)) {
+            summaryRepository.upsertLastMessage(receiverId, senderId, message.getId(), preview, message.getCreatedAt(), 1L);
+        }
+    }
+
+    @Override
+    public void onConversationRead(Long ownerId, Long partnerId) {
+        if (ownerId == null || partnerId == null) return;
+        summaryRepository.clearUnread(ownerId, partnerId);
+    }
+
+    @Override
+    public void onMessageRecalled(PrivateMessage message) {
+        if (message == null || message.getId() == null) return;
+        summaryRepository.replacePreview(message.getId(), RECALLED_PREVIEW);
+    }
+
+    @Override
+    public void onMessageDeleted(Long ownerId, Long partnerId, Long messageId, boolean unread) {
+        if (ownerId == null || partnerId == null || messageId == null) return;
+        if (unread) summaryRepository.decrementUnread(ownerId, partnerId);
+        ConversationSummary summary = summaryRepository.findByOwnerIdAndPartnerId(ownerId, partnerId).orElse(null);
+        if (summary == null || !messageId.equals(summary.getLastMessageId())) return;
+
+        List<PrivateMessage> latest = messageRepository.findLatestVisible(ownerId, partnerId, PageRequest.of(0, 1));
+        if (latest.isEmpty()) {
+            // owner 已删光该会话的所有消息，收件箱中不再显示
+            summaryRepository.deleteByOwnerAndPartner(ownerId, partnerId);
+            return;
+        }
+        PrivateMessage last = latest.get(0);
+        summary.setLastMessageId(last.getId());
+        summary.setLastAt(last.getCreatedAt());
+        summary.setLastPreview(statusRepository.existsByMessage_IdAndRecalledTrue(last.getId())
+                ? RECALLED_PREVIEW : preview(last));
+        summaryRepository.save(summary);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PageResult<ConversationSummaryDTO> inbox(Long ownerId, int page, int size) {
+        Page<ConversationSummary> rows = summaryRepository.findInbox(ownerId, PageRequest.of(page, size));
+
+        Set<Long> partnerIds = new HashSet<>();
+        rows.getContent().forEach(c -> partnerIds.add(c.getPartnerId()));
+        Map<Long, ProfileSnapshot> profiles = userProfileCache.getAll(partnerIds);
+
+        // 没有资料的用户回退显示用户名
+        Set<Long> missing = new HashSet<>(partnerIds);
+        missing.removeAll(profiles.keySet());
+        Map<Long, String> usernames = new HashMap<>();
+        if (!missing.isEmpty()) {
+            for (User u : userRepository.findAllById(missing)) {
+                usernames.put(u.getId(), u.getUsername());
+            }
+        }
+
+        List<ConversationSummaryDTO> list = new ArrayList<>(rows.getNumberOfElements());
+        for (ConversationSummary c : rows.getContent()) {
+            ConversationSummaryDTO s = new ConversationSummaryDTO();
+            s.setOtherId(c.getPartnerId());
+            ProfileSnapshot prof = profiles.get(c.getPartnerId());
+            if (prof != null) {
+                s.setNickname(prof.getNickname());
+                s.setAvatarUrl(prof.getAvatarUrl());
+            } else {
+                s.setNickname(usernames.getOrDefault(c.getPartnerId(), ""));
+                s.setAvatarUrl("");
+            }
+            s.setLastMessage(c.getLastPreview());
+            s.setLastAt(c.getLastAt());
+            s.setUnreadCount(c.getUnreadCount());
+            list.add(s);
+        }
+        return new PageResult<>(list, rows.getTotalElements(), page, size);
+    }
+
+    @Override
+    public String preview(PrivateMessage m) {
+        if (m.getType() != null && m.getType() != PrivateMessage.MessageType.TEXT) {
+            String base = m.getType().name();
+            String t = m.getText();
+            if (t != null && !t.isEmpty()) {
+                String cut = t.length() > 20 ? t.substring(0, 20) + "..." : t;
+                return base + ":" + cut;
+            }
+            return base;
+        }
+        String t = m.getText();
+        if (t == null) return "";
+        return t.length() > 40 ? t.substring(0, 40) + "..." : t;
+    }
+}
@@ -3,6 +3,7 @@ package com.kirisamemarisa.blog.service.impl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.kirisamemarisa.blog.cache.FollowGraph;
 import com.kirisamemarisa.blog.model.Follow;
 import com.kirisamemarisa.blog.model.User;
 import com.kirisamemarisa.blog.repository.FollowRepository;
@@ -12,6 +13,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -21,10 +23,13 @@ public class FollowServiceImpl implements FollowService {
     private static final Logger logger = LoggerFactory.getLogger(FollowServiceImpl.class);
     private final FollowRepository followRepository;
     private final UserRepository userRepository;
+    private final FollowGraph followGraph;
 
-    public FollowServiceImpl(FollowRepository followRepository, UserRepository userRepository) {
+    public FollowServiceImpl(FollowRepository followRepository, UserRepository userRepository,
+                             FollowGraph followGraph) {
         this.followRepository = followRepository;
         this.userRepository = userRepository;
+        this.followGraph = followGraph;
         logger.debug("FollowServiceImpl initialized with followRepository={} userRepository={}",
                 followRepository != null, userRepository != null);
     }
@@ -37,6 +42,7 @@ public class FollowServiceImpl implements FollowService {
                     f.setFollower(follower);
                     f.setFollowee(followee);
                     Follow saved = null;
+                    followGraph.onFollowed(follower.getId(), followee.getId());
                     try {
                         saved = followRepository.save(f);
                         followRepository.flush();
@@ -59,17 +65,46 @@ public class FollowServiceImpl implements FollowService {
     @Override
     public void unfollow(User follower, User followee) {
         followRepository.findByFollowerAndFollowee(follower, followee)
-                .ifPresent(followRepository::delete);
+                .ifPresent(f -> {
+                    followRepository.delete(f);
+                    followGraph.onUnfollowed(follower.getId(), followee.getId());
+                });
     }
 
     @Override
     public boolean isFollowing(User follower, User followee) {
-        return followRepository.findByFollowerAndFollowee(follower, followee).isPresent();
+        // 内存关注图，关注 / 取关提交后同步更新
+        return followGraph.isFollowing(follower.getId(), followee.getId());
     }
 
     @Override
     public boolean areFriends(User a, User b) {
-        return isFollowing(a, b) && isFollowing(b, a);
+        return followGraph.areFriends(a.getId(), b.getId());
+    }
+
+    @Override
+    public List<User> listFriends(User user) {
+        return findUsers(followGraph.friendIds(user.getId()));
+    }
+
+    @Override
+    public List<User> listMutualFriends(User a, User b) {
+        return findUsers(followGraph.mutualFriendIds(a.getId(), b.getId()));
+    }
+
+    // 按 ID 一次批量取用户，保持传入顺序
+    private List<User> findUsers(long[] ids) {
+        if (ids.length == 0) return List.of();
+        List<Long> idList = new ArrayList<>(ids.length);
+        for (long id : ids) idList.add(id);
+        java.util.Map<Long, User> byId = userRepository.findAllById(idList).stream()
+                .collect(Collectors.toMap(User::getId, u -> u));
+        List<User> users = new ArrayList<>(ids.length);
+        for (Long id : idList) {
+            User u = byId.get(id);
+            if (u != null) users.add(u);
+        }
+        return users;
     }
 
     @Override
@@ -98,12 +133,12 @@ public class FollowServiceImpl implements FollowService {
 
     @Override
     public long countFollowers(User user) {
-        return followRepository.countByFollowee(user);
+        return followGraph.followerCount(user.getId());
     }
 
     @Override
     public long countFollowing(User user) {
-        return followRepository.countByFollower(user);
+        return followGraph.followingCount(user.getId());
     }
 
     // no-op: keep the logger used in constructor; remove unused helper method
@@ -0,0 +1,234 @@
+package com.kirisamemarisa.blog.service.impl;
+
+import com.kirisamemarisa.blog.cache.FollowGraph;
+import com.kirisamemarisa.blog.cache.ProfileSnapshot;
+import com.kirisamemarisa.blog.cache.UserProfileCache;
+import com.kirisamemarisa.blog.dto.FriendRecommendationDTO;
+import com.kirisamemarisa.blog.model.FriendRecommendation;
+import com.kirisamemarisa.blog.repository.BlockedUserRepository;
+import com.kirisamemarisa.blog.repository.FriendRecommendationRepository;
+import com.kirisamemarisa.blog.repository.FriendRequestRepository;
+import com.kirisamemarisa.blog.service.FriendRecommendationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 二度关系推荐：我关注的人（f）所关注的人（c）为候选，得分为有多少个 f 关注了 c。
+ * 排除自己、已关注的人、任一方向有待处理好友申请的人、任一方向拉黑的人，每个用户保留前 top-k 个存入 friend_recommendations。
+ * <p>
+ * 增量更新：a 关注 / 取关 b 后，a 自己以及 a 的粉丝（他们的二度关系经过 a）需要重算；
+ * 关注图在提交后回调，这里只记下 a，由后台任务展开到粉丝（超过 max-fanout 的大 V 只重算自己）后逐个重算。
+ * 好友申请与拉黑只影响双方的排除集合，直接标记双方。待重算集合在内存中，多实例时由处理写请求的实例负责。
+ * 算过但没有候选的用户存一行 candidate_id = 0 的空标记，与“从未算过”区分，读取时不会反复排队重算。
+ * 二度关系按批 in 查询只取 f 的关注列表（每批 FOLLOWING_BATCH 个 f），不经过关注图、不加载粉丝集合。
+ */
+@Service
+public class FriendRecommendationServiceImpl implements FriendRecommendationService {
+    private static final Logger logger = LoggerFactory.getLogger(FriendRecommendationServiceImpl.class);
+
+    private static final String DELETE_SQL = "delete from friend_recommendations where user_id = ?";
+    // 二度关系：一批 f 的关注列表，只取 followee_id
+    private static final String FOLLOWING_OF_SQL = "select followee_id from follows where follower_id in (%s)";
+    private static final int FOLLOWING_BATCH = 500;
+    private static final String INSERT_SQL =
+            "insert into friend_recommendations (user_id, candidate_id, mutual_count, rank_no, computed_at) " +
+            "values (?, ?, ?, ?, ?)";
+
+    // 得分升序、同分 ID 降序：小顶堆的堆顶是最该淘汰的候选
+    // 空结果标记：candidate_id 为 0、rank_no 为 0
+    private static final long EMPTY_MARKER = 0L;
+
+    private static final Comparator<Candidate> WORST_FIRST = Comparator
+            .comparingInt(Candidate::mutualCount)
+            .thenComparing(Candidate::userId, Comparator.reverseOrder());
+
+    private final FollowGraph followGraph;
+    private final FriendRecommendationRepository recommendationRepository;
+    private final FriendRequestRepository friendRequestRepository;
+    private final BlockedUserRepository blockedUserRepository;
+    private final UserProfileCache userProfileCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int topK;
+    private final int maxFanout;
+
+    // 关注关系发生变化、尚未展开到粉丝的用户
+    private final Set<Long> changedSources = ConcurrentHashMap.newKeySet();
+    // 待重算推荐的用户
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    public FriendRecommendationServiceImpl(FollowGraph followGraph,
+                                           FriendRecommendationRepository recommendationRepository,
+                                           FriendRequestRepository friendRequestRepository,
+                                           BlockedUserRepository blockedUserRepository,
+                                           UserProfileCache userProfileCache,
+                                           JdbcTemplate jdbcTemplate,
+                                           PlatformTransactionManager transactionManager,
+                                           @Value("${blog.recommend.top-k:50}") int topK,
+                                           @Value("${blog.recommend.max-fanout:2000}") int maxFanout) {
+        this.followGraph = followGraph;
+        this.recommendationRepository = recommendationRepository;
+        this.friendRequestRepository = friendRequestRepository;
+        this.blockedUserRepository = blockedUserRepository;
+        this.userProfileCache = userProfileCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.topK = Math.max(1, topK);
+        this.maxFanout = Math.max(1, maxFanout);
+        // 关注图已在提交后回调，这里只记录，不在请求线程里加载粉丝
+        followGraph.addChangeListener((followerId, followeeId) -> changedSources.add(followerId));
+    }
+
+    @Override
+    public List<FriendRecommendationDTO> recommend(Long userId, int size) {
+        if (userId == null) return List.of();
+        int limit = Math.max(1, Math.min(size, topK));
+        List<FriendRecommendation> rows =
+                recommendationRepository.findByUserIdOrderByRankNoAsc(userId, PageRequest.of(0, limit));
+        if (rows.isEmpty()) {
+            // 还没算过：排队重算，本次返回空
+            dirty.add(userId);
+            return List.of();
+        }
+        // 算过但没有候选
+        if (rows.get(0).getCandidateId() == EMPTY_MARKER) return List.of();
+        List<Long> ids = rows.stream().map(FriendRecommendation::getCandidateId).toList();
+        Map<Long, ProfileSnapshot> profiles = userProfileCache.getAll(ids);
+        List<FriendRecommendationDTO> list = new ArrayList<>(rows.size());
+        for (FriendRecommendation r : rows) {
+            ProfileSnapshot p = profiles.get(r.getCandidateId());
+            list.add(new FriendRecommendationDTO(r.getCandidateId(),
+                    p != null ? p.getNickname() : null,
+                    p != null ? p.getAvatarUrl() : null,
+                    r.getMutualCount()));
+        }
+        return list;
+    }
+
+    @Override
+    public void markDirty(Long... userIds) {
+        Runnable mark = () -> {
+            for (Long id : userIds) {
+                if (id != null) dirty.add(id);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    mark.run();
+                }
+            });
+        } else {
+            mark.run();
+        }
+    }
+
+    @Override
+    public int refreshDirty(int maxUsers) {
+        expandChangedSources();
+        int done = 0;
+        List<Long> failed = new ArrayList<>();
+        Iterator<Long> it = dirty.iterator();
+        while (done < maxUsers && it.hasNext()) {
+            Long userId = it.next();
+            it.remove();
+            try {
+                store(userId, compute(userId));
+                done++;
+            } catch (Exception ex) {
+                failed.add(userId);
+                logger.warn("重算好友推荐失败 user={}: {}", userId, ex.toString());
+            }
+        }
+        // 失败的放回待重算集合，下一轮再试（本轮不再重复尝试）
+        dirty.addAll(failed);
+        return done;
+    }
+
+    @Override
+    public int pendingCount() {
+        return dirty.size() + changedSources.size();
+    }
+
+    // a 的关注变化影响 a 与 a 的粉丝
+    private void expandChangedSources() {
+        Iterator<Long> it = changedSources.iterator();
+        while (it.hasNext()) {
+            Long source = it.next();
+            it.remove();
+            dirty.add(source);
+            long[] followers = followGraph.followerIds(source);
+            if (followers.length > maxFanout) {
+                logger.debug("用户 {} 粉丝数 {} 超过 max-fanout，跳过粉丝的推荐重算", source, followers.length);
+                continue;
+            }
+            for (long f : followers) dirty.add(f);
+        }
+    }
+
+    private List<Candidate> compute(Long userId) {
+        long[] following = followGraph.followingIds(userId);
+        Set<Long> excluded = new HashSet<>();
+        excluded.add(userId);
+        for (long f : following) excluded.add(f);
+        excluded.addAll(friendRequestRepository.findPendingReceiverIds(userId));
+        excluded.addAll(friendRequestRepository.findPendingSenderIds(userId));
+        excluded.addAll(blockedUserRepository.findBlockedIds(userId));
+        excluded.addAll(blockedUserRepository.findBlockerIds(userId));
+
+        Map<Long, Integer> counts = new HashMap<>();
+        int scanned = Math.min(following.length, maxFanout);
+        for (int from = 0; from < scanned; from += FOLLOWING_BATCH) {
+            int to = Math.min(scanned, from + FOLLOWING_BATCH);
+            Object[] ids = new Object[to - from];
+            for (int i = from; i < to; i++) ids[i - from] = following[i];
+            String sql = String.format(FOLLOWING_OF_SQL, String.join(",", Collections.nCopies(ids.length, "?")));
+            jdbcTemplate.query(sql, rs -> {
+                long c = rs.getLong(1);
+                if (!excluded.contains(c)) counts.merge(c, 1, Integer::sum);
+            }, ids);
+        }
+
+        // 小顶堆保留得分最高的 top-k，同分时 ID 小的优先
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(WORST_FIRST);
+        for (Map.Entry<Long, Integer> e : counts.entrySet()) {
+            heap.offer(new Candidate(e.getKey(), e.getValue()));
+            if (heap.size() > topK) heap.poll();
+        }
+        List<Candidate> ranked = new ArrayList<>(heap);
+        ranked.sort(WORST_FIRST.reversed());
+        return ranked;
+    }
+
+    // 整组替换该用户的推荐；没有候选时写入空标记
+    private void store(Long userId, List<Candidate> ranked) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> args = new ArrayList<>(Math.max(1, ranked.size()));
+        for (int i = 0; i < ranked.size(); i++) {
+            Candidate c = ranked.get(i);
+            args.add(new Object[]{userId, c.userId(), c.mutualCount(), i + 1, now});
+        }
+        if (args.isEmpty()) args.add(new Object[]{userId, EMPTY_MARKER, 0, 0, now});
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(DELETE_SQL, userId);
+            jdbcTemplate.batchUpdate(INSERT_SQL, args);
+        });
+    }
+
+    private record Candidate(Long userId, int mutualCount) {
+    }
+}
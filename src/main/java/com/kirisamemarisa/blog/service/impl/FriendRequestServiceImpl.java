@@ -10,12 +10,13 @@ import com.kirisamemarisa.blog.model.User;
 import com.kirisamemarisa.blog.repository.FriendRequestRepository;
 import com.kirisamemarisa.blog.service.FriendRequestService;
 import com.kirisamemarisa.blog.service.FollowService;
+import com.kirisamemarisa.blog.service.FriendRecommendationService;
 import com.kirisamemarisa.blog.service.NotificationService;
 import com.kirisamemarisa.blog.dto.FriendRequestDTO;
 import com.kirisamemarisa.blog.dto.NotificationDTO;
 import com.kirisamemarisa.blog.mapper.FriendRequestMapper;
-import com.kirisamemarisa.blog.repository.UserProfileRepository;
-import com.kirisamemarisa.blog.model.UserProfile;
+import com.kirisamemarisa.blog.cache.ProfileSnapshot;
+import com.kirisamemarisa.blog.cache.UserProfileCache;
 
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
@@ -30,16 +31,19 @@ public class FriendRequestServiceImpl implements FriendRequestService {
     private final FriendRequestRepository friendRequestRepository;
     private final NotificationService notificationService;
     private final FollowService followService;
-    private final UserProfileRepository userProfileRepository;
+    private final UserProfileCache userProfileCache;
+    private final FriendRecommendationService recommendationService;
 
     public FriendRequestServiceImpl(FriendRequestRepository friendRequestRepository,
             NotificationService notificationService,
             FollowService followService,
-            UserProfileRepository userProfileRepository) {
+            UserProfileCache userProfileCache,
+            FriendRecommendationService recommendationService) {
         this.friendRequestRepository = friendRequestRepository;
         this.notificationService = notificationService;
         this.followService = followService;
-        this.userProfileRepository = userProfileRepository;
+        this.userProfileCache = userProfileCache;
+        this.recommendationService = recommendationService;
     }
 
     @Override
@@ -55,6 +59,8 @@ public class FriendRequestServiceImpl implements FriendRequestService {
         req.setMessage(message);
         req.setStatus(FriendRequest.Status.PENDING);
         FriendRequest saved = friendRequestRepository.save(req);
+        // 待处理的申请双方互不推荐
+        recommendationService.markDirty(sender.getId(), receiver.getId());
         boolean online = notificationService.isOnline(receiver.getId());
         NotificationDTO note = FriendRequestMapper.toNotification(saved);
         note.setType("FRIEND_REQUEST");
@@ -71,7 +77,7 @@ public class FriendRequestServiceImpl implements FriendRequestService {
         FriendRequestDTO dto = FriendRequestMapper.toDTO(saved);
         // populate sender profile info
         if (dto.getSenderId() != null) {
-            UserProfile up = userProfileRepository.findById(dto.getSenderId()).orElse(null);
+            ProfileSnapshot up = userProfileCache.get(dto.getSenderId());
             if (up != null) {
                 dto.setSenderNickname(up.getNickname());
                 dto.setSenderAvatarUrl(up.getAvatarUrl());
@@ -91,12 +97,9 @@ public class FriendRequestServiceImpl implements FriendRequestService {
             if (d.getSenderId() != null)
                 senderIds.add(d.getSenderId());
         if (!senderIds.isEmpty()) {
-            java.util.List<UserProfile> profiles = userProfileRepository.findAllById(senderIds);
-            java.util.Map<Long, UserProfile> profileMap = new java.util.HashMap<>();
-            for (UserProfile p : profiles)
-                profileMap.put(p.getId(), p);
+            java.util.Map<Long, ProfileSnapshot> profileMap = userProfileCache.getAll(senderIds);
             for (FriendRequestDTO d : dtos) {
-                UserProfile p = profileMap.get(d.getSenderId());
+                ProfileSnapshot p = profileMap.get(d.getSenderId());
                 if (p != null) {
                     d.setSenderNickname(p.getNickname());
                     d.setSenderAvatarUrl(p.getAvatarUrl());
@@ -135,6 +138,7 @@ public class FriendRequestServiceImpl implements FriendRequestService {
             req.setStatus(FriendRequest.Status.REJECTED);
         }
         FriendRequest saved = friendRequestRepository.save(req);
+        recommendationService.markDirty(req.getSender().getId(), req.getReceiver().getId());
         NotificationDTO note = FriendRequestMapper.toNotification(saved);
         note.setType("FRIEND_REQUEST_RESPONSE");
         if (saved.getSender() != null) {
@@ -146,7 +150,7 @@ public class FriendRequestServiceImpl implements FriendRequestService {
 
         FriendRequestDTO dto = FriendRequestMapper.toDTO(saved);
         if (dto.getSenderId() != null) {
-            UserProfile up = userProfileRepository.findById(dto.getSenderId()).orElse(null);
+            ProfileSnapshot up = userProfileCache.get(dto.getSenderId());
             if (up != null) {
                 dto.setSenderNickname(up.getNickname());
                 dto.setSenderAvatarUrl(up.getAvatarUrl());
@@ -164,7 +168,7 @@ public class FriendRequestServiceImpl implements FriendRequestService {
                 @Override
                 public void afterCommit() {
                     try {
-                        UserProfile up = userProfileRepository.findById(senderIdForProfile).orElse(null);
+                        ProfileSnapshot up = userProfileCache.get(senderIdForProfile);
                         if (up != null) {
                             note.setSenderNickname(up.getNickname());
                             note.setSenderAvatarUrl(up.getAvatarUrl());
@@ -177,7 +181,7 @@ public class FriendRequestServiceImpl implements FriendRequestService {
             });
         } else {
             try {
-                UserProfile up = userProfileRepository.findById(senderIdForProfile).orElse(null);
+                ProfileSnapshot up = userProfileCache.get(senderIdForProfile);
                 if (up != null) {
                     note.setSenderNickname(up.getNickname());
                     note.setSenderAvatarUrl(up.getAvatarUrl());
@@ -1,21 +1,42 @@
 package com.kirisamemarisa.blog.service.impl;
 
+import com.kirisamemarisa.blog.cache.ProfileSnapshot;
+import com.kirisamemarisa.blog.cache.UserProfileCache;
 import com.kirisamemarisa.blog.dto.NotificationDTO;
+import com.kirisamemarisa.blog.dto.PageResult;
 import com.kirisamemarisa.blog.events.NotificationEventPublisher;
 import com.kirisamemarisa.blog.events.NotificationMessage;
 import com.kirisamemarisa.blog.events.RabbitNotificationBridge;
+import com.kirisamemarisa.blog.model.Notification;
+import com.kirisamemarisa.blog.repository.NotificationRepository;
 import com.kirisamemarisa.blog.service.NotificationService;
+import com.kirisamemarisa.blog.task.NotificationInboxWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Supplier;
+
 @Service
 public class NotificationServiceImpl implements NotificationService {
     private static final Logger logger = LoggerFactory.getLogger(NotificationServiceImpl.class);
 
+    // 不进收件箱的类型：私信有自己的会话未读与收件箱
+    private static final Set<String> NOT_PERSISTED_TYPES = Set.of("PRIVATE_MESSAGE");
+
     private final NotificationEventPublisher publisher;
+    private final NotificationInboxWriter inboxWriter;
+    private final NotificationRepository notificationRepository;
+    private final UserProfileCache userProfileCache;
+    private final int catchUpSize;
 
     /**
      * 可选：通过 RabbitMQ 暂存通知的桥接组件。
@@ -24,8 +45,18 @@ public class NotificationServiceImpl implements NotificationService {
     @Autowired(required = false)
     private RabbitNotificationBridge rabbitBridge;
 
-    public NotificationServiceImpl(NotificationEventPublisher publisher) {
+    public NotificationServiceImpl(NotificationEventPublisher publisher,
+                                   NotificationInboxWriter inboxWriter,
+                                   NotificationRepository notificationRepository,
+                                   UserProfileCache userProfileCache,
+                                   @Value("${blog.notification.catchup-size:50}") int catchUpSize) {
         this.publisher = publisher;
+        this.inboxWriter = inboxWriter;
+        this.notificationRepository = notificationRepository;
+        this.userProfileCache = userProfileCache;
+        this.catchUpSize = Math.max(1, catchUpSize);
+        // 通知落库后才推送（带收件箱 ID），点赞类一个窗口内同一引用只推一次
+        inboxWriter.setFlushListener(this::dispatch);
     }
 
     @Override
@@ -33,19 +64,40 @@ public class NotificationServiceImpl implements NotificationService {
         return publisher.subscribe(userId, initialPayload);
     }
 
+    @Override
+    public SseEmitter subscribe(Long userId, String lastEventId, Supplier<?> initialPayload) {
+        return publisher.subscribe(userId, lastEventId, initialPayload);
+    }
+
+    @Override
+    public SseEmitter subscribe(Long userId, String lastEventId, Supplier<?> initialPayload, Instant catchUpSince) {
+        if (catchUpSince == null) return publisher.subscribe(userId, lastEventId, initialPayload);
+        return publisher.subscribe(userId, lastEventId, initialPayload, () -> catchUp(userId, catchUpSince));
+    }
+
     /**
      * 统一的通知发送入口：
-     * - 优先通过 RabbitMQ 暂存（异步投递）。
-     * - 若 RabbitMQ 不可用或发送失败，则回退到本地 SSE 推送。
+     * - 先交给收件箱异步落库（私信除外），落库后带上收件箱 ID 再推送，点赞类按窗口合并后推送一次；
+     * - 私信通知与收件箱队列已满时立即推送（不带 ID）；
+     * - 推送优先通过 RabbitMQ 暂存（异步投递），不可用时回退到本地 SSE 推送。
      */
     @Override
     public void sendNotification(Long userId, NotificationDTO payload) {
         if (payload == null || userId == null) return;
 
+        if (!NOT_PERSISTED_TYPES.contains(payload.getType())) {
+            // 收件箱队列已满时直接推送
+            if (inboxWriter.submit(userId, payload)) return;
+        }
+        dispatch(userId, payload);
+    }
+
+    private void dispatch(Long userId, NotificationDTO payload) {
         // RabbitMQ 优先
         if (rabbitBridge != null) {
             try {
                 NotificationMessage m = new NotificationMessage();
+                m.setId(payload.getId());
                 m.setReceiverId(userId);
                 m.setSenderId(payload.getSenderId());
                 m.setRequestId(payload.getRequestId());
@@ -55,6 +107,7 @@ public class NotificationServiceImpl implements NotificationService {
                 m.setCreatedAt(payload.getCreatedAt());
                 m.setReferenceId(payload.getReferenceId());
                 m.setReferenceExtraId(payload.getReferenceExtraId());
+                m.setActorCount(payload.getActorCount());
                 rabbitBridge.publish(m);
                 return;
             } catch (Exception ex) {
@@ -73,4 +126,74 @@ public class NotificationServiceImpl implements NotificationService {
     public boolean isOnline(Long userId) {
         return publisher.isOnline(userId);
     }
-}
\ No newline at end of file
+
+    @Override
+    @Transactional(readOnly = true)
+    public PageResult<NotificationDTO> inbox(Long userId, int page, int size) {
+        Page<Notification> rows = notificationRepository.findInbox(userId, PageRequest.of(page, size));
+        return new PageResult<>(toDTOs(rows.getContent()), rows.getTotalElements(), page, size);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long unreadCount(Long userId) {
+        return notificationRepository.countByReceiverIdAndReadFalse(userId);
+    }
+
+    @Override
+    @Transactional
+    public int markRead(Long userId, Collection<Long> ids) {
+        if (userId == null || ids == null || ids.isEmpty()) return 0;
+        return notificationRepository.markRead(userId, ids);
+    }
+
+    @Override
+    @Transactional
+    public int markAllRead(Long userId) {
+        if (userId == null) return 0;
+        return notificationRepository.markAllRead(userId);
+    }
+
+    // 返回 null 表示没有需要补推的通知
+    private List<NotificationDTO> catchUp(Long userId, Instant since) {
+        try {
+            List<Notification> unread = notificationRepository.findUnreadSince(userId, since,
+                    PageRequest.of(0, catchUpSize));
+            return unread.isEmpty() ? null : toDTOs(unread);
+        } catch (Exception ex) {
+            logger.warn("Failed to load notification catch-up for user {}: {}", userId, ex.toString());
+            return null;
+        }
+    }
+
+    private List<NotificationDTO> toDTOs(List<Notification> rows) {
+        Set<Long> senderIds = new HashSet<>();
+        for (Notification n : rows) {
+            if (n.getSenderId() != null) senderIds.add(n.getSenderId());
+        }
+        Map<Long, ProfileSnapshot> profiles = userProfileCache.getAll(senderIds);
+        List<NotificationDTO> list = new ArrayList<>(rows.size());
+        for (Notification n : rows) {
+            NotificationDTO d = new NotificationDTO();
+            d.setId(n.getId());
+            d.setType(n.getType());
+            d.setReceiverId(n.getReceiverId());
+            d.setSenderId(n.getSenderId());
+            d.setReferenceId(n.getReferenceId());
+            d.setReferenceExtraId(n.getReferenceExtraId());
+            d.setRequestId(n.getRequestId());
+            d.setMessage(n.getMessage());
+            d.setStatus(n.getStatus());
+            d.setActorCount(n.getActorCount());
+            d.setRead(n.isRead());
+            d.setCreatedAt(n.getUpdatedAt());
+            ProfileSnapshot p = n.getSenderId() != null ? profiles.get(n.getSenderId()) : null;
+            if (p != null) {
+                d.setSenderNickname(p.getNickname());
+                d.setSenderAvatarUrl(p.getAvatarUrl());
+            }
+            list.add(d);
+        }
+        return list;
+    }
+}
@@ -1,11 +1,14 @@
 //java
 //撤回：确认当前用户是 sender，然后在所有相关 PrivateMessageStatus 上标记 recalled = true。
 //删除：仅在当前用户自己的 PrivateMessageStatus 上标记 deletedForUser = true。
-//获取会话时：先用原来的 PrivateMessageService.conversation(...) 拿到所有消息，再根据 PrivateMessageStatus 过滤（对当前用户已删除的剔除），并生成视图 DTO
+//撤回、删除成功后（事务提交后）通过 MessageEventPublisher 推送墓碑事件，不再重推整段会话。
+//获取会话时：一条分页查询完成，左连接当前用户的 PrivateMessageStatus 取撤回标记、反连接剔除本地删除的消息，支持按 (createdAt, id) 游标翻页
 
 package com.kirisamemarisa.blog.service.impl;
 
-import com.kirisamemarisa.blog.dto.PrivateMessageDTO;
+import com.kirisamemarisa.blog.common.PageCursor;
+import com.kirisamemarisa.blog.dto.CursorPageResult;
+import com.kirisamemarisa.blog.dto.PageResult;
 import com.kirisamemarisa.blog.dto.PrivateMessageViewDTO;
 import com.kirisamemarisa.blog.events.MessageEventPublisher;
 import com.kirisamemarisa.blog.mapper.PrivateMessageViewMapper;
@@ -13,49 +16,47 @@ import com.kirisamemarisa.blog.model.PrivateMessage;
 import com.kirisamemarisa.blog.model.PrivateMessageStatus;
 import com.kirisamemarisa.blog.model.User;
 import com.kirisamemarisa.blog.repository.PrivateMessageRepository;
+import com.kirisamemarisa.blog.repository.PrivateMessageRepository.ConversationViewRow;
 import com.kirisamemarisa.blog.repository.PrivateMessageStatusRepository;
+import com.kirisamemarisa.blog.service.ConversationSummaryService;
 import com.kirisamemarisa.blog.service.PrivateMessageManageService;
-import com.kirisamemarisa.blog.service.PrivateMessageService;
+import com.kirisamemarisa.blog.service.UnreadCountService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class PrivateMessageManageServiceImpl implements PrivateMessageManageService {
+    private static final Logger logger = LoggerFactory.getLogger(PrivateMessageManageServiceImpl.class);
 
     private static final long RECALL_LIMIT_MINUTES = 2L;
 
     private final PrivateMessageRepository messageRepository;
     private final PrivateMessageStatusRepository statusRepository;
-    private final PrivateMessageService privateMessageService;
     private final MessageEventPublisher publisher;
+    private final ConversationSummaryService conversationSummaryService;
+    private final UnreadCountService unreadCountService;
 
     public PrivateMessageManageServiceImpl(PrivateMessageRepository messageRepository,
                                            PrivateMessageStatusRepository statusRepository,
-                                           PrivateMessageService privateMessageService,
-                                           MessageEventPublisher publisher) {
+                                           MessageEventPublisher publisher,
+                                           ConversationSummaryService conversationSummaryService,
+                                           UnreadCountService unreadCountService) {
         this.messageRepository = messageRepository;
         this.statusRepository = statusRepository;
-        this.privateMessageService = privateMessageService;
         this.publisher = publisher;
-    }
-
-    // 轻量 DTO 映射（只需基本字段，供 SSE 会话列表用）
-    private PrivateMessageDTO toDTO(PrivateMessage msg) {
-        PrivateMessageDTO dto = new PrivateMessageDTO();
-        dto.setId(msg.getId());
-        dto.setSenderId(msg.getSender() != null ? msg.getSender().getId() : null);
-        dto.setReceiverId(msg.getReceiver() != null ? msg.getReceiver().getId() : null);
-        dto.setText(msg.getText());
-        dto.setMediaUrl(msg.getMediaUrl());
-        dto.setType(msg.getType());
-        dto.setCreatedAt(msg.getCreatedAt());
-        return dto;
+        this.conversationSummaryService = conversationSummaryService;
+        this.unreadCountService = unreadCountService;
     }
 
     @Override
@@ -108,7 +109,9 @@ public class PrivateMessageManageServiceImpl implements PrivateMessageManageServ
             s.setDeletedForUser(false);
             statusRepository.save(s);
         }
-        if (receiver != null && !hasReceiver) {
+        // 发给自己的消息只有一条状态记录（(user_id, message_id) 唯一）
+        boolean selfMessage = sender != null && receiver != null && Objects.equals(sender.getId(), receiver.getId());
+        if (receiver != null && !hasReceiver && !selfMessage) {
             PrivateMessageStatus s = new PrivateMessageStatus();
             s.setMessage(message);
             s.setUser(receiver);
@@ -117,18 +120,13 @@ public class PrivateMessageManageServiceImpl implements PrivateMessageManageServ
             statusRepository.save(s);
         }
 
-        // 新增：撤回成功后广播会话更新（双方都能即时收到）
-        try {
-            User other = Objects.equals(message.getSender().getId(), currentUser.getId())
-                    ? message.getReceiver() : message.getSender();
-            if (other != null) {
-                List<PrivateMessageDTO> conversation = privateMessageService
-                        .conversation(currentUser, other)
-                        .stream().map(this::toDTO).toList();
-                publisher.broadcast(currentUser.getId(), other.getId(), conversation);
-            }
-        } catch (Exception ignore) {
-            // 保持最小侵入：广播失败不影响主流程
+        conversationSummaryService.onMessageRecalled(message);
+
+        // 撤回成功后只推送撤回墓碑（双方都能即时收到），提交后再推，避免前端先于数据库看到撤回
+        Long senderId = sender != null ? sender.getId() : null;
+        Long receiverId = receiver != null ? receiver.getId() : null;
+        if (senderId != null && receiverId != null) {
+            afterCommit(() -> publisher.publishRecall(senderId, receiverId, messageId));
         }
     }
 
@@ -146,33 +144,91 @@ public class PrivateMessageManageServiceImpl implements PrivateMessageManageServ
                     return s;
                 });
 
+        // 重复删除不再改动摘要
+        boolean alreadyDeleted = status.isDeletedForUser();
         status.setDeletedForUser(true);
         statusRepository.save(status);
+
+        // 删除只影响自己的视图，墓碑只推给自己的会话订阅
+        User other = message.getSender() != null && Objects.equals(message.getSender().getId(), currentUser.getId())
+                ? message.getReceiver() : message.getSender();
+        if (other != null && !alreadyDeleted) {
+            Long meId = currentUser.getId();
+            Long otherId = other.getId();
+            boolean unread = message.getReceiver() != null && Objects.equals(message.getReceiver().getId(), meId)
+                    && !Objects.equals(otherId, meId) && !message.isReadByReceiver();
+            conversationSummaryService.onMessageDeleted(meId, otherId, messageId, unread);
+            // 摘要与内存未读计数采用同一口径：已删除的未读消息不再计入
+            if (unread) unreadCountService.onUnreadMessageDeleted(meId, otherId);
+            afterCommit(() -> publisher.publishDelete(meId, otherId, messageId));
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        Runnable guarded = () -> {
+            try {
+                action.run();
+            } catch (Exception ex) {
+                // 推送失败不影响主流程
+                logger.debug("私信事件推送失败: {}", ex.toString());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    guarded.run();
+                }
+            });
+        } else {
+            guarded.run();
+        }
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<PrivateMessageViewDTO> getConversationView(User currentUser, User otherUser) {
-        // 复用原有的会话查询逻辑
-        List<PrivateMessage> raw = privateMessageService.conversation(currentUser, otherUser);
-        if (raw.isEmpty()) return Collections.emptyList();
-
-        // 批量拉取该用户对应的状态
-        List<PrivateMessageStatus> statusList = statusRepository.findByMessageInAndUser(raw, currentUser);
-        Map<Long, PrivateMessageStatus> statusMap = statusList.stream()
-                .filter(s -> s.getMessage() != null && s.getMessage().getId() != null)
-                .collect(Collectors.toMap(s -> s.getMessage().getId(), s -> s));
-
-        List<PrivateMessageViewDTO> result = new ArrayList<>();
-        for (PrivateMessage m : raw) {
-            PrivateMessageStatus st = statusMap.get(m.getId());
-            if (st != null && st.isDeletedForUser()) {
-                // 当前用户本地删除的消息不再展示
-                continue;
-            }
-            PrivateMessageViewDTO dto = PrivateMessageViewMapper.toViewDTO(m, st, currentUser);
-            result.add(dto);
+    public PageResult<PrivateMessageViewDTO> getConversationView(User currentUser, User otherUser, int page, int size) {
+        Long meId = currentUser.getId();
+        int p = Math.max(0, page);
+        int limit = clampPageSize(size);
+        Page<ConversationViewRow> rows = messageRepository.findConversationView(meId, otherUser.getId(),
+                PageRequest.of(p, limit));
+        return new PageResult<>(toViewDTOs(rows.getContent(), meId), rows.getTotalElements(), p, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResult<PrivateMessageViewDTO> cursorConversationView(User currentUser, User otherUser,
+                                                                          String cursor, int size, boolean withTotal) {
+        Long meId = currentUser.getId();
+        Long otherId = otherUser.getId();
+        int limit = clampPageSize(size);
+        PageCursor after = PageCursor.decode(cursor);
+        // 多取一条用于判断是否还有下一页
+        PageRequest probe = PageRequest.of(0, limit + 1);
+        List<ConversationViewRow> rows = after == null
+                ? messageRepository.findConversationViewFirstPage(meId, otherId, probe)
+                : messageRepository.findConversationViewBefore(meId, otherId, after.createdAtInstant(), after.id(), probe);
+        boolean hasMore = rows.size() > limit;
+        if (hasMore) rows = rows.subList(0, limit);
+        String next = null;
+        if (hasMore) {
+            ConversationViewRow last = rows.get(rows.size() - 1);
+            next = PageCursor.of(last.getCreatedAt(), last.getId()).encode();
+        }
+        Long total = withTotal ? messageRepository.countConversationView(meId, otherId) : null;
+        return new CursorPageResult<>(toViewDTOs(rows, meId), next, hasMore, limit, total);
+    }
+
+    private List<PrivateMessageViewDTO> toViewDTOs(List<ConversationViewRow> rows, Long meId) {
+        List<PrivateMessageViewDTO> result = new ArrayList<>(rows.size());
+        for (ConversationViewRow row : rows) {
+            result.add(PrivateMessageViewMapper.toViewDTO(row, meId));
         }
         return result;
     }
+
+    private int clampPageSize(int size) {
+        return Math.max(1, Math.min(size, 100));
+    }
 }
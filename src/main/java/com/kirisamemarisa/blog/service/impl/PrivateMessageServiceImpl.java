@@ -3,18 +3,19 @@ package com.kirisamemarisa.blog.service.impl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.kirisamemarisa.blog.cache.PairFactCache;
 import com.kirisamemarisa.blog.model.PrivateMessage;
 import com.kirisamemarisa.blog.model.User;
 import com.kirisamemarisa.blog.repository.PrivateMessageRepository;
-import com.kirisamemarisa.blog.service.FollowService;
 import com.kirisamemarisa.blog.service.PrivateMessageService;
+import com.kirisamemarisa.blog.service.UnreadCountService;
 import com.kirisamemarisa.blog.service.BlockService;
+import com.kirisamemarisa.blog.service.ConversationSummaryService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -22,15 +23,21 @@ import java.util.List;
 public class PrivateMessageServiceImpl implements PrivateMessageService {
     private static final Logger logger = LoggerFactory.getLogger(PrivateMessageServiceImpl.class);
     private final PrivateMessageRepository messageRepository;
-    private final FollowService followService;
     private final BlockService blockService;
+    private final ConversationSummaryService conversationSummaryService;
+    private final UnreadCountService unreadCountService;
+    private final PairFactCache pairFactCache;
 
     public PrivateMessageServiceImpl(PrivateMessageRepository messageRepository,
-                                     FollowService followService,
-                                     BlockService blockService) {
+                                     BlockService blockService,
+                                     ConversationSummaryService conversationSummaryService,
+                                     UnreadCountService unreadCountService,
+                                     PairFactCache pairFactCache) {
         this.messageRepository = messageRepository;
-        this.followService = followService;
         this.blockService = blockService;
+        this.conversationSummaryService = conversationSummaryService;
+        this.unreadCountService = unreadCountService;
+        this.pairFactCache = pairFactCache;
     }
 
     @Override
@@ -46,22 +53,13 @@ public class PrivateMessageServiceImpl implements PrivateMessageService {
         msg.setText(text);
         msg.setType(PrivateMessage.MessageType.TEXT);
 
-        // 优化建议：此处若历史记录极多，调用 conversation() 会慢，
-        // 建议将来改为 countUnreadBetween 或 exists 查询。
-        // 为保持业务逻辑一致性，此处暂维持现状，但建议后续优化 hasReplied 方法。
-        boolean isFriend = followService.areFriends(sender, receiver);
-        boolean replied = hasReplied(sender, receiver);
-
-        if (!isFriend && !replied) {
-            // 简单检查是否发过消息
-            long count = messageRepository.countUnreadBetween(receiver.getId(), sender.getId());
-            // 这里逻辑略作简化：如果是非好友且未回复，且我已发送过未读消息，则限制
-            if (count > 0) {
-                // 注意：严格的"仅允许一条"逻辑可能需要更复杂的查询，这里为了性能做折中
-                // 若需严格逻辑，请使用 repository.findBySenderAndReceiver... 并加上 limit 1
-            }
-        }
-        return messageRepository.save(msg);
+        // 文本私信不受"互关或已回复"限制（原先在这里做的探测结果并未使用，已移除）
+        PrivateMessage saved = messageRepository.save(msg);
+        // 同事务更新双方的会话摘要
+        conversationSummaryService.onMessageSent(saved);
+        unreadCountService.onMessageSent(sender.getId(), receiver.getId());
+        pairFactCache.onMessageSent(sender.getId(), receiver.getId());
+        return saved;
     }
 
     @Override
@@ -81,17 +79,18 @@ public class PrivateMessageServiceImpl implements PrivateMessageService {
         msg.setType(type);
         msg.setMediaUrl(mediaUrl);
         msg.setText(caption);
-        return messageRepository.save(msg);
+        PrivateMessage saved = messageRepository.save(msg);
+        // 同事务更新双方的会话摘要
+        conversationSummaryService.onMessageSent(saved);
+        unreadCountService.onMessageSent(sender.getId(), receiver.getId());
+        pairFactCache.onMessageSent(sender.getId(), receiver.getId());
+        return saved;
     }
 
     @Override
     public List<PrivateMessage> conversation(User a, User b) {
-        // 兼容旧接口，但建议前端全面迁移到分页接口
-        List<PrivateMessage> ab = new ArrayList<>(messageRepository.findBySenderAndReceiverWithParticipantsOrderByCreatedAtAsc(a, b));
-        List<PrivateMessage> ba = messageRepository.findBySenderAndReceiverWithParticipantsOrderByCreatedAtAsc(b, a);
-        ab.addAll(ba);
-        ab.sort(java.util.Comparator.comparing(PrivateMessage::getCreatedAt));
-        return ab;
+        // 兼容旧接口，但建议前端全面迁移到分页接口；双向消息由数据库一次排好序返回
+        return messageRepository.findConversationAsc(a.getId(), b.getId());
     }
 
     @Override
@@ -101,13 +100,12 @@ public class PrivateMessageServiceImpl implements PrivateMessageService {
 
     @Override
     public boolean canSendMedia(User sender, User receiver) {
-        return followService.areFriends(sender, receiver) || hasReplied(sender, receiver);
+        return pairFactCache.areFriends(sender.getId(), receiver.getId()) || hasReplied(sender, receiver);
     }
 
     @Override
     public boolean hasReplied(User sender, User receiver) {
-        // 只要查到一条即可
-        List<PrivateMessage> replies = messageRepository.findBySenderAndReceiverWithParticipantsOrderByCreatedAtAsc(receiver, sender);
-        return !replies.isEmpty();
+        // 对方是否给我发过私信：exists 探针（limit 1，走 sender_id, receiver_id 索引），结果按用户对缓存
+        return pairFactCache.hasMessaged(receiver.getId(), sender.getId());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,233 @@
+package com.kirisamemarisa.blog.service.impl;
+
+import com.kirisamemarisa.blog.dto.UnreadCountDTO;
+import com.kirisamemarisa.blog.events.NotificationEventPublisher;
+import com.kirisamemarisa.blog.repository.PrivateMessageRepository;
+import com.kirisamemarisa.blog.service.UnreadCountService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 未读计数的内存实现。
+ * 用户总数与各会话未读数分别在第一次读取时用 countUnreadTotal / countUnreadBetween 加载，
+ * 之后只在内存中加减：发送提交后 +1，标记已读提交后按实际更新条数扣减，删除未读消息提交后 -1
+ * （已本地删除的消息不计入未读，与 conversation_summary.unread_count 口径一致）。
+ * 尚未加载的计数不做增减（之后加载时数据库已包含该变化）。
+ * <p>
+ * 加载与变更的并发：变更从进入事务到提交后应用完成的整个过程中，按用户分段记一个“进行中”计数，
+ * 开始和结束时各自增一次版本号。加载时若该分段有进行中的变更，或查询前后版本号变了，
+ * 查到的值只用于这一次调用、不放入内存，避免查询已包含的变更在提交后被再加一次（或漏加）。
+ * 数据库查询都在 Map 的 compute 之外执行，不持有桶锁。
+ * 增减只作用于本节点内存：其他节点上发生的发送 / 已读 / 删除看不到，
+ * 因此计数从加载时刻起最多使用 max-age-seconds，之后下次访问重新加载，节点间的偏差以此为上限。
+ * 长时间未访问的用户计数会被回收，下次访问重新加载。
+ */
+@Service
+public class UnreadCountServiceImpl implements UnreadCountService {
+    private static final Logger logger = LoggerFactory.getLogger(UnreadCountServiceImpl.class);
+
+    public static final String UNREAD_EVENT = "unread";
+
+    private static final int STRIPES = 64;
+
+    private final Map<Long, UserUnread> users = new ConcurrentHashMap<>();
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+    private final AtomicIntegerArray inflight = new AtomicIntegerArray(STRIPES);
+    private final PrivateMessageRepository messageRepository;
+    private final NotificationEventPublisher notificationEventPublisher;
+    private final long idleExpireMs;
+    private final long maxAgeMs;
+
+    public UnreadCountServiceImpl(PrivateMessageRepository messageRepository,
+                                  NotificationEventPublisher notificationEventPublisher,
+                                  @Value("${blog.unread.idle-expire-seconds:1800}") long idleExpireSeconds,
+                                  @Value("${blog.unread.max-age-seconds:300}") long maxAgeSeconds) {
+        this.messageRepository = messageRepository;
+        this.notificationEventPublisher = notificationEventPublisher;
+        this.idleExpireMs = Math.max(1, idleExpireSeconds) * 1000L;
+        this.maxAgeMs = Math.max(1, maxAgeSeconds) * 1000L;
+    }
+
+    @Override
+    public long total(Long userId) {
+        if (userId == null) return 0L;
+        return entry(userId).total.get();
+    }
+
+    @Override
+    public long conversation(Long userId, Long partnerId) {
+        if (userId == null || partnerId == null) return 0L;
+        return pair(entry(userId), userId, partnerId).get();
+    }
+
+    @Override
+    public void onMessageSent(Long senderId, Long receiverId) {
+        if (senderId == null || receiverId == null) return;
+        change(receiverId, () -> {
+            users.computeIfPresent(receiverId, (id, u) -> {
+                u.total.incrementAndGet();
+                u.pairs.computeIfPresent(senderId, (p, c) -> {
+                    c.incrementAndGet();
+                    return c;
+                });
+                return u;
+            });
+            push(receiverId, senderId);
+        });
+    }
+
+    @Override
+    public void onConversationRead(Long userId, Long partnerId, int marked) {
+        if (userId == null || partnerId == null || marked <= 0) return;
+        change(userId, () -> {
+            users.computeIfPresent(userId, (id, u) -> {
+                u.total.updateAndGet(v -> Math.max(0L, v - marked));
+                u.pairs.put(partnerId, new AtomicLong());
+                return u;
+            });
+            push(userId, partnerId);
+        });
+    }
+
+    @Override
+    public void onUnreadMessageDeleted(Long userId, Long partnerId) {
+        if (userId == null || partnerId == null) return;
+        change(userId, () -> {
+            users.computeIfPresent(userId, (id, u) -> {
+                u.total.updateAndGet(v -> Math.max(0L, v - 1));
+                u.pairs.computeIfPresent(partnerId, (p, c) -> {
+                    c.updateAndGet(v -> Math.max(0L, v - 1));
+                    return c;
+                });
+                return u;
+            });
+            push(userId, partnerId);
+        });
+    }
+
+    // 只给在线用户推送；推送前读取计数会顺带完成加载
+    private void push(Long userId, Long partnerId) {
+        if (!notificationEventPublisher.isOnline(userId)) return;
+        UserUnread u = entry(userId);
+        UnreadCountDTO payload = new UnreadCountDTO(u.total.get(), partnerId, pair(u, userId, partnerId).get());
+        notificationEventPublisher.sendEvent(userId, UNREAD_EVENT, payload);
+    }
+
+    private UserUnread entry(Long userId) {
+        long now = System.currentTimeMillis();
+        UserUnread u = users.get(userId);
+        if (u != null && now - u.loadedAt > maxAgeMs) {
+            // 超过最长使用时间：丢弃后重新加载，纠正其他节点上发生的变化
+            users.remove(userId, u);
+            u = null;
+        }
+        if (u == null) {
+            int stripe = stripe(userId);
+            long stamp = versions.get(stripe);
+            boolean quiet = inflight.get(stripe) == 0;
+            UserUnread loaded = new UserUnread(messageRepository.countUnreadTotal(userId));
+            if (!quiet || versions.get(stripe) != stamp) return loaded;
+            UserUnread existing = users.putIfAbsent(userId, loaded);
+            if (existing != null) {
+                u = existing;
+            } else {
+                // 检查与放入之间开始的变更找不到该条目，放入后再核对一次
+                if (versions.get(stripe) != stamp) users.remove(userId, loaded);
+                u = loaded;
+            }
+        }
+        u.lastAccess = now;
+        return u;
+    }
+
+    private AtomicLong pair(UserUnread u, Long userId, Long partnerId) {
+        AtomicLong c = u.pairs.get(partnerId);
+        if (c != null) return c;
+        int stripe = stripe(userId);
+        long stamp = versions.get(stripe);
+        boolean quiet = inflight.get(stripe) == 0;
+        AtomicLong loaded = new AtomicLong(messageRepository.countUnreadBetween(userId, partnerId));
+        if (!quiet || versions.get(stripe) != stamp) return loaded;
+        AtomicLong existing = u.pairs.putIfAbsent(partnerId, loaded);
+        if (existing != null) return existing;
+        if (versions.get(stripe) != stamp) u.pairs.remove(partnerId, loaded);
+        return loaded;
+    }
+
+    private static int stripe(Long userId) {
+        return (int) (userId ^ (userId >>> 32)) & (STRIPES - 1);
+    }
+
+    /**
+     * 对 userId 的计数做一次变更：提交后应用 apply；从调用到事务结束期间该分段标记为进行中
+     */
+    private void change(Long userId, Runnable apply) {
+        int stripe = stripe(userId);
+        inflight.incrementAndGet(stripe);
+        versions.incrementAndGet(stripe);
+        Runnable guarded = () -> {
+            try {
+                apply.run();
+            } catch (Exception ex) {
+                // 计数或推送失败不影响业务；计数过期后会重新加载
+                logger.warn("更新未读计数失败: {}", ex.toString());
+            }
+        };
+        Runnable finish = () -> {
+            versions.incrementAndGet(stripe);
+            inflight.decrementAndGet(stripe);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    guarded.run();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    // 提交或回滚都会走到这里
+                    finish.run();
+                }
+            });
+        } else {
+            try {
+                guarded.run();
+            } finally {
+                finish.run();
+            }
+        }
+    }
+
+    /**
+     * 回收长时间未访问或已超过最长使用时间的用户计数
+     */
+    @Scheduled(fixedDelayString = "${blog.sse.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        users.entrySet().removeIf(e -> now - e.getValue().lastAccess > idleExpireMs
+                || now - e.getValue().loadedAt > maxAgeMs);
+    }
+
+    private static final class UserUnread {
+        final AtomicLong total;
+        final Map<Long, AtomicLong> pairs = new ConcurrentHashMap<>();
+        final long loadedAt = System.currentTimeMillis();
+        volatile long lastAccess = loadedAt;
+
+        UserUnread(long total) {
+            this.total = new AtomicLong(total);
+        }
+    }
+}
@@ -3,41 +3,123 @@ package com.kirisamemarisa.blog.service.impl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.kirisamemarisa.blog.cache.UserSearchIndex;
+import com.kirisamemarisa.blog.dto.PageResult;
+import com.kirisamemarisa.blog.dto.UserSearchDTO;
+import com.kirisamemarisa.blog.mapper.UserSearchMapper;
+import com.kirisamemarisa.blog.model.User;
+import com.kirisamemarisa.blog.model.UserProfile;
+import com.kirisamemarisa.blog.repository.UserProfileRepository;
 import com.kirisamemarisa.blog.repository.UserRepository;
 import com.kirisamemarisa.blog.service.UserSearchService;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * 用户搜索：命中与排序来自内存二元组索引，只按 ID 批量回表取一页用户和资料；
+ * 索引构建完成前回退到原来的 LIKE 查询。
+ */
 @Service
 public class UserSearchServiceImpl implements UserSearchService {
     private static final Logger logger = LoggerFactory.getLogger(UserSearchServiceImpl.class);
     private final UserRepository userRepository;
+    private final UserProfileRepository userProfileRepository;
+    private final UserSearchIndex userSearchIndex;
 
-    public UserSearchServiceImpl(UserRepository userRepository) {
+    public UserSearchServiceImpl(UserRepository userRepository, UserProfileRepository userProfileRepository,
+                                 UserSearchIndex userSearchIndex) {
         this.userRepository = userRepository;
+        this.userProfileRepository = userProfileRepository;
+        this.userSearchIndex = userSearchIndex;
         logger.debug("UserSearchServiceImpl initialized with userRepository={}", userRepository != null);
     }
 
+    @Override
+    public PageResult<UserSearchDTO> searchByUsername(String username, int page, int size) {
+        return search(UserSearchIndex.Field.USERNAME, username, page, size);
+    }
+
+    @Override
+    public PageResult<UserSearchDTO> searchByNickname(String nickname, int page, int size) {
+        return search(UserSearchIndex.Field.NICKNAME, nickname, page, size);
+    }
+
     @Override
     public List<Object[]> searchByUsernameWithProfile(String username, int page, int size) {
         logger.debug("searchByUsernameWithProfile username={} page={} size={}", username, page, size);
-        return userRepository.searchByUsernameWithProfile(username, PageRequest.of(page, size));
+        return rows(UserSearchIndex.Field.USERNAME, username, page, size);
     }
 
     @Override
     public List<Object[]> searchByNicknameWithProfile(String nickname, int page, int size) {
         logger.debug("searchByNicknameWithProfile nickname={} page={} size={}", nickname, page, size);
-        return userRepository.searchByNicknameWithProfile(nickname, PageRequest.of(page, size));
+        return rows(UserSearchIndex.Field.NICKNAME, nickname, page, size);
     }
 
     @Override
     public long countByUsername(String username) {
-        return userRepository.countByUsername(username);
+        UserSearchIndex.Hits hits = userSearchIndex.search(UserSearchIndex.Field.USERNAME, username, 0, 1);
+        return hits != null ? hits.total() : userRepository.countByUsername(username);
     }
 
     @Override
     public long countByNickname(String nickname) {
-        return userRepository.countByNickname(nickname);
+        UserSearchIndex.Hits hits = userSearchIndex.search(UserSearchIndex.Field.NICKNAME, nickname, 0, 1);
+        return hits != null ? hits.total() : userRepository.countByNickname(nickname);
+    }
+
+    // 一次检索同时得到本页与总数，不再单独跑 count
+    private PageResult<UserSearchDTO> search(UserSearchIndex.Field field, String term, int page, int size) {
+        int p = Math.max(0, page);
+        int s = Math.max(1, Math.min(size, 100));
+        UserSearchIndex.Hits hits = userSearchIndex.search(field, term, p * s, s);
+        List<Object[]> rows;
+        long total;
+        if (hits != null) {
+            rows = load(hits.userIds());
+            total = hits.total();
+        } else {
+            rows = fallback(field, term, p, s);
+            total = field == UserSearchIndex.Field.USERNAME
+                    ? userRepository.countByUsername(term)
+                    : userRepository.countByNickname(term);
+        }
+        List<UserSearchDTO> dtoList = rows.stream()
+                .map(arr -> UserSearchMapper.toDTO((User) arr[0], (UserProfile) arr[1]))
+                .toList();
+        return new PageResult<>(dtoList, total, p, s);
+    }
+
+    private List<Object[]> rows(UserSearchIndex.Field field, String term, int page, int size) {
+        int p = Math.max(0, page);
+        int s = Math.max(1, Math.min(size, 100));
+        UserSearchIndex.Hits hits = userSearchIndex.search(field, term, p * s, s);
+        return hits != null ? load(hits.userIds()) : fallback(field, term, p, s);
+    }
+
+    private List<Object[]> fallback(UserSearchIndex.Field field, String term, int page, int size) {
+        return field == UserSearchIndex.Field.USERNAME
+                ? userRepository.searchByUsernameWithProfile(term, PageRequest.of(page, size))
+                : userRepository.searchByNicknameWithProfile(term, PageRequest.of(page, size));
+    }
+
+    // 按索引给出的顺序组装 [User, UserProfile]，用户和资料各一次 IN 查询
+    private List<Object[]> load(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        Map<Long, User> users = new HashMap<>();
+        for (User u : userRepository.findAllById(ids)) users.put(u.getId(), u);
+        Map<Long, UserProfile> profiles = new HashMap<>();
+        for (UserProfile up : userProfileRepository.findAllById(ids)) profiles.put(up.getId(), up);
+        List<Object[]> rows = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            User u = users.get(id);
+            if (u != null) rows.add(new Object[]{u, profiles.get(id)});
+        }
+        return rows;
     }
 }
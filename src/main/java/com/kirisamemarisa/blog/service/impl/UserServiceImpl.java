@@ -3,6 +3,8 @@ package com.kirisamemarisa.blog.service.impl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.kirisamemarisa.blog.cache.UserProfileCache;
+import com.kirisamemarisa.blog.cache.UserSearchIndex;
 import com.kirisamemarisa.blog.common.BusinessException;
 import com.kirisamemarisa.blog.common.JwtUtil;
 import com.kirisamemarisa.blog.dto.LoginResponseDTO;
@@ -39,6 +41,10 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private UserProfileRepository userProfileRepository;
     @Autowired
+    private UserProfileCache userProfileCache;
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+    @Autowired
     private UserMapper userMapper;
     @Autowired
     private UserProfileMapper userProfileMapper;
@@ -77,6 +83,9 @@ public class UserServiceImpl implements UserService {
             profile.setAvatarUrl(dto.getAvatarUrl().trim());
         }
         userProfileRepository.save(profile);
+        // 清掉注册前可能留下的"无资料"负缓存
+        userProfileCache.invalidate(user.getId());
+        userSearchIndex.put(user.getId(), user.getUsername(), profile.getNickname());
     }
 
     @Override
@@ -149,6 +158,8 @@ public class UserServiceImpl implements UserService {
         }
 
         userProfileRepository.save(profile);
+        userProfileCache.invalidate(userId);
+        userSearchIndex.put(userId, user.getUsername(), profile.getNickname());
         return true;
     }
 
@@ -192,6 +203,7 @@ public class UserServiceImpl implements UserService {
         });
         profile.setAvatarUrl(url);
         userProfileRepository.save(profile);
+        userProfileCache.invalidate(userId);
         return url;
     }
 
@@ -228,6 +240,7 @@ public class UserServiceImpl implements UserService {
         });
         profile.setBackgroundUrl(url);
         userProfileRepository.save(profile);
+        userProfileCache.invalidate(userId);
         return url;
     }
 
@@ -267,6 +280,9 @@ public class UserServiceImpl implements UserService {
             profile.setAvatarUrl(dto.getAvatarUrl().trim());
         }
         userProfileRepository.save(profile);
+        // 清掉注册前可能留下的"无资料"负缓存
+        userProfileCache.invalidate(user.getId());
+        userSearchIndex.put(user.getId(), user.getUsername(), profile.getNickname());
         return user.getId();
     }
 }
@@ -0,0 +1,96 @@
+package com.kirisamemarisa.blog.service.impl;
+
+import com.kirisamemarisa.blog.cache.ProfileSnapshot;
+import com.kirisamemarisa.blog.cache.UserProfileCache;
+import com.kirisamemarisa.blog.dto.BlogPostDTO;
+import com.kirisamemarisa.blog.dto.CommentDTO;
+import com.kirisamemarisa.blog.dto.CommentReplyDTO;
+import com.kirisamemarisa.blog.repository.BlogPostLikeRepository;
+import com.kirisamemarisa.blog.repository.CommentLikeRepository;
+import com.kirisamemarisa.blog.repository.CommentReplyLikeRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 列表页的"当前用户视角"状态批量填充：是否点赞、作者资料。
+ * 每种状态对整页数据只发一次 IN 查询，替代逐条 findByXxxIdAndUserId / findById。
+ */
+@Component
+public class ViewerStateHydrator {
+
+    private final CommentLikeRepository commentLikeRepository;
+    private final CommentReplyLikeRepository commentReplyLikeRepository;
+    private final BlogPostLikeRepository blogPostLikeRepository;
+    private final UserProfileCache userProfileCache;
+
+    public ViewerStateHydrator(CommentLikeRepository commentLikeRepository,
+                               CommentReplyLikeRepository commentReplyLikeRepository,
+                               BlogPostLikeRepository blogPostLikeRepository,
+                               UserProfileCache userProfileCache) {
+        this.commentLikeRepository = commentLikeRepository;
+        this.commentReplyLikeRepository = commentReplyLikeRepository;
+        this.blogPostLikeRepository = blogPostLikeRepository;
+        this.userProfileCache = userProfileCache;
+    }
+
+    /**
+     * 填充评论的 likedByCurrentUser；未登录时全部为 false
+     */
+    public void hydrateComments(List<CommentDTO> comments, Long viewerId) {
+        fill(comments, CommentDTO::getId, CommentDTO::setLikedByCurrentUser, viewerId,
+                commentLikeRepository::findLikedCommentIds);
+    }
+
+    /**
+     * 填充楼中楼回复的 likedByCurrentUser
+     */
+    public void hydrateReplies(List<CommentReplyDTO> replies, Long viewerId) {
+        fill(replies, CommentReplyDTO::getId, CommentReplyDTO::setLikedByCurrentUser, viewerId,
+                commentReplyLikeRepository::findLikedReplyIds);
+    }
+
+    /**
+     * 填充文章的 likedByCurrentUser
+     */
+    public void hydratePosts(List<BlogPostDTO> posts, Long viewerId) {
+        fill(posts, BlogPostDTO::getId, BlogPostDTO::setLikedByCurrentUser, viewerId,
+                blogPostLikeRepository::findLikedPostIds);
+    }
+
+    /**
+     * 批量获取作者资料：userId -> ProfileSnapshot（走资料缓存，没有资料的用户不在结果中）
+     */
+    public Map<Long, ProfileSnapshot> profiles(Collection<Long> userIds) {
+        return userProfileCache.getAll(userIds);
+    }
+
+    private <T> void fill(List<T> items, Function<T, Long> idOf, BiConsumer<T, Boolean> setter, Long viewerId,
+                          LikedIdsQuery query) {
+        if (items == null || items.isEmpty()) return;
+        Set<Long> liked = Set.of();
+        if (viewerId != null) {
+            Set<Long> ids = new HashSet<>();
+            for (T item : items) {
+                if (item != null && idOf.apply(item) != null) ids.add(idOf.apply(item));
+            }
+            if (!ids.isEmpty()) liked = new HashSet<>(query.find(viewerId, ids));
+        }
+        for (T item : items) {
+            if (item == null) continue;
+            Long id = idOf.apply(item);
+            setter.accept(item, id != null && liked.contains(id));
+        }
+    }
+
+    @FunctionalInterface
+    private interface LikedIdsQuery {
+        List<Long> find(Long viewerId, Collection<Long> ids);
+    }
+}
@@ -0,0 +1,170 @@
+package com.kirisamemarisa.blog.task;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 浏览明细（blog_view_record）异步批量写入。
+ * recordView 只把明细放进有界内存队列后立即返回，后台线程每凑满 batchSize 条
+ * 或等待超过 maxWaitMs 就用一次 JDBC batch 写入（IDENTITY 主键下 Hibernate 无法批量插入）。
+ * 队列满时直接丢弃并计数，不阻塞请求线程。
+ * 注意：MySQL 需要在连接串上加 rewriteBatchedStatements=true 才会合并为多行 INSERT。
+ */
+@Component
+public class BlogViewRecordWriter {
+    private static final Logger logger = LoggerFactory.getLogger(BlogViewRecordWriter.class);
+
+    private static final String INSERT_SQL =
+            "insert into blog_view_record (blog_post_id, user_id, viewed_at) values (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<PendingView> queue;
+    private final int batchSize;
+    private final long maxWaitMs;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean running = true;
+    private Thread drainer;
+
+    public BlogViewRecordWriter(JdbcTemplate jdbcTemplate,
+                                @Value("${blog.view.record.queue-capacity:10000}") int queueCapacity,
+                                @Value("${blog.view.record.batch-size:500}") int batchSize,
+                                @Value("${blog.view.record.max-wait-ms:200}") long maxWaitMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.maxWaitMs = Math.max(1, maxWaitMs);
+    }
+
+    @PostConstruct
+    public void start() {
+        drainer = new Thread(this::drainLoop, "blog-view-record-writer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * 提交一条浏览明细；队列已满时丢弃并返回 false
+     */
+    public boolean submit(Long blogPostId, Long userId) {
+        if (blogPostId == null) return false;
+        if (queue.offer(new PendingView(blogPostId, userId, LocalDateTime.now()))) {
+            accepted.incrementAndGet();
+            return true;
+        }
+        long n = dropped.incrementAndGet();
+        // 避免刷屏：每丢弃 1000 条记一次日志
+        if (n == 1 || n % 1000 == 0) {
+            logger.warn("浏览明细队列已满，已累计丢弃 {} 条", n);
+        }
+        return false;
+    }
+
+    private void drainLoop() {
+        List<PendingView> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingView first = queue.poll(maxWaitMs, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    if (batch.size() >= batchSize) break;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    PendingView next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException ie) {
+                // 关闭时被中断：把剩余数据写完再退出
+                running = false;
+                queue.drainTo(batch);
+                write(batch);
+            } catch (Exception ex) {
+                logger.warn("浏览明细写入线程异常: {}", ex.toString());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingView> batch) {
+        if (batch.isEmpty()) return;
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, v) -> {
+                ps.setLong(1, v.blogPostId());
+                if (v.userId() != null) ps.setLong(2, v.userId());
+                else ps.setNull(2, java.sql.Types.BIGINT);
+                ps.setTimestamp(3, Timestamp.valueOf(v.viewedAt()));
+            });
+            written.addAndGet(batch.size());
+        } catch (Exception ex) {
+            // 整批失败（通常是文章已删除或用户不存在导致外键冲突）时逐条重试，跳过坏数据
+            logger.debug("批量写入浏览明细失败，改为逐条写入: {}", ex.toString());
+            for (PendingView v : batch) {
+                writeOne(v);
+            }
+        }
+    }
+
+    private void writeOne(PendingView v) {
+        try {
+            jdbcTemplate.update(INSERT_SQL, v.blogPostId(), v.userId(), Timestamp.valueOf(v.viewedAt()));
+            written.incrementAndGet();
+        } catch (Exception ex) {
+            if (v.userId() != null) {
+                // 用户不存在时按未登录浏览记录
+                writeOne(new PendingView(v.blogPostId(), null, v.viewedAt()));
+                return;
+            }
+            failed.incrementAndGet();
+            logger.debug("丢弃无法写入的浏览明细 post={} : {}", v.blogPostId(), ex.toString());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (drainer == null) return;
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        if (drainer.isAlive()) {
+            drainer.interrupt();
+        }
+        logger.info("浏览明细写入线程已停止：accepted={} written={} dropped={} failed={}",
+                accepted.get(), written.get(), dropped.get(), failed.get());
+    }
+
+    public int getQueueSize() { return queue.size(); }
+    public long getAcceptedCount() { return accepted.get(); }
+    public long getWrittenCount() { return written.get(); }
+    public long getDroppedCount() { return dropped.get(); }
+    public long getFailedCount() { return failed.get(); }
+
+    private record PendingView(Long blogPostId, Long userId, LocalDateTime viewedAt) {
+    }
+}
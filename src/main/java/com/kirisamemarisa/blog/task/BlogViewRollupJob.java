@@ -0,0 +1,160 @@
+package com.kirisamemarisa.blog.task;
+
+import com.kirisamemarisa.blog.model.BlogViewRollup;
+import com.kirisamemarisa.blog.repository.BlogViewRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 浏览明细汇总与过期清理。
+ * 1. 把 blog_view_record 按小时聚合写入 blog_view_rollup（HOUR），再由小时桶汇总出天桶（DAY）；
+ * 2. 删除超过保留期且已汇总过的浏览明细，以及超过保留期的小时桶（天桶永久保留）。
+ * 聚合写入使用 INSERT ... ON DUPLICATE KEY UPDATE 覆盖旧值，重复执行或多实例同时执行结果一致；
+ * 每轮都会重算上一个小时，以覆盖异步写入稍晚落库的明细。
+ */
+@Component
+public class BlogViewRollupJob {
+    private static final Logger logger = LoggerFactory.getLogger(BlogViewRollupJob.class);
+
+    private static final String ROLLUP_HOUR_SQL =
+            "insert into blog_view_rollup (blog_post_id, granularity, bucket_start, view_count) " +
+            "select blog_post_id, 'HOUR', ?, count(*) from blog_view_record " +
+            "where viewed_at >= ? and viewed_at < ? group by blog_post_id " +
+            "on duplicate key update view_count = values(view_count)";
+
+    private static final String ROLLUP_DAY_SQL =
+            "insert into blog_view_rollup (blog_post_id, granularity, bucket_start, view_count) " +
+            "select blog_post_id, 'DAY', ?, sum(view_count) from blog_view_rollup " +
+            "where granularity = 'HOUR' and bucket_start >= ? and bucket_start < ? group by blog_post_id " +
+            "on duplicate key update view_count = values(view_count)";
+
+    private static final String PRUNE_RECORD_SQL =
+            "delete from blog_view_record where viewed_at < ? limit ?";
+
+    private static final String PRUNE_HOURLY_SQL =
+            "delete from blog_view_rollup where granularity = 'HOUR' and bucket_start < ? limit ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlogViewRollupRepository blogViewRollupRepository;
+    private final int recordRetentionDays;
+    private final int hourlyRetentionDays;
+    private final int maxHoursPerRun;
+    private final int deleteChunkSize;
+
+    // 下一个待汇总的小时桶（此前的小时均已汇总）；为 null 表示尚未初始化
+    private LocalDateTime nextHour;
+
+    public BlogViewRollupJob(JdbcTemplate jdbcTemplate,
+                             BlogViewRollupRepository blogViewRollupRepository,
+                             @Value("${blog.view.rollup.record-retention-days:30}") int recordRetentionDays,
+                             @Value("${blog.view.rollup.hourly-retention-days:90}") int hourlyRetentionDays,
+                             @Value("${blog.view.rollup.max-hours-per-run:168}") int maxHoursPerRun,
+                             @Value("${blog.view.rollup.delete-chunk-size:5000}") int deleteChunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blogViewRollupRepository = blogViewRollupRepository;
+        this.recordRetentionDays = Math.max(1, recordRetentionDays);
+        this.hourlyRetentionDays = Math.max(1, hourlyRetentionDays);
+        this.maxHoursPerRun = Math.max(1, maxHoursPerRun);
+        this.deleteChunkSize = Math.max(1, deleteChunkSize);
+    }
+
+    @Scheduled(cron = "${blog.view.rollup.cron:0 5 * * * *}")
+    public synchronized void run() {
+        try {
+            LocalDateTime rolledUntil = rollup();
+            prune(rolledUntil);
+        } catch (Exception ex) {
+            logger.warn("浏览量汇总任务执行失败，将在下一轮重试: {}", ex.toString());
+        }
+    }
+
+    /**
+     * 汇总所有已结束的小时，返回汇总进度（该时间之前的明细均已汇总）
+     */
+    private LocalDateTime rollup() {
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        if (nextHour == null) {
+            nextHour = initialHour(currentHour);
+        }
+        // 回退一小时重算，覆盖上一轮之后才落库的明细
+        LocalDateTime from = nextHour.minusHours(1);
+        LocalDateTime to = from.plusHours(maxHoursPerRun + 1L);
+        if (to.isAfter(currentHour)) {
+            to = currentHour;
+        }
+        int hours = 0;
+        for (LocalDateTime hour = from; hour.isBefore(to); hour = hour.plusHours(1)) {
+            Timestamp start = Timestamp.valueOf(hour);
+            jdbcTemplate.update(ROLLUP_HOUR_SQL, start, start, Timestamp.valueOf(hour.plusHours(1)));
+            hours++;
+        }
+        // 受影响的天桶重新由小时桶求和（包括尚未结束的当天，后续轮次会继续覆盖）
+        for (LocalDateTime day = from.truncatedTo(ChronoUnit.DAYS); day.isBefore(to); day = day.plusDays(1)) {
+            Timestamp start = Timestamp.valueOf(day);
+            jdbcTemplate.update(ROLLUP_DAY_SQL, start, start, Timestamp.valueOf(day.plusDays(1)));
+        }
+        if (to.isAfter(nextHour)) {
+            nextHour = to;
+        }
+        logger.debug("浏览量汇总完成：{} 个小时桶，进度 {}", hours, nextHour);
+        return nextHour;
+    }
+
+    private LocalDateTime initialHour(LocalDateTime currentHour) {
+        LocalDateTime latest = blogViewRollupRepository.findLatestBucket(BlogViewRollup.Granularity.HOUR);
+        if (latest != null) {
+            return latest.plusHours(1);
+        }
+        // 第一次运行：从最早的明细开始
+        Timestamp earliest = jdbcTemplate.queryForObject(
+                "select min(viewed_at) from blog_view_record", Timestamp.class);
+        if (earliest == null) {
+            return currentHour;
+        }
+        return earliest.toLocalDateTime().truncatedTo(ChronoUnit.HOURS);
+    }
+
+    /**
+     * 分批删除过期数据，避免单条 DELETE 长时间锁表。
+     * 明细只删除保留期之外且已经汇总过的部分（汇总落后时宁可多留）。
+     */
+    private void prune(LocalDateTime rolledUntil) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime recordCutoff = now.minusDays(recordRetentionDays).truncatedTo(ChronoUnit.HOURS);
+        // 最近一小时每轮都会重算，不能删
+        LocalDateTime safeUntil = rolledUntil.minusHours(1);
+        if (safeUntil.isBefore(recordCutoff)) {
+            recordCutoff = safeUntil;
+        }
+        long records = deleteInChunks(PRUNE_RECORD_SQL, recordCutoff);
+        // 天桶由小时桶求和得到，小时桶至少要保留到天桶不再被重算
+        LocalDateTime hourlyCutoff = now.minusDays(hourlyRetentionDays).truncatedTo(ChronoUnit.DAYS);
+        LocalDateTime safeDay = safeUntil.truncatedTo(ChronoUnit.DAYS);
+        if (safeDay.isBefore(hourlyCutoff)) {
+            hourlyCutoff = safeDay;
+        }
+        long hourly = deleteInChunks(PRUNE_HOURLY_SQL, hourlyCutoff);
+        if (records > 0 || hourly > 0) {
+            logger.info("清理过期浏览数据：明细 {} 条，小时桶 {} 条", records, hourly);
+        }
+    }
+
+    private long deleteInChunks(String sql, LocalDateTime cutoff) {
+        Timestamp ts = Timestamp.valueOf(cutoff);
+        long total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, ts, deleteChunkSize);
+            total += deleted;
+        } while (deleted >= deleteChunkSize);
+        return total;
+    }
+}
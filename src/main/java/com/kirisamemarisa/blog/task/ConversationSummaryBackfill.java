@@ -0,0 +1,91 @@
+package com.kirisamemarisa.blog.task;
+
+import com.kirisamemarisa.blog.service.impl.ConversationSummaryServiceImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * 会话摘要表（conversation_summary）的一次性回填。
+ * 成功后在同一事务中写入 maintenance_markers 标记，之后启动不再执行；失败整体回滚，下次启动重试。
+ * 用两条集合 SQL 从 private_messages 生成摘要：
+ * 每个 (owner, partner) 取 owner 未删除的最大消息 ID 作为最后一条，并统计 owner 作为接收方、未删除的未读数。
+ * 只插入缺失的 (owner, partner)，已有摘要行一律不动，多个实例同时启动也不会互相覆盖。
+ * 之后摘要由 ConversationSummaryService 随业务事务增量维护。
+ */
+@Component
+public class ConversationSummaryBackfill {
+    private static final Logger logger = LoggerFactory.getLogger(ConversationSummaryBackfill.class);
+
+    // 对 owner 已本地删除的消息不参与最后一条与未读数
+    private static final String BACKFILL_SQL =
+            "insert into conversation_summary (owner_id, partner_id, last_message_id, last_preview, last_at, unread_count) " +
+            "select t.owner_id, t.partner_id, t.last_id, '', pm.created_at, t.unread from (" +
+            "  select owner_id, partner_id, max(id) as last_id, sum(unread) as unread from (" +
+            "    select m.sender_id as owner_id, m.receiver_id as partner_id, m.id, 0 as unread from private_messages m" +
+            "    where not exists (select 1 from private_message_status s" +
+            "      where s.message_id = m.id and s.user_id = m.sender_id and s.deleted_for_user)" +
+            "    union all" +
+            "    select m.receiver_id, m.sender_id, m.id, case when m.read_by_receiver then 0 else 1 end" +
+            "    from private_messages m where m.receiver_id <> m.sender_id" +
+            "    and not exists (select 1 from private_message_status s" +
+            "      where s.message_id = m.id and s.user_id = m.receiver_id and s.deleted_for_user)" +
+            "  ) x group by owner_id, partner_id" +
+            ") t join private_messages pm on pm.id = t.last_id " +
+            "where not exists (select 1 from conversation_summary cs" +
+            "  where cs.owner_id = t.owner_id and cs.partner_id = t.partner_id) " +
+            // 并发启动的另一个实例抢先插入时保持原行
+            "on duplicate key update last_message_id = conversation_summary.last_message_id";
+
+    // 与 ConversationSummaryService.preview 的规则一致；已撤回的消息显示撤回提示而不是原文
+    private static final String PREVIEW_SQL =
+            "update conversation_summary cs join private_messages pm on pm.id = cs.last_message_id " +
+            "set cs.last_preview = case " +
+            "when exists (select 1 from private_message_status s where s.message_id = pm.id and s.recalled) then ? " +
+            "when pm.type <> 'TEXT' then " +
+            "  concat(pm.type, if(pm.text is null or pm.text = '', '', " +
+            "    concat(':', left(pm.text, 20), if(char_length(pm.text) > 20, '...', '')))) " +
+            "else concat(left(coalesce(pm.text, ''), 40), if(char_length(pm.text) > 40, '...', '')) end " +
+            "where cs.last_preview = ''";
+
+    private static final String MARKER = "conversation-summary-backfill";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public ConversationSummaryBackfill(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        try {
+            Integer done = jdbcTemplate.queryForObject(
+                    "select count(*) from maintenance_markers where name = ?", Integer.class, MARKER);
+            if (done != null && done > 0) return;
+
+            long start = System.currentTimeMillis();
+            Integer rows = transactionTemplate.execute(status -> {
+                int affected = jdbcTemplate.update(BACKFILL_SQL);
+                jdbcTemplate.update(PREVIEW_SQL, ConversationSummaryServiceImpl.RECALLED_PREVIEW);
+                // 另一个实例同时完成时保留先写入的标记
+                jdbcTemplate.update("insert into maintenance_markers (name, completed_at) values (?, ?) " +
+                        "on duplicate key update completed_at = completed_at", MARKER, Timestamp.from(Instant.now()));
+                return affected;
+            });
+            logger.info("会话摘要回填完成：影响 {} 行，耗时 {} ms", rows, System.currentTimeMillis() - start);
+        } catch (Exception ex) {
+            // 回填失败（整体回滚）不影响启动；没有完成标记，下次启动会重新回填
+            logger.warn("会话摘要回填失败: {}", ex.toString());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.kirisamemarisa.blog.task;
+
+import com.kirisamemarisa.blog.service.FriendRecommendationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 好友推荐的增量重算：定期处理关注图、好友申请、拉黑变化后标记的用户，每轮最多 batch-users 个，
+ * 剩余的留到下一轮，避免一次关系变化（如大 V 被关注）占满数据库。
+ */
+@Component
+public class FriendRecommendationJob {
+    private static final Logger logger = LoggerFactory.getLogger(FriendRecommendationJob.class);
+
+    private final FriendRecommendationService recommendationService;
+    private final int batchUsers;
+
+    public FriendRecommendationJob(FriendRecommendationService recommendationService,
+                                   @Value("${blog.recommend.batch-users:200}") int batchUsers) {
+        this.recommendationService = recommendationService;
+        this.batchUsers = Math.max(1, batchUsers);
+    }
+
+    @Scheduled(fixedDelayString = "${blog.recommend.refresh-interval-ms:30000}")
+    public synchronized void run() {
+        try {
+            int refreshed = recommendationService.refreshDirty(batchUsers);
+            if (refreshed > 0) {
+                logger.debug("好友推荐重算 {} 个用户，剩余待重算 {}", refreshed, recommendationService.pendingCount());
+            }
+        } catch (Exception ex) {
+            logger.warn("好友推荐重算任务执行失败，将在下一轮重试: {}", ex.toString());
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.kirisamemarisa.blog.task;
+
+import com.kirisamemarisa.blog.dto.NotificationDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * 通知收件箱（notifications）的异步批量写入与合并。
+ * submit 只把通知放进有界内存队列后立即返回；后台线程收集一批写入，写完后经 flush 监听器推送（带收件箱 ID）：
+ * - 点赞类通知（COALESCED_TYPES）按 (receiver, type, referenceId) 合并为一条，批内有这类通知时等满 coalesce-window-ms；
+ *   触发者记入 notification_actors（每条通知每人一次），actor_count 只随新的触发者增加，
+ *   同一用户反复点赞 / 取消点赞不会重复计数，也不会再推送；
+ * - 其他通知逐条插入（JDBC batch），批内没有可合并的通知时不等待窗口，尽快落库推送。
+ * 队列满时丢弃并计数，不阻塞请求线程。
+ */
+@Component
+public class NotificationInboxWriter {
+    private static final Logger logger = LoggerFactory.getLogger(NotificationInboxWriter.class);
+
+    // 高频且可以合并展示的通知类型（“N 人赞了你的文章”）
+    public static final Set<String> COALESCED_TYPES = Set.of("POST_LIKE", "COMMENT_LIKE", "REPLY_LIKE");
+
+    private static final String INSERT_SQL =
+            "insert into notifications (receiver_id, type, sender_id, reference_id, reference_extra_id, request_id, " +
+            "message, status, actor_count, is_read, created_at, updated_at) values (?, ?, ?, ?, ?, ?, ?, ?, ?, false, ?, ?)";
+
+    private static final String FIND_UNREAD_SQL =
+            "select id, actor_count from notifications " +
+            "where receiver_id = ? and type = ? and reference_id = ? and is_read = false order by id desc limit 1";
+
+    private static final String MERGE_SQL =
+            "update notifications set actor_count = actor_count + ?, sender_id = ?, message = ?, updated_at = ? " +
+            "where id = ? and is_read = false";
+
+    private static final String ACTOR_SQL = "insert ignore into notification_actors (notification_id, actor_id) values ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<Pending> queue;
+    private final int batchSize;
+    private final long windowMs;
+    private volatile BiConsumer<Long, NotificationDTO> flushListener = (userId, dto) -> { };
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong repeated = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean running = true;
+    private Thread drainer;
+
+    public NotificationInboxWriter(JdbcTemplate jdbcTemplate,
+                                   @Value("${blog.notification.inbox.queue-capacity:10000}") int queueCapacity,
+                                   @Value("${blog.notification.inbox.batch-size:500}") int batchSize,
+                                   @Value("${blog.notification.inbox.coalesce-window-ms:2000}") long windowMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.windowMs = Math.max(1, windowMs);
+    }
+
+    @PostConstruct
+    public void start() {
+        drainer = new Thread(this::drainLoop, "notification-inbox-writer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    public static boolean isCoalesced(NotificationDTO dto) {
+        return dto != null && dto.getReferenceId() != null && COALESCED_TYPES.contains(dto.getType());
+    }
+
+    /**
+     * 通知写完后回调 (receiverId, 带收件箱 ID 的通知)，用于推送；合并通知没有新的触发者时不回调
+     */
+    public void setFlushListener(BiConsumer<Long, NotificationDTO> listener) {
+        this.flushListener = listener != null ? listener : (userId, dto) -> { };
+    }
+
+    /**
+     * 提交一条通知；队列已满时丢弃并返回 false
+     */
+    public boolean submit(Long receiverId, NotificationDTO dto) {
+        if (receiverId == null || dto == null || dto.getType() == null) return false;
+        if (queue.offer(new Pending(receiverId, dto))) {
+            accepted.incrementAndGet();
+            return true;
+        }
+        long n = dropped.incrementAndGet();
+        if (n == 1 || n % 1000 == 0) {
+            logger.warn("通知收件箱队列已满，已累计丢弃 {} 条", n);
+        }
+        return false;
+    }
+
+    private void drainLoop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(windowMs, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                // 只有批内有可合并的通知时才等满窗口，其他通知尽快落库推送
+                boolean coalescing = isCoalesced(first.dto());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMs);
+                while (batch.size() < batchSize) {
+                    int from = batch.size();
+                    queue.drainTo(batch, batchSize - batch.size());
+                    for (int i = from; i < batch.size() && !coalescing; i++) {
+                        coalescing = isCoalesced(batch.get(i).dto());
+                    }
+                    if (batch.size() >= batchSize || !coalescing) break;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException ie) {
+                // 关闭时被中断：把剩余数据写完再退出
+                running = false;
+                queue.drainTo(batch);
+                flush(batch);
+            } catch (Exception ex) {
+                logger.warn("通知收件箱写入线程异常: {}", ex.toString());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        if (batch.isEmpty()) return;
+        List<Pending> inserts = new ArrayList<>();
+        Map<MergeKey, Group> groups = new LinkedHashMap<>();
+        for (Pending p : batch) {
+            if (!isCoalesced(p.dto())) {
+                inserts.add(p);
+                continue;
+            }
+            // 窗口内同一引用的点赞合并为一条，保留最近一次的触发者与文案
+            groups.computeIfAbsent(new MergeKey(p.receiverId(), p.dto().getType(), p.dto().getReferenceId()),
+                    k -> new Group(p.receiverId())).add(p.dto());
+        }
+
+        long[] ids = insert(inserts);
+        for (int i = 0; i < inserts.size(); i++) {
+            Pending p = inserts.get(i);
+            NotificationDTO dto = copy(p.dto());
+            dto.setId(ids[i] > 0 ? ids[i] : null);
+            dto.setActorCount(1);
+            push(p.receiverId(), dto);
+        }
+
+        for (Group g : groups.values()) {
+            NotificationDTO dto;
+            try {
+                dto = merge(g);
+            } catch (Exception ex) {
+                // 写库失败时仍推送本窗口的合并结果（不带 ID），收件箱里缺这一条
+                failed.incrementAndGet();
+                logger.debug("写入合并通知失败 user={} type={}: {}", g.receiverId, g.latest.getType(), ex.toString());
+                dto = copy(g.latest);
+                dto.setActorCount(g.count());
+            }
+            if (dto != null) push(g.receiverId, dto);
+        }
+    }
+
+    private void push(Long receiverId, NotificationDTO dto) {
+        try {
+            flushListener.accept(receiverId, dto);
+        } catch (Exception ex) {
+            logger.warn("通知推送失败 user={}: {}", receiverId, ex.toString());
+        }
+    }
+
+    /**
+     * 把一组点赞记到同一引用上仍未读的那条通知，没有才插入；
+     * 返回要推送的通知（actorCount 为合并后的总人数），没有新的触发者时返回 null
+     */
+    private NotificationDTO merge(Group g) {
+        NotificationDTO d = g.latest;
+        List<long[]> found = jdbcTemplate.query(FIND_UNREAD_SQL,
+                (rs, i) -> new long[]{rs.getLong(1), rs.getInt(2)},
+                g.receiverId, d.getType(), d.getReferenceId());
+        if (!found.isEmpty()) {
+            long id = found.get(0)[0];
+            int added = addActors(id, g.actors) + g.anonymous;
+            if (added == 0) {
+                repeated.addAndGet(g.actors.size());
+                return null;
+            }
+            int updated = jdbcTemplate.update(MERGE_SQL, ps -> {
+                ps.setInt(1, added);
+                setLong(ps, 2, d.getSenderId());
+                ps.setString(3, truncate(d.getMessage()));
+                ps.setTimestamp(4, Timestamp.from(createdAt(d)));
+                ps.setLong(5, id);
+            });
+            if (updated > 0) {
+                merged.addAndGet(added);
+                NotificationDTO dto = copy(d);
+                dto.setId(id);
+                dto.setActorCount((int) found.get(0)[1] + added);
+                return dto;
+            }
+            // 期间被标记已读：按新通知插入
+        }
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+            bindInsert(ps, g.receiverId, d, g.count());
+            return ps;
+        }, keys);
+        written.incrementAndGet();
+        long id = keyOf(keys.getKeyList(), 0);
+        if (id > 0) addActors(id, g.actors);
+        NotificationDTO dto = copy(d);
+        dto.setId(id > 0 ? id : null);
+        dto.setActorCount(g.count());
+        return dto;
+    }
+
+    // 返回实际新增的触发者数（已记录过的被 insert ignore 跳过）
+    private int addActors(long notificationId, Set<Long> actors) {
+        if (actors.isEmpty()) return 0;
+        StringBuilder sql = new StringBuilder(ACTOR_SQL);
+        List<Object> args = new ArrayList<>(actors.size() * 2);
+        for (Long actor : actors) {
+            if (!args.isEmpty()) sql.append(", ");
+            sql.append("(?, ?)");
+            args.add(notificationId);
+            args.add(actor);
+        }
+        return jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    // 返回与 rows 对应的收件箱 ID，写入失败的为 0
+    private long[] insert(List<Pending> rows) {
+        long[] ids = new long[rows.size()];
+        if (rows.isEmpty()) return ids;
+        try {
+            KeyHolder keys = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            Pending p = rows.get(i);
+                            bindInsert(ps, p.receiverId(), p.dto(), 1);
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return rows.size();
+                        }
+                    }, keys);
+            written.addAndGet(rows.size());
+            List<Map<String, Object>> keyList = keys.getKeyList();
+            if (keyList.size() == rows.size()) {
+                for (int i = 0; i < ids.length; i++) ids[i] = keyOf(keyList, i);
+            }
+            return ids;
+        } catch (Exception ex) {
+            logger.debug("批量写入通知失败，改为逐条写入: {}", ex.toString());
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            Pending p = rows.get(i);
+            try {
+                KeyHolder keys = new GeneratedKeyHolder();
+                jdbcTemplate.update(con -> {
+                    PreparedStatement ps = con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+                    bindInsert(ps, p.receiverId(), p.dto(), 1);
+                    return ps;
+                }, keys);
+                written.incrementAndGet();
+                ids[i] = keyOf(keys.getKeyList(), 0);
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                logger.debug("丢弃无法写入的通知 user={} type={}: {}", p.receiverId(), p.dto().getType(), e.toString());
+            }
+        }
+        return ids;
+    }
+
+    private static long keyOf(List<Map<String, Object>> keyList, int index) {
+        if (index >= keyList.size()) return 0L;
+        for (Object v : keyList.get(index).values()) {
+            if (v instanceof Number n) return n.longValue();
+        }
+        return 0L;
+    }
+
+    private void bindInsert(PreparedStatement ps, Long receiverId, NotificationDTO d, int actorCount) throws SQLException {
+        Timestamp at = Timestamp.from(createdAt(d));
+        ps.setLong(1, receiverId);
+        ps.setString(2, d.getType());
+        setLong(ps, 3, d.getSenderId());
+        setLong(ps, 4, d.getReferenceId());
+        setLong(ps, 5, d.getReferenceExtraId());
+        setLong(ps, 6, d.getRequestId());
+        ps.setString(7, truncate(d.getMessage()));
+        ps.setString(8, d.getStatus());
+        ps.setInt(9, actorCount);
+        ps.setTimestamp(10, at);
+        ps.setTimestamp(11, at);
+    }
+
+    private static void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value != null) ps.setLong(index, value);
+        else ps.setNull(index, Types.BIGINT);
+    }
+
+    private static Instant createdAt(NotificationDTO d) {
+        return d.getCreatedAt() != null ? d.getCreatedAt() : Instant.now();
+    }
+
+    private static String truncate(String s) {
+        return s != null && s.length() > 255 ? s.substring(0, 255) : s;
+    }
+
+    private static NotificationDTO copy(NotificationDTO s) {
+        NotificationDTO d = new NotificationDTO();
+        d.setType(s.getType());
+        d.setRequestId(s.getRequestId());
+        d.setSenderId(s.getSenderId());
+        d.setReceiverId(s.getReceiverId());
+        d.setMessage(s.getMessage());
+        d.setStatus(s.getStatus());
+        d.setCreatedAt(s.getCreatedAt());
+        d.setReferenceId(s.getReferenceId());
+        d.setReferenceExtraId(s.getReferenceExtraId());
+        d.setSenderNickname(s.getSenderNickname());
+        d.setSenderAvatarUrl(s.getSenderAvatarUrl());
+        d.setSenderUsername(s.getSenderUsername());
+        return d;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (drainer == null) return;
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        if (drainer.isAlive()) {
+            drainer.interrupt();
+        }
+        logger.info("通知收件箱写入线程已停止：accepted={} written={} merged={} repeated={} dropped={} failed={}",
+                accepted.get(), written.get(), merged.get(), repeated.get(), dropped.get(), failed.get());
+    }
+
+    public int getQueueSize() { return queue.size(); }
+    public long getAcceptedCount() { return accepted.get(); }
+    public long getWrittenCount() { return written.get(); }
+    public long getMergedCount() { return merged.get(); }
+    public long getRepeatedActorCount() { return repeated.get(); }
+    public long getDroppedCount() { return dropped.get(); }
+    public long getFailedCount() { return failed.get(); }
+
+    private record Pending(Long receiverId, NotificationDTO dto) {
+    }
+
+    // 一个窗口内同一引用的点赞：去重后的触发者，以及没有触发者 ID 的次数
+    private static final class Group {
+        final Long receiverId;
+        final Set<Long> actors = new LinkedHashSet<>();
+        int anonymous;
+        NotificationDTO latest;
+
+        Group(Long receiverId) {
+            this.receiverId = receiverId;
+        }
+
+        void add(NotificationDTO dto) {
+            latest = dto;
+            if (dto.getSenderId() != null) actors.add(dto.getSenderId());
+            else anonymous++;
+        }
+
+        int count() {
+            return actors.size() + anonymous;
+        }
+    }
+
+    private record MergeKey(Long receiverId, String type, Long referenceId) {
+    }
+}
@@ -0,0 +1,66 @@
+package com.kirisamemarisa.blog.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void noFalseNegatives() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        Random random = new Random(11);
+        long[] keys = new long[100_000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+            filter.add(keys[i]);
+        }
+        for (long key : keys) assertTrue(filter.mightContain(key));
+    }
+
+    @Test
+    void falsePositiveRateNearTarget() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        // 拉黑对的键是 (blocker << 32) ^ blocked 这样的结构化值，顺序键也要散得开
+        for (long i = 0; i < 100_000; i++) filter.add(i);
+        int falsePositives = 0;
+        for (long i = 100_000; i < 200_000; i++) {
+            if (filter.mightContain(i)) falsePositives++;
+        }
+        assertTrue(falsePositives < 2_000, "false positive rate " + falsePositives / 100_000.0);
+    }
+
+    @Test
+    void concurrentAddsAreNotLost() throws Exception {
+        BloomFilter filter = new BloomFilter(400_000, 0.01);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                long base = t * 100_000L;
+                futures.add(pool.submit(() -> {
+                    for (long i = base; i < base + 100_000; i++) filter.add(i);
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            pool.shutdown();
+        }
+        for (long i = 0; i < 400_000; i++) assertTrue(filter.mightContain(i), "lost key " + i);
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+        for (long i = 0; i < 1_000; i++) assertFalse(filter.mightContain(i));
+        assertTrue(filter.hashCount() >= 1);
+        assertTrue(filter.sizeInBytes() > 0);
+    }
+}
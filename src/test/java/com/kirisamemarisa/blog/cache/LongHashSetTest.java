@@ -0,0 +1,130 @@
+package com.kirisamemarisa.blog.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongHashSetTest {
+
+    @Test
+    void addContainsRemove() {
+        LongHashSet set = new LongHashSet(4);
+        assertTrue(set.add(42));
+        assertFalse(set.add(42));
+        assertTrue(set.add(-7));
+        assertTrue(set.contains(42));
+        assertTrue(set.contains(-7));
+        assertFalse(set.contains(43));
+        assertEquals(2, set.size());
+
+        assertTrue(set.remove(42));
+        assertFalse(set.remove(42));
+        assertFalse(set.contains(42));
+        assertTrue(set.contains(-7));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void zeroIsStoredOutsideTheSlots() {
+        LongHashSet set = new LongHashSet(4);
+        assertFalse(set.contains(0));
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.add(5));
+        assertTrue(set.contains(0));
+        assertEquals(2, set.size());
+        long[] values = set.toArray();
+        Arrays.sort(values);
+        assertArrayEquals(new long[]{0, 5}, values);
+
+        assertTrue(set.remove(0));
+        assertFalse(set.contains(0));
+        assertTrue(set.contains(5));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void growsPastInitialCapacity() {
+        LongHashSet set = new LongHashSet(1);
+        for (long v = 1; v <= 10_000; v++) assertTrue(set.add(v * 31));
+        assertEquals(10_000, set.size());
+        for (long v = 1; v <= 10_000; v++) assertTrue(set.contains(v * 31));
+        assertFalse(set.contains(31 * 10_001L));
+    }
+
+    /**
+     * 簇跨过数组末尾回到开头时，删除簇中间的元素后回移，其余元素都还能找到
+     */
+    @Test
+    void backwardShiftDeletionAcrossWrapAround() {
+        // new LongHashSet(100) 的容量为 256，装入 8 个元素不会扩容
+        int capacity = 256;
+        int mask = capacity - 1;
+        long[] tail = keysWithHome(capacity - 2, mask, 3);
+        long[] head = keysWithHome(0, mask, 2);
+        LongHashSet set = new LongHashSet(100);
+        // 前三个落在 254、255 并绕回 0，后两个的本位就是 0，被挤到 1、2
+        for (long v : tail) set.add(v);
+        for (long v : head) set.add(v);
+
+        for (int victim = 0; victim < tail.length; victim++) {
+            LongHashSet copy = new LongHashSet(100);
+            for (long v : tail) copy.add(v);
+            for (long v : head) copy.add(v);
+            assertTrue(copy.remove(tail[victim]));
+            for (int i = 0; i < tail.length; i++) {
+                assertEquals(i != victim, copy.contains(tail[i]), "tail key " + i + " after removing " + victim);
+            }
+            for (long v : head) assertTrue(copy.contains(v), "wrapped key lost after removing " + victim);
+            assertEquals(tail.length + head.length - 1, copy.size());
+        }
+
+        // 依次删光后集合为空，再次插入仍然正常
+        for (long v : tail) assertTrue(set.remove(v));
+        for (long v : head) assertTrue(set.contains(v));
+        for (long v : head) assertTrue(set.remove(v));
+        assertEquals(0, set.size());
+        assertEquals(0, set.toArray().length);
+        for (long v : head) assertTrue(set.add(v));
+        for (long v : head) assertTrue(set.contains(v));
+    }
+
+    @Test
+    void matchesHashSetUnderRandomAddRemove() {
+        Random random = new Random(7);
+        LongHashSet set = new LongHashSet(16);
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            // 取值范围小，产生大量冲突和删除
+            long v = random.nextInt(2_000) - 1_000;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(v), set.remove(v));
+            } else {
+                assertEquals(expected.add(v), set.add(v));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        for (long v = -1_000; v < 1_000; v++) {
+            assertEquals(expected.contains(v), set.contains(v), "value " + v);
+        }
+        long[] values = set.toArray();
+        assertEquals(expected.size(), values.length);
+        for (long v : values) assertTrue(expected.contains(v));
+    }
+
+    // 与 LongHashSet.mix 相同的散列，用来构造落在指定槽位的键
+    private static long[] keysWithHome(int home, int mask, int count) {
+        long[] keys = new long[count];
+        int n = 0;
+        for (long v = 1; n < count; v++) {
+            long h = v * 0x9E3779B97F4A7C15L;
+            if ((((int) (h ^ (h >>> 32))) & mask) == home) keys[n++] = v;
+        }
+        return keys;
+    }
+}
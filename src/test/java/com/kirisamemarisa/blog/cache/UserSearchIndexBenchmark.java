@@ -0,0 +1,278 @@
+package com.kirisamemarisa.blog.cache;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * UserSearchIndex 与数据库 LIKE 查询的对比基准（手动运行，不属于单元测试）。
+ * <pre>
+ * java -cp target/test-classes:target/classes:&lt;依赖&gt; com.kirisamemarisa.blog.cache.UserSearchIndexBenchmark [用户数] [每个查询词的迭代次数]
+ * </pre>
+ * 默认 100 万用户、每个查询词 200 次。输出：
+ * - 索引构建耗时与内存占用；
+ * - 每个查询词的 p50 / p99 延迟与命中总数，并与逐条 contains 暴力扫描的结果核对（命中总数必须完全一致）；
+ * - 深分页：TopK 上限（65536）以内与超出时的延迟和返回条数；
+ * - 传入 -Dbench.jdbc.url / -Dbench.jdbc.user / -Dbench.jdbc.password 时，把同样的数据写入临时表
+ *   bench_user_search，用与 UserRepository 相同形式的 like '%词%' 分页查询 + count 对比延迟
+ *   （单表、不连 user_profile，是数据库路径的下限）；-Dbench.jdbc.keep=true 时保留临时表。
+ * 建议以 -Xmx4g 以上运行。
+ */
+public class UserSearchIndexBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int TOPK_CAP = 1 << 16;
+
+    public static void main(String[] args) throws Exception {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        Random random = new Random(20240601L);
+        String[] usernames = new String[users];
+        String[] nicknames = new String[users];
+        for (int i = 0; i < users; i++) {
+            usernames[i] = username(random, i);
+            nicknames[i] = nickname(random);
+        }
+
+        UserSearchIndex index = emptyIndex();
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        for (int i = 0; i < users; i++) {
+            index.put(i + 1L, usernames[i], nicknames[i]);
+        }
+        long buildMs = (System.nanoTime() - start) / 1_000_000;
+        long heapAfter = usedHeap();
+        Map<String, Object> stats = index.stats();
+        System.out.printf("users=%d build=%d ms heap=%.1f MB postingBytes=%s usernameGrams=%s nicknameGrams=%s%n",
+                users, buildMs, (heapAfter - heapBefore) / 1048576.0,
+                stats.get("postingBytes"), stats.get("usernameGrams"), stats.get("nicknameGrams"));
+
+        List<Query> queries = queries(usernames, nicknames, random);
+        System.out.println();
+        System.out.printf("%-9s %-14s %12s %10s %10s %6s%n", "field", "term", "total", "p50(us)", "p99(us)", "exact");
+        for (Query q : queries) {
+            String[] texts = q.field() == UserSearchIndex.Field.USERNAME ? usernames : nicknames;
+            long expected = bruteForceCount(texts, q.term());
+            UserSearchIndex.Hits hits = index.search(q.field(), q.term(), 0, PAGE_SIZE);
+            long[] micros = time(iterations, () -> index.search(q.field(), q.term(), 0, PAGE_SIZE));
+            System.out.printf("%-9s %-14s %12d %10d %10d %6s%n", q.field(), q.term(), hits.total(),
+                    percentile(micros, 50), percentile(micros, 99), hits.total() == expected ? "ok" : "DIFF " + expected);
+        }
+
+        deepPaging(index, queries, iterations);
+
+        String url = System.getProperty("bench.jdbc.url");
+        if (url == null || url.isBlank()) {
+            System.out.println();
+            System.out.println("database comparison skipped (set -Dbench.jdbc.url to run it)");
+            return;
+        }
+        compareWithDatabase(url, usernames, nicknames, queries, Math.max(1, iterations / 10));
+    }
+
+    /**
+     * 命中最多的查询词上比较不同深度的分页：TopK 大小随 offset + limit 增长，超过上限后只返回总数
+     */
+    private static void deepPaging(UserSearchIndex index, List<Query> queries, int iterations) {
+        Query widest = null;
+        long widestTotal = -1;
+        for (Query q : queries) {
+            long total = index.search(q.field(), q.term(), 0, 1).total();
+            if (total > widestTotal) {
+                widest = q;
+                widestTotal = total;
+            }
+        }
+        if (widest == null) return;
+        Query q = widest;
+        System.out.println();
+        System.out.printf("deep paging on %s '%s' (total %d, TopK cap %d)%n", q.field(), q.term(), widestTotal, TOPK_CAP);
+        System.out.printf("%10s %8s %10s %10s%n", "offset", "rows", "p50(us)", "p99(us)");
+        int[] offsets = {0, 1_000, 10_000, TOPK_CAP - PAGE_SIZE, TOPK_CAP, TOPK_CAP * 4};
+        for (int offset : offsets) {
+            if (offset >= widestTotal) continue;
+            int rows = index.search(q.field(), q.term(), offset, PAGE_SIZE).userIds().size();
+            long[] micros = time(Math.max(1, iterations / 4),
+                    () -> index.search(q.field(), q.term(), offset, PAGE_SIZE));
+            System.out.printf("%10d %8d %10d %10d%n", offset, rows, percentile(micros, 50), percentile(micros, 99));
+        }
+    }
+
+    private static void compareWithDatabase(String url, String[] usernames, String[] nicknames,
+                                            List<Query> queries, int iterations) throws SQLException {
+        String user = System.getProperty("bench.jdbc.user", "root");
+        String password = System.getProperty("bench.jdbc.password", "");
+        boolean keep = Boolean.getBoolean("bench.jdbc.keep");
+        try (Connection con = DriverManager.getConnection(url, user, password)) {
+            try (Statement st = con.createStatement()) {
+                st.execute("drop table if exists bench_user_search");
+                st.execute("create table bench_user_search (id bigint primary key, username varchar(64) not null, " +
+                        "nickname varchar(64), unique key uk_bench_username (username)) " +
+                        "default charset = utf8mb4 collate = utf8mb4_general_ci");
+            }
+            long start = System.nanoTime();
+            con.setAutoCommit(false);
+            try (PreparedStatement ps = con.prepareStatement(
+                    "insert into bench_user_search (id, username, nickname) values (?, ?, ?)")) {
+                for (int i = 0; i < usernames.length; i++) {
+                    ps.setLong(1, i + 1L);
+                    ps.setString(2, usernames[i]);
+                    ps.setString(3, nicknames[i]);
+                    ps.addBatch();
+                    if ((i + 1) % 5000 == 0) {
+                        ps.executeBatch();
+                        con.commit();
+                    }
+                }
+                ps.executeBatch();
+                con.commit();
+            }
+            con.setAutoCommit(true);
+            System.out.println();
+            System.out.printf("database: loaded %d rows in %d ms (%d iterations per term)%n",
+                    usernames.length, (System.nanoTime() - start) / 1_000_000, iterations);
+            System.out.printf("%-9s %-14s %12s %12s %12s%n", "field", "term", "total", "page p50(us)", "count p50(us)");
+            for (Query q : queries) {
+                String column = q.field() == UserSearchIndex.Field.USERNAME ? "username" : "nickname";
+                String pattern = "%" + q.term() + "%";
+                String pageSql = "select id, username, nickname from bench_user_search where " + column + " like ? limit ?";
+                String countSql = "select count(*) from bench_user_search where " + column + " like ?";
+                long[] total = new long[1];
+                long[] pageMicros = time(iterations, () -> runQuery(con, pageSql, pattern, PAGE_SIZE));
+                long[] countMicros = time(iterations, () -> total[0] = runQuery(con, countSql, pattern, -1));
+                System.out.printf("%-9s %-14s %12d %12d %12d%n", q.field(), q.term(), total[0],
+                        percentile(pageMicros, 50), percentile(countMicros, 50));
+            }
+            if (!keep) {
+                try (Statement st = con.createStatement()) {
+                    st.execute("drop table bench_user_search");
+                }
+            }
+        }
+    }
+
+    // limit 小于 0 时执行 count 查询并返回结果，否则返回读到的行数
+    private static long runQuery(Connection con, String sql, String pattern, int limit) {
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setString(1, pattern);
+            if (limit >= 0) ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (limit < 0) return rs.next() ? rs.getLong(1) : 0L;
+                long rows = 0;
+                while (rs.next()) rows++;
+                return rows;
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * 索引的首次构建查询返回空结果，之后逐个 put（没有事务时立即生效）
+     */
+    private static UserSearchIndex emptyIndex() {
+        JdbcTemplate noRows = new JdbcTemplate() {
+            @Override
+            public void query(String sql, RowCallbackHandler rch) {
+            }
+        };
+        UserSearchIndex index = new UserSearchIndex(noRows);
+        index.build();
+        return index;
+    }
+
+    /**
+     * 查询词：单字（全表扫描）、常见二元组、较长子串、完整用户名（完全相等）、不存在的词
+     */
+    private static List<Query> queries(String[] usernames, String[] nicknames, Random random) {
+        Set<Query> list = new LinkedHashSet<>();
+        list.add(new Query(UserSearchIndex.Field.USERNAME, "a"));
+        list.add(new Query(UserSearchIndex.Field.USERNAME, "an"));
+        list.add(new Query(UserSearchIndex.Field.USERNAME, "ing"));
+        list.add(new Query(UserSearchIndex.Field.USERNAME, "chen"));
+        list.add(new Query(UserSearchIndex.Field.USERNAME, "lingmao"));
+        list.add(new Query(UserSearchIndex.Field.USERNAME, usernames[random.nextInt(usernames.length)]));
+        list.add(new Query(UserSearchIndex.Field.USERNAME, "zzqxj"));
+        String nick = nicknames[random.nextInt(nicknames.length)];
+        while (nick.length() < 3) nick = nicknames[random.nextInt(nicknames.length)];
+        list.add(new Query(UserSearchIndex.Field.NICKNAME, nick.substring(0, 1)));
+        list.add(new Query(UserSearchIndex.Field.NICKNAME, nick.substring(0, 2)));
+        list.add(new Query(UserSearchIndex.Field.NICKNAME, nick));
+        return new ArrayList<>(list);
+    }
+
+    private static final String[] SYLLABLES = {
+            "an", "bai", "chen", "da", "fei", "gang", "hua", "jing", "kai", "lin", "ling", "mao", "ming", "ning",
+            "qing", "rui", "shan", "tian", "wei", "xiao", "yang", "yu", "zhi", "zhou", "momo", "neko", "star", "sky"
+    };
+
+    // 拼音音节拼接，末尾带序号的 36 进制保证唯一
+    private static String username(Random random, int i) {
+        StringBuilder sb = new StringBuilder();
+        int parts = 1 + random.nextInt(3);
+        for (int p = 0; p < parts; p++) sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        if (random.nextBoolean()) sb.append('_');
+        sb.append(Integer.toString(i, 36));
+        return sb.toString();
+    }
+
+    // 2 到 4 个常用汉字区间里的字，少量夹带字母
+    private static String nickname(Random random) {
+        int len = 2 + random.nextInt(3);
+        StringBuilder sb = new StringBuilder(len);
+        for (int i = 0; i < len; i++) {
+            if (random.nextInt(10) == 0) sb.append((char) ('a' + random.nextInt(26)));
+            else sb.append((char) (0x4E00 + random.nextInt(800)));
+        }
+        return sb.toString();
+    }
+
+    private static long bruteForceCount(String[] texts, String term) {
+        long n = 0;
+        for (String t : texts) {
+            if (t != null && t.contains(term)) n++;
+        }
+        return n;
+    }
+
+    private static long[] time(int iterations, Runnable action) {
+        for (int i = 0; i < Math.min(50, iterations); i++) action.run();
+        long[] micros = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long t = System.nanoTime();
+            action.run();
+            micros[i] = (System.nanoTime() - t) / 1000;
+        }
+        Arrays.sort(micros);
+        return micros;
+    }
+
+    private static long percentile(long[] sorted, int p) {
+        if (sorted.length == 0) return 0;
+        int i = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(i, sorted.length - 1))];
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private record Query(UserSearchIndex.Field field, String term) {
+    }
+}
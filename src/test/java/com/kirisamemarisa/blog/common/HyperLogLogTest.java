@@ -0,0 +1,72 @@
+package com.kirisamemarisa.blog.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * p=12 时标准误差约 1.6%，这里按 3 倍（5%）检查误差上限
+ */
+class HyperLogLogTest {
+
+    private static final double MAX_RELATIVE_ERROR = 0.05;
+
+    @Test
+    void emptySketchEstimatesZero() {
+        assertEquals(0, new HyperLogLog().estimate());
+    }
+
+    @Test
+    void smallCardinalitiesAreNearlyExact() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 100; i++) hll.offer("u:" + i);
+        assertTrue(Math.abs(hll.estimate() - 100) <= 2, "estimate " + hll.estimate());
+    }
+
+    @Test
+    void estimatesStayWithinErrorBound() {
+        int[] cardinalities = {1_000, 10_000, 100_000, 1_000_000};
+        for (int n : cardinalities) {
+            HyperLogLog hll = new HyperLogLog();
+            for (int i = 0; i < n; i++) hll.offer("a:visitor-" + n + "-" + i);
+            assertWithinBound(n, hll.estimate());
+        }
+    }
+
+    @Test
+    void duplicatesDoNotIncreaseTheEstimate() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 20_000; i++) hll.offer("u:" + i);
+        }
+        assertWithinBound(20_000, hll.estimate());
+    }
+
+    @Test
+    void mergeEstimatesTheUnion() {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        for (int i = 0; i < 60_000; i++) a.offer("u:" + i);
+        for (int i = 40_000; i < 100_000; i++) b.offer("u:" + i);
+        a.merge(b);
+        assertWithinBound(100_000, a.estimate());
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        HyperLogLog hll = new HyperLogLog();
+        for (int i = 0; i < 50_000; i++) hll.offer("u:" + i);
+        byte[] bytes = hll.toBytes();
+        assertEquals(HyperLogLog.REGISTER_COUNT, bytes.length);
+        assertEquals(hll.estimate(), HyperLogLog.fromBytes(bytes).estimate());
+        // 长度不符或为空时当作空草图
+        assertEquals(0, HyperLogLog.fromBytes(null).estimate());
+        assertEquals(0, HyperLogLog.fromBytes(new byte[10]).estimate());
+    }
+
+    private static void assertWithinBound(long expected, long estimate) {
+        double error = Math.abs(estimate - expected) / (double) expected;
+        assertTrue(error <= MAX_RELATIVE_ERROR,
+                "cardinality " + expected + " estimated as " + estimate + " (error " + error + ")");
+    }
+}
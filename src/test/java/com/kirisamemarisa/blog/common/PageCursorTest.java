@@ -0,0 +1,68 @@
+package com.kirisamemarisa.blog.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCursorTest {
+
+    @Test
+    void roundTripsCreatedAtAndId() {
+        PageCursor cursor = new PageCursor(LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123_456_789), 98765L);
+        assertEquals(cursor, PageCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void roundTripsWholeMinutes() {
+        // LocalDateTime.toString 在秒为 0 时省略秒
+        PageCursor cursor = new PageCursor(LocalDateTime.of(2024, 1, 1, 0, 0), 1L);
+        assertEquals(cursor, PageCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void roundTripsInstantAsUtc() {
+        Instant createdAt = Instant.parse("2024-03-10T23:59:59.000001Z");
+        PageCursor decoded = PageCursor.decode(PageCursor.of(createdAt, 7L).encode());
+        assertEquals(createdAt, decoded.createdAtInstant());
+        assertEquals(7L, decoded.id());
+    }
+
+    @Test
+    void tokenIsUrlSafe() {
+        String token = new PageCursor(LocalDateTime.of(2024, 12, 31, 23, 59, 59), Long.MAX_VALUE).encode();
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+        assertEquals(Long.MAX_VALUE, PageCursor.decode(" " + token + " ").id());
+    }
+
+    @Test
+    void emptyTokenMeansFirstPage() {
+        assertNull(PageCursor.decode(null));
+        assertNull(PageCursor.decode(""));
+        assertNull(PageCursor.decode("   "));
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertInvalid("not base64!");
+        assertInvalid(encode("no separator"));
+        assertInvalid(encode("|42"));
+        assertInvalid(encode("2024-01-01T00:00|"));
+        assertInvalid(encode("2024-01-01T00:00|abc"));
+        assertInvalid(encode("yesterday|42"));
+        assertInvalid(encode("2024-13-01T00:00|42"));
+    }
+
+    private static void assertInvalid(String token) {
+        BusinessException ex = assertThrows(BusinessException.class, () -> PageCursor.decode(token), token);
+        assertEquals("cursor 无效", ex.getMessage());
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,95 @@
+package com.kirisamemarisa.blog.events;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventLogTest {
+
+    @Test
+    void replaysEverythingAfterLastEventId() {
+        EventLog<String> log = new EventLog<>(10);
+        List<EventLog.Entry<String>> appended = append(log, 5);
+
+        List<EventLog.Entry<String>> missed = log.since(appended.get(1).id());
+        assertEquals(List.of("e3", "e4", "e5"), events(missed));
+        assertEquals(List.of(3L, 4L, 5L), missed.stream().map(EventLog.Entry::seq).toList());
+    }
+
+    @Test
+    void upToDateClientGetsEmptyList() {
+        EventLog<String> log = new EventLog<>(10);
+        List<EventLog.Entry<String>> appended = append(log, 3);
+        assertEquals(List.of(), log.since(appended.get(2).id()));
+    }
+
+    @Test
+    void detectsGapWhenEventsRolledOut() {
+        EventLog<String> log = new EventLog<>(3);
+        List<EventLog.Entry<String>> appended = append(log, 6);
+        assertEquals(3, log.size());
+
+        // 缓冲中剩 4..6：从 3 之后续传刚好接得上，从 2 之后则缺了 3
+        assertEquals(List.of("e4", "e5", "e6"), events(log.since(appended.get(2).id())));
+        assertNull(log.since(appended.get(1).id()));
+        assertNull(log.since(appended.get(0).id()));
+    }
+
+    @Test
+    void clientThatSawNothingFromThisBufferResumesFromSeqZero() {
+        EventLog<String> log = new EventLog<>(3);
+        assertEquals(List.of(), log.since(log.idOf(0)));
+        append(log, 2);
+        assertEquals(List.of("e1", "e2"), events(log.since(log.idOf(0))));
+        append(log, 2);
+        // 1 已滚出缓冲
+        assertNull(log.since(log.idOf(0)));
+    }
+
+    @Test
+    void rejectsIdsFromAnotherBufferOrTheFuture() {
+        EventLog<String> log = new EventLog<>(10);
+        EventLog<String> other = new EventLog<>(10);
+        append(log, 3);
+        List<EventLog.Entry<String>> foreign = append(other, 3);
+
+        assertNull(log.since(foreign.get(0).id()));
+        assertNull(log.since(log.idOf(4)));
+        assertNull(log.since(log.idOf(-1)));
+    }
+
+    @Test
+    void rejectsMalformedIds() {
+        EventLog<String> log = new EventLog<>(10);
+        append(log, 3);
+        assertNull(log.since(null));
+        assertNull(log.since(""));
+        assertNull(log.since("   "));
+        assertNull(log.since("42"));
+        assertNull(log.since("-1"));
+        assertNull(log.since("abc-1"));
+        assertNull(log.since("1-abc"));
+        assertNull(log.since(log.idOf(1) + "x"));
+    }
+
+    @Test
+    void trimsSurroundingWhitespace() {
+        EventLog<String> log = new EventLog<>(10);
+        List<EventLog.Entry<String>> appended = append(log, 2);
+        assertEquals(List.of("e2"), events(log.since(" " + appended.get(0).id() + "\n")));
+    }
+
+    private static List<EventLog.Entry<String>> append(EventLog<String> log, int count) {
+        List<EventLog.Entry<String>> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) entries.add(log.append(seq -> "e" + seq));
+        return entries;
+    }
+
+    private static List<String> events(List<EventLog.Entry<String>> entries) {
+        assertNotNull(entries);
+        return entries.stream().map(EventLog.Entry::event).toList();
+    }
+}
@@ -0,0 +1,286 @@
+package com.kirisamemarisa.blog.events;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 用桩 RabbitTemplate 模拟 broker：确认失败（超时）的批次不算送达，
+ * 按送达顺序记录消息 id，验证批量发送、确认超时、退避重试以及落盘补发的顺序。
+ */
+class RabbitNotificationBridgeTest {
+
+    @TempDir
+    Path dir;
+
+    private final FakeBroker broker = new FakeBroker();
+    private final NotificationEventPublisher local = mock(NotificationEventPublisher.class);
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final List<RabbitNotificationBridge> bridges = new ArrayList<>();
+
+    @AfterEach
+    void stopBridges() {
+        bridges.forEach(RabbitNotificationBridge::shutdown);
+    }
+
+    @Test
+    void sendsFullBatchesInPublishOrder() throws Exception {
+        RabbitNotificationBridge bridge = start(true, 100, 200, 20, 80);
+        for (long id = 1; id <= 250; id++) bridge.publish(msg(id));
+
+        await(() -> broker.delivered.size() == 250);
+        assertEquals(range(1, 250), broker.delivered);
+        assertEquals(List.of(100, 100, 50), broker.batchSizes);
+        assertEquals(250L, stat(bridge, "published"));
+        verify(local, never()).sendNotification(anyLong(), any());
+    }
+
+    @Test
+    void sendsPartialBatchAfterMaxWait() throws Exception {
+        RabbitNotificationBridge bridge = start(true, 100, 50, 20, 80);
+        long t0 = System.nanoTime();
+        for (long id = 1; id <= 3; id++) bridge.publish(msg(id));
+
+        await(() -> broker.delivered.size() == 3);
+        assertEquals(List.of(3), broker.batchSizes);
+        assertTrue(broker.attempts.get(0) - t0 >= 50_000_000L, "batch should wait max-wait-ms for more messages");
+    }
+
+    @Test
+    void confirmTimeoutSpillsBatchThenReplaysIt() throws Exception {
+        broker.down = true;
+        RabbitNotificationBridge bridge = start(true, 10, 10, 20, 80);
+        for (long id = 1; id <= 5; id++) bridge.publish(msg(id));
+
+        await(() -> stat(bridge, "spilled") == 5);
+        assertTrue(broker.confirmTimeouts.contains(250L), "confirm-timeout-ms should be passed to the broker wait");
+        assertTrue(stat(bridge, "failedBatches") >= 1);
+        // 落盘的消息已先推送给本节点的连接
+        verify(local, times(5)).sendNotification(anyLong(), any());
+        assertEquals(5, Files.readAllLines(dir.resolve("spill.jsonl"), StandardCharsets.UTF_8).size());
+
+        broker.down = false;
+        await(() -> broker.delivered.size() == 5);
+        assertEquals(range(1, 5), broker.delivered);
+        assertEquals(5L, stat(bridge, "replayed"));
+
+        // 补发回本节点的消息不再重复推送
+        for (NotificationMessage m : broker.messages) bridge.onMessage(m);
+        verify(local, times(5)).sendNotification(anyLong(), any());
+    }
+
+    @Test
+    void retryBackoffDoublesUpToMax() throws Exception {
+        broker.down = true;
+        RabbitNotificationBridge bridge = start(true, 10, 0, 50, 200);
+        // 持续有消息进来，发布线程不会停在空闲轮询上，重试时刻只由退避决定
+        Thread ticker = new Thread(() -> {
+            long id = 1;
+            while (!Thread.currentThread().isInterrupted()) {
+                bridge.publish(msg(id++));
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        ticker.start();
+        try {
+            await(() -> broker.attempts.size() >= 6);
+        } finally {
+            ticker.interrupt();
+            ticker.join();
+        }
+        // 不封顶时第 4、5 次会退避 400 / 800 ms
+        long[] expected = {50, 100, 200, 200, 200};
+        for (int i = 0; i < expected.length; i++) {
+            long gapMs = (broker.attempts.get(i + 1) - broker.attempts.get(i)) / 1_000_000L;
+            assertTrue(gapMs >= expected[i], "attempt " + (i + 1) + " retried after " + gapMs + " ms");
+            assertTrue(gapMs < expected[i] + 100, "attempt " + (i + 1) + " retried after " + gapMs + " ms");
+        }
+    }
+
+    @Test
+    void replayFailureKeepsOrderAcrossBrokerRestart() throws Exception {
+        broker.down = true;
+        RabbitNotificationBridge bridge = start(true, 2, 0, 20, 80);
+        for (long id = 1; id <= 6; id++) bridge.publish(msg(id));
+        await(() -> stat(bridge, "spilled") == 6);
+
+        // broker 恢复后只确认一批就再次断开：补发到一半失败，未补发的部分排回落盘文件最前面
+        broker.okBudget.set(1);
+        broker.down = false;
+        await(() -> broker.down);
+        assertEquals(range(1, 2), broker.delivered);
+
+        for (long id = 7; id <= 8; id++) bridge.publish(msg(id));
+        await(() -> stat(bridge, "spilled") == 8);
+
+        broker.okBudget.set(Integer.MAX_VALUE);
+        broker.down = false;
+        await(() -> broker.delivered.size() == 8);
+        assertEquals(range(1, 8), broker.delivered);
+        assertFalse(Files.exists(dir.resolve("spill.jsonl.replaying")));
+    }
+
+    @Test
+    void restartReplaysUnfinishedReplayFileFirst() throws Exception {
+        // 上次进程在补发途中退出：.replaying 中是更早的消息，落盘文件中是之后的
+        writeSpill(dir.resolve("spill.jsonl.replaying"), 1, 3);
+        writeSpill(dir.resolve("spill.jsonl"), 4, 5);
+
+        RabbitNotificationBridge bridge = start(true, 2, 0, 20, 80);
+        bridge.publish(msg(6));
+
+        await(() -> broker.delivered.size() == 6);
+        assertEquals(range(1, 6), broker.delivered);
+        assertFalse(Files.exists(dir.resolve("spill.jsonl.replaying")));
+    }
+
+    @Test
+    void spilledNotificationsSurviveProcessRestart() throws Exception {
+        broker.down = true;
+        RabbitNotificationBridge first = start(true, 10, 0, 20, 80);
+        for (long id = 1; id <= 3; id++) first.publish(msg(id));
+        await(() -> stat(first, "spilled") == 3);
+        first.shutdown();
+
+        broker.down = false;
+        RabbitNotificationBridge second = start(true, 10, 0, 20, 80);
+        second.publish(msg(4));
+
+        await(() -> broker.delivered.size() == 4);
+        assertEquals(range(1, 4), broker.delivered);
+    }
+
+    @Test
+    void publishesWithoutConfirmsWhenNotEnabled() throws Exception {
+        RabbitNotificationBridge bridge = start(false, 10, 0, 20, 80);
+        for (long id = 1; id <= 3; id++) bridge.publish(msg(id));
+
+        await(() -> broker.delivered.size() == 3);
+        assertTrue(broker.confirmTimeouts.isEmpty());
+        assertEquals(Boolean.FALSE, bridge.stats().get("publisherConfirms"));
+    }
+
+    @Test
+    void enablesSimpleConfirmsOnlyWhenNoneConfigured() {
+        BeanPostProcessor processor = RabbitConfig.publisherConfirmsPostProcessor();
+
+        CachingConnectionFactory unset = new CachingConnectionFactory();
+        processor.postProcessBeforeInitialization(unset, "rabbitConnectionFactory");
+        assertTrue(unset.isSimplePublisherConfirms());
+
+        CachingConnectionFactory correlated = new CachingConnectionFactory();
+        correlated.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
+        processor.postProcessBeforeInitialization(correlated, "rabbitConnectionFactory");
+        assertFalse(correlated.isSimplePublisherConfirms());
+        assertTrue(correlated.isPublisherConfirms());
+    }
+
+    private RabbitNotificationBridge start(boolean confirms, int batchSize, long maxWaitMs,
+                                           long retryInitialMs, long retryMaxMs) {
+        RabbitNotificationBridge bridge = new RabbitNotificationBridge(broker.template(confirms), local, objectMapper,
+                "blog.notifications", 1000, batchSize, maxWaitMs, 250, retryInitialMs, retryMaxMs,
+                dir.resolve("spill.jsonl").toString());
+        bridge.start();
+        bridges.add(bridge);
+        return bridge;
+    }
+
+    private void writeSpill(Path file, long from, long to) throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (long id = from; id <= to; id++) lines.add(objectMapper.writeValueAsString(msg(id)));
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    private static NotificationMessage msg(long id) {
+        NotificationMessage m = new NotificationMessage();
+        m.setId(id);
+        m.setReceiverId(100L + id % 3);
+        m.setType("TEST");
+        return m;
+    }
+
+    private static List<Long> range(long from, long to) {
+        return LongStream.rangeClosed(from, to).boxed().collect(Collectors.toList());
+    }
+
+    private static long stat(RabbitNotificationBridge bridge, String key) {
+        return ((Number) bridge.stats().get(key)).longValue();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) fail("condition not met within 10s");
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * 桩 broker：down 时等待确认抛出超时；okBudget 用完后自动断开。只有确认成功的批次计入送达。
+     */
+    private static class FakeBroker {
+        final List<Long> delivered = Collections.synchronizedList(new ArrayList<>());
+        final List<NotificationMessage> messages = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        final List<Long> attempts = Collections.synchronizedList(new ArrayList<>());
+        final List<Long> confirmTimeouts = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger okBudget = new AtomicInteger(Integer.MAX_VALUE);
+        volatile boolean down;
+
+        @SuppressWarnings("unchecked")
+        RabbitTemplate template(boolean confirms) {
+            ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+            when(connectionFactory.isSimplePublisherConfirms()).thenReturn(confirms);
+            RabbitTemplate template = mock(RabbitTemplate.class);
+            when(template.getConnectionFactory()).thenReturn(connectionFactory);
+            when(template.invoke(any(RabbitOperations.OperationsCallback.class)))
+                    .thenAnswer(inv -> invoke(inv.getArgument(0)));
+            return template;
+        }
+
+        private Object invoke(RabbitOperations.OperationsCallback<?> callback) throws Exception {
+            attempts.add(System.nanoTime());
+            List<NotificationMessage> pending = new ArrayList<>();
+            RabbitOperations ops = mock(RabbitOperations.class);
+            doAnswer(a -> pending.add(a.getArgument(2)))
+                    .when(ops).convertAndSend(anyString(), anyString(), any(Object.class));
+            doAnswer(a -> {
+                confirmTimeouts.add(a.getArgument(0));
+                if (!down && okBudget.getAndDecrement() <= 0) down = true;
+                if (down) throw new AmqpTimeoutException("timed out waiting for publisher confirms");
+                return null;
+            }).when(ops).waitForConfirmsOrDie(anyLong());
+            Object result = callback.doInRabbit(ops);
+            for (NotificationMessage m : pending) {
+                delivered.add(m.getId());
+                messages.add(m);
+            }
+            batchSizes.add(pending.size());
+            return result;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.kirisamemarisa.blog.repository;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * 私信权限探针的对比基准（手动运行，不属于单元测试，需要 MySQL）。
+ * <pre>
+ * java -Dbench.jdbc.url='jdbc:mysql://localhost:3306/bench?rewriteBatchedStatements=true' \
+ *      -Dbench.jdbc.user=root -Dbench.jdbc.password=... \
+ *      -cp target/test-classes:target/classes:&lt;依赖&gt; \
+ *      com.kirisamemarisa.blog.repository.PrivateMessagePermissionBenchmark [每个方向的消息数] [迭代次数]
+ * </pre>
+ * 默认两人之间每个方向 10 万条消息（另有同样数量的其他会话作为干扰数据），迭代 50 次。
+ * 表结构与 private_messages 相同（含 idx_pm_sender_receiver_created），写入临时表 bench_pm_users /
+ * bench_private_messages，-Dbench.jdbc.keep=true 时保留。对比：
+ * - hasReplied：旧实现 findBySenderAndReceiverWithParticipantsOrderByCreatedAtAsc(...).isEmpty()
+ *   （按方向全量加载并连两张用户表）与 existsBySender_IdAndReceiver_Id（limit 1 探针），
+ *   探针分别测有消息和没有消息的一对用户；
+ * - conversation()：旧实现两个方向各查一次再在 Java 中排序，与 findConversationAsc 一次查询由数据库排序。
+ * 行只读成轻量对象，不含 Hibernate 实体化的开销，旧路径的实际代价更高。
+ */
+public class PrivateMessagePermissionBenchmark {
+
+    private static final long ALICE = 1L;
+    private static final long BOB = 2L;
+    private static final long CAROL = 3L;
+    private static final int NOISE_USERS = 1000;
+
+    private static final String ROW_COLUMNS = "select pm.id, pm.text, pm.media_url, pm.type, pm.created_at, " +
+            "pm.read_by_receiver, s.id, s.username, r.id, r.username ";
+
+    private static final String OLD_DIRECTION_SQL = ROW_COLUMNS +
+            "from bench_private_messages pm join bench_pm_users s on s.id = pm.sender_id " +
+            "join bench_pm_users r on r.id = pm.receiver_id " +
+            "where pm.sender_id = ? and pm.receiver_id = ? order by pm.created_at asc";
+
+    private static final String EXISTS_SQL =
+            "select pm.id from bench_private_messages pm where pm.sender_id = ? and pm.receiver_id = ? limit 1";
+
+    private static final String CONVERSATION_SQL = ROW_COLUMNS +
+            "from bench_private_messages pm join bench_pm_users s on s.id = pm.sender_id " +
+            "join bench_pm_users r on r.id = pm.receiver_id " +
+            "where (s.id = ? and r.id = ?) or (s.id = ? and r.id = ?) order by pm.created_at asc, pm.id asc";
+
+    private record Row(long id, String text, String mediaUrl, String type, Instant createdAt, boolean read,
+                       long senderId, String senderName, long receiverId, String receiverName) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int perDirection = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        String url = System.getProperty("bench.jdbc.url");
+        if (url == null || url.isBlank()) {
+            System.out.println("set -Dbench.jdbc.url (and -Dbench.jdbc.user / -Dbench.jdbc.password) to a MySQL database");
+            return;
+        }
+        String user = System.getProperty("bench.jdbc.user", "root");
+        String password = System.getProperty("bench.jdbc.password", "");
+        boolean keep = Boolean.getBoolean("bench.jdbc.keep");
+
+        try (Connection con = DriverManager.getConnection(url, user, password)) {
+            load(con, perDirection);
+            int heavy = Math.max(3, iterations / 10);
+            System.out.println();
+            System.out.printf("%-44s %8s %10s %10s %10s%n", "query", "iters", "rows", "p50(us)", "p99(us)");
+
+            long[] rows = new long[1];
+            report("hasReplied: load + isEmpty (old)", heavy, rows,
+                    () -> directionRows(con, BOB, ALICE).size());
+            report("hasReplied: exists probe, has messages", iterations, rows,
+                    () -> exists(con, BOB, ALICE) ? 1 : 0);
+            report("hasReplied: exists probe, no messages", iterations, rows,
+                    () -> exists(con, CAROL, ALICE) ? 1 : 0);
+            report("conversation: two loads + Java sort (old)", heavy, rows,
+                    () -> oldConversation(con, ALICE, BOB).size());
+            report("conversation: single ordered query", heavy, rows,
+                    () -> conversation(con, ALICE, BOB).size());
+
+            if (!keep) {
+                try (Statement st = con.createStatement()) {
+                    st.execute("drop table bench_private_messages");
+                    st.execute("drop table bench_pm_users");
+                }
+            }
+        }
+    }
+
+    /**
+     * ALICE 与 BOB 之间每个方向 perDirection 条；另有同样数量的消息分散在 ALICE 与其他用户之间，CAROL 从未发过消息
+     */
+    private static void load(Connection con, int perDirection) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.execute("drop table if exists bench_private_messages");
+            st.execute("drop table if exists bench_pm_users");
+            st.execute("create table bench_pm_users (id bigint primary key, username varchar(64) not null) " +
+                    "default charset = utf8mb4");
+            st.execute("create table bench_private_messages (id bigint primary key auto_increment, " +
+                    "sender_id bigint not null, receiver_id bigint not null, text varchar(2000), " +
+                    "media_url varchar(512), type varchar(16) not null, created_at datetime(6) not null, " +
+                    "read_by_receiver bit not null, " +
+                    "key idx_pm_sender_receiver_created (sender_id, receiver_id, created_at)) default charset = utf8mb4");
+        }
+        long start = System.nanoTime();
+        con.setAutoCommit(false);
+        try (PreparedStatement ps = con.prepareStatement("insert into bench_pm_users (id, username) values (?, ?)")) {
+            for (long id = 1; id <= CAROL + NOISE_USERS; id++) {
+                ps.setLong(1, id);
+                ps.setString(2, "user" + id);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        Random random = new Random(20240601L);
+        long base = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+        int total = perDirection * 3;
+        try (PreparedStatement ps = con.prepareStatement("insert into bench_private_messages " +
+                "(sender_id, receiver_id, text, media_url, type, created_at, read_by_receiver) values (?, ?, ?, null, 'TEXT', ?, ?)")) {
+            for (int i = 0; i < total; i++) {
+                long sender;
+                long receiver;
+                switch (i % 3) {
+                    case 0 -> { sender = ALICE; receiver = BOB; }
+                    case 1 -> { sender = BOB; receiver = ALICE; }
+                    default -> { sender = CAROL + 1 + random.nextInt(NOISE_USERS); receiver = ALICE; }
+                }
+                ps.setLong(1, sender);
+                ps.setLong(2, receiver);
+                ps.setString(3, "message " + i + " " + Long.toHexString(random.nextLong()));
+                ps.setTimestamp(4, new Timestamp(base + i * 1000L));
+                ps.setBoolean(5, random.nextBoolean());
+                ps.addBatch();
+                if ((i + 1) % 5000 == 0) {
+                    ps.executeBatch();
+                    con.commit();
+                }
+            }
+            ps.executeBatch();
+            con.commit();
+        }
+        con.setAutoCommit(true);
+        try (Statement st = con.createStatement()) {
+            st.execute("analyze table bench_private_messages");
+        }
+        System.out.printf("loaded %d messages (%d per direction between the pair) in %d ms%n",
+                total, perDirection, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static List<Row> directionRows(Connection con, long senderId, long receiverId) {
+        return rows(con, OLD_DIRECTION_SQL, senderId, receiverId);
+    }
+
+    private static List<Row> oldConversation(Connection con, long a, long b) {
+        List<Row> all = new ArrayList<>(directionRows(con, a, b));
+        all.addAll(directionRows(con, b, a));
+        all.sort(Comparator.comparing(Row::createdAt).thenComparingLong(Row::id));
+        return all;
+    }
+
+    private static List<Row> conversation(Connection con, long a, long b) {
+        return rows(con, CONVERSATION_SQL, a, b, b, a);
+    }
+
+    private static boolean exists(Connection con, long senderId, long receiverId) {
+        try (PreparedStatement ps = con.prepareStatement(EXISTS_SQL)) {
+            ps.setLong(1, senderId);
+            ps.setLong(2, receiverId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static List<Row> rows(Connection con, String sql, long... params) {
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setLong(i + 1, params[i]);
+            }
+            List<Row> list = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(new Row(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                            rs.getTimestamp(5).toInstant(), rs.getBoolean(6), rs.getLong(7), rs.getString(8),
+                            rs.getLong(9), rs.getString(10)));
+                }
+            }
+            return list;
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void report(String name, int iterations, long[] rows, LongSupplier query) {
+        // 预热
+        for (int i = 0; i < Math.min(3, iterations); i++) rows[0] = query.getAsLong();
+        long[] micros = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            rows[0] = query.getAsLong();
+            micros[i] = (System.nanoTime() - start) / 1000;
+        }
+        Arrays.sort(micros);
+        System.out.printf("%-44s %8d %10d %10d %10d%n", name, iterations, rows[0],
+                percentile(micros, 50), percentile(micros, 99));
+    }
+
+    private static long percentile(long[] sorted, int p) {
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, idx))];
+    }
+}